@@ -0,0 +1,84 @@
+package com.lucasbrown.Benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.lucasbrown.HelperClasses.Kernels.BatchKernels;
+import com.lucasbrown.HelperClasses.Kernels.IBatchKernels;
+
+/**
+ * The scalar and vector kernels over a batch of outcomes. The vector kernels
+ * need the incubating vector module, which the fork adds, and are only built
+ * with {@code mvn package -Pvector}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "--add-modules", "jdk.incubator.vector" })
+public class BatchKernelsBenchmark {
+
+    private static final int N_OUTCOMES = 1024;
+
+    @Param({ "scalar", "vector" })
+    public String backend;
+
+    @Param({ "2", "4" })
+    public int width;
+
+    private IBatchKernels kernels;
+    private double[] values;
+    private double[] weights;
+    private double[] out;
+
+    @Setup
+    public void setup() {
+        kernels = backend.equals("vector") ? BatchKernels.getVector() : BatchKernels.getScalar();
+
+        Random rng = new Random(1);
+        values = new double[N_OUTCOMES * width];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = rng.nextGaussian() * 2;
+        }
+        weights = new double[width];
+        for (int i = 0; i < width; i++) {
+            weights[i] = rng.nextGaussian();
+        }
+        out = new double[N_OUTCOMES];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N_OUTCOMES)
+    public double[] linearCombination() {
+        kernels.linearCombination(values, weights, 0.5, width, out, N_OUTCOMES);
+        return out;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N_OUTCOMES)
+    public double[] gaussianPeak() {
+        kernels.gaussianPeak(values, 0, 1, 1, 0, out, N_OUTCOMES);
+        return out;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N_OUTCOMES)
+    public double[] rectify() {
+        kernels.rectify(values, 0.01, out, N_OUTCOMES);
+        return out;
+    }
+}
@@ -0,0 +1,98 @@
+package com.lucasbrown.Benchmarks;
+
+import java.security.InvalidAlgorithmParameterException;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.lucasbrown.GraphNetwork.Global.GraphNetwork;
+import com.lucasbrown.GraphNetwork.Global.NodeBuilder;
+import com.lucasbrown.GraphNetwork.Local.ActivationFunction;
+import com.lucasbrown.GraphNetwork.Local.Outcome;
+import com.lucasbrown.GraphNetwork.Local.Signal;
+import com.lucasbrown.GraphNetwork.Local.Filters.NormalPeakFilter;
+import com.lucasbrown.GraphNetwork.Local.Nodes.INode;
+import com.lucasbrown.GraphNetwork.Local.Nodes.ProbabilityCombinators.ComplexProbabilityCombinator;
+import com.lucasbrown.GraphNetwork.Local.Nodes.ValueCombinators.ComplexCombinator;
+
+/**
+ * Combining the incoming signals of a single node, which is done by
+ * Node.combinePossibilities through {@link INode#acceptSignals()}.
+ * Delivering the signals is included in the measurement.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CombinePossibilitiesBenchmark {
+
+    @Param({ "1", "2", "4", "8" })
+    public int fanIn;
+
+    @Param({ "1", "4", "16" })
+    public int outcomesPerSource;
+
+    @Param({ "8", "64" })
+    public int outcomeLimit;
+
+    private INode recievingNode;
+    private Signal[] signals;
+
+    @Setup
+    public void setup() {
+        Random rng = new Random(1);
+        GraphNetwork net = new GraphNetwork();
+
+        NodeBuilder nodeBuilder = new NodeBuilder(net);
+        nodeBuilder.setActivationFunction(ActivationFunction.LINEAR);
+        nodeBuilder.setValueCombinator(() -> new ComplexCombinator(rng));
+        nodeBuilder.setProbabilityCombinator(
+                () -> new ComplexProbabilityCombinator(() -> new NormalPeakFilter(0, 2, 10, rng)));
+        nodeBuilder.setOutcomeLimit(outcomeLimit);
+        nodeBuilder.setAsHiddenNode();
+
+        INode[] sendingNodes = nodeBuilder.build(fanIn);
+        recievingNode = nodeBuilder.build();
+        for (INode sending : sendingNodes) {
+            net.addNewConnection(sending, recievingNode);
+        }
+
+        ArrayList<Signal> allSignals = new ArrayList<>(fanIn * outcomesPerSource);
+        for (INode sending : sendingNodes) {
+            for (int o = 0; o < outcomesPerSource; o++) {
+                Outcome outcome = new Outcome();
+                outcome.node = sending;
+                outcome.netValue = rng.nextGaussian();
+                outcome.activatedValue = outcome.netValue;
+                outcome.probability = 1d / outcomesPerSource;
+                outcome.sourceOutcomes = new Outcome[0];
+                outcome.allRootOutcomes = new Outcome[0];
+                allSignals.add(new Signal(sending, recievingNode, outcome));
+            }
+        }
+        signals = allSignals.toArray(Signal[]::new);
+    }
+
+    @Benchmark
+    public ArrayList<Outcome> combinePossibilities() throws InvalidAlgorithmParameterException {
+        for (Signal signal : signals) {
+            recievingNode.recieveForwardSignal(signal);
+        }
+        recievingNode.acceptSignals();
+        return recievingNode.getState();
+    }
+}
@@ -0,0 +1,90 @@
+package com.lucasbrown.Benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.lucasbrown.GraphNetwork.Local.Filters.CappedNormalPeakFilter;
+import com.lucasbrown.GraphNetwork.Local.Filters.FlatRateFilter;
+import com.lucasbrown.GraphNetwork.Local.Filters.GeneralizedExponentialDecayFilter;
+import com.lucasbrown.GraphNetwork.Local.Filters.IFilter;
+import com.lucasbrown.GraphNetwork.Local.Filters.NormalPeakFilter;
+import com.lucasbrown.GraphNetwork.Local.Filters.OpenFilter;
+import com.lucasbrown.GraphNetwork.Local.Filters.TabulatedFilter;
+
+/**
+ * {@link IFilter#getChanceToSend(double)} of every filter over a fixed set of
+ * values
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FilterBenchmark {
+
+    private static final int N_VALUES = 1024;
+
+    @Param({ "NormalPeak", "CappedNormalPeak", "FlatRate", "GeneralizedExponentialDecay",
+            "TabulatedGeneralizedExponentialDecay", "Open" })
+    public String filterType;
+
+    private IFilter filter;
+    private double[] values;
+
+    @Setup
+    public void setup() {
+        switch (filterType) {
+            case "NormalPeak":
+                filter = new NormalPeakFilter(0, 1);
+                break;
+            case "CappedNormalPeak":
+                filter = CappedNormalPeakFilter.getStandardNormalFilter();
+                break;
+            case "FlatRate":
+                filter = new FlatRateFilter(0.5);
+                break;
+            case "GeneralizedExponentialDecay":
+                filter = GeneralizedExponentialDecayFilter.getEvenChanceDistribution();
+                break;
+            case "TabulatedGeneralizedExponentialDecay":
+                filter = new TabulatedFilter(GeneralizedExponentialDecayFilter.getEvenChanceDistribution(), -8, 8,
+                        1024);
+                break;
+            case "Open":
+                filter = new OpenFilter();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown filter " + filterType);
+        }
+
+        Random rng = new Random(1);
+        values = new double[N_VALUES];
+        for (int i = 0; i < N_VALUES; i++) {
+            values[i] = rng.nextGaussian() * 2;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N_VALUES)
+    public double getChanceToSend() {
+        double sum = 0;
+        for (double x : values) {
+            sum += filter.getChanceToSend(x);
+        }
+        return sum;
+    }
+}
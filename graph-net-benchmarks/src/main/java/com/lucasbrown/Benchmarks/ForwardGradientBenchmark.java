@@ -0,0 +1,64 @@
+package com.lucasbrown.Benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.lucasbrown.GraphNetwork.Global.GraphNetwork;
+import com.lucasbrown.GraphNetwork.Local.Outcome;
+import com.lucasbrown.NetworkTraining.History.NetworkHistory;
+import com.lucasbrown.NetworkTraining.NetworkDerivatives.ForwardNetworkGradient;
+import com.lucasbrown.NetworkTraining.Trainers.NetworkInputEvaluater;
+import com.lucasbrown.NetworkTraining.Trainers.WeightsLinearizer;
+
+import jsat.linear.Vec;
+
+/**
+ * The jacobian of every outcome in a fixed history with respect to the weights
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ForwardGradientBenchmark {
+
+    @Param({ "8", "32" })
+    public int hiddenNodes;
+
+    @Param({ "2", "4" })
+    public int fanIn;
+
+    @Param({ "false", "true" })
+    public boolean sparse;
+
+    private ForwardNetworkGradient networkGradient;
+    private NetworkHistory history;
+
+    @Setup
+    public void setup() {
+        GraphNetwork network = RandomNetworks.getRecurrentNetwork(hiddenNodes, fanIn, 8, 1);
+        networkGradient = new ForwardNetworkGradient(new WeightsLinearizer(network), sparse);
+        history = new NetworkInputEvaluater(network, RandomNetworks.getInputs(10, new Random(2)))
+                .computeNetworkInference();
+    }
+
+    @Benchmark
+    public ArrayList<HashMap<Outcome, Vec>> getGradient() {
+        return networkGradient.getGradient(history);
+    }
+}
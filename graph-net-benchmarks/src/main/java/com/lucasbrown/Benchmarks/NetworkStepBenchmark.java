@@ -0,0 +1,75 @@
+package com.lucasbrown.Benchmarks;
+
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.lucasbrown.GraphNetwork.Global.GraphNetwork;
+import com.lucasbrown.GraphNetwork.Local.Nodes.IInputNode;
+import com.lucasbrown.GraphNetwork.Local.Nodes.InputNode;
+
+/**
+ * A single forward step of {@link GraphNetwork#trainingStep()} over a cycle of
+ * random inputs
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NetworkStepBenchmark {
+
+    @Param({ "8", "32" })
+    public int hiddenNodes;
+
+    @Param({ "2", "4" })
+    public int fanIn;
+
+    @Param({ "4", "16" })
+    public int outcomeLimit;
+
+    @Param({ "1" })
+    public int parallelism;
+
+    private GraphNetwork network;
+    private Double[][] inputs;
+    private int timestep;
+
+    @Setup
+    public void setup() {
+        network = RandomNetworks.getRecurrentNetwork(hiddenNodes, fanIn, outcomeLimit, 1);
+        network.setParallelism(parallelism);
+        inputs = RandomNetworks.getInputs(64, new Random(2));
+        network.setInputOperation(this::applyInputs);
+        timestep = 0;
+    }
+
+    private void applyInputs(HashMap<Integer, ? extends IInputNode> inputNodeMap) {
+        Double[] input = inputs[timestep++ % inputs.length];
+        InputNode[] sortedNodes = inputNodeMap.values().stream().sorted().toArray(InputNode[]::new);
+        for (int i = 0; i < sortedNodes.length; i++) {
+            if (input[i] != null) {
+                sortedNodes[i].acceptUserForwardSignal(input[i]);
+            }
+        }
+    }
+
+    @Benchmark
+    public GraphNetwork trainingStep() {
+        network.trainingStep();
+        return network;
+    }
+}
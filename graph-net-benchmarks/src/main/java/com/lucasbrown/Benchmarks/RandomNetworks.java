@@ -0,0 +1,107 @@
+package com.lucasbrown.Benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import com.lucasbrown.GraphNetwork.Global.GraphNetwork;
+import com.lucasbrown.GraphNetwork.Global.NodeBuilder;
+import com.lucasbrown.GraphNetwork.Local.ActivationFunction;
+import com.lucasbrown.GraphNetwork.Local.Filters.NormalPeakFilter;
+import com.lucasbrown.GraphNetwork.Local.Nodes.INode;
+import com.lucasbrown.GraphNetwork.Local.Nodes.ProbabilityCombinators.ComplexProbabilityCombinator;
+import com.lucasbrown.GraphNetwork.Local.Nodes.ValueCombinators.ComplexCombinator;
+
+/**
+ * Seeded random network shapes shared by all benchmarks so that results can be
+ * compared between runs
+ */
+public class RandomNetworks {
+
+    public static final int NUM_INPUTS = 3;
+    public static final int NUM_OUTPUTS = 2;
+
+    private RandomNetworks() {
+    }
+
+    /**
+     * Build a recurrent network where every hidden node recieves from exactly
+     * fanIn other hidden nodes
+     *
+     * @param hiddenNodes  the number of hidden nodes
+     * @param fanIn        the number of hidden nodes connected to each hidden node
+     * @param outcomeLimit the maximum number of outcomes of each node
+     * @param seed
+     * @return
+     */
+    public static GraphNetwork getRecurrentNetwork(int hiddenNodes, int fanIn, int outcomeLimit, long seed) {
+        Random rng = new Random(seed);
+        GraphNetwork net = new GraphNetwork();
+
+        NodeBuilder nodeBuilder = new NodeBuilder(net);
+        nodeBuilder.setActivationFunction(ActivationFunction.LINEAR);
+        nodeBuilder.setValueCombinator(() -> new ComplexCombinator(rng));
+        nodeBuilder.setProbabilityCombinator(
+                () -> new ComplexProbabilityCombinator(() -> new NormalPeakFilter(0, 2, 10, rng)));
+        nodeBuilder.setOutcomeLimit(outcomeLimit);
+
+        nodeBuilder.setAsInputNode();
+        INode[] inputs = nodeBuilder.build(NUM_INPUTS);
+
+        nodeBuilder.setAsHiddenNode();
+        INode[] hidden = nodeBuilder.build(hiddenNodes);
+
+        nodeBuilder.setAsOutputNode();
+        INode[] outputs = nodeBuilder.build(NUM_OUTPUTS);
+
+        for (INode in : inputs) {
+            net.addNewConnection(in, hidden[rng.nextInt(hidden.length)]);
+        }
+        for (INode recieving : hidden) {
+            for (INode sending : choose(hidden, Math.min(fanIn, hidden.length), rng)) {
+                net.addNewConnection(sending, recieving);
+            }
+        }
+        for (INode out : outputs) {
+            for (INode sending : choose(hidden, Math.min(fanIn, hidden.length), rng)) {
+                net.addNewConnection(sending, out);
+            }
+        }
+        return net;
+    }
+
+    private static List<INode> choose(INode[] nodes, int count, Random rng) {
+        List<INode> shuffled = new ArrayList<>(List.of(nodes));
+        Collections.shuffle(shuffled, rng);
+        return shuffled.subList(0, count);
+    }
+
+    /**
+     * @return inputs of dimension [timestep][input node], some of which are
+     *         missing
+     */
+    public static Double[][] getInputs(int timesteps, Random rng) {
+        Double[][] inputs = new Double[timesteps][NUM_INPUTS];
+        for (int t = 0; t < timesteps; t++) {
+            for (int i = 0; i < NUM_INPUTS; i++) {
+                inputs[t][i] = rng.nextDouble() < 0.6 ? rng.nextGaussian() : null;
+            }
+        }
+        return inputs;
+    }
+
+    /**
+     * @return targets of dimension [timestep][output node], some of which are
+     *         missing
+     */
+    public static Double[][] getTargets(int timesteps, Random rng) {
+        Double[][] targets = new Double[timesteps][NUM_OUTPUTS];
+        for (int t = 0; t < timesteps; t++) {
+            for (int i = 0; i < NUM_OUTPUTS; i++) {
+                targets[t][i] = rng.nextDouble() < 0.5 ? rng.nextGaussian() : null;
+            }
+        }
+        return targets;
+    }
+}
@@ -0,0 +1,75 @@
+package com.lucasbrown.Benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.lucasbrown.NetworkTraining.Solvers.ADAMSolver;
+import com.lucasbrown.NetworkTraining.Solvers.AdamWSolver;
+import com.lucasbrown.NetworkTraining.Solvers.ISolver;
+import com.lucasbrown.NetworkTraining.Solvers.MomentumSolver;
+import com.lucasbrown.NetworkTraining.Solvers.RMSPropSolver;
+
+import jsat.linear.DenseVector;
+import jsat.linear.Vec;
+
+/**
+ * A single solver step over a dense gradient
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SolverBenchmark {
+
+    @Param({ "1000", "100000" })
+    public int numberOfVariables;
+
+    @Param({ "ADAM", "AdamW", "RMSProp", "Momentum" })
+    public String solverType;
+
+    private ISolver solver;
+    private Vec gradient;
+    private double[] parameters;
+
+    @Setup
+    public void setup() {
+        switch (solverType) {
+            case "ADAM":
+                solver = new ADAMSolver(null, numberOfVariables);
+                break;
+            case "AdamW":
+                solver = new AdamWSolver(null, numberOfVariables);
+                break;
+            case "RMSProp":
+                solver = new RMSPropSolver(null, numberOfVariables);
+                break;
+            case "Momentum":
+                solver = new MomentumSolver(null, numberOfVariables);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown solver " + solverType);
+        }
+        Random rng = new Random(1);
+        gradient = DenseVector.random(numberOfVariables, rng);
+        parameters = DenseVector.random(numberOfVariables, rng).arrayCopy();
+    }
+
+    @Benchmark
+    public Vec solve() {
+        return solver.solve(gradient, parameters);
+    }
+}
@@ -0,0 +1,83 @@
+package com.lucasbrown.Benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.lucasbrown.GraphNetwork.Global.GraphNetwork;
+import com.lucasbrown.NetworkTraining.Trainers.Trainer;
+
+/**
+ * One full {@link Trainer#trainingStep(boolean)}: inference over every
+ * sequence, both gradients and both solver updates
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TrainerBenchmark {
+
+    @Param({ "8", "16" })
+    public int hiddenNodes;
+
+    @Param({ "2", "3" })
+    public int fanIn;
+
+    @Param({ "1", "8" })
+    public int sequences;
+
+    @Param({ "1", "4" })
+    public int parallelism;
+
+    @Param({ "forward", "sparse", "reverse" })
+    public String gradient;
+
+    private Trainer trainer;
+
+    @Setup
+    public void setup() {
+        GraphNetwork network = RandomNetworks.getRecurrentNetwork(hiddenNodes, fanIn, 8, 1);
+        switch (gradient) {
+            case "forward":
+                trainer = Trainer.getDefaultTrainer(network, false);
+                break;
+            case "sparse":
+                trainer = Trainer.getDefaultTrainer(network, true);
+                break;
+            case "reverse":
+                trainer = Trainer.getReverseModeTrainer(network);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown gradient " + gradient);
+        }
+        trainer.setParallelism(parallelism);
+
+        Random rng = new Random(2);
+        Double[][][] inputs = new Double[sequences][][];
+        Double[][][] targets = new Double[sequences][][];
+        for (int i = 0; i < sequences; i++) {
+            inputs[i] = RandomNetworks.getInputs(10, rng);
+            targets[i] = RandomNetworks.getTargets(10, rng);
+        }
+        trainer.setTrainingData(inputs, targets);
+    }
+
+    @Benchmark
+    public Trainer trainingStep() {
+        trainer.trainingStep(false);
+        return trainer;
+    }
+}
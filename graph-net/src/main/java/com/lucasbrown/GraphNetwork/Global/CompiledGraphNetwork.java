@@ -0,0 +1,771 @@
+package com.lucasbrown.GraphNetwork.Global;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import com.lucasbrown.GraphNetwork.Local.ActivationFunction;
+import com.lucasbrown.GraphNetwork.Local.Edge;
+import com.lucasbrown.GraphNetwork.Local.Outcome;
+import com.lucasbrown.GraphNetwork.Local.Filters.IFilter;
+import com.lucasbrown.GraphNetwork.Local.Nodes.IInputNode;
+import com.lucasbrown.GraphNetwork.Local.Nodes.INode;
+import com.lucasbrown.GraphNetwork.Local.Nodes.InputNode;
+import com.lucasbrown.GraphNetwork.Local.Nodes.ValueCombinators.AdditiveValueCombinator;
+import com.lucasbrown.GraphNetwork.Local.Nodes.ValueCombinators.CombinatorMissalignmentException;
+import com.lucasbrown.GraphNetwork.Local.Nodes.ValueCombinators.IValueCombinator;
+import com.lucasbrown.HelperClasses.MixedRadixCounter;
+
+/**
+ * A frozen, struct-of-arrays copy of a {@link GraphNetwork}.
+ *
+ * The topology of the network is flattened into a compressed sparse row
+ * adjacency and every node keeps its outcomes in primitive buffers that are
+ * swapped between timesteps. Stepping the compiled network follows the exact
+ * same forward semantics as {@link GraphNetwork#trainingStep()} but does not
+ * allocate any objects.
+ *
+ * The beam width and pruning threshold of the network are read every step. The
+ * outcome buffers are sized when the network is compiled, so the beam width
+ * may not grow beyond the width it had then. Merging outcomes is not supported,
+ * so the merge tolerance of the network must stay negative.
+ *
+ * Filters are referenced directly, so changes to filter parameters are seen
+ * immediately. Weights and biases are copied when the network is compiled and
+ * must be refreshed with {@link #reloadParameters()} after training.
+ *
+ * {@link Outcome} objects are only created on request through
+ * {@link #materializeState()} so that a {@code NetworkHistory} can be recorded.
+ */
+public class CompiledGraphNetwork {
+
+    private final GraphNetwork network;
+
+    /**
+     * All nodes in the order they were added to the network
+     */
+    private final INode[] nodes;
+
+    /**
+     * Maps a node ID to its index in {@link #nodes}
+     */
+    private final HashMap<Integer, Integer> indexOfID;
+
+    /**
+     * Node indices of all input nodes sorted by ID
+     */
+    private final int[] inputIndices;
+
+    private final boolean[] isInput;
+
+    /**
+     * Indices of all non-input nodes sorted by ID, the order in which ties of
+     * the beam are broken
+     */
+    private final int[] beamOrder;
+
+    /**
+     * Incoming connections in CSR format. The connections of node n are found
+     * between inStart[n] and inStart[n+1] and are sorted by the key bit the
+     * recieving node assigns to the sender.
+     */
+    private final int[] inStart;
+    private final int[] inSource;
+    private final int[] inBit;
+
+    /**
+     * Offsets of each node into the outcome buffers and the lineage buffers.
+     * The outcome capacity of each node is the larger of its outcome limit and
+     * the beam width of the network.
+     */
+    private final int[] outcomeOffset;
+    private final int[] lineageOffset;
+    private final int[] outcomeLimits;
+
+    /**
+     * The beam width read at the start of the current step
+     */
+    private int beamWidth;
+    private final int beamCapacity;
+
+    // double-buffered outcome state, indexed by [buffer][offset]
+    private final int[][] outcomeCount;
+    private final double[][] netValues;
+    private final double[][] values;
+    private final double[][] probabilities;
+    private final double[][] logProbabilities;
+    private final int[][] keys;
+    private final int[][] rootKeys;
+
+    // per outcome, per incoming connection: the index of the source outcome (or
+    // -1 if the sender was inactive) and the transfer probability
+    private final int[][] sourceIndices;
+    private final double[][] transferProbabilities;
+
+    private int current;
+
+    // parameters
+    private final ActivationFunction[] activationFunctions;
+    private final IFilter[][][] filters;
+    private final int[][] weightOffsets;
+    private final double[][] weights;
+    private final double[][] biases;
+
+    // input buffers
+    private final double[] inputValues;
+    private final boolean[] hasInput;
+
+    // scratch space used while combining signals
+    private final int[] activeSlots;
+    private final MixedRadixCounter counter;
+    private final double[] sourceValues;
+    private final double[] sourceProbabilities;
+    private final double[] transfers;
+    private final double[] sourceLogProbabilities;
+    private final double[] logTransfers;
+    private final double[] logBlocks;
+    private final double[] activationBuffer;
+
+    // the most probable outcomes of the step, in descending order of log probability
+    private final int[] beamNodes;
+    private final int[] beamOutcomes;
+    private final double[] beamLogProbabilities;
+    private final boolean[] isKept;
+
+    // lazily created outcome objects used to record history
+    private Outcome[][] materialized, previousMaterialized;
+    private boolean isCurrentMaterialized, isPreviousMaterialized;
+
+    public CompiledGraphNetwork(GraphNetwork network) {
+        ArrayList<INode> nodeList = network.getNodes();
+        final int N = nodeList.size();
+
+        this.network = network;
+        checkMergeTolerance();
+        nodes = nodeList.toArray(INode[]::new);
+        indexOfID = new HashMap<>(N);
+        for (int n = 0; n < N; n++) {
+            indexOfID.put(nodes[n].getID(), n);
+        }
+
+        inputIndices = network.getInputNodes().stream().mapToInt(node -> indexOfID.get(node.getID())).toArray();
+        isInput = new boolean[N];
+        for (int n : inputIndices) {
+            isInput[n] = true;
+        }
+        beamOrder = IntStream.range(0, N)
+                .filter(n -> !isInput[n])
+                .boxed()
+                .sorted((n1, n2) -> INode.CompareNodes(nodes[n1], nodes[n2]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+
+        inStart = new int[N + 1];
+        for (int n = 0; n < N; n++) {
+            inStart[n + 1] = inStart[n] + nodes[n].getAllIncomingConnections().size();
+        }
+        inSource = new int[inStart[N]];
+        inBit = new int[inStart[N]];
+        int maxFanIn = 0;
+        for (int n = 0; n < N; n++) {
+            compileIncomingConnections(n);
+            maxFanIn = Math.max(maxFanIn, getFanIn(n));
+        }
+
+        outcomeOffset = new int[N + 1];
+        lineageOffset = new int[N + 1];
+        outcomeLimits = new int[N];
+        int minCapacity = Integer.MAX_VALUE;
+        for (int n = 0; n < N; n++) {
+            outcomeLimits[n] = isInput[n] ? 1 : nodes[n].getOutcomeLimit();
+            int capacity = isInput[n] ? 1 : Math.max(outcomeLimits[n], network.getBeamWidth());
+            outcomeOffset[n + 1] = outcomeOffset[n] + capacity;
+            lineageOffset[n + 1] = lineageOffset[n] + capacity * getFanIn(n);
+            if (!isInput[n]) {
+                minCapacity = Math.min(minCapacity, capacity);
+            }
+        }
+        beamCapacity = minCapacity;
+
+        final int totalOutcomes = outcomeOffset[N];
+        final int totalLineage = lineageOffset[N];
+        outcomeCount = new int[2][N];
+        netValues = new double[2][totalOutcomes];
+        values = new double[2][totalOutcomes];
+        probabilities = new double[2][totalOutcomes];
+        logProbabilities = new double[2][totalOutcomes];
+        keys = new int[2][totalOutcomes];
+        rootKeys = new int[2][totalOutcomes];
+        sourceIndices = new int[2][totalLineage];
+        transferProbabilities = new double[2][totalLineage];
+
+        activationFunctions = new ActivationFunction[N];
+        filters = new IFilter[N][][];
+        weightOffsets = new int[N][];
+        weights = new double[N][];
+        biases = new double[N][];
+        for (int n = 0; n < N; n++) {
+            compileParameters(n);
+        }
+
+        inputValues = new double[N];
+        hasInput = new boolean[N];
+
+        activeSlots = new int[maxFanIn];
+        counter = new MixedRadixCounter(maxFanIn);
+        sourceValues = new double[maxFanIn];
+        sourceProbabilities = new double[maxFanIn];
+        transfers = new double[maxFanIn];
+        sourceLogProbabilities = new double[maxFanIn];
+        logTransfers = new double[maxFanIn];
+        logBlocks = new double[maxFanIn];
+        int maxOutcomeLimit = 0;
+        for (int n = 0; n < N; n++) {
+            maxOutcomeLimit = Math.max(maxOutcomeLimit, getOutcomeLimit(n));
+        }
+        activationBuffer = new double[maxOutcomeLimit];
+
+        beamNodes = new int[totalOutcomes];
+        beamOutcomes = new int[totalOutcomes];
+        beamLogProbabilities = new double[totalOutcomes];
+        isKept = new boolean[totalOutcomes];
+
+        reloadParameters();
+    }
+
+    private void checkMergeTolerance() {
+        if (network.getMergeTolerance() >= 0) {
+            throw new UnsupportedOperationException("Compiled networks do not support merging outcomes.");
+        }
+    }
+
+    private void compileIncomingConnections(int n) {
+        INode node = nodes[n];
+        int start = inStart[n];
+        ArrayList<Edge> incoming = new ArrayList<>(node.getAllIncomingConnections());
+        incoming.sort((e1, e2) -> Integer.compare(getBitOf(node, e1), getBitOf(node, e2)));
+
+        for (int i = 0; i < incoming.size(); i++) {
+            Edge edge = incoming.get(i);
+            inSource[start + i] = indexOfID.get(edge.getSendingID());
+            inBit[start + i] = getBitOf(node, edge);
+            if (i > 0 && inBit[start + i] == inBit[start + i - 1]) {
+                throw new UnsupportedOperationException(
+                        "Compiled networks do not support multiple connections between the same pair of nodes.");
+            }
+        }
+    }
+
+    private static int getBitOf(INode node, Edge edge) {
+        return node.nodeSetToBinStr(List.of(edge.sending));
+    }
+
+    private void compileParameters(int n) {
+        INode node = nodes[n];
+        activationFunctions[n] = node.getActivationFunction();
+
+        if (isInput[n]) {
+            return;
+        }
+
+        if (!(node.getValueCombinator() instanceof AdditiveValueCombinator)) {
+            throw new UnsupportedOperationException("Compiled networks only support additive value combinators.");
+        }
+
+        final int numKeys = 1 << getFanIn(n);
+        filters[n] = new IFilter[numKeys][];
+        weightOffsets[n] = new int[numKeys + 1];
+        for (int key = 0; key < numKeys; key++) {
+            filters[n][key] = node.getProbabilityCombinator().getFilters(key);
+            weightOffsets[n][key + 1] = weightOffsets[n][key] + Integer.bitCount(key);
+        }
+        weights[n] = new double[weightOffsets[n][numKeys]];
+        biases[n] = new double[numKeys];
+    }
+
+    /**
+     * Copy the current weights and biases of every value combinator into the
+     * compiled buffers.
+     */
+    public void reloadParameters() {
+        for (int n = 0; n < nodes.length; n++) {
+            if (isInput[n]) {
+                continue;
+            }
+
+            IValueCombinator combinator = nodes[n].getValueCombinator();
+            for (int key = 0; key < biases[n].length; key++) {
+                double[] keyWeights = combinator.getWeights(key);
+                if (keyWeights.length != Integer.bitCount(key)) {
+                    throw new CombinatorMissalignmentException(
+                            "Number of weights does not equal the number of input combinations indicated by the key.");
+                }
+                System.arraycopy(keyWeights, 0, weights[n], weightOffsets[n][key], keyWeights.length);
+                biases[n][key] = combinator.getBias(key);
+            }
+        }
+    }
+
+    public int getNumberOfNodes() {
+        return nodes.length;
+    }
+
+    public int getNumberOfInputs() {
+        return inputIndices.length;
+    }
+
+    /**
+     * @return the number of outcomes the node can hold
+     */
+    public int getOutcomeLimit(int n) {
+        return outcomeOffset[n + 1] - outcomeOffset[n];
+    }
+
+    /**
+     * @return the number of outcomes the node may keep this step, the beam width
+     *         replaces the outcome limit of each node
+     */
+    private int getStepLimit(int n) {
+        return beamWidth > 0 && !isInput[n] ? beamWidth : outcomeLimits[n];
+    }
+
+    public INode getNode(int index) {
+        return nodes[index];
+    }
+
+    /**
+     * @param node
+     * @return the compiled index of the node
+     */
+    public int indexOf(INode node) {
+        return indexOfID.get(node.getID());
+    }
+
+    private int getFanIn(int n) {
+        return inStart[n + 1] - inStart[n];
+    }
+
+    /**
+     * Set the value of an input node for the next step.
+     *
+     * @param inputIndex the index of the input node when sorted by ID
+     * @param value
+     */
+    public void setInput(int inputIndex, double value) {
+        int n = inputIndices[inputIndex];
+        inputValues[n] = value;
+        hasInput[n] = true;
+    }
+
+    /**
+     * Clear all signals and outcomes
+     */
+    public void deactivateAll() {
+        Arrays.fill(outcomeCount[0], 0);
+        Arrays.fill(outcomeCount[1], 0);
+        Arrays.fill(hasInput, false);
+        isCurrentMaterialized = false;
+        isPreviousMaterialized = false;
+    }
+
+    /**
+     * Advance the network by one timestep.
+     * Equivalent to {@link GraphNetwork#trainingStep()}.
+     */
+    public void step() {
+        checkMergeTolerance();
+        beamWidth = network.getBeamWidth();
+        if (beamWidth > beamCapacity) {
+            throw new IllegalStateException(
+                    "The beam width has grown beyond the outcome capacity of the compiled network. Compile it again.");
+        }
+
+        current ^= 1;
+        for (int n = 0; n < nodes.length; n++) {
+            if (isInput[n]) {
+                acceptInput(n);
+            } else {
+                combinePossibilities(n);
+            }
+        }
+        if (beamWidth > 0) {
+            pruneToBeam(network.getLogPruningThreshold());
+        }
+
+        // rotate the materialized outcomes so that lineage can be linked
+        Outcome[][] temp = previousMaterialized;
+        previousMaterialized = materialized;
+        materialized = temp;
+        isPreviousMaterialized = isCurrentMaterialized;
+        isCurrentMaterialized = false;
+    }
+
+    private void acceptInput(int n) {
+        if (!hasInput[n]) {
+            outcomeCount[current][n] = 0;
+            return;
+        }
+
+        int idx = outcomeOffset[n];
+        outcomeCount[current][n] = 1;
+        netValues[current][idx] = inputValues[n];
+        values[current][idx] = activationFunctions[n].activator(inputValues[n]);
+        probabilities[current][idx] = 1;
+        logProbabilities[current][idx] = 0;
+        keys[current][idx] = -1;
+        rootKeys[current][idx] = 0;
+        hasInput[n] = false;
+    }
+
+    /**
+     * Enumerate every combination of incoming outcomes and every subset of
+     * signals that may pass, keeping only the most probable outcomes.
+     */
+    private void combinePossibilities(int n) {
+        final int previous = current ^ 1;
+        outcomeCount[current][n] = 0;
+
+        // collect all senders that were active in the previous step
+        int m = 0;
+        int rootKey = 0;
+        for (int slot = inStart[n]; slot < inStart[n + 1]; slot++) {
+            int count = outcomeCount[previous][inSource[slot]];
+            if (count > 0) {
+                activeSlots[m] = slot;
+                counter.setRadix(m, count);
+                rootKey |= inBit[slot];
+                m++;
+            }
+        }
+
+        if (m == 0) {
+            return;
+        }
+        counter.reset(m);
+        final int[] digits = counter.getDigits();
+
+        final IFilter[] rootFilters = filters[n][rootKey];
+        final ActivationFunction activator = activationFunctions[n];
+        final int subsetCount = 1 << m;
+
+        do {
+            for (int j = 0; j < m; j++) {
+                int idx = outcomeOffset[inSource[activeSlots[j]]] + digits[j];
+                sourceValues[j] = values[previous][idx];
+                sourceProbabilities[j] = probabilities[previous][idx];
+                transfers[j] = rootFilters[j].getChanceToSend(sourceValues[j]);
+                sourceLogProbabilities[j] = logProbabilities[previous][idx];
+                logTransfers[j] = rootFilters[j].getLogChanceToSend(sourceValues[j]);
+                logBlocks[j] = rootFilters[j].getLogChanceToBlock(sourceValues[j]);
+            }
+
+            for (int mask = 1; mask < subsetCount; mask++) {
+                int key = 0;
+                double probability = 1;
+                for (int j = 0; j < m; j++) {
+                    probability *= sourceProbabilities[j];
+                    if (((mask >> j) & 0b1) == 1) {
+                        probability *= transfers[j];
+                        key |= inBit[activeSlots[j]];
+                    } else {
+                        probability *= 1 - transfers[j];
+                    }
+                }
+
+                int position = findInsertionPosition(n, probability);
+                if (position < 0) {
+                    continue;
+                }
+
+                // summed in the same order as the object graph so that it does not underflow
+                double logProbability = 0;
+                for (int j = 0; j < m; j++) {
+                    logProbability += sourceLogProbabilities[j];
+                    logProbability += ((mask >> j) & 0b1) == 1 ? logTransfers[j] : logBlocks[j];
+                }
+
+                double netValue = biases[n][key];
+                int w = weightOffsets[n][key];
+                for (int j = 0; j < m; j++) {
+                    if (((mask >> j) & 0b1) == 1) {
+                        netValue += sourceValues[j] * weights[n][w++];
+                    }
+                }
+
+                insertOutcome(n, position, m, key, rootKey, netValue, probability, logProbability);
+            }
+        } while (counter.increment());
+
+        // only the outcomes which were kept are activated, all at once
+        final int count = outcomeCount[current][n];
+        final int offset = outcomeOffset[n];
+        System.arraycopy(netValues[current], offset, activationBuffer, 0, count);
+        activator.activator(activationBuffer, activationBuffer, count);
+        System.arraycopy(activationBuffer, 0, values[current], offset, count);
+    }
+
+    /**
+     * Outcomes are kept in descending order of probability. Ties are placed
+     * after existing outcomes to preserve the stable ordering of the object
+     * graph.
+     *
+     * @return the position to insert the outcome or -1 if it should be dropped
+     */
+    private int findInsertionPosition(int n, double probability) {
+        final int count = outcomeCount[current][n];
+        final int offset = outcomeOffset[n];
+        final double[] probs = probabilities[current];
+
+        if (count == getStepLimit(n) && !(probability > probs[offset + count - 1])) {
+            return -1;
+        }
+
+        int position = count;
+        while (position > 0 && probs[offset + position - 1] < probability) {
+            position--;
+        }
+        return position;
+    }
+
+    private void insertOutcome(int n, int position, int m, int key, int rootKey, double netValue,
+            double probability, double logProbability) {
+        final int fanIn = getFanIn(n);
+        final int offset = outcomeOffset[n];
+        final int lineage = lineageOffset[n];
+        final int count = outcomeCount[current][n];
+        final int last = Math.min(count, getStepLimit(n) - 1);
+
+        // shift lower probability outcomes down by one
+        int shift = last - position;
+        if (shift > 0) {
+            int from = offset + position;
+            System.arraycopy(netValues[current], from, netValues[current], from + 1, shift);
+            System.arraycopy(probabilities[current], from, probabilities[current], from + 1, shift);
+            System.arraycopy(logProbabilities[current], from, logProbabilities[current], from + 1, shift);
+            System.arraycopy(keys[current], from, keys[current], from + 1, shift);
+            System.arraycopy(rootKeys[current], from, rootKeys[current], from + 1, shift);
+
+            int linFrom = lineage + position * fanIn;
+            System.arraycopy(sourceIndices[current], linFrom, sourceIndices[current], linFrom + fanIn, shift * fanIn);
+            System.arraycopy(transferProbabilities[current], linFrom, transferProbabilities[current],
+                    linFrom + fanIn, shift * fanIn);
+        }
+
+        int idx = offset + position;
+        netValues[current][idx] = netValue;
+        probabilities[current][idx] = probability;
+        logProbabilities[current][idx] = logProbability;
+        keys[current][idx] = key;
+        rootKeys[current][idx] = rootKey;
+
+        int row = lineage + position * fanIn;
+        Arrays.fill(sourceIndices[current], row, row + fanIn, -1);
+        for (int j = 0; j < m; j++) {
+            int local = activeSlots[j] - inStart[n];
+            sourceIndices[current][row + local] = counter.getDigit(j);
+            transferProbabilities[current][row + local] = transfers[j];
+        }
+
+        outcomeCount[current][n] = Math.min(count + 1, getStepLimit(n));
+    }
+
+    /**
+     * Keep only the most probable outcomes of all non-input nodes.
+     * Equivalent to the pruning of {@link GraphNetwork#trainingStep()}: ties
+     * are broken by node id and then by the order of the outcomes of the node.
+     */
+    private void pruneToBeam(double logPruningThreshold) {
+        // insertion into the sorted beam, after any equal outcome so that it is stable
+        int size = 0;
+        for (int n : beamOrder) {
+            final int offset = outcomeOffset[n];
+            for (int k = 0; k < outcomeCount[current][n]; k++) {
+                double logProbability = logProbabilities[current][offset + k];
+                if (!(logProbability >= logPruningThreshold)) {
+                    continue;
+                }
+
+                int position = size;
+                while (position > 0 && Double.compare(beamLogProbabilities[position - 1], logProbability) < 0) {
+                    position--;
+                }
+                if (position == beamWidth) {
+                    continue;
+                }
+
+                int shift = Math.min(size, beamWidth - 1) - position;
+                System.arraycopy(beamNodes, position, beamNodes, position + 1, shift);
+                System.arraycopy(beamOutcomes, position, beamOutcomes, position + 1, shift);
+                System.arraycopy(beamLogProbabilities, position, beamLogProbabilities, position + 1, shift);
+                beamNodes[position] = n;
+                beamOutcomes[position] = k;
+                beamLogProbabilities[position] = logProbability;
+                size = Math.min(size + 1, beamWidth);
+            }
+        }
+
+        for (int i = 0; i < size; i++) {
+            isKept[outcomeOffset[beamNodes[i]] + beamOutcomes[i]] = true;
+        }
+        for (int n : beamOrder) {
+            compactOutcomes(n);
+        }
+    }
+
+    /**
+     * Move the kept outcomes of the node to the front of its buffers, in order,
+     * and clear their marks
+     */
+    private void compactOutcomes(int n) {
+        final int fanIn = getFanIn(n);
+        final int offset = outcomeOffset[n];
+        final int lineage = lineageOffset[n];
+        final int count = outcomeCount[current][n];
+
+        int kept = 0;
+        for (int k = 0; k < count; k++) {
+            int from = offset + k;
+            if (!isKept[from]) {
+                continue;
+            }
+            isKept[from] = false;
+
+            if (kept != k) {
+                int to = offset + kept;
+                netValues[current][to] = netValues[current][from];
+                values[current][to] = values[current][from];
+                probabilities[current][to] = probabilities[current][from];
+                logProbabilities[current][to] = logProbabilities[current][from];
+                keys[current][to] = keys[current][from];
+                rootKeys[current][to] = rootKeys[current][from];
+                System.arraycopy(sourceIndices[current], lineage + k * fanIn, sourceIndices[current],
+                        lineage + kept * fanIn, fanIn);
+                System.arraycopy(transferProbabilities[current], lineage + k * fanIn, transferProbabilities[current],
+                        lineage + kept * fanIn, fanIn);
+            }
+            kept++;
+        }
+        outcomeCount[current][n] = kept;
+    }
+
+    public boolean isActive(int n) {
+        return outcomeCount[current][n] > 0;
+    }
+
+    public int getOutcomeCount(int n) {
+        return outcomeCount[current][n];
+    }
+
+    public double getNetValue(int n, int outcome) {
+        return netValues[current][outcomeOffset[n] + outcome];
+    }
+
+    public double getValue(int n, int outcome) {
+        return values[current][outcomeOffset[n] + outcome];
+    }
+
+    public double getProbability(int n, int outcome) {
+        return probabilities[current][outcomeOffset[n] + outcome];
+    }
+
+    public double getLogProbability(int n, int outcome) {
+        return logProbabilities[current][outcomeOffset[n] + outcome];
+    }
+
+    public int getKey(int n, int outcome) {
+        return keys[current][outcomeOffset[n] + outcome];
+    }
+
+    /**
+     * Create {@link Outcome} objects for every active node in the current
+     * timestep.
+     * Outcomes are only linked to their source outcomes if the previous timestep
+     * was also materialized.
+     *
+     * @return a map from every active node to its outcomes
+     */
+    public HashMap<INode, ArrayList<Outcome>> materializeState() {
+        if (materialized == null) {
+            materialized = new Outcome[nodes.length][];
+            previousMaterialized = new Outcome[nodes.length][];
+            for (int n = 0; n < nodes.length; n++) {
+                materialized[n] = new Outcome[outcomeOffset[n + 1] - outcomeOffset[n]];
+                previousMaterialized[n] = new Outcome[materialized[n].length];
+            }
+        }
+
+        HashMap<INode, ArrayList<Outcome>> state = new HashMap<>();
+        for (int n = 0; n < nodes.length; n++) {
+            int count = outcomeCount[current][n];
+            if (count == 0) {
+                continue;
+            }
+
+            ArrayList<Outcome> outcomes = new ArrayList<>(count);
+            for (int k = 0; k < count; k++) {
+                Outcome outcome = materializeOutcome(n, k);
+                materialized[n][k] = outcome;
+                outcomes.add(outcome);
+            }
+            state.put(nodes[n], outcomes);
+        }
+        isCurrentMaterialized = true;
+        return state;
+    }
+
+    private Outcome materializeOutcome(int n, int k) {
+        int idx = outcomeOffset[n] + k;
+        Outcome outcome = new Outcome();
+        outcome.node = nodes[n];
+        outcome.binary_string = keys[current][idx];
+        outcome.netValue = netValues[current][idx];
+        outcome.activatedValue = values[current][idx];
+        outcome.probability = probabilities[current][idx];
+        outcome.logProbability = logProbabilities[current][idx];
+        outcome.root_bin_str = rootKeys[current][idx];
+
+        if (nodes[n] instanceof IInputNode) {
+            return outcome;
+        }
+
+        final int fanIn = getFanIn(n);
+        final int row = lineageOffset[n] + k * fanIn;
+        final int rootCount = Integer.bitCount(outcome.root_bin_str);
+        final int sourceCount = Integer.bitCount(outcome.binary_string);
+
+        outcome.sourceTransferProbabilities = new double[rootCount];
+        outcome.allRootOutcomes = new Outcome[rootCount];
+        outcome.sourceOutcomes = new Outcome[sourceCount];
+        outcome.sourceKeys = new int[sourceCount];
+
+        int r = 0;
+        int s = 0;
+        for (int local = 0; local < fanIn; local++) {
+            int sourceIndex = sourceIndices[current][row + local];
+            if (sourceIndex < 0) {
+                continue;
+            }
+
+            int slot = inStart[n] + local;
+            int sender = inSource[slot];
+            Outcome source = isPreviousMaterialized ? previousMaterialized[sender][sourceIndex] : null;
+
+            outcome.sourceTransferProbabilities[r] = transferProbabilities[current][row + local];
+            outcome.allRootOutcomes[r++] = source;
+            if ((outcome.binary_string & inBit[slot]) != 0) {
+                outcome.sourceKeys[s] = keys[current ^ 1][outcomeOffset[sender] + sourceIndex];
+                outcome.sourceOutcomes[s++] = source;
+            }
+        }
+        return outcome;
+    }
+
+    /**
+     * @return whether the node at the given index is an {@link InputNode}
+     */
+    public boolean isInputNode(int n) {
+        return isInput[n];
+    }
+}
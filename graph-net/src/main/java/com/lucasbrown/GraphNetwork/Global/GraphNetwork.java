@@ -3,14 +3,19 @@ package com.lucasbrown.GraphNetwork.Global;
 import java.security.InvalidAlgorithmParameterException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Set;
 import java.util.TreeSet;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import com.lucasbrown.GraphNetwork.Local.Edge;
+import com.lucasbrown.GraphNetwork.Local.Outcome;
 import com.lucasbrown.GraphNetwork.Local.Filters.IFilter;
 import com.lucasbrown.GraphNetwork.Local.Nodes.IInputNode;
 import com.lucasbrown.GraphNetwork.Local.Nodes.INode;
@@ -49,12 +54,18 @@ public class GraphNetwork implements IStateGenerator<INode>{
     /**
      * A hash set containing every node that recieved a signal this step
      */
-    private HashSet<INode> activeNodes;
+    private Set<INode> activeNodes;
 
     /**
-     * A hash set containing every node that will recieve a signal in the next step
+     * A hash set containing every node that will recieve a signal in the next
+     * step. Nodes may be activated from several threads at once.
      */
-    private HashSet<INode> activeNextNodes;
+    private Set<INode> activeNextNodes;
+
+    /**
+     * The pool used to step nodes in parallel or null to step serially
+     */
+    private ForkJoinPool pool;
 
     /**
      * An operation which is to be defined by the user to set the values of input
@@ -68,13 +79,42 @@ public class GraphNetwork implements IStateGenerator<INode>{
      */
     private Consumer<HashMap<Integer, ? extends IOutputNode>> outputOperation;
 
+    /**
+     * The flat store of all parameters or null if the structure has changed since
+     * it was last built
+     */
+    private ParameterStore parameterStore;
+
+    /**
+     * The network this was replicated from, which owns the parameter store, or
+     * null
+     */
+    private GraphNetwork replicatedFrom;
+
+    /**
+     * The number of outcomes kept across all non-input nodes each step or 0 to
+     * only limit each node on its own
+     */
+    private int beamWidth = 0;
+
+    /**
+     * Outcomes with a lower log probability are dropped when the beam is enabled
+     */
+    private double logPruningThreshold = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Outcomes of a node sharing a key whose values are within this tolerance
+     * are merged, negative to never merge
+     */
+    private double mergeTolerance = -1;
+
     public GraphNetwork() {
 
         nodes = new ArrayList<>();
         input_nodes = new HashMap<>();
         output_nodes = new HashMap<>();
-        activeNodes = new HashSet<>();
-        activeNextNodes = new HashSet<>();
+        activeNodes = ConcurrentHashMap.newKeySet();
+        activeNextNodes = ConcurrentHashMap.newKeySet();
         inputOperation = (_1) -> {
         };
         outputOperation = (_1) -> {
@@ -91,6 +131,102 @@ public class GraphNetwork implements IStateGenerator<INode>{
         } : outputOperation;
     }
 
+    /**
+     * Set the number of threads used to step the network.
+     * Every node only reads its own incoming signals, so each phase of a step can
+     * visit the active nodes in parallel. Each node orders its incoming signals
+     * by key, so the result is identical to stepping serially.
+     * 
+     * @param parallelism the number of threads to use, 1 to step serially
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1.");
+        }
+        if (pool != null) {
+            pool.shutdown();
+        }
+        pool = parallelism == 1 ? null : new ForkJoinPool(parallelism);
+    }
+
+    public int getParallelism() {
+        return pool == null ? 1 : pool.getParallelism();
+    }
+
+    /**
+     * Replace the outcome limit of each node with a budget shared by the whole
+     * network. Each step, every active node proposes up to beamWidth outcomes
+     * and only the beamWidth most probable of all of them are kept, so the work
+     * done per step no longer grows with the number of nodes.
+     * Nodes left without any outcome become inactive.
+     * 
+     * @param beamWidth the number of outcomes kept per step or 0 to use the
+     *                  outcome limit of each node
+     */
+    public void setBeamWidth(int beamWidth) {
+        if (beamWidth < 0) {
+            throw new IllegalArgumentException("The beam width cannot be negative.");
+        }
+        this.beamWidth = beamWidth;
+    }
+
+    public int getBeamWidth() {
+        return beamWidth;
+    }
+
+    /**
+     * @param pruningThreshold outcomes with a lower probability are dropped from
+     *                         the beam
+     */
+    public void setPruningThreshold(double pruningThreshold) {
+        if (pruningThreshold < 0 || pruningThreshold > 1) {
+            throw new IllegalArgumentException("The pruning threshold must be in [0, 1].");
+        }
+        setLogPruningThreshold(Math.log(pruningThreshold));
+    }
+
+    public double getPruningThreshold() {
+        return Math.exp(logPruningThreshold);
+    }
+
+    /**
+     * Prune by log probability, which allows thresholds far below the smallest
+     * double
+     * 
+     * @param logPruningThreshold outcomes with a lower log probability are
+     *                            dropped from the beam
+     */
+    public void setLogPruningThreshold(double logPruningThreshold) {
+        if (logPruningThreshold > 0 || Double.isNaN(logPruningThreshold)) {
+            throw new IllegalArgumentException("The log pruning threshold cannot be positive.");
+        }
+        this.logPruningThreshold = logPruningThreshold;
+    }
+
+    public double getLogPruningThreshold() {
+        return logPruningThreshold;
+    }
+
+    /**
+     * Collapse the outcomes of each node which share a key and whose activated
+     * values are within the tolerance of each other into a single weighted
+     * outcome. Nearly identical outcomes then stop multiplying the number of
+     * combinations of every downstream node.
+     * 
+     * @param mergeTolerance the largest difference in activated value that is
+     *                       merged or a negative value to disable merging
+     */
+    public void setMergeTolerance(double mergeTolerance) {
+        if (Double.isNaN(mergeTolerance)) {
+            throw new IllegalArgumentException("The merge tolerance must be a number.");
+        }
+        this.mergeTolerance = mergeTolerance;
+    }
+
+    public double getMergeTolerance() {
+        return mergeTolerance;
+    }
+
     public ArrayList<OutputNode> getOutputNodes() {
         return getSortedNodes(output_nodes);
     }
@@ -111,9 +247,28 @@ public class GraphNetwork implements IStateGenerator<INode>{
         Edge connection = new Edge(transmittingNode, recievingNode);
         transmittingNode.addOutgoingConnection(connection);
         recievingNode.addIncomingConnection(connection);
+        parameterStore = null;
         return connection;
     }
 
+    /**
+     * Get the flat store of every trainable parameter in the network, building it
+     * if the structure of the network has changed or a sparse combinator has
+     * created new parameters. Replicas share the store of the network they were
+     * made from.
+     * 
+     * @return
+     */
+    public ParameterStore getParameterStore() {
+        if (replicatedFrom != null) {
+            return replicatedFrom.getParameterStore();
+        }
+        if (parameterStore == null || parameterStore.isStale()) {
+            parameterStore = new ParameterStore(nodes);
+        }
+        return parameterStore;
+    }
+
     /**
      * notify the network that a node has been activated.
      * 
@@ -130,6 +285,9 @@ public class GraphNetwork implements IStateGenerator<INode>{
         inputOperation.accept(input_nodes);
         outputOperation.accept(output_nodes);
         recieveSignals();
+        if (beamWidth > 0) {
+            pruneToBeam();
+        }
         sendForwardSignals();
     }
 
@@ -142,8 +300,8 @@ public class GraphNetwork implements IStateGenerator<INode>{
      */
     private void recieveSignals() {
         activeNodes = activeNextNodes;
-        activeNextNodes = new HashSet<>();
-        activeNodes.forEach(t -> {
+        activeNextNodes = ConcurrentHashMap.newKeySet();
+        forEachActiveNode(t -> {
             try {
                 t.acceptSignals();
             } catch (InvalidAlgorithmParameterException e) {
@@ -152,8 +310,49 @@ public class GraphNetwork implements IStateGenerator<INode>{
         });
     }
 
+    /**
+     * Keep only the most probable outcomes of all active nodes. Ties are broken
+     * by node id so that the result does not depend on the parallelism.
+     */
+    private void pruneToBeam() {
+        ArrayList<INode> candidates = activeNodes.stream()
+                .filter(node -> !(node instanceof IInputNode))
+                .sorted(INode::CompareNodes)
+                .collect(Collectors.toCollection(ArrayList::new));
+
+        ArrayList<Outcome> beam = new ArrayList<>();
+        for (INode node : candidates) {
+            for (Outcome outcome : node.getState()) {
+                if (outcome.getLogProbability() >= logPruningThreshold) {
+                    beam.add(outcome);
+                }
+            }
+        }
+        // stable, so ties keep node order
+        beam.sort(Outcome::descendingLogProbabilitiesComparator);
+
+        Set<Outcome> kept = Collections.newSetFromMap(new IdentityHashMap<>());
+        kept.addAll(beam.subList(0, Math.min(beamWidth, beam.size())));
+
+        for (INode node : candidates) {
+            node.getState().removeIf(outcome -> !kept.contains(outcome));
+            if (node.getState().isEmpty()) {
+                node.setValidForwardSignal(false);
+                activeNodes.remove(node);
+            }
+        }
+    }
+
     private void sendForwardSignals() {
-        activeNodes.stream().forEach(INode::sendForwardSignals);
+        forEachActiveNode(INode::sendForwardSignals);
+    }
+
+    private void forEachActiveNode(Consumer<INode> action) {
+        if (pool == null) {
+            activeNodes.forEach(action);
+        } else {
+            pool.submit(() -> activeNodes.parallelStream().forEach(action)).join();
+        }
     }
 
     @Override
@@ -189,6 +388,47 @@ public class GraphNetwork implements IStateGenerator<INode>{
         if (node instanceof OutputNode) {
             output_nodes.put(node.getID(), (OutputNode) node);
         }
+        parameterStore = null;
+    }
+
+    /**
+     * Freeze the current structure of the network into a flat representation
+     * which can be stepped without allocating.
+     * 
+     * @return a compiled copy of this network
+     * @see CompiledGraphNetwork
+     */
+    public CompiledGraphNetwork compile() {
+        return new CompiledGraphNetwork(this);
+    }
+
+    /**
+     * Create a copy of this network which shares all parameters but keeps its own
+     * activation state, so that several sequences can be evaluated at once.
+     * Nodes of the replica are equal to those of this network, so histories of
+     * either can be used interchangeably. Changes to the structure of this
+     * network are not reflected in its replicas.
+     *
+     * @return a replica which steps serially
+     */
+    public GraphNetwork replicate() {
+        GraphNetwork replica = new GraphNetwork();
+        HashMap<Integer, INode> replicaNodes = new HashMap<>(nodes.size());
+        for (INode node : nodes) {
+            INode replicaNode = node.replicate(replica);
+            replicaNodes.put(node.getID(), replicaNode);
+            replica.addNodeToNetwork(replicaNode);
+        }
+        for (INode node : nodes) {
+            replicaNodes.get(node.getID()).replicateConnections(node,
+                    original -> replicaNodes.get(original.getID()));
+        }
+        // the parameters are shared, so the store must be too
+        replica.replicatedFrom = replicatedFrom == null ? this : replicatedFrom;
+        replica.beamWidth = beamWidth;
+        replica.logPruningThreshold = logPruningThreshold;
+        replica.mergeTolerance = mergeTolerance;
+        return replica;
     }
 
     public INode getNode(int id) {
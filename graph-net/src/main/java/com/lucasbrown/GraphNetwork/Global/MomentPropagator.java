@@ -0,0 +1,394 @@
+package com.lucasbrown.GraphNetwork.Global;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import com.lucasbrown.GraphNetwork.Local.ActivationFunction;
+import com.lucasbrown.GraphNetwork.Local.Edge;
+import com.lucasbrown.GraphNetwork.Local.Filters.IFilter;
+import com.lucasbrown.GraphNetwork.Local.Nodes.IInputNode;
+import com.lucasbrown.GraphNetwork.Local.Nodes.INode;
+import com.lucasbrown.GraphNetwork.Local.Nodes.ValueCombinators.AdditiveValueCombinator;
+import com.lucasbrown.GraphNetwork.Local.Nodes.ValueCombinators.IValueCombinator;
+import com.lucasbrown.HelperClasses.GaussHermite;
+
+/**
+ * A fast approximate inference of a {@link GraphNetwork} which propagates
+ * summary statistics of every node instead of lists of outcomes.
+ *
+ * Each node only keeps the probability that it is active along with the mean
+ * and variance of its activated value given that it is active. Every signal is
+ * assumed to be independent of the others and the value of each node is
+ * assumed to be normally distributed, so that the chance of each
+ * {@link IFilter} sending a signal can be integrated by Gauss-Hermite
+ * quadrature.
+ *
+ * Nodes with at most {@link #getMaxExactFanIn()} possible senders sum the
+ * moments of every combination of sent signals, which is exact for the mean of
+ * a layer fed directly by inputs. Larger nodes use a mean-field approximation
+ * with the weights of the combination of all senders, so each step costs
+ * O(edges) and the memory used does not depend on the length of the sequence.
+ */
+public class MomentPropagator {
+
+    /**
+     * All nodes in the order they were added to the network
+     */
+    private final INode[] nodes;
+    private final boolean[] isInput;
+    private final HashMap<Integer, Integer> indexOfID;
+
+    /**
+     * The node index of each input node in ascending order of id
+     */
+    private final int[] inputIndices;
+
+    /**
+     * Incoming connections in CSR format sorted by key bit. The connections of
+     * node n are found between inStart[n] and inStart[n+1]
+     */
+    private final int[] inStart, inSource, inBit;
+
+    /**
+     * The moments of the current and previous timestep
+     */
+    private double[] probability, mean, variance;
+    private double[] previousProbability, previousMean, previousVariance;
+
+    /**
+     * Scratch space for the senders of a single node
+     */
+    private final int[] senders;
+    private final double[] sendChance, sendMean, sendVariance;
+
+    /**
+     * Scratch space for the quadrature points of a single filter and the chance
+     * at each of them
+     */
+    private final double[] quadratureX, quadratureChance;
+
+    private final GaussHermite quadrature;
+    private int maxExactFanIn = 8;
+
+    public MomentPropagator(GraphNetwork network) {
+        this(network, 16);
+    }
+
+    /**
+     * @param network
+     * @param quadraturePoints the number of points used to integrate each filter
+     *                         and activation function
+     */
+    public MomentPropagator(GraphNetwork network, int quadraturePoints) {
+        quadrature = new GaussHermite(quadraturePoints);
+        quadratureX = new double[quadrature.getNumberOfPoints()];
+        quadratureChance = new double[quadrature.getNumberOfPoints()];
+
+        ArrayList<INode> nodeList = network.getNodes();
+        nodes = nodeList.toArray(INode[]::new);
+        isInput = new boolean[nodes.length];
+        indexOfID = new HashMap<>(nodes.length);
+        for (int n = 0; n < nodes.length; n++) {
+            indexOfID.put(nodes[n].getID(), n);
+            isInput[n] = nodes[n] instanceof IInputNode;
+            if (!isInput[n] && !(nodes[n].getValueCombinator() instanceof AdditiveValueCombinator)) {
+                throw new IllegalArgumentException(
+                        "Moments can only be propagated through additive value combinators.");
+            }
+        }
+
+        inputIndices = network.getInputNodes().stream().mapToInt(node -> indexOfID.get(node.getID())).toArray();
+
+        int maxFanIn = 0;
+        inStart = new int[nodes.length + 1];
+        for (int n = 0; n < nodes.length; n++) {
+            int fanIn = nodes[n].getAllIncomingConnections().size();
+            inStart[n + 1] = inStart[n] + fanIn;
+            maxFanIn = Math.max(maxFanIn, fanIn);
+        }
+        inSource = new int[inStart[nodes.length]];
+        inBit = new int[inStart[nodes.length]];
+        for (int n = 0; n < nodes.length; n++) {
+            INode node = nodes[n];
+            ArrayList<Edge> incoming = new ArrayList<>(node.getAllIncomingConnections());
+            incoming.sort((e1, e2) -> Integer.compare(getBitOf(node, e1), getBitOf(node, e2)));
+            for (int i = 0; i < incoming.size(); i++) {
+                inSource[inStart[n] + i] = indexOfID.get(incoming.get(i).sending.getID());
+                inBit[inStart[n] + i] = getBitOf(node, incoming.get(i));
+            }
+        }
+
+        senders = new int[maxFanIn];
+        sendChance = new double[maxFanIn];
+        sendMean = new double[maxFanIn];
+        sendVariance = new double[maxFanIn];
+
+        probability = new double[nodes.length];
+        mean = new double[nodes.length];
+        variance = new double[nodes.length];
+        previousProbability = new double[nodes.length];
+        previousMean = new double[nodes.length];
+        previousVariance = new double[nodes.length];
+    }
+
+    private static int getBitOf(INode node, Edge edge) {
+        return node.nodeSetToBinStr(List.of(edge.sending));
+    }
+
+    public int getMaxExactFanIn() {
+        return maxExactFanIn;
+    }
+
+    /**
+     * @param maxExactFanIn the largest number of possible senders for which every
+     *                      combination of sent signals is summed, at most 30
+     */
+    public void setMaxExactFanIn(int maxExactFanIn) {
+        if (maxExactFanIn < 0 || maxExactFanIn >= Integer.SIZE - 1) {
+            throw new IllegalArgumentException("The exact fan-in must be between 0 and 30.");
+        }
+        this.maxExactFanIn = maxExactFanIn;
+    }
+
+    /**
+     * Deactivate every node
+     */
+    public void reset() {
+        Arrays.fill(probability, 0);
+        Arrays.fill(mean, 0);
+        Arrays.fill(variance, 0);
+    }
+
+    /**
+     * Propagate the moments through every timestep of the inputs starting from
+     * an inactive network
+     *
+     * @param inputs dimension : [timestep][input node]
+     */
+    public void propagate(Double[][] inputs) {
+        reset();
+        for (Double[] input : inputs) {
+            step(input);
+        }
+    }
+
+    /**
+     * Propagate the moments through a single timestep
+     *
+     * @param input the value of each input node or null
+     */
+    public void step(Double[] input) {
+        double[] swap = previousProbability;
+        previousProbability = probability;
+        probability = swap;
+        swap = previousMean;
+        previousMean = mean;
+        mean = swap;
+        swap = previousVariance;
+        previousVariance = variance;
+        variance = swap;
+
+        for (int i = 0; i < inputIndices.length; i++) {
+            int n = inputIndices[i];
+            if (input[i] == null) {
+                probability[n] = 0;
+            } else {
+                probability[n] = 1;
+                mean[n] = nodes[n].getActivationFunction().activator(input[i]);
+            }
+            variance[n] = 0;
+        }
+
+        for (int n = 0; n < nodes.length; n++) {
+            if (!isInput[n]) {
+                stepNode(n);
+            }
+        }
+    }
+
+    private void stepNode(int n) {
+        INode node = nodes[n];
+
+        int rootKey = 0;
+        int count = 0;
+        for (int i = inStart[n]; i < inStart[n + 1]; i++) {
+            if (previousProbability[inSource[i]] > 0) {
+                rootKey |= inBit[i];
+                senders[count++] = inSource[i];
+            }
+        }
+
+        // the filters of the combination of every possible sender are used
+        IFilter[] filters = rootKey == 0 ? null : node.getProbabilityCombinator().getFilters(rootKey);
+        double inactive = 1;
+        for (int k = 0; k < count; k++) {
+            integrateFilter(k, filters[k], senders[k]);
+            inactive *= 1 - sendChance[k];
+        }
+
+        double active = 1 - inactive;
+        probability[n] = active;
+        if (active <= 0) {
+            mean[n] = 0;
+            variance[n] = 0;
+            return;
+        }
+
+        // moments of the net value given that the node is active
+        IValueCombinator combinator = node.getValueCombinator();
+        double netMean;
+        double netVariance;
+        if (count <= maxExactFanIn) {
+            double totalProbability = 0;
+            double firstMoment = 0;
+            double secondMoment = 0;
+            for (int local = 1; local < 1 << count; local++) {
+                int key = 0;
+                double keyProbability = 1;
+                int remaining = rootKey;
+                for (int k = 0; k < count; k++) {
+                    int bit = Integer.lowestOneBit(remaining);
+                    remaining ^= bit;
+                    if ((local >> k & 0b1) == 1) {
+                        key |= bit;
+                        keyProbability *= sendChance[k];
+                    } else {
+                        keyProbability *= 1 - sendChance[k];
+                    }
+                }
+                if (keyProbability == 0) {
+                    continue;
+                }
+
+                double keyMean = combinator.getBias(key);
+                double keyVariance = 0;
+                int w = 0;
+                for (int k = 0; k < count; k++) {
+                    if ((local >> k & 0b1) == 1) {
+                        double weight = combinator.getWeight(key, w++);
+                        keyMean += weight * sendMean[k];
+                        keyVariance += weight * weight * sendVariance[k];
+                    }
+                }
+
+                totalProbability += keyProbability;
+                firstMoment += keyProbability * keyMean;
+                secondMoment += keyProbability * (keyVariance + keyMean * keyMean);
+            }
+            netMean = firstMoment / totalProbability;
+            netVariance = secondMoment / totalProbability - netMean * netMean;
+        } else {
+            // mean-field: each signal is sent independently given that the node is active
+            netMean = combinator.getBias(rootKey);
+            netVariance = 0;
+            for (int k = 0; k < count; k++) {
+                double weight = combinator.getWeight(rootKey, k);
+                double sent = sendChance[k] / active;
+                double secondMoment = sendVariance[k] + sendMean[k] * sendMean[k];
+                netMean += weight * sent * sendMean[k];
+                netVariance += weight * weight
+                        * (sent * secondMoment - sent * sent * sendMean[k] * sendMean[k]);
+            }
+        }
+        netVariance = Math.max(netVariance, 0);
+
+        ActivationFunction activation = node.getActivationFunction();
+        if (activation == ActivationFunction.LINEAR) {
+            mean[n] = netMean;
+            variance[n] = netVariance;
+        } else {
+            double activatedMean = quadrature.expectation(activation::activator, netMean, netVariance);
+            double activatedSecondMoment = quadrature.expectation(x -> {
+                double a = activation.activator(x);
+                return a * a;
+            }, netMean, netVariance);
+            mean[n] = activatedMean;
+            variance[n] = Math.max(activatedSecondMoment - activatedMean * activatedMean, 0);
+        }
+    }
+
+    /**
+     * Integrate the chance of a sender passing through a filter along with the
+     * moments of its value given that the signal is sent
+     */
+    private void integrateFilter(int k, IFilter filter, int sender) {
+        double senderMean = previousMean[sender];
+        double senderVariance = previousVariance[sender];
+
+        double chance;
+        double firstMoment;
+        double secondMoment;
+        if (senderVariance <= 0) {
+            chance = filter.getChanceToSend(senderMean);
+            firstMoment = chance * senderMean;
+            secondMoment = firstMoment * senderMean;
+        } else {
+            double std = Math.sqrt(senderVariance);
+            chance = 0;
+            firstMoment = 0;
+            secondMoment = 0;
+            int points = quadrature.getNumberOfPoints();
+            for (int i = 0; i < points; i++) {
+                quadratureX[i] = senderMean + std * quadrature.getPoint(i);
+            }
+            filter.getChanceToSend(quadratureX, quadratureChance, points);
+            for (int i = 0; i < points; i++) {
+                double x = quadratureX[i];
+                double weightedChance = quadrature.getWeight(i) * quadratureChance[i];
+                chance += weightedChance;
+                firstMoment += weightedChance * x;
+                secondMoment += weightedChance * x * x;
+            }
+        }
+
+        sendChance[k] = previousProbability[sender] * chance;
+        if (chance > 0) {
+            sendMean[k] = firstMoment / chance;
+            sendVariance[k] = Math.max(secondMoment / chance - sendMean[k] * sendMean[k], 0);
+        } else {
+            sendMean[k] = senderMean;
+            sendVariance[k] = 0;
+        }
+    }
+
+    private int indexOf(INode node) {
+        return indexOfID.get(node.getID());
+    }
+
+    /**
+     * @param node
+     * @return the probability that the node is active at the current timestep
+     */
+    public double getProbability(INode node) {
+        return probability[indexOf(node)];
+    }
+
+    /**
+     * @param node
+     * @return the expected activated value of the node given that it is active
+     */
+    public double getMean(INode node) {
+        return mean[indexOf(node)];
+    }
+
+    /**
+     * @param node
+     * @return the variance of the activated value of the node given that it is
+     *         active
+     */
+    public double getVariance(INode node) {
+        return variance[indexOf(node)];
+    }
+
+    /**
+     * @param node
+     * @return the expected activated value of the node or null if it cannot be
+     *         active
+     */
+    public Double getMeanOrNull(INode node) {
+        int n = indexOf(node);
+        return probability[n] > 0 ? mean[n] : null;
+    }
+}
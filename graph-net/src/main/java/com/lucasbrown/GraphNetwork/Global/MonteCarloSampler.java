@@ -0,0 +1,509 @@
+package com.lucasbrown.GraphNetwork.Global;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+import com.lucasbrown.GraphNetwork.Local.Edge;
+import com.lucasbrown.GraphNetwork.Local.Outcome;
+import com.lucasbrown.GraphNetwork.Local.Signal;
+import com.lucasbrown.GraphNetwork.Local.Filters.IFilter;
+import com.lucasbrown.GraphNetwork.Local.Nodes.IInputNode;
+import com.lucasbrown.GraphNetwork.Local.Nodes.INode;
+import com.lucasbrown.NetworkTraining.History.NetworkHistory;
+
+/**
+ * Approximates the inference of a {@link GraphNetwork} by sampling independent
+ * particles through the graph.
+ *
+ * Each particle holds at most one outcome per node. Every timestep each
+ * particle decides whether every incoming signal of a node is sent using
+ * {@link IFilter#shouldSend(double, SplittableRandom)}, so the cost is linear
+ * in the number of connections and particles rather than exponential in the
+ * fan-in. As with the full enumeration, a node whose signals are all blocked
+ * does not activate.
+ *
+ * Particles which share the same lineage share the same outcome, so the
+ * resulting {@link NetworkHistory} holds the empirical distribution of
+ * outcomes: the probability of each outcome is the fraction of particles in
+ * which it occurred.
+ *
+ * The full enumeration only combines signals when every sending node of a
+ * combination is active together, whereas each particle combines whichever
+ * senders are active in it. The two agree exactly when every sender is
+ * certain, such as a layer fed directly by inputs.
+ *
+ * Every particle draws from its own {@link SplittableRandom} split off a
+ * seeded generator, so samples are identical for any parallelism and can be
+ * reproduced by resetting the seed.
+ *
+ * Sequences can either be sampled at once with {@link #sample(Double[][])} or
+ * one timestep at a time with {@link #step(Double[])}, which only keeps the
+ * current state of each particle.
+ */
+public class MonteCarloSampler {
+
+    private final GraphNetwork network;
+
+    /**
+     * All nodes in the order they were added to the network
+     */
+    private final INode[] nodes;
+    private final boolean[] isInput;
+
+    /**
+     * The node index of each input node in ascending order of id
+     */
+    private final int[] inputIndices;
+
+    /**
+     * Incoming connections in CSR format sorted by key bit. The connections of
+     * node n are found between inStart[n] and inStart[n+1]
+     */
+    private final int[] inStart, inSource, inBit;
+
+    private final int numParticles;
+    private SplittableRandom seedGenerator;
+
+    /**
+     * The state of the current sequence. Null until the first timestep.
+     */
+    private SplittableRandom[] rngs;
+    private Outcome[][] state;
+    private final Proposal[][] proposals;
+
+    /**
+     * Every particle counts once unless a subclass weighs them
+     */
+    private final double[] unitWeights;
+
+    /**
+     * The pool used to sample particles in parallel or null to sample serially
+     */
+    private ForkJoinPool pool;
+
+    public MonteCarloSampler(GraphNetwork network, int numParticles, long seed) {
+        if (numParticles < 1) {
+            throw new IllegalArgumentException("At least one particle is required.");
+        }
+        this.network = network;
+        this.numParticles = numParticles;
+        setSeed(seed);
+        unitWeights = new double[numParticles];
+        Arrays.fill(unitWeights, 1);
+
+        ArrayList<INode> nodeList = network.getNodes();
+        nodes = nodeList.toArray(INode[]::new);
+        isInput = new boolean[nodes.length];
+        HashMap<Integer, Integer> indexOfID = new HashMap<>(nodes.length);
+        for (int n = 0; n < nodes.length; n++) {
+            indexOfID.put(nodes[n].getID(), n);
+            isInput[n] = nodes[n] instanceof IInputNode;
+        }
+
+        inputIndices = network.getInputNodes().stream().mapToInt(node -> indexOfID.get(node.getID())).toArray();
+
+        inStart = new int[nodes.length + 1];
+        for (int n = 0; n < nodes.length; n++) {
+            inStart[n + 1] = inStart[n] + nodes[n].getAllIncomingConnections().size();
+        }
+        inSource = new int[inStart[nodes.length]];
+        inBit = new int[inStart[nodes.length]];
+        for (int n = 0; n < nodes.length; n++) {
+            INode node = nodes[n];
+            ArrayList<Edge> incoming = new ArrayList<>(node.getAllIncomingConnections());
+            incoming.sort((e1, e2) -> Integer.compare(getBitOf(node, e1), getBitOf(node, e2)));
+            for (int i = 0; i < incoming.size(); i++) {
+                inSource[inStart[n] + i] = indexOfID.get(incoming.get(i).sending.getID());
+                inBit[inStart[n] + i] = getBitOf(node, incoming.get(i));
+            }
+        }
+        proposals = new Proposal[numParticles][nodes.length];
+    }
+
+    private static int getBitOf(INode node, Edge edge) {
+        return node.nodeSetToBinStr(List.of(edge.sending));
+    }
+
+    /**
+     * Restart the sequence of samples
+     *
+     * @param seed
+     */
+    public synchronized void setSeed(long seed) {
+        seedGenerator = new SplittableRandom(seed);
+    }
+
+    /**
+     * Draw a seed for another sampler from the sequence of this one
+     *
+     * @return
+     */
+    public synchronized long nextSeed() {
+        return seedGenerator.nextLong();
+    }
+
+    public int getNumberOfParticles() {
+        return numParticles;
+    }
+
+    public GraphNetwork getNetwork() {
+        return network;
+    }
+
+    /**
+     * Create a sampler of the same kind for a replica of the network which draws
+     * a separate sequence of samples seeded from this one
+     *
+     * @param replica
+     * @return
+     */
+    public MonteCarloSampler replicate(GraphNetwork replica) {
+        return new MonteCarloSampler(replica, numParticles, nextSeed());
+    }
+
+    /**
+     * Set the number of threads used to sample particles. The samples do not
+     * depend on the parallelism.
+     *
+     * @param parallelism the number of threads to use, 1 to sample serially
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1.");
+        }
+        if (pool != null) {
+            pool.shutdown();
+        }
+        pool = parallelism == 1 ? null : new ForkJoinPool(parallelism);
+    }
+
+    public int getParallelism() {
+        return pool == null ? 1 : pool.getParallelism();
+    }
+
+    /**
+     * Sample every particle through the given inputs. Each call continues the
+     * sequence of samples from the seed.
+     *
+     * @param inputs dimension : [timestep][input node]
+     * @return the empirical distribution of outcomes through time
+     */
+    public NetworkHistory sample(Double[][] inputs) {
+        reset();
+        NetworkHistory history = new NetworkHistory(network);
+        for (int timestep = 0; timestep < inputs.length; timestep++) {
+            history.captureState(advance(inputs[timestep]));
+        }
+        return history;
+    }
+
+    /**
+     * Start a new sequence for {@link #step(Double[])}, drawing the next samples
+     * from the seed
+     */
+    public void reset() {
+        rngs = new SplittableRandom[numParticles];
+        synchronized (this) {
+            for (int p = 0; p < numParticles; p++) {
+                rngs[p] = seedGenerator.split();
+            }
+        }
+        state = new Outcome[numParticles][nodes.length];
+    }
+
+    /**
+     * Sample a single timestep of the current sequence. Unlike
+     * {@link #sample(Double[][])}, the outcomes of older timesteps are released:
+     * the outcomes of the previous timestep lose their own sources, so the memory
+     * used does not grow with the length of the sequence.
+     *
+     * @param input the value of each input node or null
+     * @return the distribution of outcomes of each node at this timestep
+     */
+    public HashMap<INode, ArrayList<Outcome>> step(Double[] input) {
+        Outcome[][] previous = state;
+        HashMap<INode, ArrayList<Outcome>> outcomes = advance(input);
+        if (previous != null) {
+            for (Outcome[] particle : previous) {
+                for (Outcome outcome : particle) {
+                    if (outcome != null) {
+                        outcome.sourceOutcomes = null;
+                        outcome.allRootOutcomes = null;
+                    }
+                }
+            }
+        }
+        return outcomes;
+    }
+
+    private HashMap<INode, ArrayList<Outcome>> advance(Double[] input) {
+        if (state == null) {
+            reset();
+        }
+        final Outcome[][] previous = state;
+        forEachParticle(p -> propose(p, previous[p], proposals[p], rngs[p]));
+        double[] weights = weighParticles();
+        state = new Outcome[numParticles][nodes.length];
+        HashMap<INode, ArrayList<Outcome>> outcomes = collectOutcomes(input, weights, state);
+        state = endTimestep(state);
+        return outcomes;
+    }
+
+    /**
+     * Decide whether a signal is sent within a single particle. Called
+     * concurrently for different particles.
+     *
+     * @param filter   the filter of the connection
+     * @param value    the activated value of the sending outcome
+     * @param rng      the generator of the particle
+     * @param particle the index of the particle
+     * @return true if the signal is sent
+     */
+    protected boolean shouldSend(IFilter filter, double value, SplittableRandom rng, int particle) {
+        return filter.shouldSend(value, rng);
+    }
+
+    /**
+     * Called once every particle has made its proposals for a timestep
+     *
+     * @return the (unnormalized) weight of each particle
+     */
+    protected double[] weighParticles() {
+        return unitWeights;
+    }
+
+    /**
+     * @param particle the index of the particle
+     * @return the log of the weight given to the particle by the last call to
+     *         {@link #weighParticles()}
+     */
+    protected double getLogWeight(int particle) {
+        return 0;
+    }
+
+    /**
+     * Called once the outcomes of a timestep have been collected
+     *
+     * @param state dimension : [particle][node]
+     * @return the state each particle continues from
+     */
+    protected Outcome[][] endTimestep(Outcome[][] state) {
+        return state;
+    }
+
+    private void forEachParticle(IntConsumer action) {
+        if (pool == null) {
+            for (int p = 0; p < numParticles; p++) {
+                action.accept(p);
+            }
+        } else {
+            pool.submit(() -> IntStream.range(0, numParticles).parallel().forEach(action)).join();
+        }
+    }
+
+    /**
+     * Decide which signals of a single particle are sent to every node
+     */
+    private void propose(int particle, Outcome[] previous, Proposal[] proposals, SplittableRandom rng) {
+        Outcome[] roots = new Outcome[Integer.SIZE];
+        for (int n = 0; n < nodes.length; n++) {
+            proposals[n] = null;
+            if (isInput[n]) {
+                continue;
+            }
+
+            int rootKey = 0;
+            int rootCount = 0;
+            for (int i = inStart[n]; i < inStart[n + 1]; i++) {
+                Outcome source = previous[inSource[i]];
+                if (source != null) {
+                    rootKey |= inBit[i];
+                    roots[rootCount++] = source;
+                }
+            }
+            if (rootKey == 0) {
+                continue;
+            }
+
+            IFilter[] filters = nodes[n].getProbabilityCombinator().getFilters(rootKey);
+            int key = 0;
+            int remaining = rootKey;
+            for (int j = 0; j < rootCount; j++) {
+                int bit = Integer.lowestOneBit(remaining);
+                remaining ^= bit;
+                if (shouldSend(filters[j], roots[j].activatedValue, rng, particle)) {
+                    key |= bit;
+                }
+            }
+
+            // as in the full enumeration, a node does not activate if nothing is sent
+            if (key != 0) {
+                proposals[n] = new Proposal(key, rootKey, Arrays.copyOf(roots, rootCount));
+            }
+        }
+    }
+
+    /**
+     * Merge the proposals of all particles into shared outcomes in particle
+     * order. The probability of each outcome is the weight of the particles it
+     * occurred in.
+     */
+    private HashMap<INode, ArrayList<Outcome>> collectOutcomes(Double[] input, double[] weights,
+            Outcome[][] state) {
+        HashMap<INode, ArrayList<Outcome>> outcomeMap = new HashMap<>();
+        double totalWeight = 0;
+        for (double weight : weights) {
+            totalWeight += weight;
+        }
+        final double logTotalWeight = Math.log(totalWeight);
+
+        for (int i = 0; i < inputIndices.length; i++) {
+            if (input[i] == null) {
+                continue;
+            }
+            int n = inputIndices[i];
+            Outcome outcome = getInputOutcome(nodes[n], input[i]);
+            for (int p = 0; p < numParticles; p++) {
+                state[p][n] = outcome;
+            }
+            ArrayList<Outcome> outcomes = new ArrayList<>(1);
+            outcomes.add(outcome);
+            outcomeMap.put(nodes[n], outcomes);
+        }
+
+        for (int n = 0; n < nodes.length; n++) {
+            if (isInput[n]) {
+                continue;
+            }
+
+            LinkedHashMap<Proposal, Outcome> unique = new LinkedHashMap<>();
+            for (int p = 0; p < numParticles; p++) {
+                Proposal proposal = proposals[p][n];
+                if (proposal == null) {
+                    continue;
+                }
+                final int node_idx = n;
+                Outcome outcome = unique.computeIfAbsent(proposal, prop -> proposalToOutcome(node_idx, prop));
+                outcome.probability += weights[p];
+                outcome.logProbability = logAddExp(outcome.logProbability, getLogWeight(p));
+                state[p][n] = outcome;
+            }
+            if (unique.isEmpty()) {
+                continue;
+            }
+
+            ArrayList<Outcome> outcomes = new ArrayList<>(unique.values());
+            for (Outcome outcome : outcomes) {
+                outcome.probability /= totalWeight;
+                outcome.logProbability -= logTotalWeight;
+            }
+            outcomes.sort(Outcome::descendingProbabilitiesComparator);
+            outcomeMap.put(nodes[n], outcomes);
+        }
+        return outcomeMap;
+    }
+
+    private static Outcome getInputOutcome(INode node, double value) {
+        Outcome outcome = new Outcome();
+        outcome.node = node;
+        outcome.netValue = value;
+        outcome.activatedValue = node.getActivationFunction().activator(value);
+        outcome.binary_string = -1;
+        outcome.probability = 1;
+        outcome.logProbability = 0;
+        return outcome;
+    }
+
+    /**
+     * @return log(exp(a) + exp(b)), where a NaN a is an empty sum
+     */
+    private static double logAddExp(double a, double b) {
+        if (Double.isNaN(a)) {
+            return b;
+        }
+        double max = Math.max(a, b);
+        if (max == Double.NEGATIVE_INFINITY) {
+            return max;
+        }
+        return max + Math.log1p(Math.exp(Math.min(a, b) - max));
+    }
+
+    private Outcome proposalToOutcome(int n, Proposal proposal) {
+        INode node = nodes[n];
+        IFilter[] filters = node.getProbabilityCombinator().getFilters(proposal.rootKey);
+        Outcome[] roots = proposal.roots;
+
+        Outcome outcome = new Outcome();
+        outcome.node = node;
+        outcome.binary_string = proposal.key;
+        outcome.root_bin_str = proposal.rootKey;
+        outcome.allRootOutcomes = roots;
+        outcome.sourceTransferProbabilities = new double[roots.length];
+
+        ArrayList<Signal> signals = new ArrayList<>(Integer.bitCount(proposal.key));
+        int remaining = proposal.rootKey;
+        for (int j = 0; j < roots.length; j++) {
+            int bit = Integer.lowestOneBit(remaining);
+            remaining ^= bit;
+            outcome.sourceTransferProbabilities[j] = filters[j].getChanceToSend(roots[j].activatedValue);
+            if ((proposal.key & bit) != 0) {
+                signals.add(new Signal(roots[j].node, node, roots[j]));
+            }
+        }
+
+        outcome.netValue = node.getValueCombinator().computeMergedSignalStrength(signals, proposal.key);
+        outcome.activatedValue = node.getActivationFunction().activator(outcome.netValue);
+        outcome.sourceOutcomes = signals.stream().map(signal -> signal.sourceOutcome).toArray(Outcome[]::new);
+        outcome.sourceKeys = signals.stream().mapToInt(Signal::getSourceKey).toArray();
+        return outcome;
+    }
+
+    /**
+     * The signals sent to a node by a single particle. Proposals with the same
+     * roots and key produce the same outcome.
+     */
+    private static class Proposal {
+        final int key;
+        final int rootKey;
+        final Outcome[] roots;
+
+        Proposal(int key, int rootKey, Outcome[] roots) {
+            this.key = key;
+            this.rootKey = rootKey;
+            this.roots = roots;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = key * 31 + rootKey;
+            for (Outcome root : roots) {
+                hash = hash * 31 + System.identityHashCode(root);
+            }
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Proposal)) {
+                return false;
+            }
+            Proposal other = (Proposal) o;
+            if (key != other.key || rootKey != other.rootKey || roots.length != other.roots.length) {
+                return false;
+            }
+            for (int i = 0; i < roots.length; i++) {
+                if (roots[i] != other.roots[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -22,6 +22,8 @@ public class NodeBuilder {
     private Supplier<IValueCombinator> valueCombinator;
     private Supplier<IProbabilityCombinator> probabilityCombinator;
 
+    private int outcomeLimit = Node.CATASTROPHE_LIMIT;
+
     public NodeBuilder(final GraphNetwork network) {
         this.network = network;
     }
@@ -53,6 +55,15 @@ public class NodeBuilder {
         this.probabilityCombinator = probabilityCombinator;
     }
 
+    /**
+     * Set the maximum number of outcomes each built node keeps per timestep
+     * 
+     * @param outcomeLimit
+     */
+    public void setOutcomeLimit(int outcomeLimit) {
+        this.outcomeLimit = outcomeLimit;
+    }
+
     public boolean isReadyToBuild() {
         return activationFunction != null && valueCombinator != null && probabilityCombinator != null;
     }
@@ -63,6 +74,7 @@ public class NodeBuilder {
         }
 
         INode node = new Node(network, activationFunction, valueCombinator.get(), probabilityCombinator.get());
+        node.setOutcomeLimit(outcomeLimit);
 
         if (is_input) {
             node = new InputNode(node);
@@ -0,0 +1,229 @@
+package com.lucasbrown.GraphNetwork.Global;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+
+import com.lucasbrown.GraphNetwork.Local.Filters.IFilter;
+import com.lucasbrown.GraphNetwork.Local.Nodes.INode;
+import com.lucasbrown.GraphNetwork.Local.Nodes.ProbabilityCombinators.IProbabilityCombinator;
+import com.lucasbrown.GraphNetwork.Local.Nodes.ValueCombinators.ITrainableValueCombinator;
+
+import jsat.linear.IndexValue;
+import jsat.linear.Vec;
+
+/**
+ * Every trainable parameter of a network kept in two flat arrays, one for the
+ * weights and biases of all value combinators and one for the parameters of
+ * all filters.
+ *
+ * Each combinator and filter is bound to a fixed offset in its array and reads
+ * and writes its parameters directly from there, so the whole network can be
+ * read, copied or updated without visiting any node.
+ *
+ * The offsets are only valid for the structure of the network at the time the
+ * store was built. Adding nodes or connections moves the parameters of the
+ * affected combinators back into arrays of their own, so a new store must be
+ * built afterwards. The same goes for sparse combinators which create the
+ * parameters of a combination the first time it is evaluated, which
+ * {@link #isStale()} detects. Because those only ever append parameters,
+ * {@link #mapWeightIndices} and {@link #mapFilterParameterIndices} can carry
+ * state indexed by an old store over to a new one.
+ */
+public class ParameterStore {
+
+    private final double[] weights;
+    private final double[] filterParameters;
+
+    private final LinkedHashMap<ITrainableValueCombinator, Integer> combinatorOffsets;
+    private final LinkedHashMap<IFilter, Integer> filterOffsets;
+
+    /**
+     * The size of every combinator and probability combinator when the store was
+     * built
+     */
+    private final HashMap<ITrainableValueCombinator, Integer> combinatorSizes;
+    private final LinkedHashMap<IProbabilityCombinator, Integer> filterCounts;
+
+    /**
+     * Collect and bind the parameters of every node
+     *
+     * @param nodes all nodes of the network in order
+     */
+    public ParameterStore(Collection<INode> nodes) {
+        combinatorOffsets = new LinkedHashMap<>(nodes.size());
+        filterOffsets = new LinkedHashMap<>(nodes.size());
+        combinatorSizes = new HashMap<>(nodes.size());
+        filterCounts = new LinkedHashMap<>(nodes.size());
+
+        int numWeights = 0;
+        int numFilterParameters = 0;
+        for (INode node : nodes) {
+            if (node.getValueCombinator() instanceof ITrainableValueCombinator) {
+                ITrainableValueCombinator comb = (ITrainableValueCombinator) node.getValueCombinator();
+                if (!combinatorOffsets.containsKey(comb)) {
+                    combinatorOffsets.put(comb, numWeights);
+                    combinatorSizes.put(comb, comb.getNumberOfVariables());
+                    numWeights += comb.getNumberOfVariables();
+                }
+            }
+
+            IProbabilityCombinator probabilityCombinator = node.getProbabilityCombinator();
+            IFilter[] filters = probabilityCombinator.getAllFilters();
+            filterCounts.put(probabilityCombinator, filters.length);
+            for (IFilter filter : filters) {
+                if (!filterOffsets.containsKey(filter)) {
+                    filterOffsets.put(filter, numFilterParameters);
+                    numFilterParameters += filter.getNumberOfAdjustableParameters();
+                }
+            }
+        }
+
+        weights = new double[numWeights];
+        filterParameters = new double[numFilterParameters];
+        combinatorOffsets.forEach((comb, offset) -> comb.bindVariables(weights, offset));
+        filterOffsets.forEach((filter, offset) -> filter.bindAdjustableParameters(filterParameters, offset));
+    }
+
+    /**
+     * @return true if a combinator has gained or lost parameters since the store
+     *         was built, so a new store is needed
+     */
+    public boolean isStale() {
+        for (Entry<ITrainableValueCombinator, Integer> entry : combinatorSizes.entrySet()) {
+            if (entry.getKey().getNumberOfVariables() != entry.getValue()) {
+                return true;
+            }
+        }
+        for (Entry<IProbabilityCombinator, Integer> entry : filterCounts.entrySet()) {
+            if (entry.getKey().getNumberOfFilters() != entry.getValue()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Find where each weight of an older store is found in this one. Assumes the
+     * combinators only appended variables in between.
+     *
+     * @param previous
+     * @return the index in this store of each index of the previous store or -1
+     *         if the variable is no longer part of the network
+     */
+    public int[] mapWeightIndices(ParameterStore previous) {
+        int[] map = new int[previous.weights.length];
+        Arrays.fill(map, -1);
+        previous.combinatorOffsets.forEach((comb, previousOffset) -> {
+            Integer offset = combinatorOffsets.get(comb);
+            if (offset != null) {
+                int size = Math.min(previous.combinatorSizes.get(comb), combinatorSizes.get(comb));
+                for (int i = 0; i < size; i++) {
+                    map[previousOffset + i] = offset + i;
+                }
+            }
+        });
+        return map;
+    }
+
+    /**
+     * Find where each filter parameter of an older store is found in this one
+     *
+     * @param previous
+     * @return the index in this store of each index of the previous store or -1
+     *         if the filter is no longer part of the network
+     */
+    public int[] mapFilterParameterIndices(ParameterStore previous) {
+        int[] map = new int[previous.filterParameters.length];
+        Arrays.fill(map, -1);
+        previous.filterOffsets.forEach((filter, previousOffset) -> {
+            Integer offset = filterOffsets.get(filter);
+            if (offset != null) {
+                for (int i = 0; i < filter.getNumberOfAdjustableParameters(); i++) {
+                    map[previousOffset + i] = offset + i;
+                }
+            }
+        });
+        return map;
+    }
+
+    /**
+     * @return the shared array of all weights and biases. Writes are seen by
+     *         every combinator.
+     */
+    public double[] getWeights() {
+        return weights;
+    }
+
+    /**
+     * @return the shared array of all filter parameters. Writes are seen by every
+     *         filter, but {@link IFilter#constrainAdjustableParameters()} is not
+     *         applied.
+     */
+    public double[] getFilterParameters() {
+        return filterParameters;
+    }
+
+    public int getNumberOfWeights() {
+        return weights.length;
+    }
+
+    public int getNumberOfFilterParameters() {
+        return filterParameters.length;
+    }
+
+    public int getOffsetOf(ITrainableValueCombinator combinator) {
+        return combinatorOffsets.get(combinator);
+    }
+
+    public int getOffsetOf(IFilter filter) {
+        return filterOffsets.get(filter);
+    }
+
+    public ArrayList<ITrainableValueCombinator> getCombinators() {
+        return new ArrayList<>(combinatorOffsets.keySet());
+    }
+
+    public ArrayList<IFilter> getFilters() {
+        return new ArrayList<>(filterOffsets.keySet());
+    }
+
+    /**
+     * Subtract delta from every weight and bias in place
+     *
+     * @param delta
+     */
+    public void subtractWeights(Vec delta) {
+        subtract(weights, delta);
+    }
+
+    /**
+     * Subtract delta from every filter parameter in place and restore the
+     * constraints of each filter
+     *
+     * @param delta
+     */
+    public void subtractFilterParameters(Vec delta) {
+        subtract(filterParameters, delta);
+        filterOffsets.keySet().forEach(IFilter::constrainAdjustableParameters);
+    }
+
+    private static void subtract(double[] parameters, Vec delta) {
+        assert delta.length() == parameters.length;
+        if (delta.isSparse()) {
+            Iterator<IndexValue> nonZero = delta.getNonZeroIterator();
+            while (nonZero.hasNext()) {
+                IndexValue iv = nonZero.next();
+                parameters[iv.getIndex()] -= iv.getValue();
+            }
+        } else {
+            for (int i = 0; i < parameters.length; i++) {
+                parameters[i] -= delta.get(i);
+            }
+        }
+    }
+}
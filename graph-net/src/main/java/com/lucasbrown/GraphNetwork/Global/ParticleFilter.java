@@ -0,0 +1,196 @@
+package com.lucasbrown.GraphNetwork.Global;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import com.lucasbrown.GraphNetwork.Local.Outcome;
+import com.lucasbrown.GraphNetwork.Local.Filters.IFilter;
+
+/**
+ * A sequential importance resampling (SIR) particle filter over a
+ * {@link GraphNetwork}.
+ *
+ * The network holds a fixed budget of weighted particles. Signals are proposed
+ * from a mixture of the chance given by {@link IFilter#getChanceToSend(double)}
+ * and a fair coin, so that unlikely transmissions are still explored, and each
+ * particle is weighted by the ratio between the chance of its decisions under
+ * the filters and under the proposal. The probability of each outcome is the
+ * normalized weight of the particles it occurred in.
+ *
+ * Whenever the effective sample size falls below a fraction of the particle
+ * budget, the particles are resampled systematically and their weights reset.
+ * The memory and time used per timestep therefore only depend on the number of
+ * particles, no matter how long the sequence is.
+ *
+ * With a proposal mixing of 0 every weight stays equal and this behaves
+ * exactly like a {@link MonteCarloSampler}.
+ */
+public class ParticleFilter extends MonteCarloSampler {
+
+    /**
+     * The fraction of the fair coin in the proposal of each signal
+     */
+    private double proposalMixing = 0.1;
+
+    /**
+     * Resample when the effective sample size falls below this fraction of the
+     * number of particles
+     */
+    private double resampleThreshold = 0.5;
+
+    private final double[] logWeights;
+    private final double[] weights;
+
+    private SplittableRandom resamplingRng;
+    private double effectiveSampleSize;
+    private int numberOfResamples;
+
+    public ParticleFilter(GraphNetwork network, int numParticles, long seed) {
+        super(network, numParticles, seed);
+        logWeights = new double[numParticles];
+        weights = new double[numParticles];
+        effectiveSampleSize = numParticles;
+    }
+
+    public double getProposalMixing() {
+        return proposalMixing;
+    }
+
+    /**
+     * @param proposalMixing the fraction of a fair coin mixed into the chance of
+     *                       sending each signal, in [0, 1)
+     */
+    public void setProposalMixing(double proposalMixing) {
+        if (proposalMixing < 0 || proposalMixing >= 1) {
+            throw new IllegalArgumentException("The proposal mixing must be in [0, 1).");
+        }
+        this.proposalMixing = proposalMixing;
+    }
+
+    public double getResampleThreshold() {
+        return resampleThreshold;
+    }
+
+    /**
+     * @param resampleThreshold the fraction of the number of particles below
+     *                          which the effective sample size triggers
+     *                          resampling, in [0, 1]
+     */
+    public void setResampleThreshold(double resampleThreshold) {
+        if (resampleThreshold < 0 || resampleThreshold > 1) {
+            throw new IllegalArgumentException("The resample threshold must be in [0, 1].");
+        }
+        this.resampleThreshold = resampleThreshold;
+    }
+
+    /**
+     * @return the effective sample size of the last timestep before any
+     *         resampling
+     */
+    public double getEffectiveSampleSize() {
+        return effectiveSampleSize;
+    }
+
+    /**
+     * @return the number of times the particles were resampled in the current
+     *         sequence
+     */
+    public int getNumberOfResamples() {
+        return numberOfResamples;
+    }
+
+    @Override
+    public MonteCarloSampler replicate(GraphNetwork replica) {
+        ParticleFilter filter = new ParticleFilter(replica, getNumberOfParticles(), nextSeed());
+        filter.proposalMixing = proposalMixing;
+        filter.resampleThreshold = resampleThreshold;
+        return filter;
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        resamplingRng = new SplittableRandom(nextSeed());
+        Arrays.fill(logWeights, 0);
+        effectiveSampleSize = getNumberOfParticles();
+        numberOfResamples = 0;
+    }
+
+    @Override
+    protected boolean shouldSend(IFilter filter, double value, SplittableRandom rng, int particle) {
+        double chance = filter.getChanceToSend(value);
+        double proposal = (1 - proposalMixing) * chance + proposalMixing * 0.5;
+        if (rng.nextDouble() < proposal) {
+            logWeights[particle] += Math.log(chance / proposal);
+            return true;
+        } else {
+            logWeights[particle] += Math.log((1 - chance) / (1 - proposal));
+            return false;
+        }
+    }
+
+    @Override
+    protected double[] weighParticles() {
+        double max = Double.NEGATIVE_INFINITY;
+        for (double logWeight : logWeights) {
+            max = Math.max(max, logWeight);
+        }
+
+        // every particle is impossible, so fall back to counting them equally
+        if (max == Double.NEGATIVE_INFINITY) {
+            Arrays.fill(logWeights, 0);
+            max = 0;
+        }
+
+        double total = 0;
+        for (int p = 0; p < weights.length; p++) {
+            // keep the largest weight at 1 so that the log-weights do not drift
+            logWeights[p] -= max;
+            weights[p] = Math.exp(logWeights[p]);
+            total += weights[p];
+        }
+
+        double sumOfSquares = 0;
+        for (double weight : weights) {
+            sumOfSquares += (weight / total) * (weight / total);
+        }
+        effectiveSampleSize = 1 / sumOfSquares;
+        return weights;
+    }
+
+    @Override
+    protected double getLogWeight(int particle) {
+        return logWeights[particle];
+    }
+
+    @Override
+    protected Outcome[][] endTimestep(Outcome[][] state) {
+        int numParticles = getNumberOfParticles();
+        if (effectiveSampleSize >= resampleThreshold * numParticles) {
+            return state;
+        }
+
+        double total = 0;
+        for (double weight : weights) {
+            total += weight;
+        }
+
+        // systematic resampling: a single uniform offset and evenly spaced points
+        Outcome[][] resampled = new Outcome[numParticles][];
+        double step = total / numParticles;
+        double point = resamplingRng.nextDouble() * step;
+        double cumulative = weights[0];
+        int ancestor = 0;
+        for (int p = 0; p < numParticles; p++) {
+            while (point > cumulative && ancestor < numParticles - 1) {
+                cumulative += weights[++ancestor];
+            }
+            resampled[p] = state[ancestor];
+            point += step;
+        }
+
+        Arrays.fill(logWeights, 0);
+        numberOfResamples++;
+        return resampled;
+    }
+}
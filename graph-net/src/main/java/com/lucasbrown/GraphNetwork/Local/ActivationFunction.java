@@ -1,5 +1,7 @@
 package com.lucasbrown.GraphNetwork.Local;
 
+import com.lucasbrown.HelperClasses.Kernels.BatchKernels;
+
 /**
  * An activation function allows traditional neural networks to be universal
  * function approximators.
@@ -18,6 +20,16 @@ public interface ActivationFunction {
 
     public abstract double secondDerivative(double x);
 
+    /**
+     * Apply {@link #activator(double)} to the first count values of x in one
+     * call. out may be the same array as x.
+     */
+    public default void activator(double[] x, double[] out, int count) {
+        for (int i = 0; i < count; i++) {
+            out[i] = activator(x[i]);
+        }
+    }
+
     public static final Linear LINEAR = new Linear();
     public static final RectifiedLinearUnit ReLU = new RectifiedLinearUnit();
     // public static final SignedQuadratic SIGNED_QUADRATIC = new SignedQuadratic();
@@ -30,6 +42,13 @@ public interface ActivationFunction {
             return x;
         }
 
+        @Override
+        public void activator(double[] x, double[] out, int count) {
+            if (x != out) {
+                System.arraycopy(x, 0, out, 0, count);
+            }
+        }
+
         @Override
         public double derivative(double x) {
             return 1;
@@ -49,6 +68,11 @@ public interface ActivationFunction {
             return x < 0 ? 0 : x;
         }
 
+        @Override
+        public void activator(double[] x, double[] out, int count) {
+            BatchKernels.get().rectify(x, 0, out, count);
+        }
+
         @Override
         public double derivative(double x) {
             return x < 0 ? 0 : 1;
@@ -74,6 +98,11 @@ public interface ActivationFunction {
             return x < 0 ? x * alpha : x;
         }
 
+        @Override
+        public void activator(double[] x, double[] out, int count) {
+            BatchKernels.get().rectify(x, alpha, out, count);
+        }
+
         @Override
         public double derivative(double x) {
             return x < 0 ? alpha : 1;
@@ -2,15 +2,20 @@ package com.lucasbrown.GraphNetwork.Local.Filters;
 
 import java.util.Random;
 
+import com.lucasbrown.GraphNetwork.Local.ParameterView;
+import com.lucasbrown.HelperClasses.Kernels.BatchKernels;
+
 public class CappedNormalPeakFilter implements IFilter {
 
+    private static final int MEAN = 0, VARIANCE = 1;
+
     private final Random rng;
 
-    private double mean, variance, N, minimum;
+    private final ParameterView params;
+    private double N, minimum;
 
     public CappedNormalPeakFilter(double mean, double variance, double N, double minimum, Random rng) {
-        this.mean = mean;
-        this.variance = variance;
+        params = new ParameterView(mean, variance);
         this.N = N;
         this.minimum = minimum;
         this.rng = rng;
@@ -25,11 +30,11 @@ public class CappedNormalPeakFilter implements IFilter {
     }
 
     public double getMean() {
-        return mean;
+        return params.get(MEAN);
     }
 
     public double getVariance() {
-        return variance;
+        return params.get(VARIANCE);
     }
 
     public double getMinimumChance(){
@@ -42,12 +47,12 @@ public class CappedNormalPeakFilter implements IFilter {
 
     @Override
     public boolean shouldSend(double x) {
-        return getChanceToSend(x) < rng.nextDouble();
+        return rng.nextDouble() < getChanceToSend(x);
     }
 
     @Override
     public double getChanceToSend(double x) {
-        return likelihood(x, mean, variance, minimum);
+        return likelihood(x, params.get(MEAN), params.get(VARIANCE), minimum);
     }
 
     @Override
@@ -57,58 +62,76 @@ public class CappedNormalPeakFilter implements IFilter {
 
     @Override
     public double[] getAdjustableParameters() {
-        return new double[] { mean, variance };
+        return params.toArray();
     }
 
     @Override
     public void setAdjustableParameters(double... params) {
-        mean = params[0];
-        variance = params[1];
+        this.params.set(params);
     }
 
     @Override
     public void applyAdjustableParameterUpdate(double[] delta) {
-        mean -= delta[0];
-        variance -= delta[1];
+        params.subtract(delta);
     }
     
     @Override
     public void setAdjustableParameter(int index, double value)
     {
-        switch(index)
-        {
-            case 0:
-                mean = value;
-                break;
-            case 1:
-                variance = value;
-                break;
-            default:
-                throw new RuntimeException("Invalid index");
+        if (index < 0 || index > VARIANCE) {
+            throw new RuntimeException("Invalid index");
         }
+        params.set(index, value);
+    }
 
+    @Override
+    public void bindAdjustableParameters(double[] buffer, int offset) {
+        params.bind(buffer, offset);
     }
 
 
+    @Override
+    public void getChanceToSend(double[] x, double[] chances, int count) {
+        BatchKernels.get().gaussianPeak(x, params.get(MEAN), params.get(VARIANCE), 1-minimum, minimum, chances, count);
+    }
+
     @Override
     public double[] getLogarithmicParameterDerivative(double x) {
+        double[] derivative = new double[2];
+        getLogarithmicParameterDerivative(x, derivative, 0);
+        return derivative;
+    }
+
+    @Override
+    public void getLogarithmicParameterDerivative(double x, double[] derivative, int offset) {
         // ln(this) = -(x-mean)^2/(2*variance^2)
-        double w = x - mean;
+        double variance = params.get(VARIANCE);
+        double w = x - params.get(MEAN);
         double var2 = variance * variance;
         double d_mean = w / var2;
         double d_var = w * w / (var2 * variance);
         double d = getexponentRatios(x);
-        return new double[] { d*d_mean, d*d_var };
+        derivative[offset] = d*d_mean;
+        derivative[offset + 1] = d*d_var;
     }
 
     @Override
     public double[] getNegatedLogarithmicParameterDerivative(double x) {
-        double w = x - mean;
+        double[] derivative = new double[2];
+        getNegatedLogarithmicParameterDerivative(x, derivative, 0);
+        return derivative;
+    }
+
+    @Override
+    public void getNegatedLogarithmicParameterDerivative(double x, double[] derivative, int offset) {
+        double variance = params.get(VARIANCE);
+        double w = x - params.get(MEAN);
         double var2 = variance * variance;
         double d_mean = w / var2;
         double d_var = w * w / (var2 * variance);
         double d = getNegatedExponentRatios(x);
-        return new double[] { d*d_mean, d*d_var };
+        derivative[offset] = d*d_mean;
+        derivative[offset + 1] = d*d_var;
     }
 
     public static double likelihood(double x, double mean, double variance, double minimum) {
@@ -121,25 +144,27 @@ public class CappedNormalPeakFilter implements IFilter {
     }
 
     private double getexponentRatios(double x){
-        double w = (x-mean)/(variance);
+        double w = (x - params.get(MEAN)) / params.get(VARIANCE);
         double min_ratio = minimum/(1-minimum);
         return 1/(1+min_ratio*Math.exp(w*w/2));
     }
 
     public double getNegatedExponentRatios(double x) {
-        double w = (x-mean)/(variance);
+        double w = (x - params.get(MEAN)) / params.get(VARIANCE);
         return 0.99999/(0.99999-Math.exp(w*w/2)); // slightly off for numerical stability
     }
 
     @Override
     public double getLogarithmicDerivative(double x) {
-        double w = (x-mean)/(variance);
+        double variance = params.get(VARIANCE);
+        double w = (x - params.get(MEAN)) / variance;
         return -getexponentRatios(x) * w/variance;
     }
 
     @Override
     public double getNegatedLogarithmicDerivative(double x) {
-        double w = (x-mean)/(variance);
+        double variance = params.get(VARIANCE);
+        double w = (x - params.get(MEAN)) / variance;
         return -getNegatedExponentRatios(x)*w/variance;
     }
 
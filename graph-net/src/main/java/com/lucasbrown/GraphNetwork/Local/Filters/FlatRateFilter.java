@@ -1,7 +1,10 @@
 package com.lucasbrown.GraphNetwork.Local.Filters;
 
+import java.util.Arrays;
 import java.util.Random;
 
+import com.lucasbrown.GraphNetwork.Local.ParameterView;
+
 /**
  * Allows all signals to pass with the same fixed rate.
  * Adjustments are made in transformed coordinates to prevent full 0% and 100% 
@@ -10,22 +13,27 @@ public class FlatRateFilter implements IFilter {
 
     private final double min = 1E-12;
     private final double max = 1d - min;
-    private double rate;
+    private final ParameterView rate;
     private Random rng;
 
     public FlatRateFilter(double rate){
-        this.rate = rate;
+        this.rate = new ParameterView(rate);
         rng = new Random();
     }
 
     @Override
     public boolean shouldSend(double x) {
-        return rng.nextDouble() <= rate;
+        return rng.nextDouble() <= rate.get(0);
     }
 
     @Override
     public double getChanceToSend(double x) {
-        return rate;
+        return rate.get(0);
+    }
+
+    @Override
+    public void getChanceToSend(double[] x, double[] chances, int count) {
+        Arrays.fill(chances, 0, count, rate.get(0));
     }
 
     @Override
@@ -36,19 +44,19 @@ public class FlatRateFilter implements IFilter {
 
     @Override
     public double[] getAdjustableParameters() {
-        return new double[]{rate};
+        return rate.toArray();
     }
 
     @Override
     public void setAdjustableParameters(double... params) {
-        rate = params[0];
+        rate.set(0, params[0]);
     }
 
     
     @Override
     public void setAdjustableParameter(int index, double value) {
         if(index == 0){
-            rate = value;
+            rate.set(0, value);
         }
         else
         {
@@ -58,23 +66,43 @@ public class FlatRateFilter implements IFilter {
 
     @Override
     public void applyAdjustableParameterUpdate(double[] delta) {
-        rate -= delta[0];
-        if(rate > max){
-            rate = max;
+        rate.subtract(delta);
+        constrainAdjustableParameters();
+    }
+
+    @Override
+    public void bindAdjustableParameters(double[] buffer, int offset) {
+        rate.bind(buffer, offset);
+    }
+
+    @Override
+    public void constrainAdjustableParameters() {
+        if(rate.get(0) > max){
+            rate.set(0, max);
         }
-        else if(rate < min){
-            rate = min;
+        else if(rate.get(0) < min){
+            rate.set(0, min);
         }
     }
 
     @Override
     public double[] getLogarithmicParameterDerivative(double x) {
-        return new double[]{1/rate};
+        return new double[]{1/rate.get(0)};
     }
 
     @Override
     public double[] getNegatedLogarithmicParameterDerivative(double x) {
-        return new double[]{1/(1-rate)};
+        return new double[]{-1/(1-rate.get(0))};
+    }
+
+    @Override
+    public void getLogarithmicParameterDerivative(double x, double[] derivative, int offset) {
+        derivative[offset] = 1/rate.get(0);
+    }
+
+    @Override
+    public void getNegatedLogarithmicParameterDerivative(double x, double[] derivative, int offset) {
+        derivative[offset] = -1/(1-rate.get(0));
     }
 
     @Override
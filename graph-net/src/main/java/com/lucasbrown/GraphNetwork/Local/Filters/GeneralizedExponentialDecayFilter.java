@@ -2,7 +2,7 @@ package com.lucasbrown.GraphNetwork.Local.Filters;
 
 import java.util.Random;
 
-import com.lucasbrown.HelperClasses.MathHelpers;
+import com.lucasbrown.GraphNetwork.Local.ParameterView;
 
 import static com.lucasbrown.HelperClasses.MathHelpers.sigmoid;
 import static com.lucasbrown.HelperClasses.MathHelpers.sigmoid_derivative;
@@ -14,16 +14,14 @@ public class GeneralizedExponentialDecayFilter implements IFilter {
 
     private final Random rng;
 
+    private static final int LOWER = 0, UPPER = 1, MEAN = 2, VARIANCE = 3, POWER = 4;
+
     // parameters
-    private double lower_param, upper_param, mean, variance, power;
+    private final ParameterView params;
 
     public GeneralizedExponentialDecayFilter(double lower_param, double upper_param, double mean, double variance,
             double power, Random random) {
-        this.lower_param = lower_param;
-        this.upper_param = upper_param;
-        this.mean = mean;
-        this.variance = variance;
-        this.power = power;
+        params = new ParameterView(lower_param, upper_param, mean, variance, power);
         rng = random;
     }
 
@@ -34,15 +32,28 @@ public class GeneralizedExponentialDecayFilter implements IFilter {
 
     @Override
     public boolean shouldSend(double x) {
-        return rng.nextDouble() > getChanceToSend(x);
+        return rng.nextDouble() < getChanceToSend(x);
     }
 
     @Override
     public double getChanceToSend(double x) {
-        double w = Math.abs((x - mean) / variance);
-        double lower = sigmoid(lower_param);
-        double upper = sigmoid(upper_param);
-        return (upper - lower) * Math.exp(-Math.pow(w, power) / 2) + lower;
+        double w = Math.abs((x - params.get(MEAN)) / params.get(VARIANCE));
+        double lower = sigmoid(params.get(LOWER));
+        double upper = sigmoid(params.get(UPPER));
+        return (upper - lower) * Math.exp(-Math.pow(w, params.get(POWER)) / 2) + lower;
+    }
+
+    @Override
+    public void getChanceToSend(double[] x, double[] chances, int count) {
+        double mean = params.get(MEAN);
+        double variance = params.get(VARIANCE);
+        double power = params.get(POWER);
+        double lower = sigmoid(params.get(LOWER));
+        double range = sigmoid(params.get(UPPER)) - lower;
+        for (int i = 0; i < count; i++) {
+            double w = Math.abs((x[i] - mean) / variance);
+            chances[i] = range * Math.exp(-Math.pow(w, power) / 2) + lower;
+        }
     }
 
     @Override
@@ -52,53 +63,39 @@ public class GeneralizedExponentialDecayFilter implements IFilter {
 
     @Override
     public double[] getAdjustableParameters() {
-        return new double[] { lower_param, upper_param, mean, variance, power };
+        return params.toArray();
     }
 
     @Override
     public void setAdjustableParameters(double... params) {
         assert params.length == 5;
-        lower_param = params[0];
-        upper_param = params[1];
-        mean = params[2];
-        variance = params[3];
-        power = params[4];
+        this.params.set(params);
     }
 
     @Override
     public void setAdjustableParameter(int index, double value) {
-        switch (index) {
-            case 0:
-                lower_param = value;
-                break;
-            case 1:
-                upper_param = value;
-                break;
-            case 2:
-                mean = value;
-                break;
-            case 3:
-                variance = value;
-                break;
-            case 4:
-                power = value;
-                break;
-            default:
-                throw new RuntimeException("Invalid index");
+        if (index < 0 || index > POWER) {
+            throw new RuntimeException("Invalid index");
         }
-
+        params.set(index, value);
     }
 
     @Override
     public void applyAdjustableParameterUpdate(double[] delta) {
-        lower_param -= delta[0];
-        upper_param -= delta[1];
-        mean -= delta[2];
-        variance -= delta[3];
-        power -= delta[4];
+        params.subtract(delta);
     }
 
-    private double[] getDerivativeOfParameters(double x) {
+    @Override
+    public void bindAdjustableParameters(double[] buffer, int offset) {
+        params.bind(buffer, offset);
+    }
+
+    private void getDerivativeOfParameters(double x, double[] derivative, int offset) {
+        double lower_param = params.get(LOWER);
+        double upper_param = params.get(UPPER);
+        double mean = params.get(MEAN);
+        double variance = params.get(VARIANCE);
+        double power = params.get(POWER);
         double w = Math.abs((x - mean) / variance);
         double lower = sigmoid(lower_param);
         double upper = sigmoid(upper_param);
@@ -107,32 +104,43 @@ public class GeneralizedExponentialDecayFilter implements IFilter {
         double range = upper - lower;
         double d_exp = range * exp * w_pow / 2;
 
-        double d_lower = (1 - exp) * sigmoid_derivative(lower_param);
-        double d_upper = exp * sigmoid_derivative(upper_param);
-        double d_mean = (x - mean) == 0 ? 0 : d_exp * power / (x - mean);
-        double d_variance = d_exp * power / variance;
-        double d_power = w == 0 ? 0 : -d_exp * Math.log(w);
-        return new double[] { d_lower, d_upper, d_mean, d_variance, d_power };
+        derivative[offset + LOWER] = (1 - exp) * sigmoid_derivative(lower_param);
+        derivative[offset + UPPER] = exp * sigmoid_derivative(upper_param);
+        derivative[offset + MEAN] = (x - mean) == 0 ? 0 : d_exp * power / (x - mean);
+        derivative[offset + VARIANCE] = d_exp * power / variance;
+        derivative[offset + POWER] = w == 0 ? 0 : -d_exp * Math.log(w);
     }
 
     @Override
     public double[] getLogarithmicParameterDerivative(double x) {
+        double[] derivative = new double[5];
+        getLogarithmicParameterDerivative(x, derivative, 0);
+        return derivative;
+    }
+
+    @Override
+    public void getLogarithmicParameterDerivative(double x, double[] derivative, int offset) {
         double eval = getChanceToSend(x);
-        double[] derivatives = getDerivativeOfParameters(x);
-        for (int i = 0; i < derivatives.length; i++) {
-            derivatives[i] /= eval;
+        getDerivativeOfParameters(x, derivative, offset);
+        for (int i = offset; i < offset + 5; i++) {
+            derivative[i] /= eval;
         }
-        return derivatives;
     }
 
     @Override
     public double[] getNegatedLogarithmicParameterDerivative(double x) {
+        double[] derivative = new double[5];
+        getNegatedLogarithmicParameterDerivative(x, derivative, 0);
+        return derivative;
+    }
+
+    @Override
+    public void getNegatedLogarithmicParameterDerivative(double x, double[] derivative, int offset) {
         double eval = getChanceToSend(x);
-        double[] derivatives = getDerivativeOfParameters(x);
-        for (int i = 0; i < derivatives.length; i++) {
-            derivatives[i] /= eval - 1;
+        getDerivativeOfParameters(x, derivative, offset);
+        for (int i = offset; i < offset + 5; i++) {
+            derivative[i] /= eval - 1;
         }
-        return derivatives;
     }
 
     @Override
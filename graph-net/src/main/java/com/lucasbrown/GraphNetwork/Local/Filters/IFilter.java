@@ -1,19 +1,105 @@
 package com.lucasbrown.GraphNetwork.Local.Filters;
 
+import java.util.SplittableRandom;
+
 public interface IFilter {
     
     public boolean shouldSend(double x);
+
+    /**
+     * Decide whether a signal is sent using the given source of randomness, so
+     * that samples can be reproduced
+     * 
+     * @param x
+     * @param rng
+     * @return true with probability {@link #getChanceToSend(double)}
+     */
+    public default boolean shouldSend(double x, SplittableRandom rng) {
+        return rng.nextDouble() < getChanceToSend(x);
+    }
     public double getChanceToSend(double x);
 
+    /**
+     * Evaluate {@link #getChanceToSend(double)} for the first count values of x
+     * in one call. chances may be the same array as x.
+     * 
+     * @param x
+     * @param chances the array the chances are written to
+     * @param count
+     */
+    public default void getChanceToSend(double[] x, double[] chances, int count) {
+        for (int i = 0; i < count; i++) {
+            chances[i] = getChanceToSend(x[i]);
+        }
+    }
+
+    /**
+     * @param x
+     * @return the log of {@link #getChanceToSend(double)}
+     */
+    public default double getLogChanceToSend(double x) {
+        return Math.log(getChanceToSend(x));
+    }
+
+    /**
+     * @param x
+     * @return the log of the chance that a signal is not sent
+     */
+    public default double getLogChanceToBlock(double x) {
+        return Math.log1p(-getChanceToSend(x));
+    }
+
     public int getNumberOfAdjustableParameters();
     public double[] getAdjustableParameters();
     public void setAdjustableParameters(double... params);
     public void setAdjustableParameter(int index, double value);
     public void applyAdjustableParameterUpdate(double[] delta);
 
+    /**
+     * Move the adjustable parameters into a buffer shared by the whole network.
+     * All future reads and writes of the parameters go through the buffer.
+     * 
+     * @param buffer
+     * @param offset the index of the first parameter in the buffer
+     */
+    public void bindAdjustableParameters(double[] buffer, int offset);
+
+    /**
+     * Restore any constraints on the parameters after they have been modified
+     * directly through a shared buffer
+     */
+    public default void constrainAdjustableParameters() {
+    }
+
     public double[] getLogarithmicParameterDerivative(double x);
     public double[] getNegatedLogarithmicParameterDerivative(double x);
 
+    /**
+     * Write {@link #getLogarithmicParameterDerivative(double)} into the buffer
+     * rather than a new array
+     * 
+     * @param x
+     * @param derivative
+     * @param offset the index of the derivative of the first parameter
+     */
+    public default void getLogarithmicParameterDerivative(double x, double[] derivative, int offset) {
+        double[] d = getLogarithmicParameterDerivative(x);
+        System.arraycopy(d, 0, derivative, offset, d.length);
+    }
+
+    /**
+     * Write {@link #getNegatedLogarithmicParameterDerivative(double)} into the
+     * buffer rather than a new array
+     * 
+     * @param x
+     * @param derivative
+     * @param offset the index of the derivative of the first parameter
+     */
+    public default void getNegatedLogarithmicParameterDerivative(double x, double[] derivative, int offset) {
+        double[] d = getNegatedLogarithmicParameterDerivative(x);
+        System.arraycopy(d, 0, derivative, offset, d.length);
+    }
+
     public double getLogarithmicDerivative(double x);
     public double getNegatedLogarithmicDerivative(double x);
     
@@ -2,15 +2,20 @@ package com.lucasbrown.GraphNetwork.Local.Filters;
 
 import java.util.Random;
 
+import com.lucasbrown.GraphNetwork.Local.ParameterView;
+import com.lucasbrown.HelperClasses.Kernels.BatchKernels;
+
 public class NormalPeakFilter implements IFilter {
 
+    private static final int MEAN = 0, VARIANCE = 1;
+
     private final Random rng;
 
-    private double mean, variance, N;
+    private final ParameterView params;
+    private double N;
 
     public NormalPeakFilter(double mean, double variance, double N, Random rng) {
-        this.mean = mean;
-        this.variance = variance;
+        params = new ParameterView(mean, variance);
         this.N = N;
         this.rng = rng;
     }
@@ -24,11 +29,11 @@ public class NormalPeakFilter implements IFilter {
     }
 
     public double getMean() {
-        return mean;
+        return params.get(MEAN);
     }
 
     public double getVariance() {
-        return variance;
+        return params.get(VARIANCE);
     }
 
     public double getN() {
@@ -37,12 +42,24 @@ public class NormalPeakFilter implements IFilter {
 
     @Override
     public boolean shouldSend(double x) {
-        return getChanceToSend(x) < rng.nextDouble();
+        return rng.nextDouble() < getChanceToSend(x);
     }
 
     @Override
     public double getChanceToSend(double x) {
-        return likelihood(x, mean, variance);
+        return likelihood(x, params.get(MEAN), params.get(VARIANCE));
+    }
+
+    @Override
+    public double getLogChanceToSend(double x) {
+        double temp = (x - params.get(MEAN)) / params.get(VARIANCE);
+        return -temp * temp / 2;
+    }
+
+    @Override
+    public double getLogChanceToBlock(double x) {
+        double temp = (x - params.get(MEAN)) / params.get(VARIANCE);
+        return Math.log(-Math.expm1(-temp * temp / 2));
     }
 
     @Override
@@ -52,66 +69,80 @@ public class NormalPeakFilter implements IFilter {
 
     @Override
     public double[] getAdjustableParameters() {
-        return new double[] { mean, variance };
+        return params.toArray();
     }
 
     @Override
     public void setAdjustableParameters(double... params) {
-        mean = params[0];
-        variance = params[1];
+        this.params.set(params);
     }
 
     @Override
     public void setAdjustableParameter(int index, double value)
     {
-        switch(index)
-        {
-            case 0:
-                mean = value;
-                break;
-            case 1:
-                variance = value;
-                break;
-            default:
-                throw new RuntimeException("Invalid index");
+        if (index < 0 || index > VARIANCE) {
+            throw new RuntimeException("Invalid index");
         }
-
+        params.set(index, value);
     }
 
     @Override
     public void applyAdjustableParameterUpdate(double[] delta) {
-        mean -= delta[0];
-        variance -= delta[1];
+        params.subtract(delta);
+    }
+
+    @Override
+    public void bindAdjustableParameters(double[] buffer, int offset) {
+        params.bind(buffer, offset);
+    }
+
+    @Override
+    public void getChanceToSend(double[] x, double[] chances, int count) {
+        BatchKernels.get().gaussianPeak(x, params.get(MEAN), params.get(VARIANCE), 1, 0, chances, count);
     }
 
     @Override
     public double[] getLogarithmicParameterDerivative(double x) {
+        double[] derivative = new double[2];
+        getLogarithmicParameterDerivative(x, derivative, 0);
+        return derivative;
+    }
+
+    @Override
+    public void getLogarithmicParameterDerivative(double x, double[] derivative, int offset) {
         // ln(this) = -(x-mean)^2/(2*variance^2)
-        double w = x - mean;
+        double variance = params.get(VARIANCE);
+        double w = x - params.get(MEAN);
         double var2 = variance * variance;
-        double d_mean = w / var2;
-        double d_var = w * w / (var2 * variance);
-        return new double[] { d_mean, d_var };
+        derivative[offset] = w / var2;
+        derivative[offset + 1] = w * w / (var2 * variance);
     }
 
     @Override
     public double[] getNegatedLogarithmicParameterDerivative(double x) {
-        double[] exp_deriv = getLogarithmicParameterDerivative(x);
-        final double stabilityFactor = 1-1E-12;
+        double[] derivative = new double[2];
+        getNegatedLogarithmicParameterDerivative(x, derivative, 0);
+        return derivative;
+    }
 
-        double temp = (x - mean) / variance;
-        double factor = stabilityFactor / (Math.exp(temp * temp / 2) - stabilityFactor); // set slightly off of 1 for numerical stability
+    @Override
+    public void getNegatedLogarithmicParameterDerivative(double x, double[] derivative, int offset) {
+        getLogarithmicParameterDerivative(x, derivative, offset);
+        final double stabilityFactor = 1-1E-12;
 
-        exp_deriv[0] *= factor;
-        exp_deriv[1] *= factor;
+        double temp = (x - params.get(MEAN)) / params.get(VARIANCE);
+        // ln(1 - this)' = -ln(this)' * this / (1 - this)
+        double factor = -stabilityFactor / (Math.exp(temp * temp / 2) - stabilityFactor); // set slightly off of 1 for numerical stability
 
-        return exp_deriv;
+        derivative[offset] *= factor;
+        derivative[offset + 1] *= factor;
     }
 
 
     @Override
     public double getLogarithmicDerivative(double x) {
-        return (x-mean)/(variance*variance);
+        double variance = params.get(VARIANCE);
+        return (x - params.get(MEAN)) / (variance * variance);
     }
 
     @Override
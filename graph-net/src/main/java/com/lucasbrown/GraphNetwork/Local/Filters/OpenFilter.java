@@ -1,5 +1,7 @@
 package com.lucasbrown.GraphNetwork.Local.Filters;
 
+import java.util.Arrays;
+
 /**
  * Always allows signals to pass
  */
@@ -14,6 +16,11 @@ public class OpenFilter implements IFilter {
     public double getChanceToSend(double x) {
         return 1;
     }
+
+    @Override
+    public void getChanceToSend(double[] x, double[] chances, int count) {
+        Arrays.fill(chances, 0, count, 1);
+    }
     
     @Override
     public void setAdjustableParameter(int index, double value)
@@ -41,6 +48,11 @@ public class OpenFilter implements IFilter {
         // do nothing
     }
 
+    @Override
+    public void bindAdjustableParameters(double[] buffer, int offset) {
+        // nothing to bind
+    }
+
     @Override
     public double[] getLogarithmicParameterDerivative(double x) {
         return new double[0];
@@ -52,6 +64,16 @@ public class OpenFilter implements IFilter {
     }
 
     
+    @Override
+    public void getLogarithmicParameterDerivative(double x, double[] derivative, int offset) {
+        // no parameters
+    }
+
+    @Override
+    public void getNegatedLogarithmicParameterDerivative(double x, double[] derivative, int offset) {
+        // no parameters
+    }
+
     @Override
     public double getLogarithmicDerivative(double x) {
         return 0;
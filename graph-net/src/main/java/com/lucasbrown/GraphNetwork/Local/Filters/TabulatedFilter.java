@@ -0,0 +1,253 @@
+package com.lucasbrown.GraphNetwork.Local.Filters;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.lucasbrown.HelperClasses.Interpolation.LinearRange;
+
+/**
+ * Wraps a filter which is expensive to evaluate, such as
+ * {@link GeneralizedExponentialDecayFilter}, and linearly interpolates its
+ * chance to send from a table sampled over a fixed range of values. Values
+ * outside of the range are passed to the wrapped filter. The table is only
+ * rebuilt after the parameters of the filter change.
+ *
+ * Within the range, the interpolated chance differs from the true chance by at
+ * most {@link #getErrorBound()}. Linear interpolation is off by at most
+ * h^2/8 * max|f''| for a spacing of h. The bound is twice that, with f''
+ * estimated from the samples and checked against the exact error at the middle
+ * of every cell. The factor of two covers the second derivative changing by up
+ * to a factor of two within a cell. It assumes the chance is twice
+ * differentiable, and the table must be fine enough to resolve it.
+ *
+ * Only the chance to send is tabulated. The derivatives come straight from
+ * the wrapped filter, which must not be modified other than through this
+ * filter.
+ */
+public class TabulatedFilter implements IFilter {
+
+    /**
+     * The sampled chances along with the parameters they were sampled with
+     */
+    private static class Table {
+        private final double[] chances;
+        private final double[] parameters;
+        private final double errorBound;
+
+        private Table(double[] chances, double[] parameters, double errorBound) {
+            this.chances = chances;
+            this.parameters = parameters;
+            this.errorBound = errorBound;
+        }
+    }
+
+    private final IFilter filter;
+    private final LinearRange range;
+    private final double lower, upper;
+    private final double pointsPerUnit;
+
+    private volatile Table table;
+
+    /**
+     * The shared buffer holding the parameters of the filter, which may be
+     * written to directly
+     */
+    private double[] buffer;
+    private int offset;
+
+    /**
+     * @param filter the filter to tabulate
+     * @param lower  the smallest value in the table
+     * @param upper  the largest value in the table
+     * @param points the number of samples in the table
+     */
+    public TabulatedFilter(IFilter filter, double lower, double upper, int points) {
+        if (!(upper > lower) || points < 2) {
+            throw new IllegalArgumentException("A table needs at least two points over a non-empty range.");
+        }
+        this.filter = filter;
+        range = new LinearRange(lower, upper, points, true, true);
+        this.lower = range.getValue(0);
+        this.upper = range.getValue(points - 1);
+        pointsPerUnit = (points - 1) / (this.upper - this.lower);
+    }
+
+    public IFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * @return the largest difference between the interpolated and true chance
+     *         to send within the range of the table
+     */
+    public double getErrorBound() {
+        return getTable().errorBound;
+    }
+
+    private Table getTable() {
+        Table current = table;
+        if (current == null || haveParametersChanged(current.parameters)) {
+            current = buildTable();
+            table = current;
+        }
+        return current;
+    }
+
+    private boolean haveParametersChanged(double[] parameters) {
+        // unbound parameters can only change through this filter
+        double[] shared = buffer;
+        if (shared == null) {
+            return false;
+        }
+        for (int i = 0; i < parameters.length; i++) {
+            if (Double.doubleToLongBits(shared[offset + i]) != Double.doubleToLongBits(parameters[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Table buildTable() {
+        final int n = range.getNumberOfPoints();
+        double[] parameters = filter.getAdjustableParameters();
+
+        // sample every point of the range and every midpoint between them
+        double[] x = new double[2 * n - 1];
+        for (int i = 0; i < n; i++) {
+            x[2 * i] = range.getValue(i);
+            if (i > 0) {
+                x[2 * i - 1] = (range.getValue(i - 1) + range.getValue(i)) / 2;
+            }
+        }
+        double[] samples = new double[x.length];
+        filter.getChanceToSend(x, samples, x.length);
+
+        double[] chances = new double[n];
+        for (int i = 0; i < n; i++) {
+            chances[i] = samples[2 * i];
+        }
+
+        // f'' from the second differences at half the spacing
+        double halfSpacing = 0.5 / pointsPerUnit;
+        double maxSecondDerivative = 0;
+        for (int i = 1; i < samples.length - 1; i++) {
+            double secondDifference = samples[i - 1] - 2 * samples[i] + samples[i + 1];
+            maxSecondDerivative = Math.max(maxSecondDerivative, Math.abs(secondDifference));
+        }
+        maxSecondDerivative /= halfSpacing * halfSpacing;
+        double spacing = 2 * halfSpacing;
+        double errorBound = spacing * spacing / 8 * maxSecondDerivative;
+
+        // the error at a midpoint is known exactly
+        for (int i = 1; i < n; i++) {
+            double interpolated = (chances[i - 1] + chances[i]) / 2;
+            errorBound = Math.max(errorBound, Math.abs(samples[2 * i - 1] - interpolated));
+        }
+        errorBound *= 2;
+
+        return new Table(chances, parameters, errorBound);
+    }
+
+    private void invalidate() {
+        table = null;
+    }
+
+    @Override
+    public boolean shouldSend(double x) {
+        return ThreadLocalRandom.current().nextDouble() < getChanceToSend(x);
+    }
+
+    @Override
+    public double getChanceToSend(double x) {
+        if (!(x >= lower && x <= upper)) {
+            return filter.getChanceToSend(x);
+        }
+        return interpolate(getTable().chances, x);
+    }
+
+    @Override
+    public void getChanceToSend(double[] x, double[] chances, int count) {
+        double[] tabulated = getTable().chances;
+        for (int i = 0; i < count; i++) {
+            double xi = x[i];
+            chances[i] = xi >= lower && xi <= upper ? interpolate(tabulated, xi) : filter.getChanceToSend(xi);
+        }
+    }
+
+    private double interpolate(double[] chances, double x) {
+        double floatingIndex = (x - lower) * pointsPerUnit;
+        int index = Math.min((int) floatingIndex, chances.length - 2);
+        double t = floatingIndex - index;
+        return chances[index] + t * (chances[index + 1] - chances[index]);
+    }
+
+    @Override
+    public int getNumberOfAdjustableParameters() {
+        return filter.getNumberOfAdjustableParameters();
+    }
+
+    @Override
+    public double[] getAdjustableParameters() {
+        return filter.getAdjustableParameters();
+    }
+
+    @Override
+    public void setAdjustableParameters(double... params) {
+        filter.setAdjustableParameters(params);
+        invalidate();
+    }
+
+    @Override
+    public void setAdjustableParameter(int index, double value) {
+        filter.setAdjustableParameter(index, value);
+        invalidate();
+    }
+
+    @Override
+    public void applyAdjustableParameterUpdate(double[] delta) {
+        filter.applyAdjustableParameterUpdate(delta);
+        invalidate();
+    }
+
+    @Override
+    public void bindAdjustableParameters(double[] buffer, int offset) {
+        filter.bindAdjustableParameters(buffer, offset);
+        this.buffer = buffer;
+        this.offset = offset;
+    }
+
+    @Override
+    public void constrainAdjustableParameters() {
+        // any change is seen in the shared buffer
+        filter.constrainAdjustableParameters();
+    }
+
+    @Override
+    public double[] getLogarithmicParameterDerivative(double x) {
+        return filter.getLogarithmicParameterDerivative(x);
+    }
+
+    @Override
+    public double[] getNegatedLogarithmicParameterDerivative(double x) {
+        return filter.getNegatedLogarithmicParameterDerivative(x);
+    }
+
+    @Override
+    public void getLogarithmicParameterDerivative(double x, double[] derivative, int offset) {
+        filter.getLogarithmicParameterDerivative(x, derivative, offset);
+    }
+
+    @Override
+    public void getNegatedLogarithmicParameterDerivative(double x, double[] derivative, int offset) {
+        filter.getNegatedLogarithmicParameterDerivative(x, derivative, offset);
+    }
+
+    @Override
+    public double getLogarithmicDerivative(double x) {
+        return filter.getLogarithmicDerivative(x);
+    }
+
+    @Override
+    public double getNegatedLogarithmicDerivative(double x) {
+        return filter.getNegatedLogarithmicDerivative(x);
+    }
+}
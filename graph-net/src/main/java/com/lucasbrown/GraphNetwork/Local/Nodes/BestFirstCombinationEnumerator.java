@@ -0,0 +1,299 @@
+package com.lucasbrown.GraphNetwork.Local.Nodes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.stream.IntStream;
+
+import com.lucasbrown.HelperClasses.MixedRadixCounter;
+
+/**
+ * Lazily enumerates the most probable combinations of incoming signals in
+ * descending order of probability.
+ *
+ * Every incoming slot j chooses one of its source outcomes o and then either
+ * transmits, with probability t[j][o], or does not, with probability
+ * 1 - t[j][o]. The probability of a combination is the product over all slots
+ * of p[j][o] * (t[j][o] or 1 - t[j][o]), so the space of combinations is a
+ * product of independent option lists which can be searched best-first.
+ *
+ * Combinations in which no signal is transmitted are never generated. The
+ * search space is partitioned on the first transmitting slot f: slots before f
+ * only have non-transmitting options, slot f only has transmitting options and
+ * slots after f have both.
+ *
+ * The result is identical to generating every combination, sorting by
+ * probability and keeping the first {@code limit}, including the order of
+ * ties.
+ */
+public class BestFirstCombinationEnumerator {
+
+    /**
+     * Search priorities are a re-ordered product of the same factors used for
+     * the exact probability and so may differ in the last few bits
+     */
+    private static final double RELATIVE_TOLERANCE = 1E-9;
+
+    private final double[][] sourceProbabilities;
+    private final double[][] transferProbabilities;
+    private final int m;
+    private final int limit;
+
+    /**
+     * Options of each slot sorted in descending order of weight. An option is
+     * encoded as 2 * outcome + (1 if transmitting)
+     */
+    private final int[][] blockOptions, passOptions, allOptions;
+
+    /**
+     * @param sourceProbabilities   [slot][outcome] the probability of each
+     *                              source outcome
+     * @param transferProbabilities [slot][outcome] the probability that each
+     *                              source outcome is transmitted
+     * @param limit                 the maximum number of combinations to return
+     */
+    public BestFirstCombinationEnumerator(double[][] sourceProbabilities, double[][] transferProbabilities,
+            int limit) {
+        assert sourceProbabilities.length == transferProbabilities.length;
+        assert sourceProbabilities.length < Integer.SIZE;
+
+        this.sourceProbabilities = sourceProbabilities;
+        this.transferProbabilities = transferProbabilities;
+        this.limit = limit;
+        m = sourceProbabilities.length;
+
+        blockOptions = new int[m][];
+        passOptions = new int[m][];
+        allOptions = new int[m][];
+        for (int j = 0; j < m; j++) {
+            final int slot = j;
+            final int count = sourceProbabilities[j].length;
+            Comparator<Integer> byWeight = (o1, o2) -> Double.compare(getWeight(slot, o2), getWeight(slot, o1));
+            blockOptions[j] = sortOptions(IntStream.range(0, count).map(o -> 2 * o), byWeight);
+            passOptions[j] = sortOptions(IntStream.range(0, count).map(o -> 2 * o + 1), byWeight);
+            allOptions[j] = sortOptions(IntStream.range(0, 2 * count), byWeight);
+        }
+    }
+
+    private static int[] sortOptions(IntStream options, Comparator<Integer> comparator) {
+        return options.boxed().sorted(comparator).mapToInt(Integer::intValue).toArray();
+    }
+
+    private double getWeight(int slot, int option) {
+        int outcome = option >> 1;
+        double transfer = transferProbabilities[slot][outcome];
+        return sourceProbabilities[slot][outcome] * ((option & 0b1) == 1 ? transfer : 1 - transfer);
+    }
+
+    private int[] getOptions(int partition, int slot) {
+        if (slot < partition) {
+            return blockOptions[slot];
+        } else if (slot == partition) {
+            return passOptions[slot];
+        } else {
+            return allOptions[slot];
+        }
+    }
+
+    /**
+     * Compute the probability of a combination in the same order as
+     * {@link Node#getProbabilityOfSignalSet}
+     */
+    private double getProbability(int[] choices, int mask) {
+        double probability = 1;
+        for (int j = 0; j < m; j++) {
+            double transfer = transferProbabilities[j][choices[j]];
+            probability *= sourceProbabilities[j][choices[j]];
+            if (((mask >> j) & 0b1) == 1) {
+                probability *= transfer;
+            } else {
+                probability *= 1 - transfer;
+            }
+        }
+        return probability;
+    }
+
+    /**
+     * @return the most probable combinations, sorted in descending order of
+     *         probability
+     */
+    public ArrayList<Combination> enumerate() {
+        if (m == 0 || limit <= 0) {
+            return new ArrayList<>(0);
+        }
+
+        PriorityQueue<SearchState> frontier = new PriorityQueue<>(SearchState::descendingPriorityComparator);
+        for (int f = 0; f < m; f++) {
+            SearchState root = new SearchState(f, new int[m], 0);
+            if (root.isValid()) {
+                frontier.add(root);
+            }
+        }
+
+        ArrayList<Combination> found = new ArrayList<>(limit);
+        PriorityQueue<Double> best = new PriorityQueue<>(limit, Double::compare);
+
+        while (!frontier.isEmpty()) {
+            if (best.size() == limit) {
+                double threshold = best.peek();
+                if (!(threshold > 0)) {
+                    // zero probability ties can only be ordered by visiting everything
+                    return enumerateExhaustively();
+                }
+                if (frontier.peek().priority < threshold * (1 - RELATIVE_TOLERANCE)) {
+                    break;
+                }
+            }
+
+            SearchState state = frontier.poll();
+            Combination combination = state.toCombination();
+            found.add(combination);
+            best.add(combination.probability);
+            if (best.size() > limit) {
+                best.poll();
+            }
+
+            state.addSuccessors(frontier);
+        }
+
+        found.sort(Combination::enumerationOrderComparator);
+        return new ArrayList<>(found.subList(0, Math.min(limit, found.size())));
+    }
+
+    /**
+     * Visit every combination in enumeration order, keeping the most probable.
+     */
+    private ArrayList<Combination> enumerateExhaustively() {
+        ArrayList<Combination> found = new ArrayList<>(limit + 1);
+        MixedRadixCounter counter = new MixedRadixCounter(m);
+        for (int j = 0; j < m; j++) {
+            counter.setRadix(j, sourceProbabilities[j].length);
+        }
+        counter.reset(m);
+        final int[] choices = counter.getDigits();
+        final int subsetCount = 1 << m;
+
+        do {
+            for (int mask = 1; mask < subsetCount; mask++) {
+                double probability = getProbability(choices, mask);
+                if (found.size() == limit && !(probability > found.get(limit - 1).probability)) {
+                    continue;
+                }
+
+                int position = found.size();
+                while (position > 0 && found.get(position - 1).probability < probability) {
+                    position--;
+                }
+                found.add(position, new Combination(choices.clone(), mask, probability));
+                if (found.size() > limit) {
+                    found.remove(limit);
+                }
+            }
+        } while (counter.increment());
+
+        return found;
+    }
+
+    /**
+     * A single combination of incoming signals
+     */
+    public static class Combination {
+
+        /**
+         * The index of the chosen source outcome of each slot
+         */
+        public final int[] choices;
+
+        /**
+         * A bit mask of the slots which transmit
+         */
+        public final int mask;
+
+        public final double probability;
+
+        public Combination(int[] choices, int mask, double probability) {
+            this.choices = choices;
+            this.mask = mask;
+            this.probability = probability;
+        }
+
+        /**
+         * Descending probability, ties are broken by the order in which a
+         * Cartesian power product would generate the combinations.
+         */
+        public static int enumerationOrderComparator(Combination c1, Combination c2) {
+            int compare = Double.compare(c2.probability, c1.probability);
+            if (compare != 0) {
+                return compare;
+            }
+            compare = Arrays.compare(c1.choices, c2.choices);
+            if (compare != 0) {
+                return compare;
+            }
+            return Integer.compare(c1.mask, c2.mask);
+        }
+    }
+
+    /**
+     * A position in the option lattice of a single partition.
+     * Successors only advance slots at or after the pivot so every position is
+     * visited exactly once.
+     */
+    private class SearchState {
+
+        final int partition;
+        final int[] indices;
+        final int pivot;
+        final double priority;
+
+        SearchState(int partition, int[] indices, int pivot) {
+            this.partition = partition;
+            this.indices = indices;
+            this.pivot = pivot;
+            priority = isValid() ? computePriority() : 0;
+        }
+
+        boolean isValid() {
+            for (int j = 0; j < m; j++) {
+                if (indices[j] >= getOptions(partition, j).length) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        double computePriority() {
+            double weight = 1;
+            for (int j = 0; j < m; j++) {
+                weight *= getWeight(j, getOptions(partition, j)[indices[j]]);
+            }
+            return weight;
+        }
+
+        void addSuccessors(PriorityQueue<SearchState> frontier) {
+            for (int j = pivot; j < m; j++) {
+                if (indices[j] + 1 < getOptions(partition, j).length) {
+                    int[] next = indices.clone();
+                    next[j]++;
+                    frontier.add(new SearchState(partition, next, j));
+                }
+            }
+        }
+
+        Combination toCombination() {
+            int[] choices = new int[m];
+            int mask = 0;
+            for (int j = 0; j < m; j++) {
+                int option = getOptions(partition, j)[indices[j]];
+                choices[j] = option >> 1;
+                mask |= (option & 0b1) << j;
+            }
+            return new Combination(choices, mask, getProbability(choices, mask));
+        }
+
+        static int descendingPriorityComparator(SearchState s1, SearchState s2) {
+            return Double.compare(s2.priority, s1.priority);
+        }
+    }
+}
@@ -4,6 +4,8 @@ import java.security.InvalidAlgorithmParameterException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Optional;
+import java.util.function.Function;
+
 import com.lucasbrown.GraphNetwork.Global.GraphNetwork;
 import com.lucasbrown.GraphNetwork.Local.ActivationFunction;
 import com.lucasbrown.GraphNetwork.Local.Edge;
@@ -122,6 +124,34 @@ public interface INode extends Comparable<INode>, IStateRecord<Outcome>{
     public ArrayList<Outcome> getState();
     public void clearSignals();
 
+    /**
+     * @return the maximum number of outcomes this node keeps in a single timestep
+     */
+    public int getOutcomeLimit();
+
+    public void setOutcomeLimit(int outcomeLimit);
+
+    /**
+     * Create a copy of this node which belongs to another network.
+     * The replica has the same ID and shares all parameters with this node but
+     * keeps its own signals and outcomes. It has no connections until
+     * {@link #replicateConnections} is called.
+     * 
+     * @param network the network the replica belongs to
+     * @return
+     */
+    public INode replicate(GraphNetwork network);
+
+    /**
+     * Copy the connections of the original node, substituting every node for its
+     * replica. Combinators are not notified since they are shared with the
+     * original.
+     * 
+     * @param original
+     * @param replicaOf maps every node of the original network to its replica
+     */
+    public void replicateConnections(INode original, Function<INode, INode> replicaOf);
+
     public static int CompareNodes(INode n1, INode n2) {
         return n1.getID() - n2.getID();
     }
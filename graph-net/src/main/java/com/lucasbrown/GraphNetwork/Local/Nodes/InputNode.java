@@ -2,6 +2,7 @@ package com.lucasbrown.GraphNetwork.Local.Nodes;
 
 import java.util.ArrayList;
 
+import com.lucasbrown.GraphNetwork.Global.GraphNetwork;
 import com.lucasbrown.GraphNetwork.Local.Edge;
 import com.lucasbrown.GraphNetwork.Local.Outcome;
 
@@ -54,6 +55,11 @@ public class InputNode extends NodeWrapper implements IInputNode {
         return outcome;
     }
 
+    @Override
+    public INode replicate(GraphNetwork network) {
+        return new InputNode(wrappingNode.replicate(network));
+    }
+
     @Override
     public boolean addIncomingConnection(Edge connection) {
         throw new UnsupportedOperationException("Input nodes are not allowed to have any incoming connections.");
@@ -3,20 +3,25 @@ package com.lucasbrown.GraphNetwork.Local.Nodes;
 import java.security.InvalidAlgorithmParameterException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Random;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.IntStream;
 
 import com.lucasbrown.GraphNetwork.Global.GraphNetwork;
 import com.lucasbrown.GraphNetwork.Local.ActivationFunction;
 import com.lucasbrown.GraphNetwork.Local.Edge;
 import com.lucasbrown.GraphNetwork.Local.Outcome;
 import com.lucasbrown.GraphNetwork.Local.Signal;
+import com.lucasbrown.GraphNetwork.Local.Filters.IFilter;
 import com.lucasbrown.GraphNetwork.Local.Nodes.ProbabilityCombinators.IProbabilityCombinator;
+import com.lucasbrown.GraphNetwork.Local.Nodes.ValueCombinators.CombinatorMissalignmentException;
 import com.lucasbrown.GraphNetwork.Local.Nodes.ValueCombinators.IValueCombinator;
 import com.lucasbrown.GraphNetwork.Local.Nodes.ValueCombinators.AdditiveValueCombinator;
 import com.lucasbrown.HelperClasses.IterableTools;
@@ -26,7 +31,7 @@ public class Node implements INode{
 
     // TODO: remove hard-coded value
     private static double ZERO_THRESHOLD = 1E-12;
-    private static final int CATASTROPHE_LIMIT = 10;
+    public static final int CATASTROPHE_LIMIT = 10;
 
     protected final Random rng = new Random();
 
@@ -63,11 +68,13 @@ public class Node implements INode{
     private int numInputCombinations;
 
     /**
-     * Forward-training signals
+     * Forward-training signals.
+     * Signals may be delivered from several threads at once when the network
+     * steps in parallel, but each list is only ever appended to by its sender.
      */
-    protected HashMap<Integer, ArrayList<Signal>> forward, forwardNext;
+    protected ConcurrentHashMap<Integer, ArrayList<Signal>> forward, forwardNext;
 
-    protected HashSet<Integer> uniqueIncomingNodeIDs;
+    protected Set<Integer> uniqueIncomingNodeIDs;
 
     /**
      * Maps all incoming node ID's to an int from 0 to the number of incoming nodes
@@ -77,6 +84,11 @@ public class Node implements INode{
 
     protected ArrayList<Outcome> outcomes;
 
+    /**
+     * The maximum number of outcomes to keep in a single timestep
+     */
+    private int outcomeLimit = CATASTROPHE_LIMIT;
+
     protected boolean hasValidForwardSignal;
     
     private final IValueCombinator valueCombinator;
@@ -94,10 +106,34 @@ public class Node implements INode{
         orderedIDMap = new HashMap<>();
         numInputCombinations = 1;
 
-        uniqueIncomingNodeIDs = new HashSet<>();
+        uniqueIncomingNodeIDs = ConcurrentHashMap.newKeySet();
         outcomes = new ArrayList<>();
-        forward = new HashMap<>();
-        forwardNext = new HashMap<>();
+        forward = new ConcurrentHashMap<>();
+        forwardNext = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Create a replica of the original node
+     * 
+     * @see INode#replicate
+     */
+    protected Node(Node original, GraphNetwork network) {
+        id = original.id;
+        name = original.name;
+        this.network = Objects.requireNonNull(network);
+        activationFunction = original.activationFunction;
+        valueCombinator = original.valueCombinator;
+        probabilityCombinator = original.probabilityCombinator;
+        incoming = new ArrayList<Edge>(original.incoming.size());
+        outgoing = new ArrayList<Edge>(original.outgoing.size());
+        orderedIDMap = new HashMap<>(original.orderedIDMap);
+        numInputCombinations = original.numInputCombinations;
+        outcomeLimit = original.outcomeLimit;
+
+        uniqueIncomingNodeIDs = ConcurrentHashMap.newKeySet();
+        outcomes = new ArrayList<>();
+        forward = new ConcurrentHashMap<>();
+        forwardNext = new ConcurrentHashMap<>();
     }
 
     @Override
@@ -233,14 +269,7 @@ public class Node implements INode{
 
     private void appendForward(Signal signal) {
         int signal_id = orderedIDMap.get(signal.getSendingID());
-        ArrayList<Signal> signals = forwardNext.get(signal_id);
-        if (signals == null) {
-            signals = new ArrayList<Signal>(1);
-            signals.add(signal);
-            forwardNext.put(signal_id, signals);
-        } else {
-            signals.add(signal);
-        }
+        forwardNext.computeIfAbsent(signal_id, _1 -> new ArrayList<Signal>(1)).add(signal);
         uniqueIncomingNodeIDs.add(signal.getSendingID());
     }
 
@@ -293,90 +322,195 @@ public class Node implements INode{
 
         hasValidForwardSignal = true;
         forward = forwardNext;
-        forwardNext = new HashMap<>();
+        forwardNext = new ConcurrentHashMap<>();
         combinePossibilities();
     }
 
 
     /**
-     * Create ALL the possible combinations of outcomes for the incoming signals
+     * Create the most probable combinations of outcomes for the incoming signals.
+     * Combinations are enumerated best-first and so only the top
+     * {@link #outcomeLimit}, or the beam width of the network, are ever
+     * constructed.
      */
     private void combinePossibilities() {
+        ArrayList<ArrayList<Signal>> incomingSignals = getIncomingSignalsInKeyOrder();
+        final int m = incomingSignals.size();
+
+        int rootKey = 0;
+        int[] slotBits = new int[m];
+        for (int j = 0; j < m; j++) {
+            slotBits[j] = orderedIDMap.get(incomingSignals.get(j).get(0).getSendingID());
+            rootKey |= slotBits[j];
+        }
 
-        ArrayList<Pair<ArrayList<Signal>, ArrayList<Signal>>> signalPowerSet = IterableTools
-                .flatCartesianPowerProductPair(forward.values());
+        IFilter[] filters = probabilityCombinator.getFilters(rootKey);
+        if (filters.length != m) {
+            throw new CombinatorMissalignmentException("Filters do not fit the number of incoming signals.");
+        }
+        double[][] sourceProbabilities = new double[m][];
+        double[][] transferProbabilities = new double[m][];
+        double[][] logSendProbabilities = new double[m][];
+        double[][] logBlockProbabilities = new double[m][];
+        for (int j = 0; j < m; j++) {
+            ArrayList<Signal> signals = incomingSignals.get(j);
+            sourceProbabilities[j] = new double[signals.size()];
+            transferProbabilities[j] = new double[signals.size()];
+            logSendProbabilities[j] = new double[signals.size()];
+            logBlockProbabilities[j] = new double[signals.size()];
+            for (int o = 0; o < signals.size(); o++) {
+                Signal signal = signals.get(o);
+                sourceProbabilities[j][o] = signal.getSourceProbability();
+                transferProbabilities[j][o] = signal.getOutputStrength();
+                logSendProbabilities[j][o] = filters[j].getLogChanceToSend(signal.getOutputStrength());
+                logBlockProbabilities[j][o] = filters[j].getLogChanceToBlock(signal.getOutputStrength());
+            }
+            // every outcome of the same source passes through the same filter
+            filters[j].getChanceToSend(transferProbabilities[j], transferProbabilities[j], signals.size());
+        }
 
-        
-        signalPowerSet.stream().forEach(pair -> 
-            {
-                pair.u = sortSignalByID(pair.u);
-                pair.v = sortSignalByID(pair.v);
-            });
+        // a network-wide beam replaces the limit of each node
+        int limit = network.getBeamWidth() > 0 ? network.getBeamWidth() : outcomeLimit;
+        ArrayList<BestFirstCombinationEnumerator.Combination> combinations = new BestFirstCombinationEnumerator(
+                sourceProbabilities, transferProbabilities, limit).enumerate();
+
+        double[] netValues = computeNetValues(combinations, incomingSignals, slotBits);
+        double[] activatedValues = new double[netValues.length];
+        activationFunction.activator(netValues, activatedValues, netValues.length);
+
+        // the filters are never evaluated again for the outcomes themselves
+        outcomes = new ArrayList<>(combinations.size());
+        for (int i = 0; i < combinations.size(); i++) {
+            BestFirstCombinationEnumerator.Combination combination = combinations.get(i);
+            Outcome outcome = signalSetToOutcome(combinationToSignalSets(combination, incomingSignals));
+            outcome.binary_string = getKeyOf(combination.mask, slotBits);
+            outcome.root_bin_str = rootKey;
+            outcome.netValue = netValues[i];
+            outcome.activatedValue = activatedValues[i];
+            outcome.probability = combination.probability;
+
+            outcome.sourceTransferProbabilities = new double[m];
+            double logProbability = 0;
+            for (int j = 0; j < m; j++) {
+                int o = combination.choices[j];
+                outcome.sourceTransferProbabilities[j] = transferProbabilities[j][o];
+                logProbability += incomingSignals.get(j).get(o).sourceOutcome.getLogProbability();
+                logProbability += ((combination.mask >> j) & 0b1) == 1 ? logSendProbabilities[j][o]
+                        : logBlockProbabilities[j][o];
+            }
+            outcome.logProbability = logProbability;
+            outcomes.add(outcome);
+        }
 
-        outcomes = signalPowerSet.stream()
-                .filter(set -> !set.u.isEmpty()) // remove the null set
-                .map(this::signalSetToOutcome)
-                // .filter(outcome -> outcome.probability > ZERO_THRESHOLD)
-                .sorted(Outcome::descendingProbabilitiesComparator)
-                .limit(CATASTROPHE_LIMIT)
-                .collect(Collectors.toCollection(ArrayList::new));
-
-        // assertion to make sure all references to previous nodes are maintained
-        // for(Outcome outcome: outcomes){
-        //     if(outcome.sourceOutcomes == null){
-        //         continue;
-        //     }
-        //     for(int i = 0 ; i < outcome.sourceOutcomes.length; i++){
-        //         boolean containsReference = false;
-        //         List<Outcome> sourceOutcomes = forward.get(getIndexOfIncomingNode(outcome.sourceNodes[i])).stream().map(signal -> signal.sourceOutcome).toList();
-        //         for(Outcome so : sourceOutcomes){
-        //             containsReference |= outcome.sourceOutcomes[i] == so;
-        //         }
-        //         assert containsReference;
-        //     }
-        // }
-
-
-        // assert outcomes.stream().mapToDouble(outcome -> outcome.probability).sum() <= 1
-        //         : "Sum of all outcome probabilities must be equal to or less than 1. \nProbability sum = "
-        //                 + outcomes.stream().mapToDouble(outcome -> outcome.probability).sum();
+        if (network.getMergeTolerance() >= 0) {
+            outcomes = OutcomeMerger.merge(outcomes, network.getMergeTolerance());
+        }
+    }
 
+    /**
+     * @return the incoming signals grouped by sending node in ascending order of
+     *         their key bit
+     */
+    private ArrayList<ArrayList<Signal>> getIncomingSignalsInKeyOrder() {
+        ArrayList<ArrayList<Signal>> incomingSignals = new ArrayList<>(forward.size());
+        forward.keySet().stream().sorted().forEach(bit -> incomingSignals.add(forward.get(bit)));
+        return incomingSignals;
     }
+
     /**
-     * Creates and fills the fields of a new outcome object for a given set of
+     * Compute the net value of every combination. Additive combinators merge all
+     * combinations which transmit the same signals in a single batch.
+     * 
+     * @return the net value of each combination in order
+     */
+    private double[] computeNetValues(ArrayList<BestFirstCombinationEnumerator.Combination> combinations,
+            ArrayList<ArrayList<Signal>> incomingSignals, int[] slotBits) {
+        final int count = combinations.size();
+        final int m = incomingSignals.size();
+        double[] netValues = new double[count];
+
+        if (!(valueCombinator instanceof AdditiveValueCombinator)) {
+            for (int i = 0; i < count; i++) {
+                BestFirstCombinationEnumerator.Combination combination = combinations.get(i);
+                netValues[i] = valueCombinator.computeMergedSignalStrength(
+                        combinationToSignalSets(combination, incomingSignals).u, getKeyOf(combination.mask, slotBits));
+            }
+            return netValues;
+        }
+        AdditiveValueCombinator additive = (AdditiveValueCombinator) valueCombinator;
+
+        // visit the combinations grouped by the slots which transmit
+        int[] order = IntStream.range(0, count)
+                .boxed()
+                .sorted(Comparator.comparingInt(i -> combinations.get(i).mask))
+                .mapToInt(Integer::intValue)
+                .toArray();
+
+        double[] signals = new double[count * m];
+        double[] strengths = new double[count];
+        int start = 0;
+        while (start < count) {
+            final int mask = combinations.get(order[start]).mask;
+            int end = start;
+            int s = 0;
+            while (end < count && combinations.get(order[end]).mask == mask) {
+                int[] choices = combinations.get(order[end]).choices;
+                for (int j = 0; j < m; j++) {
+                    if (((mask >> j) & 0b1) == 1) {
+                        signals[s++] = incomingSignals.get(j).get(choices[j]).getOutputStrength();
+                    }
+                }
+                end++;
+            }
+
+            additive.computeMergedSignalStrengths(getKeyOf(mask, slotBits), signals, strengths, end - start);
+            for (int i = start; i < end; i++) {
+                netValues[order[i]] = strengths[i - start];
+            }
+            start = end;
+        }
+        return netValues;
+    }
+
+    /**
+     * @param mask     a bit mask of the transmitting slots
+     * @param slotBits the key bit of each slot
+     * @return the key of the transmitting slots
+     */
+    private static int getKeyOf(int mask, int[] slotBits) {
+        int key = 0;
+        for (int j = 0; j < slotBits.length; j++) {
+            if (((mask >> j) & 0b1) == 1) {
+                key |= slotBits[j];
+            }
+        }
+        return key;
+    }
+
+    private static Pair<List<Signal>, List<Signal>> combinationToSignalSets(
+            BestFirstCombinationEnumerator.Combination combination, ArrayList<ArrayList<Signal>> incomingSignals) {
+        List<Signal> all = IterableTools.selectionView(incomingSignals, combination.choices);
+        return new Pair<>(IterableTools.maskedView(all, combination.mask), all);
+    }
+
+    /**
+     * Creates a new outcome object and fills in the lineage of a given set of
      * incoming signals
      * 
-     * @param signalSet
+     * @param setPair the transmitted signals and all signals of the combination
      * @return
      */
     private Outcome signalSetToOutcome(Pair<? extends Collection<Signal>, ? extends Collection<Signal>> setPair) {
         Outcome outcome = new Outcome();
 
-        // sorting by id to ensure that the weights are applied to the correct
-        // node/signal
         Collection<Signal> signalSet = setPair.u;
-        List<INode> nodeSet = signalSet.stream().map(signal -> signal.sendingNode).toList();
         outcome.node = this;
-        outcome.binary_string = nodeSetToBinStr(nodeSet);
-        outcome.sourceTransferProbabilities = getTransferProbabilities(setPair.v);
-        outcome.netValue = valueCombinator.computeMergedSignalStrength(signalSet, outcome.binary_string);
-        outcome.activatedValue = activationFunction.activator(outcome.netValue);
-        outcome.probability = getProbabilityOfSignalSet(signalSet, setPair.v, outcome.binary_string, outcome.sourceTransferProbabilities);
         outcome.sourceKeys = signalSet.stream().mapToInt(Signal::getSourceKey).toArray();
         outcome.sourceOutcomes = outcomesFromSignal(signalSet);
-
-        outcome.root_bin_str = nodeSetToBinStr(setPair.v.stream().map(signal -> signal.sendingNode).toList());
         outcome.allRootOutcomes = outcomesFromSignal(setPair.v);
         return outcome;
     }
 
-    private double[] getTransferProbabilities(Collection<Signal> signals) {
-        signals = sortSignalByID(signals);
-        int key = nodeSetToBinStr(signals.stream().map(Signal::getSendingNode).toList());
-        double[] transferProbs = probabilityCombinator.getTransferProbabilities(signals, key);
-        return transferProbs;
-    }
-
 
     public double getProbabilityOfSignalSet(Collection<Signal> signalSet, Collection<Signal> allSendingSignals, int binstr, double[] transferProbs) {
         double probability = 1;
@@ -429,6 +563,31 @@ public class Node implements INode{
         return i1 - i2;
     }
 
+    @Override
+    public int getOutcomeLimit() {
+        return outcomeLimit;
+    }
+
+    @Override
+    public void setOutcomeLimit(int outcomeLimit) {
+        this.outcomeLimit = outcomeLimit;
+    }
+
+    @Override
+    public INode replicate(GraphNetwork network) {
+        return new Node(this, network);
+    }
+
+    @Override
+    public void replicateConnections(INode original, Function<INode, INode> replicaOf) {
+        for (Edge connection : original.getAllIncomingConnections()) {
+            incoming.add(new Edge(replicaOf.apply(connection.sending), replicaOf.apply(connection.recieving)));
+        }
+        for (Edge connection : original.getAllOutgoingConnections()) {
+            outgoing.add(new Edge(replicaOf.apply(connection.sending), replicaOf.apply(connection.recieving)));
+        }
+    }
+
     @Override
     public void clearSignals() {
         hasValidForwardSignal = false;
@@ -4,6 +4,7 @@ import java.security.InvalidAlgorithmParameterException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Optional;
+import java.util.function.Function;
 
 import com.lucasbrown.GraphNetwork.Global.GraphNetwork;
 import com.lucasbrown.GraphNetwork.Local.ActivationFunction;
@@ -149,6 +150,25 @@ public class NodeWrapper implements INode {
         wrappingNode.clearSignals();
     }
 
+    @Override
+    public int getOutcomeLimit() {
+        return wrappingNode.getOutcomeLimit();
+    }
+
+    @Override
+    public void setOutcomeLimit(int outcomeLimit) {
+        wrappingNode.setOutcomeLimit(outcomeLimit);
+    }
+
+    @Override
+    public INode replicate(GraphNetwork network) {
+        return new NodeWrapper(wrappingNode.replicate(network));
+    }
+
+    @Override
+    public void replicateConnections(INode original, Function<INode, INode> replicaOf) {
+        wrappingNode.replicateConnections(original, replicaOf);
+    }
 
     @Override
     public int compareTo(INode o) {
@@ -0,0 +1,126 @@
+package com.lucasbrown.GraphNetwork.Local.Nodes;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+import com.lucasbrown.GraphNetwork.Local.Outcome;
+
+/**
+ * Mixture reduction of the outcomes of a single node.
+ *
+ * Outcomes which share a key and whose activated values lie within a tolerance
+ * of each other are collapsed into one outcome carrying their combined
+ * probability and probability-weighted values. The lineage of the merged
+ * outcome is that of its most probable component, while every component is
+ * kept in {@link Outcome#mergedOutcomes} so that gradients can still be
+ * distributed over all of them.
+ */
+public class OutcomeMerger {
+
+    private OutcomeMerger() {
+    }
+
+    /**
+     * @param outcomes  the outcomes of a single node
+     * @param tolerance the largest difference in activated value between the
+     *                  first (smallest) outcome of a cluster and any other member
+     * @return the reduced outcomes, each at the position of its most probable
+     *         component in the original list
+     */
+    public static ArrayList<Outcome> merge(List<Outcome> outcomes, double tolerance) {
+        if (outcomes.size() < 2) {
+            return new ArrayList<>(outcomes);
+        }
+
+        HashMap<Integer, ArrayList<Integer>> groups = new HashMap<>();
+        for (int i = 0; i < outcomes.size(); i++) {
+            groups.computeIfAbsent(outcomes.get(i).binary_string, key -> new ArrayList<>()).add(i);
+        }
+
+        Outcome[] merged = new Outcome[outcomes.size()];
+        for (ArrayList<Integer> group : groups.values()) {
+            group.sort(Comparator.comparingDouble((Integer i) -> outcomes.get(i).activatedValue)
+                    .thenComparingInt(i -> i));
+
+            int start = 0;
+            while (start < group.size()) {
+                double anchor = outcomes.get(group.get(start)).activatedValue;
+                int end = start + 1;
+                while (end < group.size() && outcomes.get(group.get(end)).activatedValue - anchor <= tolerance) {
+                    end++;
+                }
+                List<Integer> cluster = group.subList(start, end);
+                int representative = getRepresentative(outcomes, cluster);
+                merged[representative] = cluster.size() == 1 ? outcomes.get(representative)
+                        : mergeCluster(outcomes, cluster, representative);
+                start = end;
+            }
+        }
+
+        ArrayList<Outcome> reduced = new ArrayList<>();
+        for (Outcome outcome : merged) {
+            if (outcome != null) {
+                reduced.add(outcome);
+            }
+        }
+        return reduced;
+    }
+
+    /**
+     * @return the index of the most probable outcome of the cluster, the earliest
+     *         on ties
+     */
+    private static int getRepresentative(List<Outcome> outcomes, List<Integer> cluster) {
+        int best = cluster.get(0);
+        for (int i : cluster) {
+            double logProbability = outcomes.get(i).getLogProbability();
+            double bestLogProbability = outcomes.get(best).getLogProbability();
+            if (logProbability > bestLogProbability || (logProbability == bestLogProbability && i < best)) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private static Outcome mergeCluster(List<Outcome> outcomes, List<Integer> cluster, int representative) {
+        Outcome rep = outcomes.get(representative);
+        Outcome[] components = cluster.stream().map(outcomes::get).toArray(Outcome[]::new);
+
+        // log-sum-exp relative to the most probable component
+        double maxLog = rep.getLogProbability();
+        double scaledTotal = 0;
+        double probability = 0;
+        for (Outcome component : components) {
+            probability += component.probability;
+            scaledTotal += Math.exp(component.getLogProbability() - maxLog);
+        }
+        double logProbability = maxLog == Double.NEGATIVE_INFINITY ? maxLog : maxLog + Math.log(scaledTotal);
+
+        double netValue = 0;
+        double activatedValue = 0;
+        for (Outcome component : components) {
+            // impossible components are averaged evenly
+            double share = maxLog == Double.NEGATIVE_INFINITY ? 1d / components.length
+                    : Math.exp(component.getLogProbability() - logProbability);
+            netValue += share * component.netValue;
+            activatedValue += share * component.activatedValue;
+        }
+
+        Outcome outcome = new Outcome();
+        outcome.node = rep.node;
+        outcome.binary_string = rep.binary_string;
+        outcome.netValue = netValue;
+        outcome.activatedValue = activatedValue;
+        outcome.probability = probability;
+        outcome.logProbability = logProbability;
+        outcome.sourceTransferProbabilities = rep.sourceTransferProbabilities;
+        outcome.sourceKeys = rep.sourceKeys;
+        outcome.sourceOutcomes = rep.sourceOutcomes;
+        outcome.root_bin_str = rep.root_bin_str;
+        outcome.allRootOutcomes = rep.allRootOutcomes;
+        outcome.mergedOutcomes = components;
+        return outcome;
+    }
+}
@@ -1,5 +1,11 @@
 package com.lucasbrown.GraphNetwork.Local.Nodes;
 
+import java.util.ArrayList;
+
+import com.lucasbrown.GraphNetwork.Global.GraphNetwork;
+import com.lucasbrown.GraphNetwork.Local.Outcome;
+import com.lucasbrown.NetworkTraining.OutputDerivatives.IGradient;
+
 /**
  * A node which exposes it's value 
  */
@@ -13,12 +19,23 @@ public class OutputNode extends NodeWrapper implements IOutputNode {
      * Get the value of this node
      * The caller should first verify if this node is active using {@code isActive}
      * or get the value using {@code getValueOrNull}
-     * 
-     * @return
+     *
+     * @return the expected activated value over all outcomes of this node
      */
     @Override
     public double getValue() {
-        return 0; // TODO: fix this
+        // weighted in log space so that underflowing outcomes still count
+        ArrayList<Outcome> outcomes = getState();
+        double logProbabilityVolume = IGradient.getLogProbabilityVolume(outcomes);
+        if (logProbabilityVolume == Double.NEGATIVE_INFINITY) {
+            return 0;
+        }
+
+        double expectation = 0;
+        for (Outcome outcome : outcomes) {
+            expectation += IGradient.getNormalizedProbability(outcome, logProbabilityVolume) * outcome.activatedValue;
+        }
+        return expectation;
     }
 
     /**
@@ -27,7 +44,12 @@ public class OutputNode extends NodeWrapper implements IOutputNode {
      */
     @Override
     public Double getValueOrNull() {
-        return hasValidForwardSignal() ? 0d : null;
+        return hasValidForwardSignal() ? getValue() : null;
+    }
+
+    @Override
+    public INode replicate(GraphNetwork network) {
+        return new OutputNode(wrappingNode.replicate(network));
     }
 
 }
@@ -53,6 +53,11 @@ public class ComplexProbabilityCombinator extends DirectProbabilityCombinator {
         return Arrays.copyOf(fitler, fitler.length);
     }
 
+    @Override
+    public int getNumberOfFilters() {
+        return numFilters;
+    }
+
     @Override
     public IFilter[] getAllFilters() {
         IFilter[] flat = new IFilter[numFilters];
@@ -17,6 +17,13 @@ public interface IProbabilityCombinator {
 
     public IFilter[] getAllFilters();
 
+    /**
+     * @return the number of filters returned by {@link #getAllFilters()}
+     */
+    public default int getNumberOfFilters() {
+        return getAllFilters().length;
+    }
+
     /**
      * Sets the transfer probability of each signal based on its activated strength. 
      * @param signals 
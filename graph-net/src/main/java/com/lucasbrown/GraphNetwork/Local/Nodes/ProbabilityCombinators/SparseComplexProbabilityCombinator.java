@@ -0,0 +1,120 @@
+package com.lucasbrown.GraphNetwork.Local.Nodes.ProbabilityCombinators;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+import com.lucasbrown.GraphNetwork.Local.Filters.IFilter;
+import com.lucasbrown.GraphNetwork.Local.Nodes.ValueCombinators.CombinatorMissalignmentException;
+import com.lucasbrown.HelperClasses.Structs.KeyIndexTable;
+
+/**
+ * Like {@link ComplexProbabilityCombinator}, a separate filter for each signal
+ * of every combination of incoming connections, except that the filters of a
+ * combination are only created the first time its key is evaluated.
+ *
+ * {@link #getAllFilters()} lists the filters in the order they were created,
+ * so filters created later are always appended to the end. New filters hold
+ * their own parameters until the network's parameter store is rebuilt.
+ *
+ * Looking up the filters of an existing combination never locks, only
+ * creating them does.
+ */
+public class SparseComplexProbabilityCombinator extends DirectProbabilityCombinator {
+
+    /**
+     * The filters of each key in order of creation. A snapshot is never
+     * modified once published, new filters replace it with a copy.
+     */
+    private static class Rows {
+        private final KeyIndexTable keys;
+        private final IFilter[][] filters;
+        private final IFilter[] allFilters;
+
+        private Rows(KeyIndexTable keys, IFilter[][] filters, IFilter[] allFilters) {
+            this.keys = keys;
+            this.filters = filters;
+            this.allFilters = allFilters;
+        }
+    }
+
+    private volatile Rows rows;
+
+    protected int numInputs = 0;
+
+    public SparseComplexProbabilityCombinator(Supplier<IFilter> filterSupplier) {
+        super(filterSupplier);
+        rows = new Rows(new KeyIndexTable(), new IFilter[0][], new IFilter[0]);
+    }
+
+    @Override
+    public void notifyNewIncomingConnection() {
+        if (++numInputs >= Integer.SIZE) {
+            throw new CombinatorMissalignmentException("Keys cannot represent more than 31 incoming connections.");
+        }
+    }
+
+    /**
+     * @return the number of combinations which have been evaluated
+     */
+    public int getNumberOfCombinations() {
+        return rows.keys.size();
+    }
+
+    /**
+     * @param key
+     * @return whether the filters of the combination have been created
+     */
+    public boolean hasCombination(int key) {
+        return rows.keys.indexOf(key) >= 0;
+    }
+
+    private IFilter[] getRow(int key) {
+        Rows current = rows;
+        int row = current.keys.indexOf(key);
+        if (row >= 0) {
+            return current.filters[row];
+        }
+        return addRow(key);
+    }
+
+    private synchronized IFilter[] addRow(int key) {
+        Rows current = rows;
+        int row = current.keys.indexOf(key);
+        if (row >= 0) {
+            // created by another thread since the lookup
+            return current.filters[row];
+        }
+
+        IFilter[] newRow = new IFilter[Integer.bitCount(key)];
+        IFilter[] allFilters = Arrays.copyOf(current.allFilters, current.allFilters.length + newRow.length);
+        for (int i = 0; i < newRow.length; i++) {
+            newRow[i] = filterSupplier.get();
+            allFilters[current.allFilters.length + i] = newRow[i];
+        }
+
+        KeyIndexTable keys = new KeyIndexTable(current.keys);
+        row = keys.add(key);
+        IFilter[][] filters = Arrays.copyOf(current.filters, row + 1);
+        filters[row] = newRow;
+
+        rows = new Rows(keys, filters, allFilters);
+        return newRow;
+    }
+
+    @Override
+    public IFilter[] getFilters(int key) {
+        IFilter[] row = getRow(key);
+        return Arrays.copyOf(row, row.length);
+    }
+
+    @Override
+    public IFilter[] getAllFilters() {
+        return rows.allFilters.clone();
+    }
+
+    @Override
+    public int getNumberOfFilters() {
+        return rows.allFilters.length;
+    }
+
+}
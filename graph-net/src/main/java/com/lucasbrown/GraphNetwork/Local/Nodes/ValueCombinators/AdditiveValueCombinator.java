@@ -5,6 +5,7 @@ import java.util.Iterator;
 import java.util.NoSuchElementException;
 
 import com.lucasbrown.GraphNetwork.Local.Signal;
+import com.lucasbrown.HelperClasses.Kernels.BatchKernels;
 
 public abstract class AdditiveValueCombinator implements ITrainableValueCombinator {
     
@@ -19,17 +20,16 @@ public abstract class AdditiveValueCombinator implements ITrainableValueCombinat
     public double computeMergedSignalStrength(Collection<Signal> incomingSignals, int binary_string) {
 
         double strength = getBias(binary_string);
-        double[] weights_of_signals = getWeights(binary_string);
+        int binCount = Integer.bitCount(binary_string);
 
         Iterator<Signal> signalIterator = incomingSignals.iterator();
         try{
-            for (int i = 0; i < weights_of_signals.length; i++) {
-                strength += signalIterator.next().getOutputStrength() * weights_of_signals[i];
+            for (int i = 0; i < binCount; i++) {
+                strength += signalIterator.next().getOutputStrength() * getWeight(binary_string, i);
             }
-        } catch(NoSuchElementException e){
+        } catch(NoSuchElementException | IndexOutOfBoundsException e){
             // check to see if the cause is the binary string or the weights
-            int binCount = Integer.bitCount(binary_string);
-            if(binCount != weights_of_signals.length){
+            if(binCount != getWeights(binary_string).length){
                 throw new CombinatorMissalignmentException("Number of weights does not equal the number of input combinations indicated by the binary string.", e);
             }
             else if(binCount != incomingSignals.size()){
@@ -44,4 +44,28 @@ public abstract class AdditiveValueCombinator implements ITrainableValueCombinat
         assert Double.isFinite(strength);
         return strength;
     }
+
+    /**
+     * Compute the merged signal strength of many outcomes which share the same
+     * input combination at once
+     * 
+     * @param binary_string the binary string corresponding to the input combination
+     * @param signals       the output strength of each outcome's signals in
+     *                      order, one outcome after another
+     * @param strengths     the array the merged strengths are written to, may be
+     *                      the same array as signals
+     * @param count         the number of outcomes
+     */
+    public void computeMergedSignalStrengths(int binary_string, double[] signals, double[] strengths, int count) {
+        int binCount = Integer.bitCount(binary_string);
+        if (signals.length < binCount * count) {
+            throw new CombinatorMissalignmentException("Number of signals does not equal the number of input combinations indicated by the binary string.");
+        }
+
+        double[] weights = new double[binCount];
+        for (int i = 0; i < binCount; i++) {
+            weights[i] = getWeight(binary_string, i);
+        }
+        BatchKernels.get().linearCombination(signals, weights, getBias(binary_string), binCount, strengths, count);
+    }
 }
@@ -3,11 +3,29 @@ package com.lucasbrown.GraphNetwork.Local.Nodes.ValueCombinators;
 import java.util.Arrays;
 import java.util.Random;
 
+import com.lucasbrown.GraphNetwork.Local.ParameterView;
+
+/**
+ * Holds a separate set of weights and a bias for every combination of
+ * incoming connections.
+ * All variables are stored flat in linearized order: the weights of every key
+ * followed by the bias of every key.
+ */
 public class ComplexCombinator extends AdditiveValueCombinator {
 
-    protected double[][] weights;
-    protected double[] biases;
+    protected ParameterView variables;
 
+    /**
+     * The linear index of the first weight of each key
+     */
+    protected int[] weightOffsets;
+
+    /**
+     * The bias used when no signals are recieved. This is not trainable.
+     */
+    protected double emptyBias;
+
+    protected int numKeys = 1;
     protected int numWeights = 0;
 
     private Random rng;
@@ -18,9 +36,8 @@ public class ComplexCombinator extends AdditiveValueCombinator {
 
     public ComplexCombinator(Random random){
         rng = random;
-        weights = new double[1][1];
-        biases = new double[1];
-        weights[0] = new double[0];
+        variables = new ParameterView();
+        weightOffsets = new int[] { 0 };
     }
 
     @Override
@@ -32,57 +49,80 @@ public class ComplexCombinator extends AdditiveValueCombinator {
      * Adds another layer of depth to the weights and biases hyper array
      */
     private void appendWeightsAndBiases() {
-        final int old_size = biases.length;
+        final int old_size = numKeys;
         final int new_size = old_size * 2;
+        final int old_numWeights = numWeights;
 
-        // the first half doesn't need to be changed
-        biases = Arrays.copyOf(biases, new_size);
-        weights = Arrays.copyOf(weights, new_size);
-
+        int[] newWeightOffsets = Arrays.copyOf(weightOffsets, new_size + 1);
         numWeights += numWeights + old_size;
+        for (int key = old_size; key < new_size; key++) {
+            newWeightOffsets[key] = newWeightOffsets[key - 1] + Integer.bitCount(key - 1);
+        }
+        newWeightOffsets[new_size] = numWeights;
+
+        double[] newVariables = new double[numWeights + new_size - 1];
+
+        // the first half doesn't need to be changed
+        variables.copyTo(0, newVariables, 0, old_numWeights);
+        variables.copyTo(old_numWeights, newVariables, numWeights, old_size - 1);
 
         // the second half needs entirely new data
-        for (int i = old_size; i < new_size; i++) {
-            biases[i] = rng.nextDouble();
+        for (int key = old_size; key < new_size; key++) {
+            newVariables[numWeights + key - 1] = rng.nextDouble();
 
             // populate the weights array
-            int count = weights[i - old_size].length + 1;
-            weights[i] = new double[count];
+            int count = Integer.bitCount(key);
             for (int j = 0; j < count; j++) {
-                weights[i][j] = rng.nextDouble();
+                newVariables[newWeightOffsets[key] + j] = rng.nextDouble();
             }
         }
+
+        numKeys = new_size;
+        weightOffsets = newWeightOffsets;
+        // the variables no longer fit in any shared buffer
+        variables = new ParameterView(newVariables);
     }
 
     @Override
     public double[] getWeights(int bitStr) {
-        return weights[bitStr].clone(); // A shallow clone is okay here
+        double[] weights = new double[Integer.bitCount(bitStr)];
+        if (bitStr != 0) {
+            variables.copyTo(weightOffsets[bitStr], weights, 0, weights.length);
+        }
+        return weights;
+    }
+
+    @Override
+    public double getWeight(int bitStr, int index) {
+        assert index < Integer.bitCount(bitStr);
+        return variables.get(weightOffsets[bitStr] + index);
     }
 
     @Override
     public double getBias(int bitStr) {
-        return biases[bitStr];
+        return bitStr == 0 ? emptyBias : variables.get(getLinearIndexOfBias(bitStr));
     }
 
     @Override
     public void setWeights(int bitStr, double[] newWeights) {
-        assert newWeights.length == weights[bitStr].length;
-        weights[bitStr] = newWeights;
+        assert newWeights.length == Integer.bitCount(bitStr);
+        for (int i = 0; i < newWeights.length; i++) {
+            variables.set(weightOffsets[bitStr] + i, newWeights[i]);
+        }
     }
 
     @Override
     public void setBias(int bitStr, double newBias) {
-        biases[bitStr] = newBias;
+        if (bitStr == 0) {
+            emptyBias = newBias;
+        } else {
+            variables.set(getLinearIndexOfBias(bitStr), newBias);
+        }
     }
 
     @Override
     public int getLinearIndexOfWeight(int key, int weight_index) {
-        // may be a closed form
-        int index = 0;
-        for (int i = 1; i < key; i++) {
-            index += weights[i].length;
-        }
-        return index + weight_index;
+        return weightOffsets[key] + weight_index;
     }
 
     @Override
@@ -93,77 +133,32 @@ public class ComplexCombinator extends AdditiveValueCombinator {
 
     @Override
     public void applyDelta(double[] gradient) {
-        if (weights.length == 1) { 
-            return; // no connections and no gradient
-        }
-
-        int i = 0;
-        int key = 1;
-        int linear_index = 0;
-        while (key < weights.length) {
-            weights[key][i] -= gradient[linear_index];
-            i++;
-            linear_index++;
-            if (i >= weights[key].length) {
-                i = 0;
-                key++;
-            }
-        }
-
-        for (key = 1; key < biases.length; key++) {
-            biases[key] -= gradient[linear_index++];
-        }
+        variables.subtract(gradient);
     }
 
     @Override
     public int getNumberOfVariables() {
-        return numWeights + biases.length - 1;
+        return variables.length();
     }
 
     @Override
     public double[] getLinearizedVariables() {
-        double[] vars = new double[getNumberOfVariables()];
-        int weightCount = 0;
-        for(int key = 1; key < biases.length; key++){
-            double[] weight = weights[key];
-            System.arraycopy(weight, 0, vars, weightCount, weight.length);
-            weightCount += weight.length;
-        }
-
-        System.arraycopy(biases, 0, vars, numWeights, biases.length-1);
-        return vars;
+        return variables.toArray();
     }
 
     @Override
     public void setLinearizedVariables(double[] variables) {
-        int weightCount = 0;
-        for(int key = 1; key < biases.length; key++){
-            double[] weight = weights[key];
-            System.arraycopy(variables, weightCount, weight, 0, weight.length);
-            weightCount += weight.length;
-        }
-
-        System.arraycopy(variables, numWeights, biases, 0, biases.length-1);
+        this.variables.set(variables);
     }
 
     @Override
     public void setLinearizedVariable(int index, double value) {
-        if(index >= numWeights){
-            biases[index - numWeights] = value;
-        }
-        else
-        {
-        // TODO: closed-form solution??? 
-        int weightCount = 0;
-            for(int key = 1; key < biases.length; key++){
-                double[] weight = weights[key];
-                if(index < weightCount + weight.length){
-                    weight[index - weightCount] = value;
-                    return;
-                }
-                weightCount += weight.length;
-            }
-        }
+        variables.set(index, value);
+    }
+
+    @Override
+    public void bindVariables(double[] buffer, int offset) {
+        variables.bind(buffer, offset);
     }
 
 }
@@ -56,4 +56,14 @@ public interface ITrainableValueCombinator extends IValueCombinator {
      * @see {@link #getLinearIndexOfWeight}
      */
     public abstract void applyDelta(double[] delta);
+
+    /**
+     * Move all weights and biases into the buffer starting at offset, in
+     * linearized order. All further reads and writes go through the buffer until
+     * the structure of the combinator changes.
+     * 
+     * @param buffer
+     * @param offset
+     */
+    public abstract void bindVariables(double[] buffer, int offset);
 }
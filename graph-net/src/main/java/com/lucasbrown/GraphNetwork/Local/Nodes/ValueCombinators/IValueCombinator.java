@@ -18,6 +18,18 @@ public interface IValueCombinator {
      */
     double[] getWeights(int bitStr);
 
+    /**
+     * Get a single weight of a particular input combination without copying the
+     * rest. Prefer this to {@link #getWeights} in loops over outcomes.
+     * 
+     * @param bitStr the binary string corresponding to the input combination
+     * @param index  the index of the weight among those of the combination
+     * @return
+     */
+    default double getWeight(int bitStr, int index) {
+        return getWeights(bitStr)[index];
+    }
+
     /**
      * Get the bias associated with a particular input combination 
      * @param bitStr the binary string corresponding to the input combination
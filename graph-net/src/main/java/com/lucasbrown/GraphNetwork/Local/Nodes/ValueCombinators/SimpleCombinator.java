@@ -1,9 +1,8 @@
 package com.lucasbrown.GraphNetwork.Local.Nodes.ValueCombinators;
 
-import java.util.Arrays;
 import java.util.Random;
 
-import com.lucasbrown.HelperClasses.IterableTools;
+import com.lucasbrown.GraphNetwork.Local.ParameterView;
 
 /**
  * A node within a graph neural network.
@@ -14,8 +13,12 @@ import com.lucasbrown.HelperClasses.IterableTools;
 public class SimpleCombinator extends AdditiveValueCombinator {
 
     private Random rng;
-    protected double[] weights;
-    protected double bias;
+
+    /**
+     * One weight for each incoming connection followed by the bias
+     */
+    protected ParameterView variables;
+    protected int numWeights;
 
     public SimpleCombinator() {
         this(new Random());
@@ -23,8 +26,8 @@ public class SimpleCombinator extends AdditiveValueCombinator {
 
     public SimpleCombinator(Random random) {
         rng = random;
-        weights = new double[0];
-        bias = rng.nextGaussian();
+        numWeights = 0;
+        variables = new ParameterView(rng.nextGaussian());
     }
 
     @Override
@@ -36,33 +39,58 @@ public class SimpleCombinator extends AdditiveValueCombinator {
      * Adds another layer of depth to the weights and biases hyper array
      */
     private void appendWeights() {
-        weights = Arrays.copyOf(weights, weights.length + 1);
-        weights[weights.length - 1] = rng.nextGaussian();
+        double[] newVariables = new double[numWeights + 2];
+        variables.copyTo(0, newVariables, 0, numWeights);
+        newVariables[numWeights] = rng.nextGaussian();
+        newVariables[numWeights + 1] = variables.get(numWeights);
+        numWeights++;
+        // the variables no longer fit in any shared buffer
+        variables = new ParameterView(newVariables);
     }
 
     @Override
     public double[] getWeights(int bitStr) {
-        return IterableTools.applyMask(weights, bitStr);
+        double[] filtered_weights = new double[Integer.bitCount(bitStr)];
+        int filtered_count = 0;
+        for (int i = 0; i < numWeights; i++) {
+            if (((bitStr >> i) & 0b1) == 1) {
+                filtered_weights[filtered_count++] = variables.get(i);
+            }
+        }
+        return filtered_weights;
+    }
+
+    @Override
+    public double getWeight(int bitStr, int index) {
+        // the weight of the index-th set bit
+        int remaining = bitStr;
+        for (int i = 0; i < index; i++) {
+            remaining &= remaining - 1;
+        }
+        return variables.get(Integer.numberOfTrailingZeros(remaining));
     }
 
     @Override
     public double getBias(int bitStr) {
-        return bias;
+        return variables.get(numWeights);
     }
 
     @Override
     public void setWeights(int binStr, double[] newWeights) {
-        weights = newWeights;
+        assert newWeights.length == numWeights;
+        for (int i = 0; i < numWeights; i++) {
+            variables.set(i, newWeights[i]);
+        }
     }
 
     @Override
     public void setBias(int binStr, double newBias) {
-        bias = newBias;
+        variables.set(numWeights, newBias);
     }
 
     @Override
     public int getNumberOfVariables() {
-        return weights.length == 0 ? 0 : weights.length + 1;
+        return numWeights == 0 ? 0 : numWeights + 1;
     }
 
     @Override
@@ -83,44 +111,37 @@ public class SimpleCombinator extends AdditiveValueCombinator {
 
     @Override
     public int getLinearIndexOfBias(int key) {
-        return weights.length;
+        return numWeights;
     }
 
     @Override
     public void applyDelta(double[] gradient) {
-        if (weights.length == 0) { 
+        if (numWeights == 0) { 
             return; // no connections and no gradient
         }
-        for (int i = 0; i < weights.length; i++) {
-            weights[i] -= gradient[i];
-            gradient[i] = 0;
-        }
-
-        bias -= gradient[gradient.length - 1];
+        variables.subtract(gradient);
     }
 
     @Override
     public double[] getLinearizedVariables() {
-        double[] vars = new double[weights.length + 1];
-        System.arraycopy(weights, weights.length, vars, 0, weights.length);
-        vars[weights.length] = bias;
-        return vars;
+        return variables.toArray();
     }
 
     @Override
     public void setLinearizedVariables(double[] variables) {
-        System.arraycopy(variables, weights.length, weights, 0, weights.length);
-        bias = variables[weights.length];
+        this.variables.set(variables);
     }
 
     @Override
     public void setLinearizedVariable(int index, double value) {
-        if(index == weights.length){
-            bias = value;
-        }
-        else
-        {
-            weights[index] = value;
+        variables.set(index, value);
+    }
+
+    @Override
+    public void bindVariables(double[] buffer, int offset) {
+        // without connections the bias is not a variable
+        if (numWeights != 0) {
+            variables.bind(buffer, offset);
         }
     }
 
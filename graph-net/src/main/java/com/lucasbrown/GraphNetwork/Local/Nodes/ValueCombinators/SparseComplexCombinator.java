@@ -0,0 +1,213 @@
+package com.lucasbrown.GraphNetwork.Local.Nodes.ValueCombinators;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import com.lucasbrown.GraphNetwork.Local.ParameterView;
+import com.lucasbrown.HelperClasses.Structs.KeyIndexTable;
+
+/**
+ * Like {@link ComplexCombinator}, a separate set of weights and a bias for
+ * every combination of incoming connections, except that the variables of a
+ * combination are only created the first time its key is evaluated. A node
+ * with many incoming connections then only holds the combinations which
+ * actually occur rather than all 2^n of them.
+ *
+ * The variables of each combination are stored as a row of its weights
+ * followed by its bias, with rows in the order they were created. New rows are
+ * only ever appended, so the linear index of a variable never changes. Once
+ * the variables have been bound to a shared buffer, a new row moves them back
+ * into an array of their own and the network's parameter store must be
+ * rebuilt. Anything which enumerates every key, such as compiling the
+ * network, creates every row.
+ *
+ * Rows may be created while other threads evaluate the combinator. Looking up
+ * an existing row never locks, only creating one does.
+ */
+public class SparseComplexCombinator extends AdditiveValueCombinator {
+
+    protected volatile ParameterView variables;
+
+    /**
+     * The array behind {@link #variables} when it is not bound to a shared
+     * buffer, possibly with room for more rows
+     */
+    private double[] storage;
+
+    /**
+     * The row of each key in order of creation along with the linear index of
+     * its first variable. A snapshot is never modified once published, a new
+     * row replaces it with a copy.
+     */
+    private static class Rows {
+        private final KeyIndexTable keys;
+        private final int[] offsets;
+
+        private Rows(KeyIndexTable keys, int[] offsets) {
+            this.keys = keys;
+            this.offsets = offsets;
+        }
+    }
+
+    private volatile Rows rows;
+
+    protected int numInputs = 0;
+
+    private Random rng;
+
+    public SparseComplexCombinator() {
+        this(new Random());
+    }
+
+    public SparseComplexCombinator(Random random) {
+        rng = random;
+        rows = new Rows(new KeyIndexTable(), new int[0]);
+        storage = new double[16];
+        variables = new ParameterView(storage, 0);
+    }
+
+    @Override
+    public void notifyNewIncomingConnection() {
+        if (++numInputs >= Integer.SIZE) {
+            throw new CombinatorMissalignmentException("Keys cannot represent more than 31 incoming connections.");
+        }
+    }
+
+    /**
+     * @return the number of combinations which have been evaluated
+     */
+    public int getNumberOfCombinations() {
+        return rows.keys.size();
+    }
+
+    /**
+     * @param key
+     * @return whether the variables of the combination have been created
+     */
+    public boolean hasCombination(int key) {
+        return rows.keys.indexOf(key) >= 0;
+    }
+
+    /**
+     * @return the linear index of the first variable of the key's row, creating
+     *         the row if the key has not been seen before
+     */
+    protected int getRowOffset(int key) {
+        Rows current = rows;
+        int row = current.keys.indexOf(key);
+        if (row >= 0) {
+            return current.offsets[row];
+        }
+        return addRow(key);
+    }
+
+    private synchronized int addRow(int key) {
+        Rows current = rows;
+        int row = current.keys.indexOf(key);
+        if (row >= 0) {
+            // created by another thread since the lookup
+            return current.offsets[row];
+        }
+
+        int offset = variables.length();
+        int rowLength = Integer.bitCount(key) + 1;
+        double[] newStorage = storage;
+        if (newStorage == null || offset + rowLength > newStorage.length) {
+            newStorage = Arrays.copyOf(variables.toArray(), Math.max(2 * offset, offset + rowLength));
+        }
+        for (int i = 0; i < rowLength; i++) {
+            newStorage[offset + i] = rng.nextDouble();
+        }
+
+        KeyIndexTable keys = new KeyIndexTable(current.keys);
+        row = keys.add(key);
+        int[] offsets = Arrays.copyOf(current.offsets, row + 1);
+        offsets[row] = offset;
+
+        // the variables no longer fit in any shared buffer
+        storage = newStorage;
+        variables = new ParameterView(storage, offset + rowLength);
+
+        // published after the variables so that any reader of the row sees them
+        rows = new Rows(keys, offsets);
+        return offset;
+    }
+
+    @Override
+    public double[] getWeights(int bitStr) {
+        double[] weights = new double[Integer.bitCount(bitStr)];
+        int offset = getRowOffset(bitStr);
+        variables.copyTo(offset, weights, 0, weights.length);
+        return weights;
+    }
+
+    @Override
+    public double getWeight(int bitStr, int index) {
+        assert index < Integer.bitCount(bitStr);
+        int offset = getRowOffset(bitStr);
+        return variables.get(offset + index);
+    }
+
+    @Override
+    public double getBias(int bitStr) {
+        int offset = getRowOffset(bitStr);
+        return variables.get(offset + Integer.bitCount(bitStr));
+    }
+
+    @Override
+    public void setWeights(int bitStr, double[] newWeights) {
+        assert newWeights.length == Integer.bitCount(bitStr);
+        int offset = getRowOffset(bitStr);
+        for (int i = 0; i < newWeights.length; i++) {
+            variables.set(offset + i, newWeights[i]);
+        }
+    }
+
+    @Override
+    public void setBias(int bitStr, double newBias) {
+        int offset = getRowOffset(bitStr);
+        variables.set(offset + Integer.bitCount(bitStr), newBias);
+    }
+
+    @Override
+    public int getLinearIndexOfWeight(int key, int weight_index) {
+        return getRowOffset(key) + weight_index;
+    }
+
+    @Override
+    public int getLinearIndexOfBias(int key) {
+        return getRowOffset(key) + Integer.bitCount(key);
+    }
+
+    @Override
+    public void applyDelta(double[] gradient) {
+        variables.subtract(gradient);
+    }
+
+    @Override
+    public int getNumberOfVariables() {
+        return variables.length();
+    }
+
+    @Override
+    public double[] getLinearizedVariables() {
+        return variables.toArray();
+    }
+
+    @Override
+    public void setLinearizedVariables(double[] variables) {
+        this.variables.set(variables);
+    }
+
+    @Override
+    public void setLinearizedVariable(int index, double value) {
+        variables.set(index, value);
+    }
+
+    @Override
+    public synchronized void bindVariables(double[] buffer, int offset) {
+        variables.bind(buffer, offset);
+        storage = null;
+    }
+
+}
@@ -13,6 +13,12 @@ public class Outcome {
     public double netValue;
     public double activatedValue;
     public double probability;
+
+    /**
+     * The natural log of the probability, which stays finite long after the
+     * probability itself underflows to 0. NaN when only the probability is known.
+     */
+    public double logProbability = Double.NaN;
     public double[] sourceTransferProbabilities;
     public int[] sourceKeys;
     public Outcome[] sourceOutcomes;
@@ -20,6 +26,12 @@ public class Outcome {
     public int root_bin_str;
     public Outcome[] allRootOutcomes;
 
+    /**
+     * The outcomes which were merged into this one or null if it was not merged.
+     * The lineage fields above hold those of the most probable component.
+     */
+    public Outcome[] mergedOutcomes;
+
     /**
      * Accumulates the number of pass/fails for this signal.
      */
@@ -64,7 +76,31 @@ public class Outcome {
         return hash;
     }
 
+    /**
+     * @return the log of the probability of this outcome
+     */
+    public double getLogProbability() {
+        return Double.isNaN(logProbability) ? Math.log(probability) : logProbability;
+    }
+
+    /**
+     * @param component one of {@link #mergedOutcomes}
+     * @return the fraction of the probability of this outcome due to the
+     *         component
+     */
+    public double getShareOf(Outcome component) {
+        double logProbability = getLogProbability();
+        if (logProbability == Double.NEGATIVE_INFINITY) {
+            return 1d / mergedOutcomes.length;
+        }
+        return Math.exp(component.getLogProbability() - logProbability);
+    }
+
     public static int descendingProbabilitiesComparator(Outcome o1, Outcome o2) {
         return Double.compare(o2.probability, o1.probability);
     }
+
+    public static int descendingLogProbabilitiesComparator(Outcome o1, Outcome o2) {
+        return Double.compare(o2.getLogProbability(), o1.getLogProbability());
+    }
 }
@@ -0,0 +1,83 @@
+package com.lucasbrown.GraphNetwork.Local;
+
+import java.util.Arrays;
+
+/**
+ * A fixed length window into a flat array of parameters.
+ * The parameters start out in an array of their own and may later be moved
+ * into a buffer shared by the whole network, after which every read and write
+ * goes through the shared buffer.
+ */
+public class ParameterView {
+
+    private double[] buffer;
+    private int offset;
+    private final int length;
+
+    public ParameterView(double... parameters) {
+        buffer = parameters;
+        offset = 0;
+        length = parameters.length;
+    }
+
+    /**
+     * A view of the first length parameters of the array. The rest of the array
+     * is spare room for a longer view to be made later without copying.
+     */
+    public ParameterView(double[] parameters, int length) {
+        assert length <= parameters.length;
+        buffer = parameters;
+        offset = 0;
+        this.length = length;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public double get(int index) {
+        return buffer[offset + index];
+    }
+
+    public void set(int index, double value) {
+        buffer[offset + index] = value;
+    }
+
+    public void set(double[] parameters) {
+        assert parameters.length == length;
+        System.arraycopy(parameters, 0, buffer, offset, length);
+    }
+
+    /**
+     * Copy the parameters starting at index into destination
+     */
+    public void copyTo(int index, double[] destination, int destinationIndex, int count) {
+        System.arraycopy(buffer, offset + index, destination, destinationIndex, count);
+    }
+
+    public void subtract(double[] delta) {
+        for (int i = 0; i < length; i++) {
+            buffer[offset + i] -= delta[i];
+        }
+    }
+
+    public double[] toArray() {
+        return Arrays.copyOfRange(buffer, offset, offset + length);
+    }
+
+    /**
+     * Move the parameters into the buffer starting at offset.
+     *
+     * @param buffer
+     * @param offset
+     */
+    public void bind(double[] buffer, int offset) {
+        System.arraycopy(this.buffer, this.offset, buffer, offset, length);
+        this.buffer = buffer;
+        this.offset = offset;
+    }
+
+    public boolean isBoundTo(double[] buffer) {
+        return this.buffer == buffer;
+    }
+}
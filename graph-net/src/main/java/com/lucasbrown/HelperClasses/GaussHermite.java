@@ -0,0 +1,116 @@
+package com.lucasbrown.HelperClasses;
+
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Gauss-Hermite quadrature for expectations over a normal distribution.
+ *
+ * The rule with n points integrates polynomials of degree up to 2n-1 exactly.
+ * The points and weights are normalized so that the expectation of f(X) with
+ * X ~ N(mean, variance) is the sum of weight[i] * f(mean + sqrt(variance) *
+ * point[i]).
+ */
+public class GaussHermite {
+
+    private static final double EPS = 1E-14;
+    private static final int MAX_ITERATIONS = 100;
+
+    private final double[] points;
+    private final double[] weights;
+
+    /**
+     * Find the roots of the Hermite polynomial of degree n by Newton's method
+     *
+     * @param n the number of points
+     */
+    public GaussHermite(int n) {
+        if (n < 1) {
+            throw new IllegalArgumentException("At least one point is required.");
+        }
+        points = new double[n];
+        weights = new double[n];
+
+        // the physicists' roots are found first, then scaled to a standard normal
+        final double pim4 = Math.pow(Math.PI, -0.25);
+        double z = 0;
+        double pp = 0;
+        for (int i = 0; i < (n + 1) / 2; i++) {
+            if (i == 0) {
+                z = Math.sqrt(2 * n + 1) - 1.85575 * Math.pow(2 * n + 1, -0.16667);
+            } else if (i == 1) {
+                z -= 1.14 * Math.pow(n, 0.426) / z;
+            } else if (i == 2) {
+                z = 1.86 * z - 0.86 * points[0];
+            } else if (i == 3) {
+                z = 1.91 * z - 0.91 * points[1];
+            } else {
+                z = 2 * z - points[i - 2];
+            }
+
+            for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+                double p1 = pim4;
+                double p2 = 0;
+                for (int j = 0; j < n; j++) {
+                    double p3 = p2;
+                    p2 = p1;
+                    p1 = z * Math.sqrt(2d / (j + 1)) * p2 - Math.sqrt((double) j / (j + 1)) * p3;
+                }
+                pp = Math.sqrt(2 * n) * p2;
+                double z1 = z;
+                z = z1 - p1 / pp;
+                if (Math.abs(z - z1) <= EPS) {
+                    break;
+                }
+            }
+            points[i] = z;
+            points[n - 1 - i] = -z;
+            weights[i] = 2 / (pp * pp);
+            weights[n - 1 - i] = weights[i];
+        }
+
+        final double sqrt2 = Math.sqrt(2);
+        final double sqrtPi = Math.sqrt(Math.PI);
+        for (int i = 0; i < n; i++) {
+            points[i] *= sqrt2;
+            weights[i] /= sqrtPi;
+        }
+    }
+
+    public int getNumberOfPoints() {
+        return points.length;
+    }
+
+    /**
+     * @param i
+     * @return the i-th point of a standard normal distribution
+     */
+    public double getPoint(int i) {
+        return points[i];
+    }
+
+    /**
+     * @param i
+     * @return the weight of the i-th point. All weights sum to 1.
+     */
+    public double getWeight(int i) {
+        return weights[i];
+    }
+
+    /**
+     * @param func
+     * @param mean
+     * @param variance
+     * @return the expectation of func(X) with X ~ N(mean, variance)
+     */
+    public double expectation(DoubleUnaryOperator func, double mean, double variance) {
+        if (variance <= 0) {
+            return func.applyAsDouble(mean);
+        }
+        double std = Math.sqrt(variance);
+        double sum = 0;
+        for (int i = 0; i < points.length; i++) {
+            sum += weights[i] * func.applyAsDouble(mean + std * points[i]);
+        }
+        return sum;
+    }
+}
@@ -1,11 +1,14 @@
 package com.lucasbrown.HelperClasses;
 
 import java.lang.reflect.Array;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.stream.Stream;
 
@@ -109,19 +112,18 @@ public class IterableTools {
      * @param <T>       the type of elements in the sets
      * @param collection the collection of sets
      * @return a set of pairs of subsets and their original sets
+     * @see #iterateCartesianPowerProduct(List)
      */
     public static <T> ArrayList<Pair<ArrayList<T>, ArrayList<T>>> flatCartesianPowerProductPair(Collection<? extends Collection<T>> collection) {
-        // Generate the Cartesian product of the input collection
-        ArrayList<ArrayList<T>> cartesianProduct = flatCartesianProduct(collection);
-        // Initialize a set to store the result
         ArrayList<Pair<ArrayList<T>, ArrayList<T>>> flattened = new ArrayList<>();
-
-        // Iterate over each set in the Cartesian product
-        for (ArrayList<T> set : cartesianProduct) {
-            // Generate the power set of the current set
-            ArrayList<ArrayList<T>> powerSet = powerSet(set);
-            // Map each subset to a pair with its original set and add to the result
-            flattened.addAll(powerSet.stream().map(powSet -> new Pair<>(powSet, set)).toList());
+        ArrayList<T> set = null;
+        for (Pair<List<T>, List<T>> pair : iterateCartesianPowerProduct(toLists(collection))) {
+            // every subset of the same product shares its original set, the empty
+            // subset always comes first
+            if (pair.u.isEmpty()) {
+                set = new ArrayList<>(pair.v);
+            }
+            flattened.add(new Pair<>(new ArrayList<>(pair.u), set));
         }
         return flattened;
     }
@@ -133,17 +135,12 @@ public class IterableTools {
      * @param <T>       the type of elements in the sets
      * @param collection the collection of sets
      * @return a set of subsets of the Cartesian product
+     * @see #iterateCartesianPowerProduct(List)
      */
     public static <T> Collection<? extends Collection<T>> flatCartesianPowerProduct(Collection<? extends Collection<T>> collection) {
-        // Generate the Cartesian product of the input collection
-        Collection<? extends Collection<T>> cartesianProduct = flatCartesianProduct(collection);
-        // Initialize a set to store the result
         Collection<Collection<T>> flattened = new ArrayList<>();
-
-        // Iterate over each set in the Cartesian product
-        for (Collection<T> set : cartesianProduct) {
-            // Generate the power set of the current set and add to the result
-            flattened.addAll(powerSet(set));
+        for (Pair<List<T>, List<T>> pair : iterateCartesianPowerProduct(toLists(collection))) {
+            flattened.add(new ArrayList<>(pair.u));
         }
         return flattened;
     }
@@ -154,22 +151,12 @@ public class IterableTools {
      * @param <T> the type of elements in the set
      * @param set the input set
      * @return the power set of the input set
+     * @see #iteratePowerSet(List)
      */
     public static <T> ArrayList<ArrayList<T>> powerSet(Collection<T> set) {
-        // Initialize the power set with an empty set
-        ArrayList<ArrayList<T>> powerSet = new ArrayList<>();
-        powerSet.add(new ArrayList<T>(1));
-
-        // Iterate over each element in the input set
-        for (T t : set) {
-            // Create a copy of the current power set
-            ArrayList<ArrayList<T>> copy = shallowCopy(powerSet);
-            // Add the current element to each set in the copy
-            for (Collection<T> tList : copy) {
-                tList.add(t);
-            }
-            // Add the modified sets to the power set
-            powerSet.addAll(copy);
+        ArrayList<ArrayList<T>> powerSet = new ArrayList<>(1 << set.size());
+        for (List<T> subset : iteratePowerSet(new ArrayList<>(set))) {
+            powerSet.add(new ArrayList<>(subset));
         }
         return powerSet;
     }
@@ -180,28 +167,12 @@ public class IterableTools {
      * @param <T>       the type of elements in the sets
      * @param collection the collection of sets
      * @return the Cartesian product of the input sets
+     * @see #iterateCartesianProduct(List)
      */
     public static <T> ArrayList<ArrayList<T>> flatCartesianProduct(Collection<? extends Collection<T>> collection) {
-        // Initialize the Cartesian product
         ArrayList<ArrayList<T>> cartesianProduct = new ArrayList<>();
-
-        // If the input collection is empty, return an empty set
-        if (collection.isEmpty())
-            return cartesianProduct;
-
-        // Get the iterator for the input collection
-        Iterator<? extends Collection<T>> setItr = collection.iterator();
-        // Initialize the Cartesian product with the first set in the collection
-        for (T t : setItr.next()) {
-            ArrayList<T> singleton = new ArrayList<>(1);
-            singleton.add(t);
-            cartesianProduct.add(singleton);
-        }
-
-        // Iterate over the remaining sets in the collection
-        while (setItr.hasNext()) {
-            // Update the Cartesian product by taking the product with the next set
-            cartesianProduct = flatCartesianProduct(cartesianProduct, setItr.next());
+        for (List<T> product : iterateCartesianProduct(toLists(collection))) {
+            cartesianProduct.add(new ArrayList<>(product));
         }
         return cartesianProduct;
     }
@@ -214,22 +185,220 @@ public class IterableTools {
      * @param s2  the second set
      * @return the Cartesian product of the input sets
      */
-    public static <T> ArrayList<ArrayList<T>> flatCartesianProduct(ArrayList<? extends Collection<T>> s1, Collection<T> s2) {
-        // Initialize the Cartesian product
-        ArrayList<ArrayList<T>> cartesianProduct = new ArrayList<>();
-
-        // Iterate over each set in the first input set
+    public static <T> ArrayList<ArrayList<T>> flatCartesianProduct(Collection<? extends Collection<T>> s1, Collection<T> s2) {
+        ArrayList<ArrayList<T>> cartesianProduct = new ArrayList<>(s1.size() * s2.size());
         for (Collection<T> arr : s1) {
-            // Iterate over each element in the second input set
             for (T t : s2) {
-                // Create a copy of the current set from the first input set
-                ArrayList<T> sCopy = new ArrayList<>(arr);
-                // Add the current element from the second input set to the copy
+                ArrayList<T> sCopy = new ArrayList<>(arr.size() + 1);
+                sCopy.addAll(arr);
                 sCopy.add(t);
-                // Add the modified set to the Cartesian product
                 cartesianProduct.add(sCopy);
             }
         }
         return cartesianProduct;
     }
+
+    private static <T> List<List<T>> toLists(Collection<? extends Collection<T>> collection) {
+        List<List<T>> lists = new ArrayList<>(collection.size());
+        for (Collection<T> c : collection) {
+            lists.add(c instanceof List ? (List<T>) c : new ArrayList<>(c));
+        }
+        return lists;
+    }
+
+    /**
+     * A read-only view of the elements of a list selected by a bit mask, where
+     * bit i selects element i. No elements are copied.
+     * 
+     * @param <T>
+     * @param list
+     * @param mask
+     * @return
+     */
+    public static <T> List<T> maskedView(List<T> list, int mask) {
+        return new MaskedView<>(list, mask);
+    }
+
+    /**
+     * A read-only view that selects element indices[i] from lists.get(i). The
+     * indices are read live, so a single view can follow a
+     * {@link MixedRadixCounter}.
+     * 
+     * @param <T>
+     * @param lists
+     * @param indices
+     * @return
+     */
+    public static <T> List<T> selectionView(List<? extends List<T>> lists, int[] indices) {
+        return new SelectionView<>(lists, indices);
+    }
+
+    /**
+     * Lazily visit every subset of a list in binary counting order, where bit i
+     * of the counter selects element i. Every subset is presented through the
+     * same reusable view which is only valid until the next call to next().
+     * 
+     * @param <T>
+     * @param set at most 30 elements
+     * @return
+     */
+    public static <T> Iterable<List<T>> iteratePowerSet(List<T> set) {
+        assert set.size() < Integer.SIZE - 1;
+        return () -> new Iterator<List<T>>() {
+
+            final MaskedView<T> view = new MaskedView<>(set, -1);
+            final int subsetCount = 1 << set.size();
+
+            @Override
+            public boolean hasNext() {
+                return view.mask + 1 < subsetCount;
+            }
+
+            @Override
+            public List<T> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                view.mask++;
+                return view;
+            }
+        };
+    }
+
+    /**
+     * Lazily visit the Cartesian product of a list of lists with the last list
+     * changing the fastest. Every product is presented through the same reusable
+     * view which is only valid until the next call to next().
+     * 
+     * @param <T>
+     * @param lists
+     * @return
+     */
+    public static <T> Iterable<List<T>> iterateCartesianProduct(List<? extends List<T>> lists) {
+        return () -> new Iterator<List<T>>() {
+
+            final MixedRadixCounter counter = getCounter(lists);
+            final SelectionView<T> view = new SelectionView<>(lists, counter.getDigits());
+            long remaining = lists.isEmpty() ? 0 : counter.getCombinationCount();
+            boolean started = false;
+
+            @Override
+            public boolean hasNext() {
+                return remaining > 0;
+            }
+
+            @Override
+            public List<T> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                if (started) {
+                    counter.increment();
+                }
+                started = true;
+                remaining--;
+                return view;
+            }
+        };
+    }
+
+    /**
+     * Lazily visit every subset of every set in the Cartesian product of a list
+     * of lists. Subsets of the same product are visited in binary counting order
+     * before moving to the next product. The pair holds the subset in u and the
+     * product in v. The pair and both views are reused and only valid until the
+     * next call to next().
+     * 
+     * @param <T>
+     * @param lists at most 30 lists
+     * @return
+     */
+    public static <T> Iterable<Pair<List<T>, List<T>>> iterateCartesianPowerProduct(List<? extends List<T>> lists) {
+        assert lists.size() < Integer.SIZE - 1;
+        return () -> new Iterator<Pair<List<T>, List<T>>>() {
+
+            final MixedRadixCounter counter = getCounter(lists);
+            final SelectionView<T> product = new SelectionView<>(lists, counter.getDigits());
+            final MaskedView<T> subset = new MaskedView<>(product, -1);
+            final Pair<List<T>, List<T>> pair = new Pair<>(subset, product);
+            final int subsetCount = 1 << lists.size();
+            long remaining = lists.isEmpty() ? 0 : counter.getCombinationCount() * subsetCount;
+
+            @Override
+            public boolean hasNext() {
+                return remaining > 0;
+            }
+
+            @Override
+            public Pair<List<T>, List<T>> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                if (++subset.mask == subsetCount) {
+                    subset.mask = 0;
+                    counter.increment();
+                }
+                remaining--;
+                return pair;
+            }
+        };
+    }
+
+    private static MixedRadixCounter getCounter(List<? extends List<?>> lists) {
+        MixedRadixCounter counter = new MixedRadixCounter(lists.size());
+        for (int j = 0; j < lists.size(); j++) {
+            counter.setRadix(j, lists.get(j).size());
+        }
+        counter.reset(lists.size());
+        return counter;
+    }
+
+    private static class MaskedView<T> extends AbstractList<T> {
+
+        final List<T> backing;
+        int mask;
+
+        MaskedView(List<T> backing, int mask) {
+            this.backing = backing;
+            this.mask = mask;
+        }
+
+        @Override
+        public T get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            int bits = mask;
+            for (int i = 0; i < index; i++) {
+                bits &= bits - 1; // drop the lowest set bit
+            }
+            return backing.get(Integer.numberOfTrailingZeros(bits));
+        }
+
+        @Override
+        public int size() {
+            return Integer.bitCount(mask);
+        }
+    }
+
+    private static class SelectionView<T> extends AbstractList<T> {
+
+        final List<? extends List<T>> lists;
+        final int[] indices;
+
+        SelectionView(List<? extends List<T>> lists, int[] indices) {
+            this.lists = lists;
+            this.indices = indices;
+        }
+
+        @Override
+        public T get(int index) {
+            return lists.get(index).get(indices[index]);
+        }
+
+        @Override
+        public int size() {
+            return lists.size();
+        }
+    }
 }
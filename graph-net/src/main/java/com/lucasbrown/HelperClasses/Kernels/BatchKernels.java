@@ -0,0 +1,69 @@
+package com.lucasbrown.HelperClasses.Kernels;
+
+/**
+ * Picks the kernels used by the batched methods of the filters, activation
+ * functions and combinators.
+ *
+ * The scalar kernels are used unless the JVM is started with both
+ * {@code --add-modules jdk.incubator.vector} and {@code -Dgraphnet.vector=true}.
+ * The vector kernels are opt-in since their exponentials are not always
+ * bitwise identical to {@link Math#exp(double)}. They are only compiled by the
+ * {@code vector} profile, so they are loaded by name.
+ */
+public final class BatchKernels {
+
+    public static final String VECTOR_PROPERTY = "graphnet.vector";
+
+    private static final String VECTOR_KERNELS = "com.lucasbrown.HelperClasses.Kernels.VectorKernels";
+
+    private static final IBatchKernels SCALAR = new ScalarKernels();
+
+    private static volatile IBatchKernels vector;
+
+    private static final IBatchKernels DEFAULT = Boolean.getBoolean(VECTOR_PROPERTY) && isVectorAvailable()
+            ? getVector()
+            : SCALAR;
+
+    private BatchKernels() {
+    }
+
+    /**
+     * @return the kernels chosen when the JVM was started
+     */
+    public static IBatchKernels get() {
+        return DEFAULT;
+    }
+
+    public static IBatchKernels getScalar() {
+        return SCALAR;
+    }
+
+    /**
+     * @return whether the vector kernels were compiled and the
+     *         jdk.incubator.vector module has been added to the JVM
+     */
+    public static boolean isVectorAvailable() {
+        return ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()
+                && BatchKernels.class.getClassLoader().getResource(VECTOR_KERNELS.replace('.', '/') + ".class") != null;
+    }
+
+    /**
+     * @return the vector kernels regardless of {@link #VECTOR_PROPERTY}
+     * @throws UnsupportedOperationException if the vector kernels or module are
+     *                                       missing
+     */
+    public static IBatchKernels getVector() {
+        if (!isVectorAvailable()) {
+            throw new UnsupportedOperationException("The vector kernels need to be built with -Pvector "
+                    + "and the JVM to be started with --add-modules jdk.incubator.vector");
+        }
+        if (vector == null) {
+            try {
+                vector = (IBatchKernels) Class.forName(VECTOR_KERNELS).getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new UnsupportedOperationException(e);
+            }
+        }
+        return vector;
+    }
+}
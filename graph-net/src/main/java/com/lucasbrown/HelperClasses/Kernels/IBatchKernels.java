@@ -0,0 +1,38 @@
+package com.lucasbrown.HelperClasses.Kernels;
+
+/**
+ * The arithmetic of evaluating a whole batch of outcomes at once. Every method
+ * reads the first count entries of its inputs and writes the first count
+ * entries of out, which may be the same array as the input.
+ *
+ * @see BatchKernels#get()
+ */
+public interface IBatchKernels {
+
+    /**
+     * out[o] = bias + values[o*width]*weights[0] + ... +
+     * values[o*width + width-1]*weights[width-1], summed in that order
+     *
+     * @param values  the signals of each outcome, one outcome after another
+     * @param weights
+     * @param bias
+     * @param width   the number of signals of each outcome
+     * @param out
+     * @param count   the number of outcomes
+     */
+    public void linearCombination(double[] values, double[] weights, double bias, int width, double[] out,
+            int count);
+
+    /**
+     * out[i] = scale * exp(-((x[i] - mean) / variance)^2 / 2) + offset
+     */
+    public void gaussianPeak(double[] x, double mean, double variance, double scale, double offset, double[] out,
+            int count);
+
+    /**
+     * out[i] = x[i] < 0 ? alpha * x[i] : x[i], where negative values become
+     * exactly 0 when alpha is 0
+     */
+    public void rectify(double[] x, double alpha, double[] out, int count);
+
+}
@@ -0,0 +1,38 @@
+package com.lucasbrown.HelperClasses.Kernels;
+
+/**
+ * Plain loops which give exactly the same results as evaluating each outcome on
+ * its own
+ */
+public class ScalarKernels implements IBatchKernels {
+
+    @Override
+    public void linearCombination(double[] values, double[] weights, double bias, int width, double[] out,
+            int count) {
+        for (int o = 0; o < count; o++) {
+            double strength = bias;
+            int row = o * width;
+            for (int i = 0; i < width; i++) {
+                strength += values[row + i] * weights[i];
+            }
+            out[o] = strength;
+        }
+    }
+
+    @Override
+    public void gaussianPeak(double[] x, double mean, double variance, double scale, double offset, double[] out,
+            int count) {
+        for (int i = 0; i < count; i++) {
+            double temp = (x[i] - mean) / variance;
+            out[i] = scale * Math.exp(-temp * temp / 2) + offset;
+        }
+    }
+
+    @Override
+    public void rectify(double[] x, double alpha, double[] out, int count) {
+        for (int i = 0; i < count; i++) {
+            out[i] = x[i] < 0 ? (alpha == 0 ? 0 : x[i] * alpha) : x[i];
+        }
+    }
+
+}
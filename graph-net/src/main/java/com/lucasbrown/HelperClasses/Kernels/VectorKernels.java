@@ -0,0 +1,113 @@
+package com.lucasbrown.HelperClasses.Kernels;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Kernels written with the incubating vector API so that each operation is
+ * applied to as many outcomes at once as the hardware allows. Whatever doesn't
+ * fill a whole vector is finished off one at a time.
+ *
+ * The linear combination and rectification give exactly the same results as
+ * the scalar kernels since every lane performs the same operations in the same
+ * order. The exponential of the gaussian peak may differ by an ulp.
+ *
+ * Only usable when the jdk.incubator.vector module has been added to the JVM,
+ * see {@link BatchKernels}.
+ */
+public class VectorKernels implements IBatchKernels {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    /**
+     * The offset of each lane's outcome for a given width, used to gather the
+     * same signal of consecutive outcomes
+     */
+    private final ThreadLocal<int[][]> gatherIndices = ThreadLocal.withInitial(() -> new int[0][]);
+
+    private int[] getGatherIndices(int width) {
+        int[][] indices = gatherIndices.get();
+        if (width >= indices.length) {
+            int[][] grown = new int[width + 1][];
+            System.arraycopy(indices, 0, grown, 0, indices.length);
+            indices = grown;
+            gatherIndices.set(indices);
+        }
+        if (indices[width] == null) {
+            indices[width] = new int[SPECIES.length()];
+            for (int lane = 0; lane < SPECIES.length(); lane++) {
+                indices[width][lane] = lane * width;
+            }
+        }
+        return indices[width];
+    }
+
+    @Override
+    public void linearCombination(double[] values, double[] weights, double bias, int width, double[] out,
+            int count) {
+        final int lanes = SPECIES.length();
+        final int bound = SPECIES.loopBound(count);
+        final int[] lanesToOutcomes = getGatherIndices(width);
+
+        int o = 0;
+        for (; o < bound; o += lanes) {
+            int row = o * width;
+            DoubleVector strength = DoubleVector.broadcast(SPECIES, bias);
+            for (int i = 0; i < width; i++) {
+                DoubleVector signal = DoubleVector.fromArray(SPECIES, values, row + i, lanesToOutcomes, 0);
+                strength = strength.add(signal.mul(weights[i]));
+            }
+            strength.intoArray(out, o);
+        }
+
+        for (; o < count; o++) {
+            double strength = bias;
+            int row = o * width;
+            for (int i = 0; i < width; i++) {
+                strength += values[row + i] * weights[i];
+            }
+            out[o] = strength;
+        }
+    }
+
+    @Override
+    public void gaussianPeak(double[] x, double mean, double variance, double scale, double offset, double[] out,
+            int count) {
+        final int bound = SPECIES.loopBound(count);
+
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector temp = DoubleVector.fromArray(SPECIES, x, i).sub(mean).div(variance);
+            temp.neg().mul(temp).div(2)
+                    .lanewise(VectorOperators.EXP)
+                    .mul(scale)
+                    .add(offset)
+                    .intoArray(out, i);
+        }
+
+        for (; i < count; i++) {
+            double temp = (x[i] - mean) / variance;
+            out[i] = scale * Math.exp(-temp * temp / 2) + offset;
+        }
+    }
+
+    @Override
+    public void rectify(double[] x, double alpha, double[] out, int count) {
+        final int bound = SPECIES.loopBound(count);
+        final DoubleVector zero = DoubleVector.zero(SPECIES);
+
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector v = DoubleVector.fromArray(SPECIES, x, i);
+            VectorMask<Double> negative = v.lt(0);
+            v.blend(alpha == 0 ? zero : v.mul(alpha), negative).intoArray(out, i);
+        }
+
+        for (; i < count; i++) {
+            out[i] = x[i] < 0 ? (alpha == 0 ? 0 : x[i] * alpha) : x[i];
+        }
+    }
+
+}
@@ -0,0 +1,94 @@
+package com.lucasbrown.HelperClasses;
+
+/**
+ * A reusable counter over the indices of a Cartesian product.
+ * Digit j counts from 0 to radix[j] - 1 and the last digit changes the
+ * fastest, which matches the order of
+ * {@link IterableTools#flatCartesianProduct(java.util.Collection)}.
+ */
+public class MixedRadixCounter {
+
+    private final int[] radix;
+    private final int[] digits;
+    private int length;
+
+    /**
+     * @param capacity the maximum number of digits the counter will be reset to
+     */
+    public MixedRadixCounter(int capacity) {
+        radix = new int[capacity];
+        digits = new int[capacity];
+        length = 0;
+    }
+
+    public MixedRadixCounter(int... radices) {
+        this(radices.length);
+        System.arraycopy(radices, 0, radix, 0, radices.length);
+        length = radices.length;
+    }
+
+    public void setRadix(int position, int radix) {
+        this.radix[position] = radix;
+    }
+
+    /**
+     * Set every digit back to zero and use only the first {@code length} radices
+     *
+     * @param length
+     */
+    public void reset(int length) {
+        this.length = length;
+        for (int j = 0; j < length; j++) {
+            digits[j] = 0;
+        }
+    }
+
+    public void reset() {
+        reset(length);
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public int getDigit(int position) {
+        return digits[position];
+    }
+
+    /**
+     * The digits are updated in place by {@link #increment()}. Only the first
+     * {@link #getLength()} digits are meaningful.
+     *
+     * @return a live view of the digits
+     */
+    public int[] getDigits() {
+        return digits;
+    }
+
+    /**
+     * @return the number of combinations the counter visits
+     */
+    public long getCombinationCount() {
+        long count = 1;
+        for (int j = 0; j < length; j++) {
+            count *= radix[j];
+        }
+        return count;
+    }
+
+    /**
+     * Advance to the next combination
+     *
+     * @return false once every combination has been visited, in which case the
+     *         digits have wrapped back to zero
+     */
+    public boolean increment() {
+        for (int j = length - 1; j >= 0; j--) {
+            if (++digits[j] < radix[j]) {
+                return true;
+            }
+            digits[j] = 0;
+        }
+        return false;
+    }
+}
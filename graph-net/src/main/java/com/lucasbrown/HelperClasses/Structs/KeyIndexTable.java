@@ -0,0 +1,117 @@
+package com.lucasbrown.HelperClasses.Structs;
+
+import java.util.Arrays;
+
+/**
+ * Assigns each distinct int key a dense index in the order the keys were
+ * added. Keys are kept in an open-addressed table of primitives, so a lookup
+ * never allocates or boxes.
+ *
+ * A table is not thread-safe. Share a copy which is no longer modified
+ * instead.
+ */
+public class KeyIndexTable {
+
+    private static final int EMPTY = -1;
+
+    /**
+     * slots[h] is the index of the key hashed to h or EMPTY
+     */
+    private int[] slots;
+    private int[] keys;
+    private int size;
+
+    public KeyIndexTable() {
+        this(16);
+    }
+
+    public KeyIndexTable(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 4) * 2 - 1) << 1;
+        slots = new int[capacity];
+        Arrays.fill(slots, EMPTY);
+        keys = new int[Math.max(expectedSize, 4)];
+        size = 0;
+    }
+
+    /**
+     * @param other the table to copy
+     */
+    public KeyIndexTable(KeyIndexTable other) {
+        slots = other.slots.clone();
+        keys = other.keys.clone();
+        size = other.size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index
+     * @return the key given the index
+     */
+    public int getKey(int index) {
+        return keys[index];
+    }
+
+    /**
+     * @param key
+     * @return the index of the key or -1 if it has not been added
+     */
+    public int indexOf(int key) {
+        int mask = slots.length - 1;
+        for (int h = hash(key) & mask;; h = (h + 1) & mask) {
+            int index = slots[h];
+            if (index == EMPTY || keys[index] == key) {
+                return index;
+            }
+        }
+    }
+
+    /**
+     * Add the key if it is not already present
+     *
+     * @param key
+     * @return the index of the key
+     */
+    public int add(int key) {
+        int mask = slots.length - 1;
+        int h = hash(key) & mask;
+        for (; slots[h] != EMPTY; h = (h + 1) & mask) {
+            if (keys[slots[h]] == key) {
+                return slots[h];
+            }
+        }
+
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+        }
+        keys[size] = key;
+        slots[h] = size;
+
+        // keep the table at most half full
+        if (++size * 2 > slots.length) {
+            rehash(slots.length * 2);
+        }
+        return size - 1;
+    }
+
+    private void rehash(int capacity) {
+        slots = new int[capacity];
+        Arrays.fill(slots, EMPTY);
+        int mask = capacity - 1;
+        for (int index = 0; index < size; index++) {
+            int h = hash(keys[index]) & mask;
+            while (slots[h] != EMPTY) {
+                h = (h + 1) & mask;
+            }
+            slots[h] = index;
+        }
+    }
+
+    private static int hash(int key) {
+        // spread keys that only differ in their high bits over the low bits
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
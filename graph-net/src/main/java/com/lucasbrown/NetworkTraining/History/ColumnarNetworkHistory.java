@@ -0,0 +1,308 @@
+package com.lucasbrown.NetworkTraining.History;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import com.lucasbrown.GraphNetwork.Global.GraphNetwork;
+import com.lucasbrown.GraphNetwork.Local.Outcome;
+import com.lucasbrown.GraphNetwork.Local.Nodes.IInputNode;
+import com.lucasbrown.GraphNetwork.Local.Nodes.INode;
+
+/**
+ * A read-only copy of a {@link NetworkHistory} laid out in primitive arrays.
+ *
+ * Every outcome is given an index and its fields are stored in parallel
+ * arrays. The outcomes of each timestep are stored contiguously, grouped by
+ * node in the order the nodes were added to the network, so the outcomes of any
+ * node at any timestep are found in O(1) from a dense node x timestep table of
+ * ranges. The lineage of each outcome is stored as integer pointers into the
+ * same arrays, so a gradient pass is a scan over the timesteps in order instead
+ * of a hash lookup for every outcome.
+ *
+ * The components of merged outcomes are not part of any node's state. They are
+ * stored after the outcomes of their timestep, between
+ * {@link #getTimestepEnd(int)} and {@link #getComponentsEnd(int)}.
+ */
+public class ColumnarNetworkHistory {
+
+    private final INode[] nodes;
+    private final boolean[] isInput;
+    private final HashMap<Integer, Integer> indexOfID;
+    private final int numberOfTimesteps;
+
+    /**
+     * offsets[t * (N + 1) + n] is the first outcome of node n at timestep t and
+     * offsets[t * (N + 1) + N] is the first component of timestep t
+     */
+    private final int[] offsets;
+
+    private final Outcome[] outcomes;
+    private final IdentityHashMap<Outcome, Integer> indexOfOutcome;
+
+    private final int[] nodeIndex;
+    private final int[] key;
+    private final int[] rootKey;
+    private final double[] netValue;
+    private final double[] activatedValue;
+    private final double[] probability;
+    private final double[] logProbability;
+
+    /**
+     * Lineage in CSR format. The parents of outcome i are found between
+     * parentStart[i] and parentStart[i+1], -1 when the parent was not recorded
+     */
+    private final int[] parentStart, parents;
+    private final int[] rootStart, roots;
+    private final int[] componentStart, components;
+
+    public ColumnarNetworkHistory(GraphNetwork network, NetworkHistory history) {
+        this(network.getNodes(), history);
+    }
+
+    /**
+     * @param nodes   every node which may appear in the history
+     * @param history
+     */
+    public ColumnarNetworkHistory(List<? extends INode> nodes, NetworkHistory history) {
+        this.nodes = nodes.toArray(INode[]::new);
+        final int N = this.nodes.length;
+        isInput = new boolean[N];
+        indexOfID = new HashMap<>(N);
+        for (int n = 0; n < N; n++) {
+            indexOfID.put(this.nodes[n].getID(), n);
+            isInput[n] = this.nodes[n] instanceof IInputNode;
+        }
+
+        numberOfTimesteps = history.getNumberOfTimesteps();
+        offsets = new int[numberOfTimesteps * (N + 1) + 1];
+
+        // lay out every outcome first so that parents can be found by identity
+        ArrayList<Outcome> ordered = new ArrayList<>();
+        for (int t = 0; t < numberOfTimesteps; t++) {
+            HashMap<INode, ArrayList<Outcome>> state = history.getStateAtTimestep(t);
+            for (int n = 0; n < N; n++) {
+                offsets[t * (N + 1) + n] = ordered.size();
+                ArrayList<Outcome> outcomesOfNode = state.get(this.nodes[n]);
+                if (outcomesOfNode != null) {
+                    ordered.addAll(outcomesOfNode);
+                }
+            }
+            offsets[t * (N + 1) + N] = ordered.size();
+            int end = ordered.size();
+            for (int i = offsets[t * (N + 1)]; i < end; i++) {
+                Outcome[] merged = ordered.get(i).mergedOutcomes;
+                if (merged != null) {
+                    ordered.addAll(Arrays.asList(merged));
+                }
+            }
+        }
+        offsets[offsets.length - 1] = ordered.size();
+
+        final int total = ordered.size();
+        outcomes = ordered.toArray(Outcome[]::new);
+        indexOfOutcome = new IdentityHashMap<>(total);
+        for (int i = 0; i < total; i++) {
+            indexOfOutcome.put(outcomes[i], i);
+        }
+
+        nodeIndex = new int[total];
+        key = new int[total];
+        rootKey = new int[total];
+        netValue = new double[total];
+        activatedValue = new double[total];
+        probability = new double[total];
+        logProbability = new double[total];
+        parentStart = new int[total + 1];
+        rootStart = new int[total + 1];
+        componentStart = new int[total + 1];
+        for (int i = 0; i < total; i++) {
+            Outcome outcome = outcomes[i];
+            nodeIndex[i] = indexOfID.get(outcome.node.getID());
+            key[i] = outcome.binary_string;
+            rootKey[i] = outcome.root_bin_str;
+            netValue[i] = outcome.netValue;
+            activatedValue[i] = outcome.activatedValue;
+            probability[i] = outcome.probability;
+            logProbability[i] = outcome.getLogProbability();
+            parentStart[i + 1] = parentStart[i] + lengthOf(outcome.sourceOutcomes);
+            rootStart[i + 1] = rootStart[i] + lengthOf(outcome.allRootOutcomes);
+            componentStart[i + 1] = componentStart[i] + lengthOf(outcome.mergedOutcomes);
+        }
+
+        parents = new int[parentStart[total]];
+        roots = new int[rootStart[total]];
+        components = new int[componentStart[total]];
+        for (int i = 0; i < total; i++) {
+            fillIndices(outcomes[i].sourceOutcomes, parents, parentStart[i]);
+            fillIndices(outcomes[i].allRootOutcomes, roots, rootStart[i]);
+            fillIndices(outcomes[i].mergedOutcomes, components, componentStart[i]);
+        }
+    }
+
+    private static int lengthOf(Outcome[] outcomes) {
+        return outcomes == null ? 0 : outcomes.length;
+    }
+
+    private void fillIndices(Outcome[] lineage, int[] indices, int start) {
+        if (lineage == null) {
+            return;
+        }
+        for (int k = 0; k < lineage.length; k++) {
+            indices[start + k] = indexOfOutcome.getOrDefault(lineage[k], -1);
+        }
+    }
+
+    public int getNumberOfTimesteps() {
+        return numberOfTimesteps;
+    }
+
+    public int getNumberOfNodes() {
+        return nodes.length;
+    }
+
+    /**
+     * @return the number of outcomes, including the components of merged
+     *         outcomes
+     */
+    public int getNumberOfOutcomes() {
+        return outcomes.length;
+    }
+
+    public INode getNode(int n) {
+        return nodes[n];
+    }
+
+    public boolean isInputNode(int n) {
+        return isInput[n];
+    }
+
+    /**
+     * @param node
+     * @return the index of the node or -1 if it is not a part of this history
+     */
+    public int indexOf(INode node) {
+        return indexOfID.getOrDefault(node.getID(), -1);
+    }
+
+    /**
+     * @param outcome
+     * @return the index of the outcome or -1 if it is not a part of this history
+     */
+    public int indexOf(Outcome outcome) {
+        return indexOfOutcome.getOrDefault(outcome, -1);
+    }
+
+    public Outcome getOutcome(int i) {
+        return outcomes[i];
+    }
+
+    /**
+     * @return the index of the first outcome of node n at timestep t
+     */
+    public int getStart(int t, int n) {
+        return offsets[t * (nodes.length + 1) + n];
+    }
+
+    /**
+     * @return one past the index of the last outcome of node n at timestep t
+     */
+    public int getEnd(int t, int n) {
+        return offsets[t * (nodes.length + 1) + n + 1];
+    }
+
+    public int getTimestepStart(int t) {
+        return offsets[t * (nodes.length + 1)];
+    }
+
+    /**
+     * @return one past the last outcome held by a node at timestep t, which is
+     *         also the first component of a merged outcome at timestep t
+     */
+    public int getTimestepEnd(int t) {
+        return offsets[t * (nodes.length + 1) + nodes.length];
+    }
+
+    /**
+     * @return one past the last component of a merged outcome at timestep t
+     */
+    public int getComponentsEnd(int t) {
+        return offsets[(t + 1) * (nodes.length + 1)];
+    }
+
+    public int getNodeIndex(int i) {
+        return nodeIndex[i];
+    }
+
+    public int getKey(int i) {
+        return key[i];
+    }
+
+    public int getRootKey(int i) {
+        return rootKey[i];
+    }
+
+    public double getNetValue(int i) {
+        return netValue[i];
+    }
+
+    public double getActivatedValue(int i) {
+        return activatedValue[i];
+    }
+
+    public double getProbability(int i) {
+        return probability[i];
+    }
+
+    public double getLogProbability(int i) {
+        return logProbability[i];
+    }
+
+    public int getNumberOfParents(int i) {
+        return parentStart[i + 1] - parentStart[i];
+    }
+
+    /**
+     * @return the index of the k-th source outcome of outcome i
+     */
+    public int getParent(int i, int k) {
+        return parents[parentStart[i] + k];
+    }
+
+    public int getNumberOfRoots(int i) {
+        return rootStart[i + 1] - rootStart[i];
+    }
+
+    /**
+     * @return the index of the k-th root outcome of outcome i
+     */
+    public int getRoot(int i, int k) {
+        return roots[rootStart[i] + k];
+    }
+
+    /**
+     * @return the number of outcomes merged into outcome i, 0 if it was not
+     *         merged
+     */
+    public int getNumberOfComponents(int i) {
+        return componentStart[i + 1] - componentStart[i];
+    }
+
+    public int getComponent(int i, int k) {
+        return components[componentStart[i] + k];
+    }
+
+    /**
+     * @param i a merged outcome
+     * @param c one of its components
+     * @return the fraction of the probability of i due to c
+     */
+    public double getShareOf(int i, int c) {
+        if (logProbability[i] == Double.NEGATIVE_INFINITY) {
+            return 1d / getNumberOfComponents(i);
+        }
+        return Math.exp(logProbability[c] - logProbability[i]);
+    }
+}
@@ -5,6 +5,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 /**
@@ -18,12 +19,33 @@ public class History<T, V extends IStateRecord<T>> {
 
     /**
      * for each time, a map from record id to a list of outcomes
+     * once the depth is reached this is a ring buffer starting at head
      */
     private ArrayList<HashMap<V, ArrayList<T>>> outcomesThroughTime;
 
+    /**
+     * The number of timesteps kept or 0 to keep all of them
+     */
+    private final int depth;
+    private int head;
+    private long totalCaptured;
+
     public History(IStateGenerator<V> stateGenerator) {
+        this(stateGenerator, 0);
+    }
+
+    /**
+     * @param stateGenerator
+     * @param depth          the number of most recent timesteps to keep or 0 to
+     *                       keep every timestep
+     */
+    public History(IStateGenerator<V> stateGenerator, int depth) {
+        if (depth < 0) {
+            throw new IllegalArgumentException("The depth of a history cannot be negative.");
+        }
         this.stateGenerator = stateGenerator;
-        outcomesThroughTime = new ArrayList<>();
+        this.depth = depth;
+        outcomesThroughTime = new ArrayList<>(depth);
     }
 
     public void captureState() {
@@ -34,31 +56,96 @@ public class History<T, V extends IStateRecord<T>> {
             states.put(key, state);
         }
 
-        outcomesThroughTime.add(states);
+        addState(states);
+    }
+
+    /**
+     * Record a state that was captured outside of the state generator
+     * 
+     * @param states a map from each record to its state
+     */
+    public void captureState(HashMap<V, ArrayList<T>> states) {
+        addState(states);
+    }
+
+    private void addState(HashMap<V, ArrayList<T>> states) {
+        totalCaptured++;
+        if (depth == 0 || outcomesThroughTime.size() < depth) {
+            outcomesThroughTime.add(states);
+            return;
+        }
+
+        HashMap<V, ArrayList<T>> evicted = outcomesThroughTime.set(head, states);
+        head = (head + 1) % depth;
+        onEviction(evicted, getStateAtTimestep(0));
+    }
+
+    /**
+     * Called once the oldest timestep has been dropped to make room for a new one
+     * 
+     * @param evicted the state that was dropped
+     * @param oldest  the state which is now the oldest timestep
+     */
+    protected void onEviction(HashMap<V, ArrayList<T>> evicted, HashMap<V, ArrayList<T>> oldest) {
+    }
+
+    /**
+     * @return the number of timesteps kept or 0 if every timestep is kept
+     */
+    public int getDepth() {
+        return depth;
+    }
 
+    /**
+     * @return the number of timesteps that have been captured, including those no
+     *         longer kept
+     */
+    public long getTotalNumberOfTimesteps() {
+        return totalCaptured;
     }
 
+    /**
+     * @return the number of timesteps dropped before timestep 0 of this history
+     */
+    public long getFirstTimestep() {
+        return totalCaptured - outcomesThroughTime.size();
+    }
+
+    /**
+     * @return the number of timesteps kept
+     */
     public int getNumberOfTimesteps() {
         return outcomesThroughTime.size();
     }
 
+    /**
+     * @param timestep the index of the timestep from the oldest kept
+     * @return
+     */
     public HashMap<V, ArrayList<T>> getStateAtTimestep(int timestep) {
-        return outcomesThroughTime.get(timestep);
+        if (head == 0) {
+            return outcomesThroughTime.get(timestep);
+        }
+        return outcomesThroughTime.get((head + timestep) % depth);
     }
 
     public ArrayList<T> getStateOfRecord(int timestep, V key) {
-        return outcomesThroughTime.get(timestep).get(key);
+        return getStateAtTimestep(timestep).get(key);
+    }
+
+    private Stream<HashMap<V, ArrayList<T>>> getStateStream() {
+        return IntStream.range(0, getNumberOfTimesteps()).mapToObj(this::getStateAtTimestep);
     }
 
     public List<ArrayList<T>> getHistoryOfRecord(V key) {
-        return outcomesThroughTime.stream()
+        return getStateStream()
                 .map(map -> map.get(key))
                 .map(list -> list == null ? new ArrayList<T>(0) : list)
                 .toList();
     }
 
     public List<T> getAllOutcomesOfRecord(V key) {
-        return outcomesThroughTime.stream().flatMap(record_map -> record_map.get(key).stream()).toList();
+        return getStateStream().flatMap(record_map -> record_map.get(key).stream()).toList();
     }
 
     // public HashMap<Integer, ArrayList<T>> getOutcomesOfKeyFromrecord(V record) {
@@ -78,7 +165,7 @@ public class History<T, V extends IStateRecord<T>> {
     // }
 
     public Stream<ArrayList<T>> getAnonymousHistoryStream() {
-        return outcomesThroughTime.stream().flatMap(map -> map.values().stream());
+        return getStateStream().flatMap(map -> map.values().stream());
     }
 
     /**
@@ -86,16 +173,18 @@ public class History<T, V extends IStateRecord<T>> {
      */
     public void burnHistory() {
         outcomesThroughTime.clear();
+        head = 0;
+        totalCaptured = 0;
     }
 
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
-        for (int t = 0; t < outcomesThroughTime.size(); t++) {
+        for (int t = 0; t < getNumberOfTimesteps(); t++) {
             sb.append("Time Step ");
             sb.append(t);
             sb.append("\n\t");
-            for (Entry<V, ArrayList<T>> record : outcomesThroughTime.get(t).entrySet()) {
+            for (Entry<V, ArrayList<T>> record : getStateAtTimestep(t).entrySet()) {
                 sb.append(record.getKey().toString());
                 sb.append(": ");
                 sb.append(record.getValue().stream()
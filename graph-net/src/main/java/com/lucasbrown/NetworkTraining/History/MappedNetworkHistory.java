@@ -0,0 +1,459 @@
+package com.lucasbrown.NetworkTraining.History;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import com.lucasbrown.GraphNetwork.Global.GraphNetwork;
+import com.lucasbrown.GraphNetwork.Local.Outcome;
+import com.lucasbrown.GraphNetwork.Local.Nodes.INode;
+
+/**
+ * A {@link NetworkHistory} which spills every captured timestep to a
+ * memory-mapped file instead of keeping its outcomes on the heap.
+ *
+ * Each timestep is written as a compact binary record of its outcomes, with the
+ * lineage stored as indices into the outcomes of the previous timestep. Reading
+ * a timestep pages its outcomes back in as new objects whose sources are the
+ * outcomes of the previously read timestep, so a history read in order has
+ * the same structure as the original. Only the last two timesteps read are
+ * kept, so gradients must be computed one timestep at a time (see
+ * {@link #isPaged()}) and their memory no longer grows with the length of the
+ * sequence.
+ *
+ * Reading a timestep out of order gives outcomes whose sources have no lineage
+ * of their own.
+ *
+ * The file is deleted when the history is closed or no longer reachable.
+ */
+public class MappedNetworkHistory extends NetworkHistory implements AutoCloseable {
+
+    private static final Cleaner CLEANER = Cleaner.create();
+    private static final int DEFAULT_SEGMENT_SIZE = 1 << 26;
+
+    private final INode[] nodes;
+    private final HashMap<Integer, Integer> indexOfID;
+
+    private final FileHandle file;
+    private final Cleaner.Cleanable cleanable;
+    private final int segmentSize;
+
+    /**
+     * The file is mapped in segments, each record is contained in a single
+     * segment
+     */
+    private final ArrayList<MappedByteBuffer> segments;
+    private long fileEnd;
+    private int segmentPosition;
+
+    /**
+     * The location of each timestep
+     */
+    private int[] recordSegment, recordOffset;
+    private int numberOfTimesteps;
+
+    /**
+     * Outcomes of the most recently captured timestep by identity, used to
+     * write the lineage of the next
+     */
+    private IdentityHashMap<Outcome, Integer> lastCaptured;
+    private ByteBuffer scratch;
+
+    /**
+     * The two most recently read timesteps
+     */
+    private Page current, previous;
+
+    public MappedNetworkHistory(GraphNetwork network, Path path) {
+        this(network, network.getNodes(), path, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * @param stateGenerator
+     * @param nodes          every node which may appear in the history
+     * @param path           the file to write to, which is overwritten
+     * @param segmentSize    the number of bytes mapped at once
+     */
+    public MappedNetworkHistory(IStateGenerator<INode> stateGenerator, List<? extends INode> nodes, Path path,
+            int segmentSize) {
+        super(stateGenerator);
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException("The segment size must be positive.");
+        }
+        this.nodes = nodes.toArray(INode[]::new);
+        indexOfID = new HashMap<>(this.nodes.length);
+        for (int n = 0; n < this.nodes.length; n++) {
+            indexOfID.put(this.nodes[n].getID(), n);
+        }
+        this.segmentSize = segmentSize;
+
+        try {
+            file = new FileHandle(path, FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        cleanable = CLEANER.register(this, file);
+
+        segments = new ArrayList<>();
+        recordSegment = new int[16];
+        recordOffset = new int[16];
+        lastCaptured = new IdentityHashMap<>();
+        scratch = ByteBuffer.allocate(1 << 12);
+    }
+
+    /**
+     * Create a history in a new temporary file
+     *
+     * @param network
+     * @param directory
+     * @return
+     */
+    public static MappedNetworkHistory createTemporary(GraphNetwork network, Path directory) {
+        try {
+            return new MappedNetworkHistory(network, Files.createTempFile(directory, "history", ".bin"));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public boolean isPaged() {
+        return true;
+    }
+
+    @Override
+    public void captureState() {
+        HashMap<INode, ArrayList<Outcome>> states = new HashMap<>();
+        for (INode node : stateGenerator.getStateRecords()) {
+            states.put(node, node.getState());
+        }
+        captureState(states);
+    }
+
+    @Override
+    public synchronized void captureState(HashMap<INode, ArrayList<Outcome>> states) {
+        // outcomes are written in node order so that a timestep reads back the same
+        ArrayList<Outcome> ordered = new ArrayList<>();
+        for (INode node : nodes) {
+            ArrayList<Outcome> outcomes = states.get(node);
+            if (outcomes != null) {
+                ordered.addAll(outcomes);
+            }
+        }
+
+        scratch.clear();
+        putInt(ordered.size());
+        for (Outcome outcome : ordered) {
+            putOutcome(outcome);
+        }
+        scratch.flip();
+        writeRecord(scratch);
+
+        lastCaptured = new IdentityHashMap<>(ordered.size());
+        for (int i = 0; i < ordered.size(); i++) {
+            lastCaptured.put(ordered.get(i), i);
+        }
+    }
+
+    private void putOutcome(Outcome outcome) {
+        putInt(indexOfID.get(outcome.node.getID()));
+        putInt(outcome.binary_string);
+        putInt(outcome.root_bin_str);
+        putDouble(outcome.netValue);
+        putDouble(outcome.activatedValue);
+        putDouble(outcome.probability);
+        putDouble(outcome.getLogProbability());
+
+        putInts(outcome.sourceKeys);
+        if (outcome.sourceTransferProbabilities == null) {
+            putInt(-1);
+        } else {
+            putInt(outcome.sourceTransferProbabilities.length);
+            for (double p : outcome.sourceTransferProbabilities) {
+                putDouble(p);
+            }
+        }
+        putLineage(outcome.sourceOutcomes);
+        putLineage(outcome.allRootOutcomes);
+
+        if (outcome.mergedOutcomes == null) {
+            putInt(-1);
+        } else {
+            putInt(outcome.mergedOutcomes.length);
+            for (Outcome component : outcome.mergedOutcomes) {
+                putOutcome(component);
+            }
+        }
+    }
+
+    /**
+     * Lineage is written as indices into the previous timestep, null arrays as a
+     * length of -1 and unrecorded outcomes as an index of -1
+     */
+    private void putLineage(Outcome[] lineage) {
+        if (lineage == null) {
+            putInt(-1);
+            return;
+        }
+        putInt(lineage.length);
+        for (Outcome outcome : lineage) {
+            putInt(lastCaptured.getOrDefault(outcome, -1));
+        }
+    }
+
+    private void putInts(int[] values) {
+        if (values == null) {
+            putInt(-1);
+            return;
+        }
+        putInt(values.length);
+        for (int v : values) {
+            putInt(v);
+        }
+    }
+
+    private void putInt(int value) {
+        ensureScratch(Integer.BYTES);
+        scratch.putInt(value);
+    }
+
+    private void putDouble(double value) {
+        ensureScratch(Double.BYTES);
+        scratch.putDouble(value);
+    }
+
+    private void ensureScratch(int bytes) {
+        if (scratch.remaining() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(scratch.capacity() * 2, scratch.position() + bytes));
+            scratch.flip();
+            larger.put(scratch);
+            scratch = larger;
+        }
+    }
+
+    private void writeRecord(ByteBuffer record) {
+        int length = record.remaining();
+        if (segments.isEmpty() || segments.get(segments.size() - 1).capacity() - segmentPosition < length) {
+            try {
+                long size = Math.max(segmentSize, length);
+                segments.add(file.channel.map(MapMode.READ_WRITE, fileEnd, size));
+                fileEnd += size;
+                segmentPosition = 0;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        if (numberOfTimesteps == recordSegment.length) {
+            recordSegment = Arrays.copyOf(recordSegment, numberOfTimesteps * 2);
+            recordOffset = Arrays.copyOf(recordOffset, numberOfTimesteps * 2);
+        }
+        recordSegment[numberOfTimesteps] = segments.size() - 1;
+        recordOffset[numberOfTimesteps] = segmentPosition;
+        numberOfTimesteps++;
+
+        segments.get(segments.size() - 1).put(segmentPosition, record, 0, length);
+        segmentPosition += length;
+    }
+
+    @Override
+    public int getNumberOfTimesteps() {
+        return numberOfTimesteps;
+    }
+
+    @Override
+    public long getTotalNumberOfTimesteps() {
+        return numberOfTimesteps;
+    }
+
+    @Override
+    public long getFirstTimestep() {
+        return 0;
+    }
+
+    @Override
+    public synchronized HashMap<INode, ArrayList<Outcome>> getStateAtTimestep(int timestep) {
+        if (timestep < 0 || timestep >= numberOfTimesteps) {
+            throw new IndexOutOfBoundsException(timestep);
+        }
+        if (current != null && current.timestep == timestep) {
+            return current.state;
+        }
+        if (previous != null && previous.timestep == timestep) {
+            return previous.state;
+        }
+
+        Page sources;
+        if (current != null && current.timestep == timestep - 1) {
+            sources = current;
+        } else if (timestep > 0) {
+            sources = readPage(timestep - 1, null);
+        } else {
+            sources = null;
+        }
+        previous = sources;
+        current = readPage(timestep, sources);
+        return current.state;
+    }
+
+    private Page readPage(int timestep, Page sources) {
+        ByteBuffer segment = segments.get(recordSegment[timestep]);
+        Reader reader = new Reader(segment, recordOffset[timestep], sources);
+
+        int count = reader.getInt();
+        Outcome[] outcomes = new Outcome[count];
+        HashMap<INode, ArrayList<Outcome>> state = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            outcomes[i] = reader.getOutcome();
+            state.computeIfAbsent(outcomes[i].node, _1 -> new ArrayList<>()).add(outcomes[i]);
+        }
+        return new Page(timestep, outcomes, state);
+    }
+
+    @Override
+    public synchronized void burnHistory() {
+        // the file is overwritten from the start
+        numberOfTimesteps = 0;
+        segments.clear();
+        fileEnd = 0;
+        segmentPosition = 0;
+        lastCaptured = new IdentityHashMap<>();
+        current = null;
+        previous = null;
+    }
+
+    /**
+     * Close and delete the file
+     */
+    @Override
+    public void close() {
+        cleanable.clean();
+    }
+
+    private class Reader {
+
+        private final ByteBuffer buffer;
+        private int position;
+        private final Page sources;
+
+        private Reader(ByteBuffer buffer, int position, Page sources) {
+            this.buffer = buffer;
+            this.position = position;
+            this.sources = sources;
+        }
+
+        private int getInt() {
+            int value = buffer.getInt(position);
+            position += Integer.BYTES;
+            return value;
+        }
+
+        private double getDouble() {
+            double value = buffer.getDouble(position);
+            position += Double.BYTES;
+            return value;
+        }
+
+        private Outcome getOutcome() {
+            Outcome outcome = new Outcome();
+            outcome.node = nodes[getInt()];
+            outcome.binary_string = getInt();
+            outcome.root_bin_str = getInt();
+            outcome.netValue = getDouble();
+            outcome.activatedValue = getDouble();
+            outcome.probability = getDouble();
+            outcome.logProbability = getDouble();
+
+            int length = getInt();
+            if (length >= 0) {
+                outcome.sourceKeys = new int[length];
+                for (int k = 0; k < length; k++) {
+                    outcome.sourceKeys[k] = getInt();
+                }
+            }
+            length = getInt();
+            if (length >= 0) {
+                outcome.sourceTransferProbabilities = new double[length];
+                for (int k = 0; k < length; k++) {
+                    outcome.sourceTransferProbabilities[k] = getDouble();
+                }
+            }
+            outcome.sourceOutcomes = getLineage();
+            outcome.allRootOutcomes = getLineage();
+
+            length = getInt();
+            if (length >= 0) {
+                outcome.mergedOutcomes = new Outcome[length];
+                for (int k = 0; k < length; k++) {
+                    outcome.mergedOutcomes[k] = getOutcome();
+                }
+            }
+            return outcome;
+        }
+
+        private Outcome[] getLineage() {
+            int length = getInt();
+            if (length < 0) {
+                return null;
+            }
+            Outcome[] lineage = new Outcome[length];
+            for (int k = 0; k < length; k++) {
+                int index = getInt();
+                lineage[k] = index < 0 || sources == null ? null : sources.outcomes[index];
+            }
+            // the sources were not read
+            return sources == null && length > 0 ? null : lineage;
+        }
+    }
+
+    private static class Page {
+
+        private final int timestep;
+        private final Outcome[] outcomes;
+        private final HashMap<INode, ArrayList<Outcome>> state;
+
+        private Page(int timestep, Outcome[] outcomes, HashMap<INode, ArrayList<Outcome>> state) {
+            this.timestep = timestep;
+            this.outcomes = outcomes;
+            this.state = state;
+        }
+    }
+
+    /**
+     * Everything needed to release the file, which must not refer back to the
+     * history
+     */
+    private static class FileHandle implements Runnable {
+
+        private final Path path;
+        private final FileChannel channel;
+
+        private FileHandle(Path path, FileChannel channel) {
+            this.path = path;
+            this.channel = channel;
+        }
+
+        @Override
+        public void run() {
+            try {
+                channel.close();
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
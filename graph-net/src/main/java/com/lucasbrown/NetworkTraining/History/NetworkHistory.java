@@ -1,6 +1,7 @@
 package com.lucasbrown.NetworkTraining.History;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 
 import com.lucasbrown.GraphNetwork.Local.Outcome;
@@ -16,6 +17,59 @@ public class NetworkHistory extends History<Outcome, INode> {
         super(stateGenerator);
     }
 
+    /**
+     * A history which only keeps the most recent timesteps. The outcomes of the
+     * oldest timestep kept lose their lineage, so nothing older than the window
+     * stays reachable.
+     * 
+     * @param stateGenerator
+     * @param depth          the number of timesteps to keep or 0 to keep all
+     */
+    public NetworkHistory(IStateGenerator<INode> stateGenerator, int depth) {
+        super(stateGenerator, depth);
+    }
+
+    @Override
+    protected void onEviction(HashMap<INode, ArrayList<Outcome>> evicted, HashMap<INode, ArrayList<Outcome>> oldest) {
+        truncate(oldest);
+    }
+
+    /**
+     * Drop the lineage and training data of every outcome in the state. Gradients
+     * treat the outcomes as constants from then on, so nothing older than the
+     * state is reachable or differentiated through.
+     * 
+     * @param state
+     */
+    public static void truncate(HashMap<INode, ArrayList<Outcome>> state) {
+        for (ArrayList<Outcome> outcomes : state.values()) {
+            for (Outcome outcome : outcomes) {
+                trimLineage(outcome);
+            }
+        }
+    }
+
+    private static void trimLineage(Outcome outcome) {
+        outcome.sourceOutcomes = null;
+        outcome.allRootOutcomes = null;
+        outcome.trainingData = null;
+        if (outcome.mergedOutcomes != null) {
+            for (Outcome component : outcome.mergedOutcomes) {
+                trimLineage(component);
+            }
+        }
+    }
+
+    /**
+     * @return true if the outcomes of a timestep are rebuilt from storage each
+     *         time they are read. Outcomes from timesteps read at different
+     *         times are then different objects, so anything keyed by outcome
+     *         must be consumed one timestep at a time.
+     */
+    public boolean isPaged() {
+        return false;
+    }
+
     public Iterator<HistoryOutputIteratorStruct> outputIterator(ArrayList<? extends IOutputNode> outputNodes){
         return new HistoryOutputIterator(outputNodes);
     }
@@ -12,34 +12,82 @@ import com.lucasbrown.NetworkTraining.History.NetworkHistory;
 import com.lucasbrown.NetworkTraining.Trainers.FilterLinearizer;
 
 import jsat.linear.DenseVector;
+import jsat.linear.SparseVector;
 import jsat.linear.Vec;
 
+/**
+ * The gradient of the probability of each outcome with respect to the filter
+ * parameters.
+ *
+ * The derivative of the log probability of each outcome is kept in
+ * {@link Outcome#trainingData} and passed on to the outcomes it roots, which
+ * never underflows. It is only converted to the derivative of the probability
+ * when the gradient of an outcome is returned.
+ */
 public class ForwardFilterGradient implements INetworkGradient{
 
     protected FilterLinearizer linearizer;
-    protected NetworkHistory networkHistory;
 
-    private ArrayList<HashMap<Outcome, Vec>> gradientsThroughTime;
+    protected final boolean sparse;
+    private final ThreadLocal<SparseGradientAccumulator> accumulators = ThreadLocal
+            .withInitial(() -> new SparseGradientAccumulator(linearizer.totalNumOfVariables));
+
+    private SparseGradientAccumulator getAccumulator() {
+        SparseGradientAccumulator accumulator = accumulators.get();
+        // the parameters may have grown since the accumulator was made
+        if (accumulator.length() != linearizer.totalNumOfVariables) {
+            accumulator = new SparseGradientAccumulator(linearizer.totalNumOfVariables);
+            accumulators.set(accumulator);
+        }
+        return accumulator;
+    }
+
+    /**
+     * Filter derivatives are written at the filter's offset so that the buffer
+     * never needs to be cleared
+     */
+    private final ThreadLocal<double[]> derivativeBuffers = ThreadLocal
+            .withInitial(() -> new double[linearizer.totalNumOfVariables]);
+
+    private double[] getDerivativeBuffer() {
+        double[] buffer = derivativeBuffers.get();
+        if (buffer.length != linearizer.totalNumOfVariables) {
+            buffer = new double[linearizer.totalNumOfVariables];
+            derivativeBuffers.set(buffer);
+        }
+        return buffer;
+    }
 
     public ForwardFilterGradient(FilterLinearizer linearizer) {
+        this(linearizer, false);
+    }
+
+    /**
+     * @param linearizer
+     * @param sparse     whether to represent each gradient as a
+     *                   {@link SparseVector} over the filters of the outcome's
+     *                   ancestors
+     */
+    public ForwardFilterGradient(FilterLinearizer linearizer, boolean sparse) {
         this.linearizer = linearizer;
+        this.sparse = sparse;
     }
 
     @Override
     public ArrayList<HashMap<Outcome, Vec>> getGradient(NetworkHistory networkHistory) {
-        this.networkHistory = networkHistory;
         int n_steps = networkHistory.getNumberOfTimesteps();
-        gradientsThroughTime = new ArrayList<>(n_steps);
+        ArrayList<HashMap<Outcome, Vec>> gradientsThroughTime = new ArrayList<>(n_steps);
 
         for(int timestep = 0; timestep < n_steps; timestep++){
-            gradientsThroughTime.add(getGradientAtTime(timestep));
+            gradientsThroughTime.add(getGradientAtTime(networkHistory, timestep));
         }
 
         return gradientsThroughTime;
     }
     
     
-    private HashMap<Outcome, Vec> getGradientAtTime(int timestep) {
+    @Override
+    public HashMap<Outcome, Vec> getGradientAtTime(NetworkHistory networkHistory, int timestep) {
         HashMap<Outcome, Vec> gradientMap = new HashMap<>();
         HashMap<INode, ArrayList<Outcome>> outcomeMap = networkHistory.getStateAtTimestep(timestep);
         for (Entry<INode, ArrayList<Outcome>> entry : outcomeMap.entrySet()) {
@@ -51,18 +99,38 @@ public class ForwardFilterGradient implements INetworkGradient{
         return gradientMap;
     }
 
+    /**
+     * @return the derivative of the probability of the outcome
+     */
     protected Vec computeGradientOfOutcome(INode node, Outcome outcome) {
+        Vec logGradient;
+        if (outcome.mergedOutcomes != null) {
+            return computeMergedGradientOfOutcome(node, outcome);
+        } else if (sparse) {
+            logGradient = computeSparseLogGradientOfOutcome(node, outcome);
+        } else {
+            logGradient = computeLogGradientOfOutcome(node, outcome);
+        }
+        outcome.trainingData = logGradient;
+
+        double probability = Math.exp(outcome.getLogProbability());
+        return logGradient.nnz() == 0 ? logGradient : logGradient.multiply(probability);
+    }
+
+    /**
+     * @return the derivative of the log probability of the outcome
+     */
+    protected Vec computeLogGradientOfOutcome(INode node, Outcome outcome) {
         Vec gradient = new DenseVector(linearizer.totalNumOfVariables);
-        outcome.trainingData = gradient;
 
         // the Jacobian and Hessian of the input matrix will always be zero
-        if (node instanceof IInputNode) {
+        // as are those of outcomes whose lineage was truncated
+        if (node instanceof IInputNode || outcome.allRootOutcomes == null) {
             return gradient;
         }
 
-        
         // if the probability is zero, then this contributes nothing to the final outcome
-        if(outcome.probability == 0){
+        if(outcome.getLogProbability() == Double.NEGATIVE_INFINITY){
             return gradient;
         }
 
@@ -78,9 +146,11 @@ public class ForwardFilterGradient implements INetworkGradient{
             // get the contributions for each outcome;
             Outcome rootOutcome = outcome.allRootOutcomes[root_count];
 
-            // root derivative component
+            // root derivative component, roots from before a truncation are constants
             Vec root_gradient = (Vec) rootOutcome.trainingData;
-            gradient.mutableAdd(root_gradient);
+            if (root_gradient != null) {
+                gradient.mutableAdd(root_gradient);
+            }
 
             // distribution derivative
             IFilter filter = filters[root_count];
@@ -92,7 +162,6 @@ public class ForwardFilterGradient implements INetworkGradient{
             }
             else{
                 filter_derivative = filter.getLogarithmicParameterDerivative(rootOutcome.activatedValue); 
-                // filter_derivative = new double[filter.getNumberOfAdjustableParameters()];
             }
 
             for (double d : filter_derivative) {
@@ -100,20 +169,94 @@ public class ForwardFilterGradient implements INetworkGradient{
             }
             
             // add the derivative to the gradient
-            Vec filter_gradient = linearizer.paramsToVector(filter, filter_derivative);
-
-
-            // scale the root gradient and add to the total
-            gradient.mutableAdd(filter_gradient.multiply(outcome.probability));
+            gradient.mutableAdd(linearizer.paramsToVector(filter, filter_derivative));
             root_count++;
         }
 
         for (double d : gradient.arrayCopy()) {
             assert Double.isFinite(d);
         }
-        gradient.mutableMultiply(outcome.probability);
         return gradient;
+    }
+
+    /**
+     * Identical to {@link #computeLogGradientOfOutcome} but only visits the
+     * non-zero entries of each gradient
+     */
+    protected Vec computeSparseLogGradientOfOutcome(INode node, Outcome outcome) {
+        if (node instanceof IInputNode || outcome.getLogProbability() == Double.NEGATIVE_INFINITY
+                || outcome.allRootOutcomes == null) {
+            return new SparseVector(linearizer.totalNumOfVariables, 0);
+        }
+
+        SparseGradientAccumulator accumulator = getAccumulator();
+        double[] filter_derivative = getDerivativeBuffer();
+        int root_count = 0;
+        int key = outcome.root_bin_str;
+        IFilter[] filters = node.getProbabilityCombinator().getFilters(key);
 
+        for (int i = 0; root_count < outcome.allRootOutcomes.length; i++) {
+            if (((key >> i) & 0b1) == 0) {
+                continue;
+            }
+
+            Outcome rootOutcome = outcome.allRootOutcomes[root_count];
+            if (rootOutcome.trainingData != null) {
+                accumulator.add(1, (Vec) rootOutcome.trainingData);
+            }
+
+            IFilter filter = filters[root_count];
+            int start = linearizer.vectorFilterOffset.get(filter);
+            if (((outcome.binary_string >> i) & 0b1) == 0) {
+                filter.getNegatedLogarithmicParameterDerivative(rootOutcome.activatedValue, filter_derivative, start);
+            } else {
+                filter.getLogarithmicParameterDerivative(rootOutcome.activatedValue, filter_derivative, start);
+            }
+
+            for (int j = start; j < start + filter.getNumberOfAdjustableParameters(); j++) {
+                assert Double.isFinite(filter_derivative[j]);
+                accumulator.add(j, filter_derivative[j]);
+            }
+            root_count++;
+        }
+
+        return accumulator.build(1);
+    }
+
+    /**
+     * The probability of a merged outcome is the sum of the probabilities of its
+     * components, and so is its gradient. The derivative of its log probability
+     * is the mean of those of its components weighted by their share.
+     */
+    private Vec computeMergedGradientOfOutcome(INode node, Outcome outcome) {
+        Outcome[] components = outcome.mergedOutcomes;
+        Vec[] componentGradients = new Vec[components.length];
+        for (int c = 0; c < components.length; c++) {
+            componentGradients[c] = computeGradientOfOutcome(node, components[c]);
+        }
+
+        Vec gradient;
+        Vec logGradient;
+        if (sparse) {
+            SparseGradientAccumulator accumulator = getAccumulator();
+            for (Vec componentGradient : componentGradients) {
+                accumulator.add(1, componentGradient);
+            }
+            gradient = accumulator.build(1);
+            for (Outcome component : components) {
+                accumulator.add(outcome.getShareOf(component), (Vec) component.trainingData);
+            }
+            logGradient = accumulator.build(1);
+        } else {
+            gradient = new DenseVector(linearizer.totalNumOfVariables);
+            logGradient = new DenseVector(linearizer.totalNumOfVariables);
+            for (int c = 0; c < components.length; c++) {
+                gradient.mutableAdd(componentGradients[c]);
+                logGradient.mutableAdd(outcome.getShareOf(components[c]), (Vec) components[c].trainingData);
+            }
+        }
+
+        outcome.trainingData = logGradient;
+        return gradient;
     }
-    
 }
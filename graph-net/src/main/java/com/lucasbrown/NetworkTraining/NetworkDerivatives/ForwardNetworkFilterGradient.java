@@ -16,6 +16,11 @@ import jsat.linear.Vec;
 
 /**
  * A naming abomination
+ *
+ * Each outcome carries the derivative of its log probability in
+ * {@link Outcome#trainingData}, which is passed on to the outcomes it roots.
+ * The gradient of an outcome is that derivative multiplied by its
+ * probability.
  */
 public class ForwardNetworkFilterGradient implements INetworkGradient{
 
@@ -65,7 +70,7 @@ public class ForwardNetworkFilterGradient implements INetworkGradient{
 
         
         // if the probability is zero, then this contributes nothing to the final outcome
-        if(outcome.probability == 0){
+        if(outcome.getLogProbability() == Double.NEGATIVE_INFINITY){
             return gradient;
         }
 
@@ -81,9 +86,8 @@ public class ForwardNetworkFilterGradient implements INetworkGradient{
             // get the contributions for each outcome;
             Outcome rootOutcome = outcome.allRootOutcomes[root_count];
 
-            // root derivative component
-            Vec root_gradient = (Vec) rootOutcome.trainingData;
-            root_gradient = root_gradient.divide(rootOutcome.probability);
+            // root derivative component, already that of the log probability
+            Vec root_gradient = ((Vec) rootOutcome.trainingData).clone();
 
             // distribution derivative
             IFilter filter = filters[root_count];
@@ -105,7 +109,7 @@ public class ForwardNetworkFilterGradient implements INetworkGradient{
                 assert Double.isFinite(d);
             }
 
-            // scale the root gradient and add to the total
+            // add to the total
             gradient.mutableAdd(root_gradient);
             root_count++;
         }
@@ -113,8 +117,7 @@ public class ForwardNetworkFilterGradient implements INetworkGradient{
         for (double d : gradient.arrayCopy()) {
             assert Double.isFinite(d);
         }
-        gradient.mutableMultiply(outcome.probability);
-        return gradient;
+        return gradient.multiply(Math.exp(outcome.getLogProbability()));
 
     }
     
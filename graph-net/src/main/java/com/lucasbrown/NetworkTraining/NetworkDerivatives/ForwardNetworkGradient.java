@@ -10,40 +10,141 @@ import com.lucasbrown.GraphNetwork.Local.Nodes.IInputNode;
 import com.lucasbrown.GraphNetwork.Local.Nodes.INode;
 import com.lucasbrown.GraphNetwork.Local.Nodes.InputNode;
 import com.lucasbrown.GraphNetwork.Local.Nodes.ValueCombinators.IValueCombinator;
+import com.lucasbrown.NetworkTraining.History.ColumnarNetworkHistory;
 import com.lucasbrown.NetworkTraining.History.NetworkHistory;
 import com.lucasbrown.NetworkTraining.Trainers.WeightsLinearizer;
 
 import jsat.linear.DenseVector;
+import jsat.linear.SparseVector;
 import jsat.linear.Vec;
 
 /**
  * Computes the gradient using a forward pass
  * 
  * Note, this current implementation implicitly assumes that the value combinator is a linear value combinator
+ * 
+ * In sparse mode every jacobian is a {@link SparseVector} which only holds the
+ * parameters of the outcome's ancestors.
+ * 
+ * Gradients of different histories may be computed concurrently.
  */
 public class ForwardNetworkGradient implements INetworkGradient  {
 
     protected WeightsLinearizer linearizer;
     protected NetworkHistory networkHistory;
 
+    protected final boolean sparse;
+    private final ThreadLocal<SparseGradientAccumulator> accumulators = ThreadLocal
+            .withInitial(() -> new SparseGradientAccumulator(linearizer.totalNumOfVariables));
+
+    private SparseGradientAccumulator getAccumulator() {
+        SparseGradientAccumulator accumulator = accumulators.get();
+        // the parameters may have grown since the accumulator was made
+        if (accumulator.length() != linearizer.totalNumOfVariables) {
+            accumulator = new SparseGradientAccumulator(linearizer.totalNumOfVariables);
+            accumulators.set(accumulator);
+        }
+        return accumulator;
+    }
+
     public ForwardNetworkGradient(WeightsLinearizer linearizer) {
+        this(linearizer, false);
+    }
+
+    public ForwardNetworkGradient(WeightsLinearizer linearizer, boolean sparse) {
         this.linearizer = linearizer;
+        this.sparse = sparse;
     }
 
     @Override
     public ArrayList<HashMap<Outcome, Vec>> getGradient(NetworkHistory networkHistory) {
-        this.networkHistory = networkHistory;
         int n_steps = networkHistory.getNumberOfTimesteps();
         ArrayList<HashMap<Outcome, Vec>> gradientsThroughTime = new ArrayList<>(n_steps);
 
         for(int timestep = 0; timestep < n_steps; timestep++){
-            gradientsThroughTime.add(getGradientAtTime(timestep));
+            gradientsThroughTime.add(getGradientAtTime(networkHistory, timestep));
         }
 
         return gradientsThroughTime;
     }
 
-    private HashMap<Outcome, Vec> getGradientAtTime(int timestep) {
+    /**
+     * Compute the gradient of every outcome by scanning a columnar history in
+     * timestep order. Produces the same jacobians as
+     * {@link #getGradient(NetworkHistory)} without touching the outcomes
+     * themselves.
+     * 
+     * @param history
+     * @return the jacobian of each outcome by its index in the history
+     */
+    public Vec[] getGradient(ColumnarNetworkHistory history) {
+        Vec[] gradients = new Vec[history.getNumberOfOutcomes()];
+        for (int t = 0; t < history.getNumberOfTimesteps(); t++) {
+            // components are needed by the merged outcomes that precede them
+            for (int i = history.getTimestepEnd(t); i < history.getComponentsEnd(t); i++) {
+                gradients[i] = computeGradientOfOutcome(history, i, gradients);
+            }
+            for (int i = history.getTimestepStart(t); i < history.getTimestepEnd(t); i++) {
+                gradients[i] = computeGradientOfOutcome(history, i, gradients);
+            }
+        }
+        return gradients;
+    }
+
+    private Vec computeGradientOfOutcome(ColumnarNetworkHistory history, int i, Vec[] gradients) {
+        int n = history.getNodeIndex(i);
+        if (history.isInputNode(n)) {
+            return sparse ? new SparseVector(linearizer.totalNumOfVariables, 0)
+                    : new DenseVector(linearizer.totalNumOfVariables);
+        }
+
+        int componentCount = history.getNumberOfComponents(i);
+        if (componentCount > 0) {
+            if (sparse) {
+                SparseGradientAccumulator accumulator = getAccumulator();
+                for (int k = 0; k < componentCount; k++) {
+                    int c = history.getComponent(i, k);
+                    accumulator.add(history.getShareOf(i, c), gradients[c]);
+                }
+                return accumulator.build(1);
+            }
+            Vec gradient = new DenseVector(linearizer.totalNumOfVariables);
+            for (int k = 0; k < componentCount; k++) {
+                int c = history.getComponent(i, k);
+                gradient.mutableAdd(history.getShareOf(i, c), gradients[c]);
+            }
+            return gradient;
+        }
+
+        INode node = history.getNode(n);
+        int key = history.getKey(i);
+        IValueCombinator combinator = node.getValueCombinator();
+        double activation_derivative = node.getActivationFunction().derivative(history.getNetValue(i));
+
+        if (sparse) {
+            SparseGradientAccumulator accumulator = getAccumulator();
+            for (int k = 0; k < history.getNumberOfParents(i); k++) {
+                int parent = history.getParent(i, k);
+                accumulator.add(linearizer.getLinearIndexOfWeight(node, key, k), history.getActivatedValue(parent));
+                accumulator.add(combinator.getWeight(key, k), gradients[parent]);
+            }
+            accumulator.add(linearizer.getLinearIndexOfBias(node, key), 1);
+            return accumulator.build(activation_derivative);
+        }
+
+        Vec z_jacobi = new DenseVector(linearizer.totalNumOfVariables);
+        for (int k = 0; k < history.getNumberOfParents(i); k++) {
+            int parent = history.getParent(i, k);
+            z_jacobi.increment(linearizer.getLinearIndexOfWeight(node, key, k), history.getActivatedValue(parent));
+            z_jacobi.mutableAdd(combinator.getWeight(key, k), gradients[parent]);
+        }
+        z_jacobi.increment(linearizer.getLinearIndexOfBias(node, key), 1);
+        z_jacobi.mutableMultiply(activation_derivative);
+        return z_jacobi;
+    }
+
+    @Override
+    public HashMap<Outcome, Vec> getGradientAtTime(NetworkHistory networkHistory, int timestep) {
         HashMap<Outcome, Vec> gradientMap = new HashMap<>();
         HashMap<INode, ArrayList<Outcome>> outcomeMap = networkHistory.getStateAtTimestep(timestep);
         for (Entry<INode, ArrayList<Outcome>> entry : outcomeMap.entrySet()) {
@@ -56,8 +157,16 @@ public class ForwardNetworkGradient implements INetworkGradient  {
     }
 
     protected Vec computeGradientOfOutcome(INode node, Outcome outcome) {
+        if (outcome.mergedOutcomes != null) {
+            return computeMergedGradientOfOutcome(node, outcome);
+        }
+        if (sparse) {
+            return computeSparseGradientOfOutcome(node, outcome);
+        }
+
         // the Jacobian and Hessian of the input matrix will always be zero
-        if (node instanceof IInputNode) {
+        // as are those of outcomes whose lineage was truncated
+        if (node instanceof IInputNode || outcome.sourceOutcomes == null) {
             outcome.trainingData = new DenseVector(linearizer.totalNumOfVariables);
             return (Vec) outcome.trainingData;
         }
@@ -65,7 +174,6 @@ public class ForwardNetworkGradient implements INetworkGradient  {
         Vec z_jacobi = new DenseVector(linearizer.totalNumOfVariables);
         int key = outcome.binary_string;
         IValueCombinator combinator = node.getValueCombinator();
-        double[] weights = combinator.getWeights(key);
 
         // construct the jacobian for the net value (z)
         // starting with the direct derivative of z
@@ -79,10 +187,12 @@ public class ForwardNetworkGradient implements INetworkGradient  {
         z_jacobi.set(bias_idx, 1);
 
         // incorporate previous jacobians
-        for (int i = 0; i < weights.length; i++) {
-            Vec weighed_jacobi = (Vec) outcome.sourceOutcomes[i].trainingData;
-            weighed_jacobi = weighed_jacobi.multiply(weights[i]);
-            z_jacobi.mutableAdd(weighed_jacobi);
+        // sources from before a truncation have none and are treated as constants
+        for (int i = 0; i < outcome.sourceOutcomes.length; i++) {
+            Vec source_jacobi = (Vec) outcome.sourceOutcomes[i].trainingData;
+            if (source_jacobi != null) {
+                z_jacobi.mutableAdd(combinator.getWeight(key, i), source_jacobi);
+            }
         }
 
         // apply to activated jacobi
@@ -93,4 +203,66 @@ public class ForwardNetworkGradient implements INetworkGradient  {
         outcome.trainingData = gradient;
         return gradient;
     }
+
+    /**
+     * Identical to {@link #computeGradientOfOutcome} but only visits the non-zero
+     * entries of each jacobian
+     */
+    protected Vec computeSparseGradientOfOutcome(INode node, Outcome outcome) {
+        if (node instanceof IInputNode || outcome.sourceOutcomes == null) {
+            outcome.trainingData = new SparseVector(linearizer.totalNumOfVariables, 0);
+            return (Vec) outcome.trainingData;
+        }
+
+        SparseGradientAccumulator accumulator = getAccumulator();
+        int key = outcome.binary_string;
+        IValueCombinator combinator = node.getValueCombinator();
+
+        for (int i = 0; i < outcome.sourceOutcomes.length; i++) {
+            accumulator.add(linearizer.getLinearIndexOfWeight(node, key, i), outcome.sourceOutcomes[i].activatedValue);
+        }
+        accumulator.add(linearizer.getLinearIndexOfBias(node, key), 1);
+
+        for (int i = 0; i < outcome.sourceOutcomes.length; i++) {
+            Vec source_jacobi = (Vec) outcome.sourceOutcomes[i].trainingData;
+            if (source_jacobi != null) {
+                accumulator.add(combinator.getWeight(key, i), source_jacobi);
+            }
+        }
+
+        ActivationFunction activator = node.getActivationFunction();
+        Vec gradient = accumulator.build(activator.derivative(outcome.netValue));
+
+        outcome.trainingData = gradient;
+        return gradient;
+    }
+
+    /**
+     * The value of a merged outcome is the probability-weighted mean of its
+     * components, so its jacobian is the weighted mean of theirs
+     */
+    private Vec computeMergedGradientOfOutcome(INode node, Outcome outcome) {
+        Outcome[] components = outcome.mergedOutcomes;
+        Vec[] componentGradients = new Vec[components.length];
+        for (int c = 0; c < components.length; c++) {
+            componentGradients[c] = computeGradientOfOutcome(node, components[c]);
+        }
+
+        Vec gradient;
+        if (sparse) {
+            SparseGradientAccumulator accumulator = getAccumulator();
+            for (int c = 0; c < components.length; c++) {
+                accumulator.add(outcome.getShareOf(components[c]), componentGradients[c]);
+            }
+            gradient = accumulator.build(1);
+        } else {
+            gradient = new DenseVector(linearizer.totalNumOfVariables);
+            for (int c = 0; c < components.length; c++) {
+                gradient.mutableAdd(outcome.getShareOf(components[c]), componentGradients[c]);
+            }
+        }
+
+        outcome.trainingData = gradient;
+        return gradient;
+    }
 }
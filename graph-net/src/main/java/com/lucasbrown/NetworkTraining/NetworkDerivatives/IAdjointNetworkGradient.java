@@ -0,0 +1,26 @@
+package com.lucasbrown.NetworkTraining.NetworkDerivatives;
+
+import java.util.HashMap;
+
+import com.lucasbrown.GraphNetwork.Local.Outcome;
+import com.lucasbrown.NetworkTraining.History.NetworkHistory;
+
+import jsat.linear.Vec;
+
+/**
+ * A network gradient which can directly compute a weighted sum of outcome
+ * jacobians without ever constructing the individual jacobians.
+ */
+public interface IAdjointNetworkGradient extends INetworkGradient {
+
+    /**
+     * Compute the sum over all seeded outcomes of seed * (jacobian of the
+     * outcome).
+     *
+     * @param networkHistory
+     * @param seeds          the coefficient of each outcome's jacobian
+     * @return
+     */
+    public Vec getGradientOfSeeds(NetworkHistory networkHistory, HashMap<Outcome, Double> seeds);
+
+}
@@ -12,4 +12,20 @@ public interface INetworkGradient {
     
     public ArrayList<HashMap<Outcome, Vec>> getGradient(NetworkHistory networkHistory);
 
+    /**
+     * Compute the jacobians of the outcomes of a single timestep. Each timestep
+     * reads the jacobians left on the outcomes of the one before it, so the
+     * timesteps must be visited in order starting from 0. This allows a history
+     * to be differentiated without holding the jacobians of every timestep, as
+     * is needed for a {@link NetworkHistory#isPaged() paged} history.
+     * 
+     * @param networkHistory
+     * @param timestep
+     * @return
+     */
+    public default HashMap<Outcome, Vec> getGradientAtTime(NetworkHistory networkHistory, int timestep) {
+        throw new UnsupportedOperationException(
+                getClass().getSimpleName() + " cannot compute the gradient one timestep at a time.");
+    }
+
 }
@@ -0,0 +1,237 @@
+package com.lucasbrown.NetworkTraining.NetworkDerivatives;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map.Entry;
+
+import com.lucasbrown.GraphNetwork.Local.Outcome;
+import com.lucasbrown.GraphNetwork.Local.Filters.IFilter;
+import com.lucasbrown.GraphNetwork.Local.Nodes.IInputNode;
+import com.lucasbrown.GraphNetwork.Local.Nodes.INode;
+import com.lucasbrown.GraphNetwork.Local.Nodes.ValueCombinators.IValueCombinator;
+import com.lucasbrown.NetworkTraining.History.NetworkHistory;
+import com.lucasbrown.NetworkTraining.Trainers.FilterLinearizer;
+import com.lucasbrown.NetworkTraining.Trainers.WeightsLinearizer;
+import com.lucasbrown.HelperClasses.Structs.Pair;
+
+import jsat.linear.DenseVector;
+import jsat.linear.Vec;
+
+/**
+ * Computes gradients using a backward pass through the network history
+ * (backpropagation through time).
+ *
+ * Rather than pushing a full jacobian forward through every outcome, adjoints
+ * are pulled backwards from the seeded outcomes through
+ * {@link Outcome#sourceOutcomes} and {@link Outcome#allRootOutcomes}. A single
+ * sweep yields both the weight gradient (seeded on outcome values, matching
+ * {@link ForwardNetworkGradient}) and the filter gradient (seeded on outcome
+ * probabilities, matching {@link ForwardFilterGradient}).
+ *
+ * {@link #getWeightsGradient()} and {@link #getFilterGradient()} expose each
+ * half as an {@link IAdjointNetworkGradient} for use by the output gradients.
+ */
+public class ReverseNetworkGradient {
+
+    protected final WeightsLinearizer weightsLinearizer;
+    protected final FilterLinearizer filterLinearizer;
+
+    public ReverseNetworkGradient(WeightsLinearizer weightsLinearizer, FilterLinearizer filterLinearizer) {
+        this.weightsLinearizer = weightsLinearizer;
+        this.filterLinearizer = filterLinearizer;
+    }
+
+    /**
+     * Perform a single backward sweep over the history
+     *
+     * @param networkHistory
+     * @param valueSeeds       coefficients of the jacobian of each outcome's
+     *                         activated value, may be null
+     * @param probabilitySeeds coefficients of the jacobian of each outcome's
+     *                         probability, may be null
+     * @return the weight gradient and the filter gradient
+     */
+    public Pair<Vec, Vec> backpropagate(NetworkHistory networkHistory, HashMap<Outcome, Double> valueSeeds,
+            HashMap<Outcome, Double> probabilitySeeds) {
+        double[] weightsGradient = new double[weightsLinearizer.totalNumOfVariables];
+        double[] filterGradient = new double[filterLinearizer.totalNumOfVariables];
+        // filter derivatives are written at the filter's offset
+        double[] filterDerivative = new double[filterLinearizer.totalNumOfVariables];
+
+        // [0] value adjoint, [1] log probability adjoint
+        HashMap<Outcome, double[]> adjoints = new HashMap<>();
+        if (valueSeeds != null) {
+            valueSeeds.forEach((outcome, seed) -> getAdjoint(adjoints, outcome)[0] += seed);
+        }
+        if (probabilitySeeds != null) {
+            // dp = p * dlog(p)
+            probabilitySeeds.forEach((outcome, seed) -> getAdjoint(adjoints, outcome)[1] += seed
+                    * Math.exp(outcome.getLogProbability()));
+        }
+
+        // signals always come from the previous timestep so each timestep only
+        // depends on those before it
+        for (int timestep = networkHistory.getNumberOfTimesteps() - 1; timestep >= 0; timestep--) {
+            HashMap<INode, ArrayList<Outcome>> outcomeMap = networkHistory.getStateAtTimestep(timestep);
+            for (Entry<INode, ArrayList<Outcome>> entry : outcomeMap.entrySet()) {
+                INode node = entry.getKey();
+
+                // the jacobians of input outcomes are always zero
+                if (node instanceof IInputNode) {
+                    continue;
+                }
+
+                for (Outcome outcome : entry.getValue()) {
+                    double[] adjoint = adjoints.remove(outcome);
+                    if (adjoint == null) {
+                        continue;
+                    }
+                    if (outcome.mergedOutcomes == null) {
+                        propagateAdjoint(node, outcome, adjoint[0], adjoint[1], adjoints, weightsGradient,
+                                filterGradient, filterDerivative);
+                        continue;
+                    }
+
+                    // the value and the log probability derivative of a merged
+                    // outcome are the weighted means of those of its components
+                    for (Outcome component : outcome.mergedOutcomes) {
+                        double share = outcome.getShareOf(component);
+                        propagateAdjoint(node, component, adjoint[0] * share, adjoint[1] * share, adjoints,
+                                weightsGradient, filterGradient, filterDerivative);
+                    }
+                }
+            }
+        }
+
+        return new Pair<>(new DenseVector(weightsGradient), new DenseVector(filterGradient));
+    }
+
+    private void propagateAdjoint(INode node, Outcome outcome, double valueAdjoint, double logProbabilityAdjoint,
+            HashMap<Outcome, double[]> adjoints, double[] weightsGradient, double[] filterGradient,
+            double[] filterDerivative) {
+        if (valueAdjoint != 0) {
+            propagateValueAdjoint(node, outcome, valueAdjoint, adjoints, weightsGradient);
+        }
+        if (logProbabilityAdjoint != 0) {
+            propagateLogProbabilityAdjoint(node, outcome, logProbabilityAdjoint, adjoints, filterGradient,
+                    filterDerivative);
+        }
+    }
+
+    private static double[] getAdjoint(HashMap<Outcome, double[]> adjoints, Outcome outcome) {
+        return adjoints.computeIfAbsent(outcome, _1 -> new double[2]);
+    }
+
+    /**
+     * a = f(z), z = bias + sum(w_i * a_i)
+     */
+    private void propagateValueAdjoint(INode node, Outcome outcome, double valueAdjoint,
+            HashMap<Outcome, double[]> adjoints, double[] weightsGradient) {
+        int key = outcome.binary_string;
+        IValueCombinator combinator = node.getValueCombinator();
+        // outcomes whose lineage was truncated are constants
+        if (outcome.sourceOutcomes == null) {
+            return;
+        }
+        double z_adjoint = valueAdjoint * node.getActivationFunction().derivative(outcome.netValue);
+
+        for (int i = 0; i < outcome.sourceOutcomes.length; i++) {
+            Outcome source = outcome.sourceOutcomes[i];
+            weightsGradient[weightsLinearizer.getLinearIndexOfWeight(node, key, i)] += z_adjoint
+                    * source.activatedValue;
+            getAdjoint(adjoints, source)[0] += z_adjoint * combinator.getWeight(key, i);
+        }
+        weightsGradient[weightsLinearizer.getLinearIndexOfBias(node, key)] += z_adjoint;
+    }
+
+    /**
+     * log(p) = sum(log(p_root) + log(f(a_root)))
+     */
+    private void propagateLogProbabilityAdjoint(INode node, Outcome outcome, double logProbabilityAdjoint,
+            HashMap<Outcome, double[]> adjoints, double[] filterGradient, double[] filterDerivative) {
+        // if the probability is zero, then this contributes nothing to the final outcome
+        if (outcome.getLogProbability() == Double.NEGATIVE_INFINITY || outcome.allRootOutcomes == null) {
+            return;
+        }
+
+        int root_count = 0;
+        int key = outcome.root_bin_str;
+        IFilter[] filters = node.getProbabilityCombinator().getFilters(key);
+
+        for (int i = 0; root_count < outcome.allRootOutcomes.length; i++) {
+            if (((key >> i) & 0b1) == 0) {
+                continue;
+            }
+
+            Outcome rootOutcome = outcome.allRootOutcomes[root_count];
+            getAdjoint(adjoints, rootOutcome)[1] += logProbabilityAdjoint;
+
+            IFilter filter = filters[root_count];
+            int start = filterLinearizer.vectorFilterOffset.get(filter);
+            if (((outcome.binary_string >> i) & 0b1) == 0) {
+                filter.getNegatedLogarithmicParameterDerivative(rootOutcome.activatedValue, filterDerivative, start);
+            } else {
+                filter.getLogarithmicParameterDerivative(rootOutcome.activatedValue, filterDerivative, start);
+            }
+
+            for (int j = start; j < start + filter.getNumberOfAdjustableParameters(); j++) {
+                filterGradient[j] += logProbabilityAdjoint * filterDerivative[j];
+            }
+            root_count++;
+        }
+    }
+
+    /**
+     * @return the gradient of outcome values with respect to the weights
+     */
+    public IAdjointNetworkGradient getWeightsGradient() {
+        return new AdjointView(true);
+    }
+
+    /**
+     * @return the gradient of outcome probabilities with respect to the filters
+     */
+    public IAdjointNetworkGradient getFilterGradient() {
+        return new AdjointView(false);
+    }
+
+    private class AdjointView implements IAdjointNetworkGradient {
+
+        private final boolean isWeights;
+
+        private AdjointView(boolean isWeights) {
+            this.isWeights = isWeights;
+        }
+
+        @Override
+        public Vec getGradientOfSeeds(NetworkHistory networkHistory, HashMap<Outcome, Double> seeds) {
+            Pair<Vec, Vec> gradients = isWeights ? backpropagate(networkHistory, seeds, null)
+                    : backpropagate(networkHistory, null, seeds);
+            return isWeights ? gradients.u : gradients.v;
+        }
+
+        /**
+         * Each jacobian requires its own backward sweep. Prefer
+         * {@link #getGradientOfSeeds} which needs only one.
+         */
+        @Override
+        public ArrayList<HashMap<Outcome, Vec>> getGradient(NetworkHistory networkHistory) {
+            int n_steps = networkHistory.getNumberOfTimesteps();
+            ArrayList<HashMap<Outcome, Vec>> gradientsThroughTime = new ArrayList<>(n_steps);
+            HashMap<Outcome, Double> seeds = new HashMap<>(1);
+
+            for (int timestep = 0; timestep < n_steps; timestep++) {
+                HashMap<Outcome, Vec> gradientMap = new HashMap<>();
+                for (ArrayList<Outcome> outcomes : networkHistory.getStateAtTimestep(timestep).values()) {
+                    for (Outcome outcome : outcomes) {
+                        seeds.clear();
+                        seeds.put(outcome, 1d);
+                        gradientMap.put(outcome, getGradientOfSeeds(networkHistory, seeds));
+                    }
+                }
+                gradientsThroughTime.add(gradientMap);
+            }
+            return gradientsThroughTime;
+        }
+    }
+}
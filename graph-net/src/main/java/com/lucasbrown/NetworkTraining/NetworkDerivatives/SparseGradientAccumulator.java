@@ -0,0 +1,71 @@
+package com.lucasbrown.NetworkTraining.NetworkDerivatives;
+
+import java.util.Arrays;
+
+import jsat.linear.IndexValue;
+import jsat.linear.SparseVector;
+import jsat.linear.Vec;
+
+/**
+ * Scratch space for building sparse gradients.
+ * Values are scattered into a dense buffer while the touched indices are
+ * recorded, so only those indices need to be gathered and cleared afterwards.
+ * A single accumulator is reused for every outcome of a gradient pass.
+ */
+public class SparseGradientAccumulator {
+
+    private final double[] values;
+    private final boolean[] isTouched;
+    private int[] touched;
+    private int used;
+
+    public SparseGradientAccumulator(int length) {
+        values = new double[length];
+        isTouched = new boolean[length];
+        touched = new int[Math.min(length, 16)];
+        used = 0;
+    }
+
+    public int length() {
+        return values.length;
+    }
+
+    public void add(int index, double value) {
+        if (!isTouched[index]) {
+            isTouched[index] = true;
+            if (used == touched.length) {
+                touched = Arrays.copyOf(touched, Math.max(1, 2 * used));
+            }
+            touched[used++] = index;
+        }
+        values[index] += value;
+    }
+
+    /**
+     * Add scale * vec, visiting only the non-zero entries of vec
+     */
+    public void add(double scale, Vec vec) {
+        for (IndexValue iv : vec) {
+            add(iv.getIndex(), scale * iv.getValue());
+        }
+    }
+
+    /**
+     * Gather the accumulated values, multiplied by scale, into a new sparse
+     * vector and clear the accumulator
+     */
+    public SparseVector build(double scale) {
+        Arrays.sort(touched, 0, used);
+        int[] indices = Arrays.copyOf(touched, used);
+        double[] gathered = new double[used];
+        for (int i = 0; i < used; i++) {
+            int idx = indices[i];
+            gathered[i] = values[idx] * scale;
+            values[idx] = 0;
+            isTouched[idx] = false;
+        }
+        SparseVector vec = new SparseVector(indices, gathered, values.length, used);
+        used = 0;
+        return vec;
+    }
+}
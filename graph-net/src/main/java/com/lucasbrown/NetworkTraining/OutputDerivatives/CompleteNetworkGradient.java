@@ -68,6 +68,11 @@ public class CompleteNetworkGradient implements IGradient {
         this.targets = targets;
     }
 
+    @Override
+    public void setTotalNumberOfVariables(int totalNumOfVariables) {
+        this.totalNumOfVariables = totalNumOfVariables;
+    }
+
     public Double[][] getTargets() {
         return targets;
     }
@@ -30,15 +30,15 @@ public class DirectNetworkGradient extends GradientBase {
             return gradient;
         }
 
-        double probabilityVolume = IGradient.getProbabilityVolume(outcomesAtTime);
+        double logProbabilityVolume = IGradient.getLogProbabilityVolume(outcomesAtTime);
 
-        if (probabilityVolume == 0) {
+        if (logProbabilityVolume == Double.NEGATIVE_INFINITY) {
             return gradient;
         }
 
         for (Outcome outcome : outcomesAtTime) {
             double error_derivative = errorFunction.error_derivative(outcome.activatedValue, target);
-            double prob = outcome.probability / probabilityVolume;
+            double prob = IGradient.getNormalizedProbability(outcome, logProbabilityVolume);
 
             // accumulate jacobians
             Vec networkDerivative = gradientAtTime.get(outcome);
@@ -49,6 +49,29 @@ public class DirectNetworkGradient extends GradientBase {
         return gradient;
     }
 
+    @Override
+    protected boolean computeSeedsOfOutput(ArrayList<Outcome> outcomesAtTime, Double target,
+            HashMap<Outcome, Double> seeds) {
+        if (outcomesAtTime == null | target == null) {
+            return false;
+        }
+
+        double logProbabilityVolume = IGradient.getLogProbabilityVolume(outcomesAtTime);
+
+        if (logProbabilityVolume == Double.NEGATIVE_INFINITY) {
+            return false;
+        }
+
+        boolean is_seeded = false;
+        for (Outcome outcome : outcomesAtTime) {
+            double error_derivative = errorFunction.error_derivative(outcome.activatedValue, target);
+            double seed = IGradient.getNormalizedProbability(outcome, logProbabilityVolume) * error_derivative;
+            seeds.merge(outcome, seed, Double::sum);
+            is_seeded |= seed != 0;
+        }
+        return is_seeded;
+    }
+
     @Override
     protected double computeErrorOfOutput(ArrayList<Outcome> outcomesAtTime, Double target) {
         double error = 0;
@@ -57,17 +80,18 @@ public class DirectNetworkGradient extends GradientBase {
             return error;
         }
 
-        double probabilityVolume = IGradient.getProbabilityVolume(outcomesAtTime);
+        double logProbabilityVolume = IGradient.getLogProbabilityVolume(outcomesAtTime);
 
-        if (probabilityVolume == 0) {
+        if (logProbabilityVolume == Double.NEGATIVE_INFINITY) {
             return error;
         }
         
         for (Outcome outcome : outcomesAtTime) {
-            error += outcome.probability * errorFunction.error(outcome.activatedValue, target);
+            error += IGradient.getNormalizedProbability(outcome, logProbabilityVolume)
+                    * errorFunction.error(outcome.activatedValue, target);
         }
 
-        return error / probabilityVolume;
+        return error;
     }
 
 }
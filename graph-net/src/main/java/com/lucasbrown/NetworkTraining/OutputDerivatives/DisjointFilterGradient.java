@@ -316,6 +316,11 @@ public class DisjointFilterGradient implements IGradient {
         this.targets = targets;
     }
 
+    @Override
+    public void setTotalNumberOfVariables(int totalNumOfVariables) {
+        this.totalNumOfVariables = totalNumOfVariables;
+    }
+
     @Override
     public Double[][] getTargets() {
         return targets;
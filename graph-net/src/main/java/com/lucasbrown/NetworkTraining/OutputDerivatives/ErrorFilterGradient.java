@@ -38,6 +38,22 @@ public class ErrorFilterGradient extends GradientBase {
         return gradient;
     }
 
+    @Override
+    protected boolean computeSeedsOfOutput(ArrayList<Outcome> outcomesAtTime, Double target,
+            HashMap<Outcome, Double> seeds) {
+        if (outcomesAtTime == null || target == null) {
+            return false;
+        }
+
+        boolean is_seeded = false;
+        for (Outcome outcome : outcomesAtTime) {
+            double error = -errorFunction.error(outcome.activatedValue, target);
+            seeds.merge(outcome, error, Double::sum);
+            is_seeded |= error != 0;
+        }
+        return is_seeded;
+    }
+
     @Override
     protected double computeErrorOfOutput(ArrayList<Outcome> outcomesAtTime, Double target) {
         double error = 0;
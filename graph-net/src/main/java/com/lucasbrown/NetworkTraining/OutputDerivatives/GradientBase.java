@@ -8,6 +8,7 @@ import com.lucasbrown.GraphNetwork.Local.Outcome;
 import com.lucasbrown.GraphNetwork.Local.Nodes.INode;
 import com.lucasbrown.GraphNetwork.Local.Nodes.OutputNode;
 import com.lucasbrown.NetworkTraining.History.NetworkHistory;
+import com.lucasbrown.NetworkTraining.NetworkDerivatives.IAdjointNetworkGradient;
 import com.lucasbrown.NetworkTraining.NetworkDerivatives.INetworkGradient;
 
 import jsat.linear.DenseVector;
@@ -17,7 +18,6 @@ public abstract class GradientBase implements IGradient {
 
     private Double[][] targets;
     private INetworkGradient networkGradientEvaluater;
-    private Vec gradient;
     protected ArrayList<OutputNode> outputNodes;
     protected int totalNumOfVariables;
 
@@ -31,16 +31,29 @@ public abstract class GradientBase implements IGradient {
 
     @Override
     public Vec computeGradient(NetworkHistory networkHistory) {
-        ArrayList<HashMap<Outcome, Vec>> networkGradient = networkGradientEvaluater.getGradient(networkHistory);
-        gradient = new DenseVector(totalNumOfVariables);
+        return computeGradient(networkHistory, targets);
+    }
+
+    @Override
+    public Vec computeGradient(NetworkHistory networkHistory, Double[][] targets) {
+        if (networkGradientEvaluater instanceof IAdjointNetworkGradient && !networkHistory.isPaged()) {
+            return computeGradientFromSeeds(networkHistory, targets, (IAdjointNetworkGradient) networkGradientEvaluater);
+        }
+
+        // a paged history is differentiated one timestep at a time
+        ArrayList<HashMap<Outcome, Vec>> networkGradient = networkHistory.isPaged() ? null
+                : networkGradientEvaluater.getGradient(networkHistory);
+        Vec gradient = new DenseVector(totalNumOfVariables);
 
         int T = 0;
         for (int timestep = 0; timestep < targets.length; timestep++) {
             Vec gradient_at_time = new DenseVector(totalNumOfVariables);
+            HashMap<Outcome, Vec> gradientAtTime = networkGradient == null
+                    ? networkGradientEvaluater.getGradientAtTime(networkHistory, timestep)
+                    : networkGradient.get(timestep);
             for (int i = 0; i < outputNodes.size(); i++) {
                 INode outputNode = outputNodes.get(i);
                 ArrayList<Outcome> outcomesAtTime = networkHistory.getStateOfRecord(timestep, outputNode);
-                HashMap<Outcome, Vec> gradientAtTime = networkGradient.get(timestep);
                 Double target = targets[timestep][i];
                 gradient_at_time.mutableAdd(computeGradientOfOutput(outcomesAtTime, gradientAtTime, target));
             }
@@ -57,11 +70,47 @@ public abstract class GradientBase implements IGradient {
 
     }
 
+    /**
+     * Collect the coefficient of every output outcome's jacobian and let the
+     * evaluater sum them in a single pass. A timestep is counted whenever any of
+     * its seeds is non-zero rather than when the resulting gradient is non-zero.
+     */
+    private Vec computeGradientFromSeeds(NetworkHistory networkHistory, Double[][] targets,
+            IAdjointNetworkGradient evaluater) {
+        HashMap<Outcome, Double> seeds = new HashMap<>();
+
+        int T = 0;
+        for (int timestep = 0; timestep < targets.length; timestep++) {
+            boolean is_seeded = false;
+            for (int i = 0; i < outputNodes.size(); i++) {
+                INode outputNode = outputNodes.get(i);
+                ArrayList<Outcome> outcomesAtTime = networkHistory.getStateOfRecord(timestep, outputNode);
+                Double target = targets[timestep][i];
+                is_seeded |= computeSeedsOfOutput(outcomesAtTime, target, seeds);
+            }
+            if (is_seeded) {
+                T++;
+            }
+        }
+
+        Vec gradient = evaluater.getGradientOfSeeds(networkHistory, seeds);
+        if (T == 0) {
+            return gradient;
+        } else {
+            return gradient.divide(T);
+        }
+    }
+
     @Override
     public void setTargets(Double[][] targets) {
         this.targets = targets;
     }
 
+    @Override
+    public void setTotalNumberOfVariables(int totalNumOfVariables) {
+        this.totalNumOfVariables = totalNumOfVariables;
+    }
+
     @Override
     public Double[][] getTargets() {
         return targets;
@@ -86,5 +135,14 @@ public abstract class GradientBase implements IGradient {
     protected abstract Vec computeGradientOfOutput(ArrayList<Outcome> outcomesAtTime,
             HashMap<Outcome, Vec> gradientAtTime, Double target);
 
+    /**
+     * Add the coefficient with which {@link #computeGradientOfOutput} scales the
+     * jacobian of each outcome to seeds
+     * 
+     * @return true if any non-zero seed was added
+     */
+    protected abstract boolean computeSeedsOfOutput(ArrayList<Outcome> outcomesAtTime, Double target,
+            HashMap<Outcome, Double> seeds);
+
     protected abstract double computeErrorOfOutput(ArrayList<Outcome> outcomesAtTime, Double target);
 }
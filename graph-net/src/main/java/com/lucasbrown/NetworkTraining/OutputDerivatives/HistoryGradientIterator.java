@@ -9,6 +9,7 @@ import com.lucasbrown.GraphNetwork.Local.Nodes.IOutputNode;
 import com.lucasbrown.NetworkTraining.History.NetworkHistory;
 import com.lucasbrown.NetworkTraining.History.NetworkHistory.HistoryOutputIterator;
 import com.lucasbrown.NetworkTraining.History.NetworkHistory.HistoryOutputIteratorStruct;
+import com.lucasbrown.NetworkTraining.NetworkDerivatives.INetworkGradient;
 import com.lucasbrown.NetworkTraining.OutputDerivatives.HistoryGradientIterator.GradientOutputStruct;
 
 import jsat.linear.Vec;
@@ -19,10 +20,28 @@ public class HistoryGradientIterator implements Iterator<GradientOutputStruct>{
     private final ArrayList<HashMap<Outcome, Vec>> networkGradient;
     private Double[][] targets;
 
+    private final NetworkHistory networkHistory;
+    private final INetworkGradient networkGradientEvaluater;
+    private HashMap<Outcome, Vec> gradientAtTime;
+    private int gradientTimestep = -1;
+
     public HistoryGradientIterator(NetworkHistory networkHistory, ArrayList<? extends IOutputNode> outputNodes, ArrayList<HashMap<Outcome, Vec>> networkGradient, Double[][] targets) {
         histIter = networkHistory.new HistoryOutputIterator(outputNodes);
         this.networkGradient = networkGradient;
         this.targets = targets;
+        this.networkHistory = networkHistory;
+        networkGradientEvaluater = null;
+    }
+
+    /**
+     * Compute the gradient of each timestep as it is reached rather than up front
+     */
+    public HistoryGradientIterator(NetworkHistory networkHistory, ArrayList<? extends IOutputNode> outputNodes, INetworkGradient networkGradientEvaluater, Double[][] targets) {
+        histIter = networkHistory.new HistoryOutputIterator(outputNodes);
+        networkGradient = null;
+        this.targets = targets;
+        this.networkHistory = networkHistory;
+        this.networkGradientEvaluater = networkGradientEvaluater;
     }
 
     @Override
@@ -33,7 +52,17 @@ public class HistoryGradientIterator implements Iterator<GradientOutputStruct>{
     @Override
     public GradientOutputStruct next() {
         HistoryOutputIteratorStruct struct = histIter.next();
-        return new GradientOutputStruct(struct, networkGradient == null ? null : networkGradient.get(struct.timestep), targets[struct.timestep][struct.outputNodeIndex]);
+        return new GradientOutputStruct(struct, getGradientAtTime(struct.timestep), targets[struct.timestep][struct.outputNodeIndex]);
+    }
+
+    private HashMap<Outcome, Vec> getGradientAtTime(int timestep) {
+        if (networkGradientEvaluater == null) {
+            return networkGradient == null ? null : networkGradient.get(timestep);
+        }
+        while (gradientTimestep < timestep) {
+            gradientAtTime = networkGradientEvaluater.getGradientAtTime(networkHistory, ++gradientTimestep);
+        }
+        return gradientAtTime;
     }
     
     public static class GradientOutputStruct extends HistoryOutputIteratorStruct{
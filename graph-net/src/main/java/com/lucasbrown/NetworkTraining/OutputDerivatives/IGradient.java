@@ -1,6 +1,7 @@
 package com.lucasbrown.NetworkTraining.OutputDerivatives;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.stream.Stream;
@@ -15,17 +16,85 @@ public interface IGradient {
 
     public Vec computeGradient(NetworkHistory networkHistory);
 
+    /**
+     * Compute the gradient of a history against the given targets rather than
+     * those set by {@link #setTargets}. Implementations which override this may
+     * be called from several threads at once.
+     * 
+     * @param networkHistory
+     * @param targets
+     * @return
+     */
+    public default Vec computeGradient(NetworkHistory networkHistory, Double[][] targets) {
+        synchronized (this) {
+            Double[][] previousTargets = getTargets();
+            setTargets(targets);
+            try {
+                return computeGradient(networkHistory);
+            } finally {
+                setTargets(previousTargets);
+            }
+        }
+    }
+
     public double getTotalError(NetworkHistory networkHistory);
 
     public void setTargets(Double[][] targets); 
     public Double[][] getTargets();
 
+    /**
+     * Notify the gradient that the number of parameters it differentiates by has
+     * changed
+     * 
+     * @param totalNumOfVariables
+     */
+    public default void setTotalNumberOfVariables(int totalNumOfVariables) {
+        throw new UnsupportedOperationException("This gradient does not support parameter sets that change size.");
+    }
+
     static double getProbabilityVolume(Outcome[] outcomes) {
-        return Stream.of(outcomes).mapToDouble(outcome -> outcome.probability).sum();
+        return Math.exp(getLogProbabilityVolume(outcomes));
     }
 
     static double getProbabilityVolume(Collection<Outcome> outcomes) {
-        return outcomes.stream().mapToDouble(outcome -> outcome.probability).sum();
+        return Math.exp(getLogProbabilityVolume(outcomes));
+    }
+
+    static double getLogProbabilityVolume(Outcome[] outcomes) {
+        return getLogProbabilityVolume(Arrays.asList(outcomes));
+    }
+
+    /**
+     * Sum the probabilities of the outcomes in log space (log-sum-exp), so that
+     * the volume of outcomes with underflowing probabilities is still known
+     * 
+     * @param outcomes
+     * @return the log of the total probability of the outcomes
+     */
+    static double getLogProbabilityVolume(Collection<Outcome> outcomes) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (Outcome outcome : outcomes) {
+            max = Math.max(max, outcome.getLogProbability());
+        }
+        if (max == Double.NEGATIVE_INFINITY) {
+            return max;
+        }
+
+        double sum = 0;
+        for (Outcome outcome : outcomes) {
+            sum += Math.exp(outcome.getLogProbability() - max);
+        }
+        return max + Math.log(sum);
+    }
+
+    /**
+     * @param outcome
+     * @param logProbabilityVolume the log of the total probability of all
+     *                             outcomes of the node
+     * @return the probability of the outcome relative to the others
+     */
+    static double getNormalizedProbability(Outcome outcome, double logProbabilityVolume) {
+        return Math.exp(outcome.getLogProbability() - logProbabilityVolume);
     }
 
 }
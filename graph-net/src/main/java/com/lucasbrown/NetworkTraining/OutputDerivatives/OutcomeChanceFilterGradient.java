@@ -55,6 +55,20 @@ public class OutcomeChanceFilterGradient extends GradientBase {
         // }
     }
 
+    @Override
+    protected boolean computeSeedsOfOutput(ArrayList<Outcome> outcomesAtTime, Double target,
+            HashMap<Outcome, Double> seeds) {
+        if (outcomesAtTime == null || outcomesAtTime.isEmpty()) {
+            return false;
+        }
+
+        double seed = target == null ? 1 : -1;
+        for (Outcome outcome : outcomesAtTime) {
+            seeds.merge(outcome, seed, Double::sum);
+        }
+        return true;
+    }
+
     protected double computeErrorOfOutput(ArrayList<Outcome> outcomesAtTime, Double target) {
         if (outcomesAtTime == null || outcomesAtTime.isEmpty()) {
             return 0;
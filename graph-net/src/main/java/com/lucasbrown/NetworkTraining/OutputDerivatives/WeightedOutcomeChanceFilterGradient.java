@@ -7,6 +7,7 @@ import com.lucasbrown.GraphNetwork.Global.GraphNetwork;
 import com.lucasbrown.GraphNetwork.Local.Outcome;
 import com.lucasbrown.GraphNetwork.Local.Nodes.OutputNode;
 import com.lucasbrown.NetworkTraining.History.NetworkHistory;
+import com.lucasbrown.NetworkTraining.NetworkDerivatives.IAdjointNetworkGradient;
 import com.lucasbrown.NetworkTraining.NetworkDerivatives.INetworkGradient;
 import com.lucasbrown.NetworkTraining.OutputDerivatives.ErrorFunction.CrossEntropy;
 
@@ -24,9 +25,6 @@ public class WeightedOutcomeChanceFilterGradient implements IGradient {
     private ErrorFunction errorFunction;
     private static final CrossEntropy crossEntropy = new CrossEntropy();
 
-    private NetworkHistory networkHistory;
-    private ArrayList<HashMap<Outcome, Vec>> networkGradient;
-
     public WeightedOutcomeChanceFilterGradient(GraphNetwork network, INetworkGradient networkGradientEvaluater,
             Double[][] targets, ErrorFunction errorFunction, int totalNumOfVariables) {
         this.targets = targets;
@@ -39,11 +37,27 @@ public class WeightedOutcomeChanceFilterGradient implements IGradient {
 
     @Override
     public Vec computeGradient(NetworkHistory networkHistory) {
-        this.networkHistory = networkHistory;
-        networkGradient = networkGradientEvaluater.getGradient(networkHistory);
+        return computeGradient(networkHistory, targets);
+    }
+
+    @Override
+    public Vec computeGradient(NetworkHistory networkHistory, Double[][] targets) {
+        if (networkHistory.isPaged()) {
+            // each pass differentiates the history one timestep at a time
+            Vec probGrad = gradientOfTargets(
+                    new HistoryGradientIterator(networkHistory, outputNodes, networkGradientEvaluater, targets));
+            Vec valueGrad = gradientOfValues(
+                    new HistoryGradientIterator(networkHistory, outputNodes, networkGradientEvaluater, targets));
+            return probGrad.subtract(valueGrad);
+        }
+        if (networkGradientEvaluater instanceof IAdjointNetworkGradient) {
+            return ((IAdjointNetworkGradient) networkGradientEvaluater).getGradientOfSeeds(networkHistory,
+                    computeSeeds(localIterateOverHistory(networkHistory, null, targets)));
+        }
+        ArrayList<HashMap<Outcome, Vec>> networkGradient = networkGradientEvaluater.getGradient(networkHistory);
 
-        Vec probGrad = gradientOfTargets();
-        Vec valueGrad = gradientOfValues();
+        Vec probGrad = gradientOfTargets(localIterateOverHistory(networkHistory, networkGradient, targets));
+        Vec valueGrad = gradientOfValues(localIterateOverHistory(networkHistory, networkGradient, targets));
         // double probError = errorOfTargets();
         // double valueError = errorOfValues();
 
@@ -51,7 +65,75 @@ public class WeightedOutcomeChanceFilterGradient implements IGradient {
 
     }
 
-    private Vec gradientOfTargets() {
+    /**
+     * The coefficients of each outcome's jacobian in probGrad - valueGrad
+     */
+    private HashMap<Outcome, Double> computeSeeds(HistoryGradientIterator historyIterator) {
+        final int out_size = outputNodes.size();
+        ArrayList<HashMap<Outcome, Double>> seeds_prob = new ArrayList<>(out_size);
+        ArrayList<HashMap<Outcome, Double>> seeds_value = new ArrayList<>(out_size);
+        int[] T_prob = new int[out_size];
+        int[] T_value = new int[out_size];
+
+        for (int i = 0; i < out_size; i++) {
+            seeds_prob.add(new HashMap<>());
+            seeds_value.add(new HashMap<>());
+        }
+
+        historyIterator.forEachRemaining(struct -> {
+            boolean is_value = struct.target != null;
+
+            // skip when there's no outcome
+            if (struct.outcomes == null || struct.outcomes.isEmpty()) {
+                return;
+            }
+
+            // probability component
+            double probabilityVolume = IGradient.getProbabilityVolume(struct.outcomes);
+            double ce_derivative = crossEntropy.error_derivative(probabilityVolume, is_value ? 1 : 0);
+            for (Outcome outcome : struct.outcomes) {
+                seeds_prob.get(struct.outputNodeIndex).merge(outcome, ce_derivative, Double::sum);
+            }
+            T_prob[struct.outputNodeIndex]++;
+
+            if (!is_value) {
+                return;
+            }
+
+            // value component
+            T_value[struct.outputNodeIndex]++;
+            if (probabilityVolume == 0) {
+                return;
+            }
+
+            double[] errorOfOutputs = new double[struct.outcomes.size()];
+            double totalOutputError = 0;
+            for (int j = 0; j < errorOfOutputs.length; j++) {
+                double errorOfOutput = errorFunction.error(struct.outcomes.get(j).activatedValue, struct.target);
+                errorOfOutputs[j] = Math.exp(-errorOfOutput / temperature);
+                totalOutputError += errorOfOutputs[j];
+            }
+            if (totalOutputError == 0) {
+                return;
+            }
+
+            for (int j = 0; j < errorOfOutputs.length; j++) {
+                seeds_value.get(struct.outputNodeIndex).merge(struct.outcomes.get(j),
+                        -errorOfOutputs[j] / (totalOutputError * probabilityVolume), Double::sum);
+            }
+        });
+
+        // probGrad - valueGrad
+        HashMap<Outcome, Double> seeds = new HashMap<>();
+        for (int i = 0; i < out_size; i++) {
+            final int T_p = T_prob[i], T_v = T_value[i];
+            seeds_prob.get(i).forEach((outcome, seed) -> seeds.merge(outcome, seed / T_p, Double::sum));
+            seeds_value.get(i).forEach((outcome, seed) -> seeds.merge(outcome, -seed / T_v, Double::sum));
+        }
+        return seeds;
+    }
+
+    private Vec gradientOfTargets(HistoryGradientIterator historyIterator) {
 
         final int out_size = outputNodes.size();
         Vec[] gradient_prob = new Vec[out_size];
@@ -67,7 +149,7 @@ public class WeightedOutcomeChanceFilterGradient implements IGradient {
             gradient_prob[i] = new DenseVector(totalNumOfVariables);
         }
 
-        localIterateOverHistory().forEachRemaining(struct -> {
+        historyIterator.forEachRemaining(struct -> {
             boolean is_value = struct.target != null;
 
             // skip when there's no outcome
@@ -91,7 +173,7 @@ public class WeightedOutcomeChanceFilterGradient implements IGradient {
         return probGrad;
     }
 
-    private Vec gradientOfValues() {
+    private Vec gradientOfValues(HistoryGradientIterator historyIterator) {
 
         final int out_size = outputNodes.size();
         Vec[] gradient_value = new Vec[out_size];
@@ -108,7 +190,7 @@ public class WeightedOutcomeChanceFilterGradient implements IGradient {
         }
 
         // loop over all output nodes at every timestep
-        localIterateOverHistory().forEachRemaining(struct -> {
+        historyIterator.forEachRemaining(struct -> {
             boolean is_value = struct.target != null;
 
             // value component
@@ -190,7 +272,7 @@ public class WeightedOutcomeChanceFilterGradient implements IGradient {
         return gradient;
     }
 
-    private double errorOfTargets() {
+    private double errorOfTargets(HistoryGradientIterator historyIterator) {
 
         final int out_size = outputNodes.size();
         double[] error_prob = new double[out_size];
@@ -201,7 +283,7 @@ public class WeightedOutcomeChanceFilterGradient implements IGradient {
         }
 
         // loop over all output nodes at every timestep
-        localIterateOverHistory().forEachRemaining(struct -> {
+        historyIterator.forEachRemaining(struct -> {
             boolean is_value = struct.target != null;
 
             // skip when there's no outcome
@@ -226,7 +308,7 @@ public class WeightedOutcomeChanceFilterGradient implements IGradient {
         return error;
     }
 
-    private double errorOfValues() {
+    private double errorOfValues(HistoryGradientIterator historyIterator) {
 
         final int out_size = outputNodes.size();
         double[] error_value = new double[out_size];
@@ -236,7 +318,7 @@ public class WeightedOutcomeChanceFilterGradient implements IGradient {
             return 0;
         }
 
-        localIterateOverHistory().forEachRemaining(struct -> {
+        historyIterator.forEachRemaining(struct -> {
             boolean is_value = struct.target != null;
 
             // value component
@@ -299,14 +381,13 @@ public class WeightedOutcomeChanceFilterGradient implements IGradient {
 
     @Override
     public double getTotalError(NetworkHistory networkHistory) {
-        this.networkHistory = networkHistory;
-        networkGradient = null;
-        double tErr = errorOfTargets();
-        double vErr = errorOfValues();
+        double tErr = errorOfTargets(localIterateOverHistory(networkHistory, null, targets));
+        double vErr = errorOfValues(localIterateOverHistory(networkHistory, null, targets));
         return tErr - vErr;
     }
 
-    private HistoryGradientIterator localIterateOverHistory() {
+    private HistoryGradientIterator localIterateOverHistory(NetworkHistory networkHistory,
+            ArrayList<HashMap<Outcome, Vec>> networkGradient, Double[][] targets) {
         return new HistoryGradientIterator(networkHistory, outputNodes, networkGradient, targets);
     }
 
@@ -315,6 +396,11 @@ public class WeightedOutcomeChanceFilterGradient implements IGradient {
         this.targets = targets;
     }
 
+    @Override
+    public void setTotalNumberOfVariables(int totalNumOfVariables) {
+        this.totalNumOfVariables = totalNumOfVariables;
+    }
+
     @Override
     public Double[][] getTargets() {
         return targets;
@@ -2,59 +2,48 @@ package com.lucasbrown.NetworkTraining.Solvers;
 
 import com.lucasbrown.NetworkTraining.OutputDerivatives.IGradient;
 
-import jsat.linear.DenseVector;
-import jsat.linear.Vec;
-
-public class ADAMSolver implements ISolver{
-
-    protected IGradient gradientEvaluator;
-    private int totalNumOfVariables;
+public class ADAMSolver extends SolverBase {
 
     public double alpha = 0.001;
     public double epsilon = 1E-8;
     public double beta_1 = 0.99;
     public double beta_2 = 0.999;
 
-    private int t;
-
-    private Vec parameterDeltas;
+    protected int t;
 
-    private Vec m; // biased first-moment estimate
-    private Vec v; // biased second-moment estimate
-    private Vec m_hat; // bias corrected first-moment
-    private Vec v_hat; // bias corrected second-moment
+    protected double[] m; // biased first-moment estimate
+    protected double[] v; // biased second-moment estimate
 
     public ADAMSolver(IGradient gradientEvaluator, int totalNumOfVariables) {
-        this.gradientEvaluator = gradientEvaluator;
-        this.totalNumOfVariables = totalNumOfVariables;
+        super(gradientEvaluator, totalNumOfVariables);
 
         t = 0;
-        m = new DenseVector(totalNumOfVariables);
-        v = new DenseVector(totalNumOfVariables);
-        m_hat = new DenseVector(totalNumOfVariables);
-        v_hat = new DenseVector(totalNumOfVariables);
+        m = new double[totalNumOfVariables];
+        v = new double[totalNumOfVariables];
     }
 
     @Override
-    public Vec solve(Vec errorDerivative) {
-        ADAM_step(errorDerivative);
-        return parameterDeltas;
+    public void resize(int[] indexMap, int totalNumOfVariables) {
+        super.resize(indexMap, totalNumOfVariables);
+        m = remap(m, indexMap, totalNumOfVariables);
+        v = remap(v, indexMap, totalNumOfVariables);
     }
 
-    private void ADAM_step(Vec errorDerivative) {
+    @Override
+    protected void step(double[] parameters) {
         t++;
-        m = m.multiply(beta_1).add(errorDerivative.multiply(1 - beta_1));
-        v = v.multiply(beta_2).add(errorDerivative.pairwiseMultiply(errorDerivative).multiply(1 - beta_2));
-        m_hat = m.divide(1 - Math.pow(beta_1, t));
-        v_hat = v.divide(1 - Math.pow(beta_2, t));
+        final double alpha = this.alpha, epsilon = this.epsilon, beta_1 = this.beta_1, beta_2 = this.beta_2;
+        final double m_correction = 1 - Math.pow(beta_1, t);
+        final double v_correction = 1 - Math.pow(beta_2, t);
 
-        parameterDeltas = new DenseVector(totalNumOfVariables);
         for (int i = 0; i < totalNumOfVariables; i++) {
-            double denom = Math.sqrt(v_hat.get(i)) + epsilon;
-            parameterDeltas.set(i, alpha * m_hat.get(i) / denom);
+            double g = gradient[i];
+            m[i] = m[i] * beta_1 + g * (1 - beta_1);
+            v[i] = v[i] * beta_2 + g * g * (1 - beta_2);
+            double m_hat = m[i] / m_correction;
+            double v_hat = v[i] / v_correction;
+            deltas[i] = alpha * m_hat / (Math.sqrt(v_hat) + epsilon);
         }
     }
 
-
-
 }
@@ -0,0 +1,32 @@
+package com.lucasbrown.NetworkTraining.Solvers;
+
+import com.lucasbrown.NetworkTraining.OutputDerivatives.IGradient;
+
+/**
+ * ADAM with decoupled weight decay.
+ * The decay is applied to the parameters directly rather than through the
+ * gradient, so it is not scaled by the second-moment estimate.
+ * Without the current parameters this is the same as {@link ADAMSolver}.
+ */
+public class AdamWSolver extends ADAMSolver {
+
+    public double weight_decay = 0.01;
+
+    public AdamWSolver(IGradient gradientEvaluator, int totalNumOfVariables) {
+        super(gradientEvaluator, totalNumOfVariables);
+    }
+
+    @Override
+    protected void step(double[] parameters) {
+        super.step(parameters);
+        if (parameters == null) {
+            return;
+        }
+
+        final double decay = alpha * weight_decay;
+        for (int i = 0; i < totalNumOfVariables; i++) {
+            deltas[i] += decay * parameters[i];
+        }
+    }
+
+}
@@ -6,4 +6,27 @@ public interface ISolver {
 
     public Vec solve(Vec gradient);
 
+    /**
+     * Solve for the parameter deltas when the solver also needs the current
+     * value of the parameters, such as for weight decay.
+     * 
+     * @param gradient
+     * @param parameters the current parameters, which are not modified
+     * @return the deltas to subtract from the parameters
+     */
+    public default Vec solve(Vec gradient, double[] parameters) {
+        return solve(gradient);
+    }
+
+    /**
+     * Carry the state of the solver over to a set of parameters which has grown
+     * or been reordered. Parameters without an old index start from a fresh
+     * state.
+     * 
+     * @param indexMap            the new index of each old parameter or -1 if it
+     *                            was removed
+     * @param totalNumOfVariables the new number of parameters
+     */
+    public void resize(int[] indexMap, int totalNumOfVariables);
+
 }
@@ -0,0 +1,45 @@
+package com.lucasbrown.NetworkTraining.Solvers;
+
+import com.lucasbrown.NetworkTraining.OutputDerivatives.IGradient;
+
+/**
+ * Stochastic gradient descent with (optionally Nesterov) momentum
+ */
+public class MomentumSolver extends SolverBase {
+
+    public double alpha = 0.01;
+    public double momentum = 0.9;
+    public boolean nesterov = false;
+
+    private double[] velocity;
+
+    public MomentumSolver(IGradient gradientEvaluator, int totalNumOfVariables) {
+        super(gradientEvaluator, totalNumOfVariables);
+        velocity = new double[totalNumOfVariables];
+    }
+
+    @Override
+    public void resize(int[] indexMap, int totalNumOfVariables) {
+        super.resize(indexMap, totalNumOfVariables);
+        velocity = remap(velocity, indexMap, totalNumOfVariables);
+    }
+
+    @Override
+    protected void step(double[] parameters) {
+        final double alpha = this.alpha, momentum = this.momentum;
+
+        if (nesterov) {
+            for (int i = 0; i < totalNumOfVariables; i++) {
+                double g = gradient[i];
+                velocity[i] = velocity[i] * momentum + g;
+                deltas[i] = alpha * (g + momentum * velocity[i]);
+            }
+        } else {
+            for (int i = 0; i < totalNumOfVariables; i++) {
+                velocity[i] = velocity[i] * momentum + gradient[i];
+                deltas[i] = alpha * velocity[i];
+            }
+        }
+    }
+
+}
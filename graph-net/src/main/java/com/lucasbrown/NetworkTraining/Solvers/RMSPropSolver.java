@@ -0,0 +1,38 @@
+package com.lucasbrown.NetworkTraining.Solvers;
+
+import com.lucasbrown.NetworkTraining.OutputDerivatives.IGradient;
+
+/**
+ * Scales each step by a running average of the squared gradient
+ */
+public class RMSPropSolver extends SolverBase {
+
+    public double alpha = 0.001;
+    public double epsilon = 1E-8;
+    public double rho = 0.9;
+
+    private double[] v; // running second-moment estimate
+
+    public RMSPropSolver(IGradient gradientEvaluator, int totalNumOfVariables) {
+        super(gradientEvaluator, totalNumOfVariables);
+        v = new double[totalNumOfVariables];
+    }
+
+    @Override
+    public void resize(int[] indexMap, int totalNumOfVariables) {
+        super.resize(indexMap, totalNumOfVariables);
+        v = remap(v, indexMap, totalNumOfVariables);
+    }
+
+    @Override
+    protected void step(double[] parameters) {
+        final double alpha = this.alpha, epsilon = this.epsilon, rho = this.rho;
+
+        for (int i = 0; i < totalNumOfVariables; i++) {
+            double g = gradient[i];
+            v[i] = v[i] * rho + g * g * (1 - rho);
+            deltas[i] = alpha * g / (Math.sqrt(v[i]) + epsilon);
+        }
+    }
+
+}
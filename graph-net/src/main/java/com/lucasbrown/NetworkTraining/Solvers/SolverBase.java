@@ -0,0 +1,102 @@
+package com.lucasbrown.NetworkTraining.Solvers;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import com.lucasbrown.NetworkTraining.OutputDerivatives.IGradient;
+
+import jsat.linear.DenseVector;
+import jsat.linear.IndexValue;
+import jsat.linear.Vec;
+
+/**
+ * Base for solvers which keep all of their state in primitive arrays.
+ * The gradient is copied into a reusable array and each step is a single loop
+ * over primitive arrays, so no objects are allocated while training.
+ * 
+ * The vector returned by {@link #solve(Vec)} is reused and is overwritten by
+ * the next step.
+ */
+public abstract class SolverBase implements ISolver {
+
+    protected IGradient gradientEvaluator;
+    protected int totalNumOfVariables;
+
+    /**
+     * The gradient of the current step
+     */
+    protected double[] gradient;
+
+    /**
+     * The parameter deltas of the current step
+     */
+    protected double[] deltas;
+    private Vec deltaVector;
+
+    public SolverBase(IGradient gradientEvaluator, int totalNumOfVariables) {
+        this.gradientEvaluator = gradientEvaluator;
+        this.totalNumOfVariables = totalNumOfVariables;
+
+        gradient = new double[totalNumOfVariables];
+        deltas = new double[totalNumOfVariables];
+        deltaVector = new DenseVector(deltas);
+    }
+
+    @Override
+    public void resize(int[] indexMap, int totalNumOfVariables) {
+        this.totalNumOfVariables = totalNumOfVariables;
+        gradient = new double[totalNumOfVariables];
+        deltas = new double[totalNumOfVariables];
+        deltaVector = new DenseVector(deltas);
+    }
+
+    /**
+     * @return a copy of the state with every value moved to its new index
+     * @see #resize(int[], int)
+     */
+    protected static double[] remap(double[] state, int[] indexMap, int totalNumOfVariables) {
+        double[] remapped = new double[totalNumOfVariables];
+        for (int i = 0; i < indexMap.length; i++) {
+            if (indexMap[i] >= 0) {
+                remapped[indexMap[i]] = state[i];
+            }
+        }
+        return remapped;
+    }
+
+    @Override
+    public Vec solve(Vec errorDerivative) {
+        return solve(errorDerivative, null);
+    }
+
+    @Override
+    public Vec solve(Vec errorDerivative, double[] parameters) {
+        loadGradient(errorDerivative);
+        step(parameters);
+        return deltaVector;
+    }
+
+    /**
+     * Compute {@link #deltas} from {@link #gradient}
+     * 
+     * @param parameters the current parameters or null if they are not known
+     */
+    protected abstract void step(double[] parameters);
+
+    private void loadGradient(Vec errorDerivative) {
+        assert errorDerivative.length() == totalNumOfVariables;
+        if (errorDerivative.isSparse()) {
+            Arrays.fill(gradient, 0);
+            Iterator<IndexValue> nonZero = errorDerivative.getNonZeroIterator();
+            while (nonZero.hasNext()) {
+                IndexValue iv = nonZero.next();
+                gradient[iv.getIndex()] = iv.getValue();
+            }
+        } else {
+            for (int i = 0; i < totalNumOfVariables; i++) {
+                gradient[i] = errorDerivative.get(i);
+            }
+        }
+    }
+
+}
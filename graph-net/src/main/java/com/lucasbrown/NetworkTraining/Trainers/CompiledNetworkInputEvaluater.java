@@ -0,0 +1,92 @@
+package com.lucasbrown.NetworkTraining.Trainers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import com.lucasbrown.GraphNetwork.Global.CompiledGraphNetwork;
+import com.lucasbrown.GraphNetwork.Global.GraphNetwork;
+import com.lucasbrown.GraphNetwork.Local.Outcome;
+import com.lucasbrown.GraphNetwork.Local.Nodes.INode;
+import com.lucasbrown.NetworkTraining.History.NetworkHistory;
+
+/**
+ * Evaluates the network inputs using a {@link CompiledGraphNetwork} rather
+ * than the object graph.
+ * The resulting history is identical to that of {@link NetworkInputEvaluater}
+ * for networks which do not merge outcomes, compiled networks reject a
+ * non-negative merge tolerance.
+ */
+public class CompiledNetworkInputEvaluater extends NetworkInputEvaluater {
+
+    protected final CompiledGraphNetwork compiledNetwork;
+
+    public CompiledNetworkInputEvaluater(GraphNetwork network) {
+        this(network, network.compile());
+    }
+
+    public CompiledNetworkInputEvaluater(GraphNetwork network, CompiledGraphNetwork compiledNetwork) {
+        super(network);
+        this.compiledNetwork = compiledNetwork;
+    }
+
+    public CompiledGraphNetwork getCompiledNetwork() {
+        return compiledNetwork;
+    }
+
+    @Override
+    public NetworkInputEvaluater replicate() {
+        NetworkInputEvaluater replica = new CompiledNetworkInputEvaluater(network.replicate());
+        replica.setSpillDirectory(getSpillDirectory());
+        return replica;
+    }
+
+    @Override
+    public NetworkHistory computeNetworkInference() {
+        if (inputs == null) {
+            return null;
+        }
+
+        // parameters may have been changed by training since the last inference
+        compiledNetwork.reloadParameters();
+        compiledNetwork.deactivateAll();
+        networkHistory = createHistory();
+
+        for (int timestep = 0; timestep < inputs.length; timestep++) {
+            applyInputs(inputs[timestep]);
+            compiledNetwork.step();
+            networkHistory.captureState(compiledNetwork.materializeState());
+        }
+        return networkHistory;
+    }
+
+    @Override
+    public NetworkHistory beginStream(int historyDepth) {
+        compiledNetwork.reloadParameters();
+        compiledNetwork.deactivateAll();
+        networkHistory = new NetworkHistory(network, historyDepth);
+        return networkHistory;
+    }
+
+    @Override
+    public NetworkHistory continueStream(int historyDepth) {
+        compiledNetwork.reloadParameters();
+        return super.continueStream(historyDepth);
+    }
+
+    @Override
+    public HashMap<INode, ArrayList<Outcome>> step(Double[] input) {
+        applyInputs(input);
+        compiledNetwork.step();
+        HashMap<INode, ArrayList<Outcome>> state = compiledNetwork.materializeState();
+        networkHistory.captureState(state);
+        return state;
+    }
+
+    private void applyInputs(Double[] input) {
+        for (int i = 0; i < compiledNetwork.getNumberOfInputs(); i++) {
+            if (input[i] != null) {
+                compiledNetwork.setInput(i, input[i]);
+            }
+        }
+    }
+}
@@ -1,57 +1,66 @@
 package com.lucasbrown.NetworkTraining.Trainers;
 
-import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.List;
-import java.util.Map.Entry;
 
 import com.lucasbrown.GraphNetwork.Global.GraphNetwork;
-import com.lucasbrown.GraphNetwork.Local.Edge;
+import com.lucasbrown.GraphNetwork.Global.ParameterStore;
 import com.lucasbrown.GraphNetwork.Local.Filters.IFilter;
-import com.lucasbrown.GraphNetwork.Local.Nodes.INode;
-import com.lucasbrown.GraphNetwork.Local.Nodes.ProbabilityCombinators.IProbabilityCombinator;
-import com.lucasbrown.GraphNetwork.Local.Nodes.ValueCombinators.ITrainableValueCombinator;
 import com.lucasbrown.HelperClasses.IterableTools;
-import com.lucasbrown.HelperClasses.Structs.Pair;
 
 import jsat.linear.DenseVector;
 import jsat.linear.Vec;
 
+/**
+ * Maps the parameters of every filter onto their position in the network's
+ * {@link ParameterStore}
+ */
 public class FilterLinearizer {
     
     public final HashMap<IFilter, Integer> vectorFilterOffset;
     public final HashSet<IFilter> allFilters;
-    public final int totalNumOfVariables;
+    public int totalNumOfVariables;
+    public ParameterStore parameterStore;
+
+    private final GraphNetwork network;
 
     public FilterLinearizer(GraphNetwork network){
-        ArrayList<INode> nodes = network.getNodes();
-        int n_size = nodes.size();
-        allFilters = new HashSet<>(n_size);
-        vectorFilterOffset = new HashMap<>(n_size);
-        collectFilters(nodes);
+        this.network = network;
+        parameterStore = network.getParameterStore();
+        allFilters = new HashSet<>(parameterStore.getFilters());
+        vectorFilterOffset = new HashMap<>(allFilters.size());
         totalNumOfVariables = InitializeOffsetMap();
     }
 
-    private void collectFilters(ArrayList<INode> nodes) {
-        for (INode node : nodes) {
-            IProbabilityCombinator comb = node.getProbabilityCombinator();
-            allFilters.addAll(List.of(comb.getAllFilters()));
-        }
-    }
-
-
     private int InitializeOffsetMap() {
-        int totalNumOfVariables = 0;
         for (IFilter filter : allFilters) {
-            vectorFilterOffset.put(filter, totalNumOfVariables);
-            totalNumOfVariables += filter.getNumberOfAdjustableParameters();
+            vectorFilterOffset.put(filter, parameterStore.getOffsetOf(filter));
         }
-
-        return totalNumOfVariables;
+        return parameterStore.getNumberOfFilterParameters();
     } 
 
+    /**
+     * Pick up any filters the network has created since the linearizer was
+     * built, such as those of combinations a sparse combinator has seen for the
+     * first time.
+     * 
+     * @return the new linear index of every old one, -1 if it was removed, or
+     *         null if nothing changed
+     */
+    public int[] refresh() {
+        ParameterStore current = network.getParameterStore();
+        if (current == parameterStore) {
+            return null;
+        }
+        int[] indexMap = current.mapFilterParameterIndices(parameterStore);
+        parameterStore = current;
+        allFilters.clear();
+        allFilters.addAll(parameterStore.getFilters());
+        vectorFilterOffset.clear();
+        totalNumOfVariables = InitializeOffsetMap();
+        return indexMap;
+    }
+
     public int getTotalNumberOfVariables()
     {
         return totalNumOfVariables;
@@ -89,26 +98,19 @@ public class FilterLinearizer {
 
     
     public double[] getAllParameters(){
-        double[] params = new double[totalNumOfVariables];
-
-        for(Entry<IFilter, Integer> entry : vectorFilterOffset.entrySet()){
-            IFilter filter = entry.getKey();
-            int idx = entry.getValue();
-            System.arraycopy(filter.getAdjustableParameters(), 0, params, idx, filter.getNumberOfAdjustableParameters());
-        }
-
-        return params;
+        return parameterStore.getFilterParameters().clone();
     }
 
     public void setParameter(int i, double value){
-        for(Entry<IFilter, Integer> entry : vectorFilterOffset.entrySet()){
-            IFilter filter = entry.getKey();
-            int idx = entry.getValue();
-            int varNum = filter.getNumberOfAdjustableParameters();
-            if(i >= idx && i < idx + varNum){
-                filter.setAdjustableParameter(i-idx, value);
-                return;
-            }
-        }
+        parameterStore.getFilterParameters()[i] = value;
+    }
+
+    /**
+     * Subtract the deltas from every filter parameter in place
+     * 
+     * @param allDeltas
+     */
+    public void applyDeltas(Vec allDeltas) {
+        parameterStore.subtractFilterParameters(allDeltas);
     }
 }
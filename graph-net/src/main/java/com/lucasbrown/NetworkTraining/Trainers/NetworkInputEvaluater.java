@@ -1,10 +1,15 @@
 package com.lucasbrown.NetworkTraining.Trainers;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
 
 import com.lucasbrown.GraphNetwork.Global.GraphNetwork;
+import com.lucasbrown.GraphNetwork.Local.Outcome;
 import com.lucasbrown.GraphNetwork.Local.Nodes.IInputNode;
+import com.lucasbrown.GraphNetwork.Local.Nodes.INode;
 import com.lucasbrown.GraphNetwork.Local.Nodes.InputNode;
+import com.lucasbrown.NetworkTraining.History.MappedNetworkHistory;
 import com.lucasbrown.NetworkTraining.History.NetworkHistory;
 
 public class NetworkInputEvaluater {
@@ -12,12 +17,20 @@ public class NetworkInputEvaluater {
     protected GraphNetwork network;
     protected NetworkHistory networkHistory;
 
-    private int timestep;
     protected Double[][] inputs;
 
+    /**
+     * The input applied by the current step
+     */
+    private Double[] currentInput;
+
+    /**
+     * Where histories are spilled to disk or null to keep them on the heap
+     */
+    private Path spillDirectory;
+
     public NetworkInputEvaluater(GraphNetwork network) {
         this.network = network;
-        timestep = 0;
 
         network.setInputOperation(this::applyInputToNode);
         networkHistory = new NetworkHistory(network);
@@ -28,6 +41,43 @@ public class NetworkInputEvaluater {
         setInputData(inputs);
     }
 
+    /**
+     * @return an evaluater of a replica of this network
+     * @see GraphNetwork#replicate()
+     */
+    public NetworkInputEvaluater replicate() {
+        NetworkInputEvaluater replica = new NetworkInputEvaluater(network.replicate());
+        replica.setSpillDirectory(spillDirectory);
+        return replica;
+    }
+
+    /**
+     * Write the history of each inference to a memory-mapped file in the
+     * directory rather than keeping it on the heap. Gradients of the histories
+     * are then computed one timestep at a time.
+     * 
+     * @param spillDirectory the directory of the files or null to keep histories
+     *                       on the heap
+     * @see MappedNetworkHistory
+     */
+    public void setSpillDirectory(Path spillDirectory) {
+        this.spillDirectory = spillDirectory;
+    }
+
+    public Path getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    /**
+     * @return an empty history for a new inference
+     */
+    protected NetworkHistory createHistory() {
+        if (spillDirectory == null) {
+            return new NetworkHistory(network);
+        }
+        return MappedNetworkHistory.createTemporary(network, spillDirectory);
+    }
+
     public void setInputData(Double[][] inputs) {
         this.inputs = inputs;
     }
@@ -37,13 +87,67 @@ public class NetworkInputEvaluater {
             return null;
         }
         network.deactivateAll();
-        networkHistory = new NetworkHistory(network);
+        networkHistory = createHistory();
         captureForward();
         return networkHistory;
     }
 
+    /**
+     * Start evaluating a stream of inputs one timestep at a time with
+     * {@link #step(Double[])}. Only the most recent timesteps are kept, so the
+     * memory used stays constant however long the stream is.
+     * 
+     * @param historyDepth the number of timesteps kept in the history or 0 to
+     *                     keep all of them
+     * @return the history which each step is captured into
+     */
+    public NetworkHistory beginStream(int historyDepth) {
+        network.deactivateAll();
+        networkHistory = new NetworkHistory(network, historyDepth);
+        return networkHistory;
+    }
+
+    /**
+     * Start a new history for the stream without resetting the network, so the
+     * next step carries on from the last one. The outcomes of the last timestep
+     * evaluated are truncated: gradients of the new history treat them as
+     * constants and the old history is no longer reachable through them.
+     * 
+     * @param historyDepth the number of timesteps kept in the history or 0 to
+     *                     keep all of them
+     * @return the history which each step is captured into
+     * @see NetworkHistory#truncate(HashMap)
+     */
+    public NetworkHistory continueStream(int historyDepth) {
+        int last = networkHistory.getNumberOfTimesteps() - 1;
+        if (last >= 0) {
+            NetworkHistory.truncate(networkHistory.getStateAtTimestep(last));
+        }
+        networkHistory = new NetworkHistory(network, historyDepth);
+        return networkHistory;
+    }
+
+    /**
+     * Evaluate a single timestep of the stream started by
+     * {@link #beginStream(int)}
+     * 
+     * @param input the value of each input node or null
+     * @return the state of the network at this timestep
+     */
+    public HashMap<INode, ArrayList<Outcome>> step(Double[] input) {
+        currentInput = input;
+        network.trainingStep();
+        networkHistory.captureState();
+        return networkHistory.getStateAtTimestep(networkHistory.getNumberOfTimesteps() - 1);
+    }
+
+    public NetworkHistory getNetworkHistory() {
+        return networkHistory;
+    }
+
     private void captureForward() {
-        for (timestep = 0; timestep < inputs.length; timestep++) {
+        for (int timestep = 0; timestep < inputs.length; timestep++) {
+            currentInput = inputs[timestep];
             network.trainingStep();
             // if (print_forward) {
             // System.out.println(network.toString() + " | Target = " +
@@ -54,16 +158,15 @@ public class NetworkInputEvaluater {
     }
 
     private void applyInputToNode(HashMap<Integer, ? extends IInputNode> inputNodeMap) {
-        applyInputToNode(inputNodeMap, inputs, timestep);
+        applyInputToNode(inputNodeMap, currentInput);
     }
 
-    private static void applyInputToNode(HashMap<Integer, ? extends IInputNode> inputNodeMap, Double[][] input,
-            int counter) {
+    private static void applyInputToNode(HashMap<Integer, ? extends IInputNode> inputNodeMap, Double[] input) {
         InputNode[] sortedNodes = inputNodeMap.values().stream().sorted().toArray(InputNode[]::new);
 
         for (int i = 0; i < sortedNodes.length; i++) {
-            if (input[counter][i] != null) {
-                sortedNodes[i].acceptUserForwardSignal(input[counter][i]);
+            if (input[i] != null) {
+                sortedNodes[i].acceptUserForwardSignal(input[i]);
             }
         }
     }
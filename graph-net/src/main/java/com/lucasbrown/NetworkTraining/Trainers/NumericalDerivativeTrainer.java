@@ -5,10 +5,8 @@ import java.util.stream.Collectors;
 
 import com.lucasbrown.GraphNetwork.Global.GraphNetwork;
 import com.lucasbrown.GraphNetwork.Local.Outcome;
-import com.lucasbrown.GraphNetwork.Local.Filters.IFilter;
 import com.lucasbrown.GraphNetwork.Local.Nodes.INode;
 import com.lucasbrown.GraphNetwork.Local.Nodes.IOutputNode;
-import com.lucasbrown.GraphNetwork.Local.Nodes.ValueCombinators.ITrainableValueCombinator;
 import com.lucasbrown.NetworkTraining.History.NetworkHistory;
 import com.lucasbrown.NetworkTraining.NetworkDerivatives.ForwardFilterGradient;
 import com.lucasbrown.NetworkTraining.NetworkDerivatives.ForwardNetworkGradient;
@@ -93,8 +91,8 @@ public class NumericalDerivativeTrainer implements ITrainer {
         Vec weightsGradient = aggregateWeightGradients(computeAllHistories());
         Vec probabilityGradient = computeNumericalDerivativeOfFilters();
 
-        weightsDeltas = weightsSolver.solve(weightsGradient);
-        probabilityDeltas = probabilitySolver.solve(probabilityGradient);
+        weightsDeltas = weightsSolver.solve(weightsGradient, weightLinearizer.parameterStore.getWeights());
+        probabilityDeltas = probabilitySolver.solve(probabilityGradient, filterLinearizer.parameterStore.getFilterParameters());
 
         applyWeightDeltas();
         applyProbabilityDeltas();
@@ -219,22 +217,11 @@ public class NumericalDerivativeTrainer implements ITrainer {
     }
 
     private void applyWeightDeltas() {
-        weightLinearizer.allNodes.forEach(this::applyErrorSignalsToNode);
-    }
-
-    private void applyErrorSignalsToNode(INode node) {
-        double[] allDeltas = weightsDeltas.arrayCopy();
-        double[] gradient = weightLinearizer.nodeSlice(node, allDeltas);
-        ((ITrainableValueCombinator) node.getValueCombinator()).applyDelta(gradient);
+        weightLinearizer.applyDeltas(weightsDeltas);
     }
 
     private void applyProbabilityDeltas() {
-        filterLinearizer.allFilters.forEach(this::applyParameterUpdate);
-    }
-
-    private void applyParameterUpdate(IFilter filter) {
-        double[] gradient = filterLinearizer.filterSlice(filter, probabilityDeltas.arrayCopy());
-        filter.applyAdjustableParameterUpdate(gradient);
+        filterLinearizer.applyDeltas(probabilityDeltas);
     }
 
     public static NumericalDerivativeTrainer getDefaultTrainer(GraphNetwork network) {
@@ -0,0 +1,68 @@
+package com.lucasbrown.NetworkTraining.Trainers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import com.lucasbrown.GraphNetwork.Global.GraphNetwork;
+import com.lucasbrown.GraphNetwork.Global.MonteCarloSampler;
+import com.lucasbrown.GraphNetwork.Local.Outcome;
+import com.lucasbrown.GraphNetwork.Local.Nodes.INode;
+import com.lucasbrown.NetworkTraining.History.NetworkHistory;
+
+/**
+ * Evaluates the network inputs by sampling particles with a
+ * {@link MonteCarloSampler} rather than enumerating every outcome.
+ * The resulting history holds the empirical distribution of outcomes.
+ * A {@link com.lucasbrown.GraphNetwork.Global.ParticleFilter} can be given in
+ * place of the sampler for long sequences.
+ */
+public class SampledNetworkInputEvaluater extends NetworkInputEvaluater {
+
+    protected final MonteCarloSampler sampler;
+
+    public SampledNetworkInputEvaluater(GraphNetwork network, int numParticles, long seed) {
+        this(network, new MonteCarloSampler(network, numParticles, seed));
+    }
+
+    public SampledNetworkInputEvaluater(GraphNetwork network, MonteCarloSampler sampler) {
+        super(network);
+        this.sampler = sampler;
+    }
+
+    public MonteCarloSampler getSampler() {
+        return sampler;
+    }
+
+    /**
+     * The replica draws a separate sequence of samples which is seeded from this
+     * one's
+     */
+    @Override
+    public NetworkInputEvaluater replicate() {
+        GraphNetwork replica = network.replicate();
+        return new SampledNetworkInputEvaluater(replica, sampler.replicate(replica));
+    }
+
+    @Override
+    public NetworkHistory computeNetworkInference() {
+        if (inputs == null) {
+            return null;
+        }
+        networkHistory = sampler.sample(inputs);
+        return networkHistory;
+    }
+
+    @Override
+    public NetworkHistory beginStream(int historyDepth) {
+        sampler.reset();
+        networkHistory = new NetworkHistory(network, historyDepth);
+        return networkHistory;
+    }
+
+    @Override
+    public HashMap<INode, ArrayList<Outcome>> step(Double[] input) {
+        HashMap<INode, ArrayList<Outcome>> state = sampler.step(input);
+        networkHistory.captureState(state);
+        return state;
+    }
+}
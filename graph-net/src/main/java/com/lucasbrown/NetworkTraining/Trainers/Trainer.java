@@ -1,19 +1,23 @@
 package com.lucasbrown.NetworkTraining.Trainers;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import com.lucasbrown.GraphNetwork.Global.GraphNetwork;
 import com.lucasbrown.GraphNetwork.Local.Outcome;
-import com.lucasbrown.GraphNetwork.Local.Filters.IFilter;
 import com.lucasbrown.GraphNetwork.Local.Nodes.INode;
 import com.lucasbrown.GraphNetwork.Local.Nodes.IOutputNode;
 import com.lucasbrown.GraphNetwork.Local.Nodes.OutputNode;
-import com.lucasbrown.GraphNetwork.Local.Nodes.ValueCombinators.ITrainableValueCombinator;
 import com.lucasbrown.NetworkTraining.History.NetworkHistory;
 import com.lucasbrown.NetworkTraining.NetworkDerivatives.ForwardFilterGradient;
 import com.lucasbrown.NetworkTraining.NetworkDerivatives.ForwardNetworkFilterGradient;
 import com.lucasbrown.NetworkTraining.NetworkDerivatives.ForwardNetworkGradient;
+import com.lucasbrown.NetworkTraining.NetworkDerivatives.ReverseNetworkGradient;
 import com.lucasbrown.NetworkTraining.OutputDerivatives.CompleteNetworkGradient;
 import com.lucasbrown.NetworkTraining.OutputDerivatives.DirectNetworkGradient;
 import com.lucasbrown.NetworkTraining.OutputDerivatives.DisjointFilterGradient;
@@ -45,6 +49,29 @@ public class Trainer implements ITrainer {
     protected Double[][][] inputs;
     protected Double[][][] targets;
 
+    /**
+     * The pool used to evaluate sequences in parallel or null to evaluate
+     * serially
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * Evaluaters of network replicas which are not currently in use
+     */
+    private final ConcurrentLinkedQueue<NetworkInputEvaluater> replicaEvaluaters;
+
+    /**
+     * The number of timesteps in each window of truncated training or 0 to train
+     * on whole sequences
+     */
+    private int truncationWindow;
+
+    /**
+     * The evaluater of each training sequence during truncated training, which
+     * holds the state of that sequence between windows
+     */
+    private NetworkInputEvaluater[] sequenceEvaluaters;
+
     public Trainer(NetworkInputEvaluater networkEvaluater, IGradient weightsGradient, ISolver weightsSolver,
             IGradient probabilityGradient, ISolver probabilitySolver, WeightsLinearizer weightLinearizer,
             FilterLinearizer filterLinearizer) {
@@ -59,6 +86,52 @@ public class Trainer implements ITrainer {
         this.networkEvaluater = networkEvaluater;
 
         network = networkEvaluater.network;
+        replicaEvaluaters = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Set the number of training sequences to evaluate at once.
+     * Each sequence is evaluated on a replica of the network which shares its
+     * parameters, and the gradients of all sequences are reduced in parallel.
+     * 
+     * @param parallelism the number of threads to use, 1 to evaluate serially
+     * @see GraphNetwork#replicate()
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1.");
+        }
+        if (pool != null) {
+            pool.shutdown();
+        }
+        pool = parallelism == 1 ? null : new ForkJoinPool(parallelism);
+        replicaEvaluaters.clear();
+    }
+
+    public int getParallelism() {
+        return pool == null ? 1 : pool.getParallelism();
+    }
+
+    /**
+     * Train in windows of a fixed number of timesteps (truncated backpropagation
+     * through time). Each training step walks every sequence window by window,
+     * carrying the state of the network from one window into the next, and the
+     * solvers take a step after each window. Gradients do not flow back past the
+     * start of a window, so the histories held at once only span a single
+     * window however long the sequences are.
+     * 
+     * @param truncationWindow the number of timesteps in each window or 0 to
+     *                         compute gradients over whole sequences
+     */
+    public void setTruncationWindow(int truncationWindow) {
+        if (truncationWindow < 0) {
+            throw new IllegalArgumentException("The truncation window cannot be negative.");
+        }
+        this.truncationWindow = truncationWindow;
+    }
+
+    public int getTruncationWindow() {
+        return truncationWindow;
     }
 
     /**
@@ -80,6 +153,7 @@ public class Trainer implements ITrainer {
     public void setTrainingData(Double[][][] inputs, Double[][][] targets) {
         this.inputs = inputs;
         this.targets = targets;
+        sequenceEvaluaters = null;
     }
 
     public void trainNetwork(int steps, int print_interval) {
@@ -89,6 +163,11 @@ public class Trainer implements ITrainer {
     }
 
     public void trainingStep(boolean print_forward) {
+        if (truncationWindow > 0) {
+            truncatedTrainingStep(print_forward);
+            return;
+        }
+
         NetworkHistory[] histories = computeAllHistories();
         if (print_forward) {
             printNetwork(histories);
@@ -96,9 +175,84 @@ public class Trainer implements ITrainer {
 
         Vec weightsGradient = aggregateWeightGradients(histories);
         Vec probabilityGradient = aggregateProbabilityGradients(histories);
+        solveAndApply(weightsGradient, probabilityGradient);
+    }
+
+    /**
+     * One pass over every sequence in windows of {@link #truncationWindow}
+     * timesteps. The windows of all sequences are evaluated in lockstep so each
+     * solver step averages over the sequences, as a full training step does.
+     * Only the last window of the first sequence is printed.
+     */
+    private void truncatedTrainingStep(boolean print_forward) {
+        NetworkInputEvaluater[] evaluaters = getSequenceEvaluaters();
+        int longest = 0;
+        for (Double[][] input : inputs) {
+            longest = Math.max(longest, input.length);
+        }
+
+        for (int start = 0; start < longest; start += truncationWindow) {
+            final int windowStart = start;
+            NetworkHistory[] histories = new NetworkHistory[inputs.length];
+            Double[][][] windowTargets = new Double[inputs.length][][];
+            forEachSequence(i -> {
+                if (windowStart >= inputs[i].length) {
+                    return;
+                }
+                int windowEnd = Math.min(windowStart + truncationWindow, inputs[i].length);
+                histories[i] = computeWindow(evaluaters[i], inputs[i], windowStart, windowEnd);
+                windowTargets[i] = Arrays.copyOfRange(targets[i], windowStart, windowEnd);
+            });
+            refreshParameters();
+
+            if (print_forward && windowStart < inputs[0].length && windowStart + truncationWindow >= inputs[0].length) {
+                printNetwork(histories, windowTargets, windowStart);
+            }
+
+            Vec weightsGradient = aggregateGradients(histories, windowTargets, this.weightsGradient,
+                    weightLinearizer.totalNumOfVariables);
+            Vec probabilityGradient = aggregateGradients(histories, windowTargets, this.probabilityGradient,
+                    filterLinearizer.totalNumOfVariables);
+            solveAndApply(weightsGradient, probabilityGradient);
+        }
+    }
+
+    private static NetworkHistory computeWindow(NetworkInputEvaluater evaluater, Double[][] input, int start,
+            int end) {
+        NetworkHistory history = start == 0 ? evaluater.beginStream(0) : evaluater.continueStream(0);
+        for (int t = start; t < end; t++) {
+            evaluater.step(input[t]);
+        }
+        return history;
+    }
+
+    /**
+     * Each sequence keeps its own network state between windows, so every
+     * sequence after the first is evaluated on a replica
+     */
+    private NetworkInputEvaluater[] getSequenceEvaluaters() {
+        if (sequenceEvaluaters == null || sequenceEvaluaters.length != inputs.length) {
+            sequenceEvaluaters = new NetworkInputEvaluater[inputs.length];
+            for (int i = 0; i < inputs.length; i++) {
+                sequenceEvaluaters[i] = i == 0 ? networkEvaluater : networkEvaluater.replicate();
+            }
+        }
+        return sequenceEvaluaters;
+    }
+
+    private void forEachSequence(IntConsumer action) {
+        if (pool == null) {
+            for (int i = 0; i < inputs.length; i++) {
+                action.accept(i);
+            }
+        } else {
+            pool.submit(() -> IntStream.range(0, inputs.length).parallel().forEach(action)).join();
+        }
+    }
 
-        weightsDeltas = weightsSolver.solve(weightsGradient);
-        probabilityDeltas = probabilitySolver.solve(probabilityGradient);
+    private void solveAndApply(Vec weightsGradient, Vec probabilityGradient) {
+        weightsDeltas = weightsSolver.solve(weightsGradient, weightLinearizer.parameterStore.getWeights());
+        probabilityDeltas = probabilitySolver.solve(probabilityGradient, filterLinearizer.parameterStore.getFilterParameters());
 
         applyWeightDeltas();
         applyProbabilityDeltas();
@@ -106,34 +260,101 @@ public class Trainer implements ITrainer {
 
     public NetworkHistory[] computeAllHistories() {
         NetworkHistory[] histories = new NetworkHistory[inputs.length];
-        for (int i = 0; i < inputs.length; i++) {
-            networkEvaluater.setInputData(inputs[i]);
-            histories[i] = networkEvaluater.computeNetworkInference();
-            assert histories[i].getNumberOfTimesteps() == inputs[i].length;
+        if (pool == null) {
+            for (int i = 0; i < inputs.length; i++) {
+                histories[i] = computeHistory(networkEvaluater, inputs[i]);
+            }
+        } else {
+            pool.submit(() -> IntStream.range(0, inputs.length)
+                    .parallel()
+                    .forEach(i -> histories[i] = computeHistoryOnReplica(inputs[i])))
+                    .join();
         }
+        refreshParameters();
         return histories;
     }
 
-    public Vec aggregateWeightGradients(NetworkHistory[] histories) {
-        Vec gradient = new DenseVector(weightLinearizer.totalNumOfVariables);
-        for (int i = 0; i < inputs.length; i++) {
-            weightsGradient.setTargets(targets[i]);
-            Vec grad = weightsGradient.computeGradient(histories[i]);
-            gradient.mutableAdd(grad);
+    /**
+     * Evaluating the network may create parameters, such as those of
+     * combinations a sparse combinator has not seen before. Extend the
+     * linearizers, gradients and solvers to cover them, keeping the state of
+     * every existing parameter.
+     */
+    private void refreshParameters() {
+        int[] weightIndexMap = weightLinearizer.refresh();
+        if (weightIndexMap != null) {
+            weightsGradient.setTotalNumberOfVariables(weightLinearizer.totalNumOfVariables);
+            weightsSolver.resize(weightIndexMap, weightLinearizer.totalNumOfVariables);
+        }
+
+        int[] filterIndexMap = filterLinearizer.refresh();
+        if (filterIndexMap != null) {
+            probabilityGradient.setTotalNumberOfVariables(filterLinearizer.totalNumOfVariables);
+            probabilitySolver.resize(filterIndexMap, filterLinearizer.totalNumOfVariables);
+        }
+    }
+
+    private static NetworkHistory computeHistory(NetworkInputEvaluater evaluater, Double[][] input) {
+        evaluater.setInputData(input);
+        NetworkHistory history = evaluater.computeNetworkInference();
+        assert history.getNumberOfTimesteps() == input.length;
+        return history;
+    }
+
+    private NetworkHistory computeHistoryOnReplica(Double[][] input) {
+        NetworkInputEvaluater evaluater = replicaEvaluaters.poll();
+        if (evaluater == null) {
+            evaluater = networkEvaluater.replicate();
         }
-        return gradient.divide(inputs.length);
+        try {
+            return computeHistory(evaluater, input);
+        } finally {
+            replicaEvaluaters.add(evaluater);
+        }
+    }
+
+    public Vec aggregateWeightGradients(NetworkHistory[] histories) {
+        return aggregateGradients(histories, targets, weightsGradient, weightLinearizer.totalNumOfVariables);
     }
 
     public Vec aggregateProbabilityGradients(NetworkHistory[] histories) {
-        Vec gradient = new DenseVector(filterLinearizer.totalNumOfVariables);
-        for (int i = 0; i < inputs.length; i++) {
-            probabilityGradient.setTargets(targets[i]);
-            gradient.mutableAdd(probabilityGradient.computeGradient(histories[i]));
+        return aggregateGradients(histories, targets, probabilityGradient, filterLinearizer.totalNumOfVariables);
+    }
+
+    /**
+     * The mean gradient over the histories, skipping any which are null
+     */
+    private Vec aggregateGradients(NetworkHistory[] histories, Double[][][] targets, IGradient gradientEvaluator,
+            int totalNumOfVariables) {
+        Vec gradient;
+        if (pool == null) {
+            gradient = new DenseVector(totalNumOfVariables);
+            for (int i = 0; i < histories.length; i++) {
+                if (histories[i] != null) {
+                    gradient.mutableAdd(gradientEvaluator.computeGradient(histories[i], targets[i]));
+                }
+            }
+        } else {
+            gradient = pool.submit(() -> IntStream.range(0, histories.length)
+                    .parallel()
+                    .filter(i -> histories[i] != null)
+                    .mapToObj(i -> gradientEvaluator.computeGradient(histories[i], targets[i]))
+                    .collect(() -> new DenseVector(totalNumOfVariables), Vec::mutableAdd, Vec::mutableAdd))
+                    .join();
         }
-        return gradient.divide(inputs.length);
+        long count = Arrays.stream(histories).filter(history -> history != null).count();
+        return gradient.divide(count);
     }
 
     public void printNetwork(NetworkHistory[] histories) {
+        printNetwork(histories, targets, 0);
+    }
+
+    /**
+     * @param firstTimestep the timestep of the sequences at which the histories
+     *                      start
+     */
+    private void printNetwork(NetworkHistory[] histories, Double[][][] targets, int firstTimestep) {
         NetworkHistory history = histories[0]; // print an example
         int time_count = history.getNumberOfTimesteps();
 
@@ -142,7 +363,7 @@ public class Trainer implements ITrainer {
 
         for (int t = 0; t < time_count; t++) {
             sb.append("Time Step ");
-            sb.append(t);
+            sb.append(firstTimestep + t);
             sb.append("\n\t");
 
             int outIdx = 0;
@@ -175,45 +396,56 @@ public class Trainer implements ITrainer {
 
         sb.append("Accuracy error : ");
         weightsGradient.setTargets(targets[0]);
-        sb.append(getTotalError(histories, weightsGradient));
+        sb.append(getTotalError(histories, targets, weightsGradient));
         sb.append("\nConsistency error : ");
         probabilityGradient.setTargets(targets[0]);
-        sb.append(getTotalError(histories, probabilityGradient));
+        sb.append(getTotalError(histories, targets, probabilityGradient));
         sb.append("\n");
         System.out.println(sb.toString());
     }
 
     public double getTotalError(NetworkHistory[] histories, IGradient errorEvaluator) {
+        return getTotalError(histories, targets, errorEvaluator);
+    }
+
+    /**
+     * Sequences without a history are skipped
+     */
+    private static double getTotalError(NetworkHistory[] histories, Double[][][] targets, IGradient errorEvaluator) {
         double error = 0;
+        int count = 0;
         for (int i = 0; i < histories.length; i++) {
             NetworkHistory history = histories[i];
+            if (history == null) {
+                continue;
+            }
             errorEvaluator.setTargets(targets[i]);
             assert history.getNumberOfTimesteps() == targets[i].length;
             error += errorEvaluator.getTotalError(history);
+            count++;
         }
-        return error / histories.length;
+        return error / count;
     }
 
     private void applyWeightDeltas() {
-        weightLinearizer.allNodes.forEach(this::applyErrorSignalsToNode);
-    }
-
-    private void applyErrorSignalsToNode(INode node) {
-        double[] allDeltas = weightsDeltas.arrayCopy();
-        double[] gradient = weightLinearizer.nodeSlice(node, allDeltas);
-        ((ITrainableValueCombinator) node.getValueCombinator()).applyDelta(gradient);
+        weightLinearizer.applyDeltas(weightsDeltas);
     }
 
     private void applyProbabilityDeltas() {
-        filterLinearizer.allFilters.forEach(this::applyParameterUpdate);
+        filterLinearizer.applyDeltas(probabilityDeltas);
     }
 
-    private void applyParameterUpdate(IFilter filter) {
-        double[] gradient = filterLinearizer.filterSlice(filter, probabilityDeltas.arrayCopy());
-        filter.applyAdjustableParameterUpdate(gradient);
+    public static Trainer getDefaultTrainer(GraphNetwork network) {
+        return getDefaultTrainer(network, false);
     }
 
-    public static Trainer getDefaultTrainer(GraphNetwork network) {
+    /**
+     * @param network
+     * @param sparseGradients whether the forward gradients should only track the
+     *                        parameters of each outcome's ancestors
+     * @return
+     */
+    public static Trainer getDefaultTrainer(GraphNetwork network, boolean sparseGradients) {
         WeightsLinearizer weightLinearizer = new WeightsLinearizer(network);
         FilterLinearizer filterLinearizer = new FilterLinearizer(network);
         NetworkInputEvaluater networkEvaluater = new NetworkInputEvaluater(network);
@@ -226,12 +458,39 @@ public class Trainer implements ITrainer {
         // null,weightLinearizer.totalNumOfVariables);
 
         DirectNetworkGradient netGradient = new DirectNetworkGradient(network,
-                new ForwardNetworkGradient(weightLinearizer), null, erf, weightLinearizer.totalNumOfVariables);
+                new ForwardNetworkGradient(weightLinearizer, sparseGradients), null, erf, weightLinearizer.totalNumOfVariables);
+
+        ADAMSolver weightsSolver = new ADAMSolver(netGradient, weightLinearizer.totalNumOfVariables);
 
+        WeightedOutcomeChanceFilterGradient filterGradient = new WeightedOutcomeChanceFilterGradient(network,
+                new ForwardFilterGradient(filterLinearizer, sparseGradients), null, erf, filterLinearizer.totalNumOfVariables);
+        ADAMSolver filterSolver = new ADAMSolver(filterGradient, filterLinearizer.totalNumOfVariables);
+
+        return new Trainer(networkEvaluater, netGradient, weightsSolver, filterGradient, filterSolver, weightLinearizer,
+                filterLinearizer);
+    }
+
+    /**
+     * The default trainer with gradients computed by backpropagation through
+     * time instead of forward jacobians
+     * 
+     * @param network
+     * @return
+     */
+    public static Trainer getReverseModeTrainer(GraphNetwork network) {
+        WeightsLinearizer weightLinearizer = new WeightsLinearizer(network);
+        FilterLinearizer filterLinearizer = new FilterLinearizer(network);
+        NetworkInputEvaluater networkEvaluater = new NetworkInputEvaluater(network);
+        ReverseNetworkGradient reverseGradient = new ReverseNetworkGradient(weightLinearizer, filterLinearizer);
+
+        ErrorFunction erf = new ErrorFunction.MeanSquaredError();
+
+        DirectNetworkGradient netGradient = new DirectNetworkGradient(network,
+                reverseGradient.getWeightsGradient(), null, erf, weightLinearizer.totalNumOfVariables);
         ADAMSolver weightsSolver = new ADAMSolver(netGradient, weightLinearizer.totalNumOfVariables);
 
         WeightedOutcomeChanceFilterGradient filterGradient = new WeightedOutcomeChanceFilterGradient(network,
-                new ForwardFilterGradient(filterLinearizer), null, erf, filterLinearizer.totalNumOfVariables);
+                reverseGradient.getFilterGradient(), null, erf, filterLinearizer.totalNumOfVariables);
         ADAMSolver filterSolver = new ADAMSolver(filterGradient, filterLinearizer.totalNumOfVariables);
 
         return new Trainer(networkEvaluater, netGradient, weightsSolver, filterGradient, filterSolver, weightLinearizer,
@@ -5,6 +5,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 
 import com.lucasbrown.GraphNetwork.Global.GraphNetwork;
+import com.lucasbrown.GraphNetwork.Global.ParameterStore;
 import com.lucasbrown.GraphNetwork.Local.Nodes.INode;
 import com.lucasbrown.GraphNetwork.Local.Nodes.OutputNode;
 import com.lucasbrown.GraphNetwork.Local.Nodes.ValueCombinators.ITrainableValueCombinator;
@@ -12,6 +13,12 @@ import com.lucasbrown.HelperClasses.IterableTools;
 import com.lucasbrown.HelperClasses.Structs.Pair;
 import com.lucasbrown.NetworkTraining.UntrainableNetworkException;
 
+import jsat.linear.Vec;
+
+/**
+ * Maps the weights and biases of every node onto their position in the
+ * network's {@link ParameterStore}
+ */
 public class WeightsLinearizer {
 
     // pairing the offset and the value combinator is just convenient
@@ -19,14 +26,19 @@ public class WeightsLinearizer {
     public final HashMap<INode, Pair<Integer, ITrainableValueCombinator>> vectorNodeOffset;
     public final HashSet<INode> allNodes;
     public final ArrayList<OutputNode> outputNodes;
-    public final int totalNumOfVariables;
+    public int totalNumOfVariables;
+    public ParameterStore parameterStore;
+
+    private final GraphNetwork network;
 
     public WeightsLinearizer(GraphNetwork network) {
+        this.network = network;
         ArrayList<INode> nodes = network.getNodes();
         allNodes = new HashSet<>(network.getNodes());
         outputNodes = network.getOutputNodes();
         vectorNodeOffset = new HashMap<>(nodes.size());
         verifyAllTrainable(nodes);
+        parameterStore = network.getParameterStore();
         totalNumOfVariables = InitializeOffsetMap();
     }
 
@@ -39,13 +51,31 @@ public class WeightsLinearizer {
     }
 
     private int InitializeOffsetMap() {
-        int totalNumOfVariables = 0;
         for (INode node : allNodes) {
             ITrainableValueCombinator comb = (ITrainableValueCombinator) node.getValueCombinator();
-            vectorNodeOffset.put(node, new Pair<>(totalNumOfVariables, comb));
-            totalNumOfVariables += comb.getNumberOfVariables();
+            vectorNodeOffset.put(node, new Pair<>(parameterStore.getOffsetOf(comb), comb));
         }
-        return totalNumOfVariables;
+        return parameterStore.getNumberOfWeights();
+    }
+
+    /**
+     * Pick up any weights and biases the network has created since the
+     * linearizer was built, such as those of combinations a sparse combinator
+     * has seen for the first time.
+     * 
+     * @return the new linear index of every old one, -1 if it was removed, or
+     *         null if nothing changed
+     */
+    public int[] refresh() {
+        ParameterStore current = network.getParameterStore();
+        if (current == parameterStore) {
+            return null;
+        }
+        int[] indexMap = current.mapWeightIndices(parameterStore);
+        parameterStore = current;
+        vectorNodeOffset.clear();
+        totalNumOfVariables = InitializeOffsetMap();
+        return indexMap;
     }
 
     public int getTotalNumberOfVariables() {
@@ -63,28 +93,20 @@ public class WeightsLinearizer {
     }
 
     public double[] getAllParameters(){
-        double[] params = new double[totalNumOfVariables];
-
-        for(Pair<Integer, ITrainableValueCombinator> positionPair : vectorNodeOffset.values()){
-            int idx = positionPair.u;
-            ITrainableValueCombinator valueCombinator = positionPair.v;
-            System.arraycopy(valueCombinator.getLinearizedVariables(), 0, params, idx, valueCombinator.getNumberOfVariables());
-        }
-
-        return params;
+        return parameterStore.getWeights().clone();
     }
 
-    
     public void setParameter(int i, double value){
-        for(Pair<Integer, ITrainableValueCombinator> positionPair : vectorNodeOffset.values()){
-            int idx = positionPair.u;
-            ITrainableValueCombinator valueCombinator = positionPair.v;
-            int varNum = valueCombinator.getNumberOfVariables();
-            if(i >= idx && i < idx + varNum){
-                valueCombinator.setLinearizedVariable(i-idx, value);
-                return;
-            }
-        }
+        parameterStore.getWeights()[i] = value;
+    }
+
+    /**
+     * Subtract the deltas from every weight and bias in place
+     * 
+     * @param allDeltas
+     */
+    public void applyDeltas(Vec allDeltas) {
+        parameterStore.subtractWeights(allDeltas);
     }
 
     /**
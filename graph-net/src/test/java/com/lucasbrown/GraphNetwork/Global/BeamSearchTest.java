@@ -0,0 +1,124 @@
+package com.lucasbrown.GraphNetwork.Global;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.lucasbrown.GraphNetwork.Local.ActivationFunction;
+import com.lucasbrown.GraphNetwork.Local.Outcome;
+import com.lucasbrown.GraphNetwork.Local.Filters.NormalPeakFilter;
+import com.lucasbrown.GraphNetwork.Local.Nodes.IInputNode;
+import com.lucasbrown.GraphNetwork.Local.Nodes.INode;
+import com.lucasbrown.GraphNetwork.Local.Nodes.ProbabilityCombinators.ComplexProbabilityCombinator;
+import com.lucasbrown.GraphNetwork.Local.Nodes.ValueCombinators.ComplexCombinator;
+import com.lucasbrown.NetworkTraining.History.NetworkHistory;
+import com.lucasbrown.NetworkTraining.Trainers.NetworkInputEvaluater;
+
+public class BeamSearchTest {
+
+    private GraphNetwork getModel(long seed) {
+        Random rng = new Random(seed);
+        GraphNetwork net = new GraphNetwork();
+
+        NodeBuilder nodeBuilder = new NodeBuilder(net);
+        nodeBuilder.setActivationFunction(ActivationFunction.LINEAR);
+        nodeBuilder.setValueCombinator(() -> new ComplexCombinator(rng));
+        nodeBuilder.setProbabilityCombinator(
+                () -> new ComplexProbabilityCombinator(() -> new NormalPeakFilter(0.3, 1.5, 10, rng)));
+        nodeBuilder.setOutcomeLimit(100);
+
+        nodeBuilder.setAsInputNode();
+        INode[] inputs = nodeBuilder.build(3);
+
+        nodeBuilder.setAsHiddenNode();
+        INode[] hidden = nodeBuilder.build(4);
+
+        nodeBuilder.setAsOutputNode();
+        INode out = nodeBuilder.build();
+
+        for (INode h : hidden) {
+            for (INode in : inputs) {
+                net.addNewConnection(in, h);
+            }
+            net.addNewConnection(h, out);
+        }
+        net.addNewConnection(hidden[0], hidden[1]);
+        net.addNewConnection(hidden[1], hidden[0]);
+        return net;
+    }
+
+    private final Double[][] inputs = new Double[][] {
+            { 0.5, -0.25, 1d }, { -1d, 1d, 0.3 }, { 0.1, null, -0.7 }, { null, null, null }, { null, null, null } };
+
+    private static ArrayList<Outcome> getNonInputOutcomes(NetworkHistory history, int timestep) {
+        ArrayList<Outcome> outcomes = new ArrayList<>();
+        history.getStateAtTimestep(timestep).forEach((node, state) -> {
+            if (!(node instanceof IInputNode)) {
+                outcomes.addAll(state);
+            }
+        });
+        return outcomes;
+    }
+
+    @Test
+    public void testBeamBoundsOutcomesPerStep() {
+        GraphNetwork net = getModel(2);
+        net.setBeamWidth(12);
+        NetworkHistory history = new NetworkInputEvaluater(net, inputs).computeNetworkInference();
+
+        for (int t = 0; t < history.getNumberOfTimesteps(); t++) {
+            assertTrue(getNonInputOutcomes(history, t).size() <= 12);
+            history.getStateAtTimestep(t).values().forEach(state -> assertTrue(!state.isEmpty()));
+        }
+    }
+
+    @Test
+    public void testBeamKeepsGloballyMostProbable() {
+        // the first hidden layer only depends on the inputs, so pruning can be
+        // compared against the unpruned candidates
+        Double[][] firstStep = new Double[][] { inputs[0], { null, null, null } };
+        NetworkHistory full = new NetworkInputEvaluater(getModel(2), firstStep).computeNetworkInference();
+
+        GraphNetwork beamNet = getModel(2);
+        beamNet.setBeamWidth(9);
+        NetworkHistory pruned = new NetworkInputEvaluater(beamNet, firstStep).computeNetworkInference();
+
+        double[] expected = getNonInputOutcomes(full, 1).stream()
+                .mapToDouble(outcome -> outcome.probability)
+                .map(p -> -p)
+                .sorted()
+                .limit(9)
+                .map(p -> -p)
+                .toArray();
+        double[] actual = getNonInputOutcomes(pruned, 1).stream()
+                .mapToDouble(outcome -> outcome.probability)
+                .map(p -> -p)
+                .sorted()
+                .map(p -> -p)
+                .toArray();
+        assertArrayEquals(expected, actual, 0);
+    }
+
+    @Test
+    public void testPruningThreshold() {
+        GraphNetwork net = getModel(4);
+        net.setBeamWidth(1000);
+        net.setPruningThreshold(0.05);
+        NetworkHistory history = new NetworkInputEvaluater(net, inputs).computeNetworkInference();
+
+        for (int t = 0; t < history.getNumberOfTimesteps(); t++) {
+            for (Outcome outcome : getNonInputOutcomes(history, t)) {
+                assertTrue(outcome.probability >= 0.05);
+            }
+        }
+
+        GraphNetwork replica = net.replicate();
+        assertEquals(1000, replica.getBeamWidth());
+        assertEquals(0.05, replica.getPruningThreshold(), 1E-15);
+    }
+}
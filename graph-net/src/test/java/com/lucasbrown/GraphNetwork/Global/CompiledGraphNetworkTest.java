@@ -0,0 +1,196 @@
+package com.lucasbrown.GraphNetwork.Global;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map.Entry;
+
+import org.junit.Test;
+
+import com.lucasbrown.GraphNetwork.Local.ActivationFunction;
+import com.lucasbrown.GraphNetwork.Local.Outcome;
+import com.lucasbrown.GraphNetwork.Local.Filters.NormalPeakFilter;
+import com.lucasbrown.GraphNetwork.Local.Nodes.INode;
+import com.lucasbrown.GraphNetwork.Local.Nodes.InputNode;
+import com.lucasbrown.GraphNetwork.Local.Nodes.OutputNode;
+import com.lucasbrown.GraphNetwork.Local.Nodes.ProbabilityCombinators.ComplexProbabilityCombinator;
+import com.lucasbrown.GraphNetwork.Local.Nodes.ValueCombinators.ComplexCombinator;
+import com.lucasbrown.NetworkTraining.History.NetworkHistory;
+import com.lucasbrown.NetworkTraining.NetworkDerivatives.ForwardNetworkGradient;
+import com.lucasbrown.NetworkTraining.Trainers.CompiledNetworkInputEvaluater;
+import com.lucasbrown.NetworkTraining.Trainers.NetworkInputEvaluater;
+import com.lucasbrown.NetworkTraining.Trainers.WeightsLinearizer;
+
+import jsat.linear.Vec;
+
+public class CompiledGraphNetworkTest {
+
+    private final double tollerance = 1E-12;
+
+    private GraphNetwork getRecurrentModel() {
+        GraphNetwork net = new GraphNetwork();
+
+        NodeBuilder nodeBuilder = new NodeBuilder(net);
+        nodeBuilder.setActivationFunction(ActivationFunction.LINEAR);
+        nodeBuilder.setValueCombinator(ComplexCombinator::new);
+        nodeBuilder.setProbabilityCombinator(() -> new ComplexProbabilityCombinator(() -> new NormalPeakFilter(0.3, 2)));
+
+        nodeBuilder.setAsInputNode();
+        InputNode in1 = (InputNode) nodeBuilder.build();
+        InputNode in2 = (InputNode) nodeBuilder.build();
+
+        nodeBuilder.setAsHiddenNode();
+        INode hidden1 = nodeBuilder.build();
+        INode hidden2 = nodeBuilder.build();
+
+        nodeBuilder.setAsOutputNode();
+        OutputNode out = (OutputNode) nodeBuilder.build();
+
+        net.addNewConnection(in1, hidden1);
+        net.addNewConnection(in2, hidden1);
+        net.addNewConnection(hidden1, hidden1);
+        net.addNewConnection(hidden1, hidden2);
+        net.addNewConnection(hidden2, hidden1);
+        net.addNewConnection(in2, hidden2);
+        net.addNewConnection(hidden1, out);
+        net.addNewConnection(hidden2, out);
+        return net;
+    }
+
+    private final Double[][] inputs = new Double[][] {
+            { 0.5, null }, { -1d, 1d }, { null, 0.25 }, { null, null }, { 2d, null }, { null, null },
+            { null, null } };
+
+    @Test
+    public void testHistoryParity() {
+        GraphNetwork net = getRecurrentModel();
+
+        NetworkHistory expected = new NetworkInputEvaluater(net, inputs).computeNetworkInference();
+
+        CompiledNetworkInputEvaluater compiledEvaluater = new CompiledNetworkInputEvaluater(net);
+        compiledEvaluater.setInputData(inputs);
+        NetworkHistory actual = compiledEvaluater.computeNetworkInference();
+
+        assertHistoriesEqual(expected, actual);
+    }
+
+    @Test
+    public void testBeamParity() {
+        GraphNetwork net = getRecurrentModel();
+        NetworkHistory unpruned = new NetworkInputEvaluater(net, inputs).computeNetworkInference();
+
+        net.setBeamWidth(3);
+        net.setLogPruningThreshold(Math.log(0.05));
+        NetworkHistory expected = new NetworkInputEvaluater(net, inputs).computeNetworkInference();
+
+        CompiledNetworkInputEvaluater compiledEvaluater = new CompiledNetworkInputEvaluater(net);
+        compiledEvaluater.setInputData(inputs);
+        NetworkHistory actual = compiledEvaluater.computeNetworkInference();
+
+        assertHistoriesEqual(expected, actual);
+
+        // the beam must have dropped outcomes for the comparison to mean anything
+        boolean isPruned = false;
+        for (int t = 0; t < inputs.length; t++) {
+            isPruned |= countOutcomes(expected, t) < countOutcomes(unpruned, t);
+        }
+        assertTrue(isPruned);
+    }
+
+    private static int countOutcomes(NetworkHistory history, int timestep) {
+        return history.getStateAtTimestep(timestep).values().stream().mapToInt(ArrayList::size).sum();
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testRejectsMergeTolerance() {
+        GraphNetwork net = getRecurrentModel();
+        net.setMergeTolerance(0.5);
+        net.compile();
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testRejectsMergeToleranceAfterCompiling() {
+        GraphNetwork net = getRecurrentModel();
+        CompiledNetworkInputEvaluater compiledEvaluater = new CompiledNetworkInputEvaluater(net);
+        compiledEvaluater.setInputData(inputs);
+
+        net.setMergeTolerance(0.5);
+        compiledEvaluater.computeNetworkInference();
+    }
+
+    @Test
+    public void testGradientParity() {
+        GraphNetwork net = getRecurrentModel();
+        WeightsLinearizer linearizer = new WeightsLinearizer(net);
+
+        NetworkHistory expected = new NetworkInputEvaluater(net, inputs).computeNetworkInference();
+        ArrayList<HashMap<Outcome, Vec>> expectedGradient = new ForwardNetworkGradient(linearizer)
+                .getGradient(expected);
+
+        CompiledNetworkInputEvaluater compiledEvaluater = new CompiledNetworkInputEvaluater(net);
+        compiledEvaluater.setInputData(inputs);
+        NetworkHistory actual = compiledEvaluater.computeNetworkInference();
+        ArrayList<HashMap<Outcome, Vec>> actualGradient = new ForwardNetworkGradient(linearizer).getGradient(actual);
+
+        for (int t = 0; t < inputs.length; t++) {
+            for (Entry<INode, ArrayList<Outcome>> entry : expected.getStateAtTimestep(t).entrySet()) {
+                ArrayList<Outcome> actualOutcomes = actual.getStateOfRecord(t, entry.getKey());
+                for (int i = 0; i < actualOutcomes.size(); i++) {
+                    double[] e = expectedGradient.get(t).get(entry.getValue().get(i)).arrayCopy();
+                    double[] a = actualGradient.get(t).get(actualOutcomes.get(i)).arrayCopy();
+                    assertArrayEquals(e, a, tollerance);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testReloadParameters() {
+        GraphNetwork net = getRecurrentModel();
+        CompiledNetworkInputEvaluater compiledEvaluater = new CompiledNetworkInputEvaluater(net);
+        compiledEvaluater.setInputData(inputs);
+        compiledEvaluater.computeNetworkInference();
+
+        // change the network after it was compiled
+        for (INode node : net.getNodes()) {
+            if (node instanceof InputNode) {
+                continue;
+            }
+            node.getValueCombinator().setBias(0b1, -3);
+        }
+
+        NetworkHistory expected = new NetworkInputEvaluater(net, inputs).computeNetworkInference();
+        NetworkHistory actual = compiledEvaluater.computeNetworkInference();
+
+        assertHistoriesEqual(expected, actual);
+    }
+
+    private void assertHistoriesEqual(NetworkHistory expected, NetworkHistory actual) {
+        assertEquals(expected.getNumberOfTimesteps(), actual.getNumberOfTimesteps());
+        for (int t = 0; t < expected.getNumberOfTimesteps(); t++) {
+            HashMap<INode, ArrayList<Outcome>> expectedState = expected.getStateAtTimestep(t);
+            assertEquals(expectedState.size(), actual.getStateAtTimestep(t).size());
+
+            for (Entry<INode, ArrayList<Outcome>> entry : expectedState.entrySet()) {
+                ArrayList<Outcome> actualOutcomes = actual.getStateOfRecord(t, entry.getKey());
+                assertNotNull(actualOutcomes);
+                assertEquals(entry.getValue().size(), actualOutcomes.size());
+
+                for (int i = 0; i < actualOutcomes.size(); i++) {
+                    Outcome e = entry.getValue().get(i);
+                    Outcome a = actualOutcomes.get(i);
+                    assertEquals(e.binary_string, a.binary_string);
+                    assertEquals(e.root_bin_str, a.root_bin_str);
+                    assertEquals(e.netValue, a.netValue, tollerance);
+                    assertEquals(e.activatedValue, a.activatedValue, tollerance);
+                    assertEquals(e.probability, a.probability, tollerance);
+                    assertEquals(e.getLogProbability(), a.getLogProbability(), tollerance);
+                }
+            }
+        }
+    }
+}
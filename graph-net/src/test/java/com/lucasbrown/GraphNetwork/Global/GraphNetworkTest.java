@@ -0,0 +1,134 @@
+package com.lucasbrown.GraphNetwork.Global;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.Map.Entry;
+
+import org.junit.Test;
+
+import com.lucasbrown.GraphNetwork.Local.ActivationFunction;
+import com.lucasbrown.GraphNetwork.Local.Outcome;
+import com.lucasbrown.GraphNetwork.Local.Filters.NormalPeakFilter;
+import com.lucasbrown.GraphNetwork.Local.Nodes.INode;
+import com.lucasbrown.GraphNetwork.Local.Nodes.ProbabilityCombinators.ComplexProbabilityCombinator;
+import com.lucasbrown.GraphNetwork.Local.Nodes.ValueCombinators.ComplexCombinator;
+import com.lucasbrown.NetworkTraining.History.NetworkHistory;
+import com.lucasbrown.NetworkTraining.Trainers.NetworkInputEvaluater;
+
+public class GraphNetworkTest {
+
+    private GraphNetwork getRandomRecurrentModel(Random rng) {
+        GraphNetwork net = new GraphNetwork();
+
+        NodeBuilder nodeBuilder = new NodeBuilder(net);
+        nodeBuilder.setActivationFunction(ActivationFunction.LINEAR);
+        nodeBuilder.setValueCombinator(ComplexCombinator::new);
+        nodeBuilder.setProbabilityCombinator(() -> new ComplexProbabilityCombinator(() -> new NormalPeakFilter(0, 1)));
+
+        nodeBuilder.setAsInputNode();
+        INode[] inputs = nodeBuilder.build(3);
+
+        nodeBuilder.setAsHiddenNode();
+        INode[] hidden = nodeBuilder.build(12);
+
+        nodeBuilder.setAsOutputNode();
+        INode[] outputs = nodeBuilder.build(2);
+
+        for (INode in : inputs) {
+            net.addNewConnection(in, hidden[rng.nextInt(hidden.length)]);
+        }
+        // fan-in above 4 so that incoming signals span more than one hash bucket
+        // range
+        for (INode recieving : hidden) {
+            for (INode sending : hidden) {
+                if (rng.nextDouble() < 0.35) {
+                    net.addNewConnection(sending, recieving);
+                }
+            }
+        }
+        for (INode out : outputs) {
+            for (INode sending : hidden) {
+                if (rng.nextDouble() < 0.5) {
+                    net.addNewConnection(sending, out);
+                }
+            }
+        }
+        return net;
+    }
+
+    @Test
+    public void testParallelStepMatchesSerial() {
+        Random rng = new Random(7);
+        GraphNetwork net = getRandomRecurrentModel(rng);
+
+        Double[][] inputs = getRandomInputs(rng);
+
+        NetworkHistory serial = new NetworkInputEvaluater(net, inputs).computeNetworkInference();
+
+        net.setParallelism(4);
+        assertEquals(4, net.getParallelism());
+        NetworkHistory parallel = new NetworkInputEvaluater(net, inputs).computeNetworkInference();
+        net.setParallelism(1);
+
+        assertHistoriesEqual(serial, parallel);
+    }
+
+    @Test
+    public void testReplicaMatchesOriginal() {
+        Random rng = new Random(7);
+        GraphNetwork net = getRandomRecurrentModel(rng);
+        Double[][] inputs = getRandomInputs(rng);
+
+        GraphNetwork replica = net.replicate();
+        assertEquals(net.getNodes(), replica.getNodes());
+        for (INode node : net.getNodes()) {
+            INode replicaNode = replica.getNodes().get(net.getNodes().indexOf(node));
+            assertNotSame(node, replicaNode);
+            assertSame(node.getValueCombinator(), replicaNode.getValueCombinator());
+            assertSame(node.getProbabilityCombinator(), replicaNode.getProbabilityCombinator());
+        }
+
+        NetworkHistory original = new NetworkInputEvaluater(net, inputs).computeNetworkInference();
+        NetworkHistory replicated = new NetworkInputEvaluater(replica, inputs).computeNetworkInference();
+        assertHistoriesEqual(original, replicated);
+    }
+
+    private static Double[][] getRandomInputs(Random rng) {
+        Double[][] inputs = new Double[10][3];
+        for (int t = 0; t < inputs.length; t++) {
+            for (int i = 0; i < 3; i++) {
+                inputs[t][i] = rng.nextDouble() < 0.6 ? rng.nextGaussian() : null;
+            }
+        }
+        return inputs;
+    }
+
+    private static void assertHistoriesEqual(NetworkHistory serial, NetworkHistory parallel) {
+        assertEquals(serial.getNumberOfTimesteps(), parallel.getNumberOfTimesteps());
+        for (int t = 0; t < serial.getNumberOfTimesteps(); t++) {
+            HashMap<INode, ArrayList<Outcome>> expectedState = serial.getStateAtTimestep(t);
+            assertEquals(expectedState.size(), parallel.getStateAtTimestep(t).size());
+
+            for (Entry<INode, ArrayList<Outcome>> entry : expectedState.entrySet()) {
+                ArrayList<Outcome> actualOutcomes = parallel.getStateOfRecord(t, entry.getKey());
+                assertNotNull(actualOutcomes);
+                assertEquals(entry.getValue().size(), actualOutcomes.size());
+
+                for (int i = 0; i < actualOutcomes.size(); i++) {
+                    Outcome e = entry.getValue().get(i);
+                    Outcome a = actualOutcomes.get(i);
+                    assertEquals(e.binary_string, a.binary_string);
+                    assertEquals(e.root_bin_str, a.root_bin_str);
+                    assertEquals(e.netValue, a.netValue, 0);
+                    assertEquals(e.probability, a.probability, 0);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.lucasbrown.GraphNetwork.Global;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.lucasbrown.GraphNetwork.Local.ActivationFunction;
+import com.lucasbrown.GraphNetwork.Local.Outcome;
+import com.lucasbrown.GraphNetwork.Local.Filters.NormalPeakFilter;
+import com.lucasbrown.GraphNetwork.Local.Nodes.INode;
+import com.lucasbrown.GraphNetwork.Local.Nodes.OutputNode;
+import com.lucasbrown.GraphNetwork.Local.Nodes.ProbabilityCombinators.ComplexProbabilityCombinator;
+import com.lucasbrown.GraphNetwork.Local.Nodes.ValueCombinators.ComplexCombinator;
+import com.lucasbrown.HelperClasses.GaussHermite;
+import com.lucasbrown.NetworkTraining.History.NetworkHistory;
+import com.lucasbrown.NetworkTraining.Trainers.NetworkInputEvaluater;
+
+public class MomentPropagatorTest {
+
+    /**
+     * A single layer fed by inputs which are always present, so that every
+     * sender is certain
+     */
+    private GraphNetwork getSingleLayerModel() {
+        Random rng = new Random(5);
+        GraphNetwork net = new GraphNetwork();
+
+        NodeBuilder nodeBuilder = new NodeBuilder(net);
+        nodeBuilder.setActivationFunction(ActivationFunction.LINEAR);
+        nodeBuilder.setValueCombinator(() -> new ComplexCombinator(rng));
+        nodeBuilder.setProbabilityCombinator(
+                () -> new ComplexProbabilityCombinator(() -> new NormalPeakFilter(0.3, 1.5, 10, rng)));
+
+        nodeBuilder.setAsInputNode();
+        INode[] inputs = nodeBuilder.build(3);
+
+        nodeBuilder.setAsHiddenNode();
+        INode hidden = nodeBuilder.build();
+
+        nodeBuilder.setAsOutputNode();
+        INode out = nodeBuilder.build();
+
+        net.addNewConnection(inputs[0], hidden);
+        net.addNewConnection(inputs[1], hidden);
+        net.addNewConnection(inputs[1], out);
+        net.addNewConnection(inputs[2], out);
+        net.addNewConnection(inputs[0], out);
+        return net;
+    }
+
+    private GraphNetwork getRecurrentModel() {
+        Random rng = new Random(3);
+        GraphNetwork net = new GraphNetwork();
+
+        NodeBuilder nodeBuilder = new NodeBuilder(net);
+        nodeBuilder.setActivationFunction(ActivationFunction.LINEAR);
+        nodeBuilder.setValueCombinator(() -> new ComplexCombinator(rng));
+        nodeBuilder.setProbabilityCombinator(
+                () -> new ComplexProbabilityCombinator(() -> new NormalPeakFilter(0.3, 1.5, 10, rng)));
+
+        nodeBuilder.setAsInputNode();
+        INode in = nodeBuilder.build();
+
+        nodeBuilder.setAsHiddenNode();
+        INode hidden1 = nodeBuilder.build();
+        INode hidden2 = nodeBuilder.build();
+
+        nodeBuilder.setAsOutputNode();
+        INode out = nodeBuilder.build();
+
+        net.addNewConnection(in, hidden1);
+        net.addNewConnection(hidden2, hidden1);
+        net.addNewConnection(hidden1, hidden2);
+        net.addNewConnection(hidden1, out);
+        net.addNewConnection(hidden2, out);
+        return net;
+    }
+
+    @Test
+    public void testQuadratureIntegratesPolynomials() {
+        GaussHermite quadrature = new GaussHermite(10);
+        double total = 0;
+        for (int i = 0; i < quadrature.getNumberOfPoints(); i++) {
+            total += quadrature.getWeight(i);
+        }
+        assertEquals(1, total, 1E-13);
+
+        double mean = 0.7;
+        double variance = 2.5;
+        assertEquals(mean, quadrature.expectation(x -> x, mean, variance), 1E-12);
+        assertEquals(variance + mean * mean, quadrature.expectation(x -> x * x, mean, variance), 1E-12);
+        assertEquals(3 * variance * variance, quadrature.expectation(x -> Math.pow(x - mean, 4), mean, variance),
+                1E-10);
+    }
+
+    @Test
+    public void testMatchesEnumerationOfCertainSenders() {
+        GraphNetwork net = getSingleLayerModel();
+        Double[][] inputs = new Double[][] { { 0.5, -0.25, 1d }, { -1d, 1d, 0.3 }, { 0.1, 2d, -0.7 }, { 0d, 0d, 0d } };
+        NetworkInputEvaluater evaluater = new NetworkInputEvaluater(net, inputs);
+        NetworkHistory exact = evaluater.computeNetworkInference();
+
+        MomentPropagator propagator = new MomentPropagator(net);
+        propagator.reset();
+        for (int t = 0; t < inputs.length; t++) {
+            propagator.step(inputs[t]);
+            for (INode node : net.getNodes()) {
+                ArrayList<Outcome> outcomes = exact.getStateOfRecord(t, node);
+                double probability = 0;
+                double expectation = 0;
+                if (outcomes != null) {
+                    for (Outcome outcome : outcomes) {
+                        probability += outcome.probability;
+                        expectation += outcome.probability * outcome.activatedValue;
+                    }
+                }
+
+                assertEquals(probability, propagator.getProbability(node), 1E-12);
+                if (probability > 0) {
+                    assertEquals(expectation / probability, propagator.getMean(node), 1E-12);
+                } else {
+                    assertNull(propagator.getMeanOrNull(node));
+                }
+            }
+        }
+
+        // the output node reports the same expectation from its outcomes
+        OutputNode out = net.getOutputNodes().get(0);
+        assertEquals(propagator.getMean(out), out.getValue(), 1E-12);
+    }
+
+    @Test
+    public void testApproximatesSampledRecurrence() {
+        GraphNetwork net = getRecurrentModel();
+        Random rng = new Random(11);
+        Double[][] inputs = new Double[30][1];
+        for (int t = 0; t < inputs.length; t++) {
+            inputs[t][0] = rng.nextDouble() < 0.5 ? rng.nextGaussian() : null;
+        }
+
+        NetworkHistory sampled = new MonteCarloSampler(net, 40000, 6).sample(inputs);
+        MomentPropagator propagator = new MomentPropagator(net);
+        propagator.reset();
+
+        for (int t = 0; t < inputs.length; t++) {
+            propagator.step(inputs[t]);
+            for (INode node : net.getNodes()) {
+                ArrayList<Outcome> outcomes = sampled.getStateOfRecord(t, node);
+                double probability = 0;
+                if (outcomes != null) {
+                    for (Outcome outcome : outcomes) {
+                        probability += outcome.probability;
+                    }
+                }
+                assertEquals(probability, propagator.getProbability(node), 0.05);
+            }
+        }
+    }
+}
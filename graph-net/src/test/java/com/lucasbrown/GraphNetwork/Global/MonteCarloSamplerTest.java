@@ -0,0 +1,182 @@
+package com.lucasbrown.GraphNetwork.Global;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map.Entry;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.lucasbrown.GraphNetwork.Local.ActivationFunction;
+import com.lucasbrown.GraphNetwork.Local.Outcome;
+import com.lucasbrown.GraphNetwork.Local.Filters.NormalPeakFilter;
+import com.lucasbrown.GraphNetwork.Local.Nodes.INode;
+import com.lucasbrown.GraphNetwork.Local.Nodes.InputNode;
+import com.lucasbrown.GraphNetwork.Local.Nodes.OutputNode;
+import com.lucasbrown.GraphNetwork.Local.Nodes.ProbabilityCombinators.ComplexProbabilityCombinator;
+import com.lucasbrown.GraphNetwork.Local.Nodes.ValueCombinators.ComplexCombinator;
+import com.lucasbrown.NetworkTraining.History.NetworkHistory;
+import com.lucasbrown.NetworkTraining.Trainers.NetworkInputEvaluater;
+
+public class MonteCarloSamplerTest {
+
+    private GraphNetwork getModel() {
+        Random rng = new Random(3);
+        GraphNetwork net = new GraphNetwork();
+
+        NodeBuilder nodeBuilder = new NodeBuilder(net);
+        nodeBuilder.setActivationFunction(ActivationFunction.LINEAR);
+        nodeBuilder.setValueCombinator(() -> new ComplexCombinator(rng));
+        nodeBuilder.setProbabilityCombinator(
+                () -> new ComplexProbabilityCombinator(() -> new NormalPeakFilter(0.3, 1.5, 10, rng)));
+
+        nodeBuilder.setAsInputNode();
+        InputNode in1 = (InputNode) nodeBuilder.build();
+        InputNode in2 = (InputNode) nodeBuilder.build();
+
+        nodeBuilder.setAsHiddenNode();
+        INode hidden1 = nodeBuilder.build();
+        INode hidden2 = nodeBuilder.build();
+
+        nodeBuilder.setAsOutputNode();
+        OutputNode out = (OutputNode) nodeBuilder.build();
+
+        net.addNewConnection(in1, hidden1);
+        net.addNewConnection(in2, hidden1);
+        net.addNewConnection(in2, hidden2);
+        net.addNewConnection(hidden1, hidden2);
+        net.addNewConnection(hidden1, out);
+        net.addNewConnection(hidden2, out);
+        return net;
+    }
+
+    private final Double[][] inputs = new Double[][] {
+            { 0.5, -0.25 }, { null, 1d }, { 0.1, null }, { null, null }, { null, null } };
+
+    /**
+     * A single layer fed by inputs which are always present, so that every
+     * root of every outcome is certain and the enumeration is exact
+     */
+    private GraphNetwork getSingleLayerModel() {
+        Random rng = new Random(5);
+        GraphNetwork net = new GraphNetwork();
+
+        NodeBuilder nodeBuilder = new NodeBuilder(net);
+        nodeBuilder.setActivationFunction(ActivationFunction.LINEAR);
+        nodeBuilder.setValueCombinator(() -> new ComplexCombinator(rng));
+        nodeBuilder.setProbabilityCombinator(
+                () -> new ComplexProbabilityCombinator(() -> new NormalPeakFilter(0.3, 1.5, 10, rng)));
+
+        nodeBuilder.setAsInputNode();
+        INode[] inputs = nodeBuilder.build(3);
+
+        nodeBuilder.setAsHiddenNode();
+        INode hidden = nodeBuilder.build();
+
+        nodeBuilder.setAsOutputNode();
+        INode out = nodeBuilder.build();
+
+        net.addNewConnection(inputs[0], hidden);
+        net.addNewConnection(inputs[1], hidden);
+        net.addNewConnection(inputs[1], out);
+        net.addNewConnection(inputs[2], out);
+        net.addNewConnection(inputs[0], out);
+        return net;
+    }
+
+    @Test
+    public void testConvergesToEnumeration() {
+        GraphNetwork net = getSingleLayerModel();
+        Double[][] inputs = new Double[][] { { 0.5, -0.25, 1d }, { -1d, 1d, 0.3 }, { 0.1, 2d, -0.7 }, { 0d, 0d, 0d } };
+        NetworkHistory exact = new NetworkInputEvaluater(net, inputs).computeNetworkInference();
+
+        MonteCarloSampler sampler = new MonteCarloSampler(net, 40000, 17);
+        NetworkHistory sampled = sampler.sample(inputs);
+
+        assertEquals(exact.getNumberOfTimesteps(), sampled.getNumberOfTimesteps());
+        for (int t = 0; t < exact.getNumberOfTimesteps(); t++) {
+            for (Entry<INode, ArrayList<Outcome>> entry : exact.getStateAtTimestep(t).entrySet()) {
+                ArrayList<Outcome> sampledOutcomes = sampled.getStateOfRecord(t, entry.getKey());
+                assertNotNull(sampledOutcomes);
+
+                // every key has a single value, so compare the distribution over keys
+                for (Outcome expected : entry.getValue()) {
+                    Outcome actual = sampledOutcomes.stream()
+                            .filter(o -> o.binary_string == expected.binary_string)
+                            .findAny()
+                            .orElse(null);
+                    if (expected.probability < 1E-3) {
+                        continue;
+                    }
+                    assertNotNull(actual);
+                    assertEquals(expected.probability, actual.probability, 0.01);
+                    assertEquals(expected.netValue, actual.netValue, 1E-12);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSamplesAreReproducible() {
+        GraphNetwork net = getModel();
+
+        MonteCarloSampler serial = new MonteCarloSampler(net, 500, 4);
+        MonteCarloSampler parallel = new MonteCarloSampler(net, 500, 4);
+        parallel.setParallelism(4);
+        assertEquals(4, parallel.getParallelism());
+
+        NetworkHistory first = serial.sample(inputs);
+        assertHistoriesEqual(first, parallel.sample(inputs));
+
+        // later samples differ until the seed is reset
+        serial.sample(inputs);
+        serial.setSeed(4);
+        assertHistoriesEqual(first, serial.sample(inputs));
+    }
+
+    @Test
+    public void testProbabilitiesAreEmpirical() {
+        GraphNetwork net = getModel();
+        int numParticles = 64;
+        NetworkHistory sampled = new MonteCarloSampler(net, numParticles, 1).sample(inputs);
+
+        for (int t = 0; t < sampled.getNumberOfTimesteps(); t++) {
+            for (ArrayList<Outcome> outcomes : sampled.getStateAtTimestep(t).values()) {
+                double total = 0;
+                for (Outcome outcome : outcomes) {
+                    double count = outcome.probability * numParticles;
+                    assertEquals(Math.rint(count), count, 1E-9);
+                    assertEquals(Math.log(outcome.probability), outcome.logProbability, 1E-12);
+                    total += outcome.probability;
+                }
+                assertTrue(total <= 1 + 1E-12);
+            }
+        }
+    }
+
+    private static void assertHistoriesEqual(NetworkHistory expected, NetworkHistory actual) {
+        assertEquals(expected.getNumberOfTimesteps(), actual.getNumberOfTimesteps());
+        for (int t = 0; t < expected.getNumberOfTimesteps(); t++) {
+            HashMap<INode, ArrayList<Outcome>> expectedState = expected.getStateAtTimestep(t);
+            assertEquals(expectedState.size(), actual.getStateAtTimestep(t).size());
+
+            for (Entry<INode, ArrayList<Outcome>> entry : expectedState.entrySet()) {
+                ArrayList<Outcome> actualOutcomes = actual.getStateOfRecord(t, entry.getKey());
+                assertNotNull(actualOutcomes);
+                assertEquals(entry.getValue().size(), actualOutcomes.size());
+                for (int i = 0; i < actualOutcomes.size(); i++) {
+                    Outcome e = entry.getValue().get(i);
+                    Outcome a = actualOutcomes.get(i);
+                    assertEquals(e.binary_string, a.binary_string);
+                    assertEquals(e.root_bin_str, a.root_bin_str);
+                    assertEquals(e.netValue, a.netValue, 0);
+                    assertEquals(e.probability, a.probability, 0);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.lucasbrown.GraphNetwork.Global;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.lucasbrown.GraphNetwork.Local.ActivationFunction;
+import com.lucasbrown.GraphNetwork.Local.Filters.FlatRateFilter;
+import com.lucasbrown.GraphNetwork.Local.Filters.IFilter;
+import com.lucasbrown.GraphNetwork.Local.Filters.NormalPeakFilter;
+import com.lucasbrown.GraphNetwork.Local.Nodes.INode;
+import com.lucasbrown.GraphNetwork.Local.Nodes.InputNode;
+import com.lucasbrown.GraphNetwork.Local.Nodes.OutputNode;
+import com.lucasbrown.GraphNetwork.Local.Nodes.ProbabilityCombinators.ComplexProbabilityCombinator;
+import com.lucasbrown.GraphNetwork.Local.Nodes.ValueCombinators.ComplexCombinator;
+import com.lucasbrown.GraphNetwork.Local.Nodes.ValueCombinators.ITrainableValueCombinator;
+import com.lucasbrown.GraphNetwork.Local.Nodes.ValueCombinators.SimpleCombinator;
+
+import jsat.linear.DenseVector;
+import jsat.linear.SparseVector;
+import jsat.linear.Vec;
+
+public class ParameterStoreTest {
+
+    private GraphNetwork getModel() {
+        GraphNetwork net = new GraphNetwork();
+
+        NodeBuilder nodeBuilder = new NodeBuilder(net);
+        nodeBuilder.setActivationFunction(ActivationFunction.LINEAR);
+        nodeBuilder.setValueCombinator(ComplexCombinator::new);
+        nodeBuilder.setProbabilityCombinator(() -> new ComplexProbabilityCombinator(() -> new NormalPeakFilter(0.3, 2)));
+
+        nodeBuilder.setAsInputNode();
+        InputNode in1 = (InputNode) nodeBuilder.build();
+        InputNode in2 = (InputNode) nodeBuilder.build();
+
+        nodeBuilder.setAsHiddenNode();
+        INode hidden1 = nodeBuilder.build();
+        nodeBuilder.setValueCombinator(SimpleCombinator::new);
+        nodeBuilder.setProbabilityCombinator(() -> new ComplexProbabilityCombinator(() -> new FlatRateFilter(0.5)));
+        INode hidden2 = nodeBuilder.build();
+
+        nodeBuilder.setAsOutputNode();
+        OutputNode out = (OutputNode) nodeBuilder.build();
+
+        net.addNewConnection(in1, hidden1);
+        net.addNewConnection(in2, hidden1);
+        net.addNewConnection(hidden1, hidden1);
+        net.addNewConnection(hidden1, hidden2);
+        net.addNewConnection(in2, hidden2);
+        net.addNewConnection(hidden1, out);
+        net.addNewConnection(hidden2, out);
+        return net;
+    }
+
+    @Test
+    public void testParametersAreBoundToStore() {
+        GraphNetwork net = getModel();
+        ParameterStore store = net.getParameterStore();
+        double[] weights = store.getWeights();
+        double[] filterParameters = store.getFilterParameters();
+
+        for (ITrainableValueCombinator comb : store.getCombinators()) {
+            int offset = store.getOffsetOf(comb);
+            int n = comb.getNumberOfVariables();
+            assertArrayEquals(Arrays.copyOfRange(weights, offset, offset + n), comb.getLinearizedVariables(), 0);
+
+            // writes to the buffer are seen by the combinator and vice versa
+            if (n > 0) {
+                int biasIdx = comb.getLinearIndexOfBias(1);
+                weights[offset + biasIdx] = 42;
+                assertEquals(42, comb.getBias(1), 0);
+                comb.setBias(1, -3);
+                assertEquals(-3, weights[offset + biasIdx], 0);
+            }
+        }
+
+        for (IFilter filter : store.getFilters()) {
+            int offset = store.getOffsetOf(filter);
+            int n = filter.getNumberOfAdjustableParameters();
+            assertArrayEquals(Arrays.copyOfRange(filterParameters, offset, offset + n),
+                    filter.getAdjustableParameters(), 0);
+
+            filterParameters[offset] = 0.25;
+            assertEquals(0.25, filter.getAdjustableParameters()[0], 0);
+        }
+    }
+
+    @Test
+    public void testInPlaceUpdateMatchesPerNodeUpdate() {
+        GraphNetwork net = getModel();
+        ParameterStore store = net.getParameterStore();
+
+        Vec delta = DenseVector.random(store.getNumberOfWeights(), new Random(3));
+        double[] expected = store.getWeights().clone();
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] -= delta.get(i);
+        }
+        store.subtractWeights(delta);
+        assertArrayEquals(expected, store.getWeights(), 1E-15);
+
+        // sparse deltas only touch the nonzero entries
+        SparseVector sparseDelta = new SparseVector(store.getNumberOfWeights());
+        sparseDelta.set(3, 1.5);
+        expected[3] -= 1.5;
+        store.subtractWeights(sparseDelta);
+        assertArrayEquals(expected, store.getWeights(), 1E-15);
+    }
+
+    @Test
+    public void testFilterConstraintsAreRestored() {
+        GraphNetwork net = getModel();
+        ParameterStore store = net.getParameterStore();
+
+        Vec delta = new DenseVector(store.getNumberOfFilterParameters());
+        for (IFilter filter : store.getFilters()) {
+            if (filter instanceof FlatRateFilter) {
+                delta.set(store.getOffsetOf(filter), 10);
+            }
+        }
+        store.subtractFilterParameters(delta);
+
+        for (IFilter filter : store.getFilters()) {
+            if (filter instanceof FlatRateFilter) {
+                assertEquals(1E-12, filter.getChanceToSend(0), 0);
+            }
+        }
+    }
+
+    @Test
+    public void testStructureChangeRebuildsStore() {
+        GraphNetwork net = getModel();
+        ParameterStore store = net.getParameterStore();
+        INode hidden1 = net.getNode(2);
+        INode out = net.getNode(4);
+        ITrainableValueCombinator comb = (ITrainableValueCombinator) hidden1.getValueCombinator();
+        double[] hiddenVariables = comb.getLinearizedVariables();
+
+        net.addNewConnection(out, out);
+        ParameterStore rebuilt = net.getParameterStore();
+        assertNotSame(store, rebuilt);
+        assertEquals(rebuilt, net.getParameterStore());
+
+        // untouched combinators keep their values in the new store
+        int offset = rebuilt.getOffsetOf(comb);
+        assertArrayEquals(hiddenVariables,
+                Arrays.copyOfRange(rebuilt.getWeights(), offset, offset + hiddenVariables.length), 0);
+
+        // replicas share the store of the original
+        assertEquals(rebuilt, net.replicate().getParameterStore());
+    }
+}
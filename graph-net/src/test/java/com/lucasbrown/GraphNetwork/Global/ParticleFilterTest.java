@@ -0,0 +1,193 @@
+package com.lucasbrown.GraphNetwork.Global;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map.Entry;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.lucasbrown.GraphNetwork.Local.ActivationFunction;
+import com.lucasbrown.GraphNetwork.Local.Outcome;
+import com.lucasbrown.GraphNetwork.Local.Filters.NormalPeakFilter;
+import com.lucasbrown.GraphNetwork.Local.Nodes.INode;
+import com.lucasbrown.GraphNetwork.Local.Nodes.ProbabilityCombinators.ComplexProbabilityCombinator;
+import com.lucasbrown.GraphNetwork.Local.Nodes.ValueCombinators.ComplexCombinator;
+import com.lucasbrown.NetworkTraining.History.NetworkHistory;
+import com.lucasbrown.NetworkTraining.Trainers.NetworkInputEvaluater;
+import com.lucasbrown.NetworkTraining.Trainers.SampledNetworkInputEvaluater;
+
+public class ParticleFilterTest {
+
+    private GraphNetwork getRecurrentModel() {
+        Random rng = new Random(3);
+        GraphNetwork net = new GraphNetwork();
+
+        NodeBuilder nodeBuilder = new NodeBuilder(net);
+        nodeBuilder.setActivationFunction(ActivationFunction.LINEAR);
+        nodeBuilder.setValueCombinator(() -> new ComplexCombinator(rng));
+        nodeBuilder.setProbabilityCombinator(
+                () -> new ComplexProbabilityCombinator(() -> new NormalPeakFilter(0.3, 1.5, 10, rng)));
+
+        nodeBuilder.setAsInputNode();
+        INode in = nodeBuilder.build();
+
+        nodeBuilder.setAsHiddenNode();
+        INode hidden1 = nodeBuilder.build();
+        INode hidden2 = nodeBuilder.build();
+
+        nodeBuilder.setAsOutputNode();
+        INode out = nodeBuilder.build();
+
+        net.addNewConnection(in, hidden1);
+        net.addNewConnection(hidden2, hidden1);
+        net.addNewConnection(hidden1, hidden2);
+        net.addNewConnection(hidden1, out);
+        net.addNewConnection(hidden2, out);
+        return net;
+    }
+
+    private Double[][] getInputs(int timesteps) {
+        Random rng = new Random(11);
+        Double[][] inputs = new Double[timesteps][1];
+        for (int t = 0; t < timesteps; t++) {
+            inputs[t][0] = rng.nextDouble() < 0.3 ? rng.nextGaussian() : null;
+        }
+        return inputs;
+    }
+
+    private GraphNetwork getSingleLayerModel() {
+        Random rng = new Random(5);
+        GraphNetwork net = new GraphNetwork();
+
+        NodeBuilder nodeBuilder = new NodeBuilder(net);
+        nodeBuilder.setActivationFunction(ActivationFunction.LINEAR);
+        nodeBuilder.setValueCombinator(() -> new ComplexCombinator(rng));
+        nodeBuilder.setProbabilityCombinator(
+                () -> new ComplexProbabilityCombinator(() -> new NormalPeakFilter(0.3, 1.5, 10, rng)));
+
+        nodeBuilder.setAsInputNode();
+        INode[] inputs = nodeBuilder.build(3);
+
+        nodeBuilder.setAsOutputNode();
+        INode out = nodeBuilder.build();
+
+        net.addNewConnection(inputs[0], out);
+        net.addNewConnection(inputs[1], out);
+        net.addNewConnection(inputs[2], out);
+        return net;
+    }
+
+    @Test
+    public void testWeightedEstimateConvergesToEnumeration() {
+        GraphNetwork net = getSingleLayerModel();
+        Double[][] inputs = new Double[][] { { 0.5, -0.25, 1d }, { -1d, 1d, 0.3 }, { 0.1, 2d, -0.7 } };
+        NetworkHistory exact = new NetworkInputEvaluater(net, inputs).computeNetworkInference();
+
+        ParticleFilter filter = new ParticleFilter(net, 40000, 17);
+        filter.setProposalMixing(0.5);
+        filter.setResampleThreshold(0);
+        NetworkHistory sampled = filter.sample(inputs);
+
+        for (int t = 0; t < exact.getNumberOfTimesteps(); t++) {
+            for (Entry<INode, ArrayList<Outcome>> entry : exact.getStateAtTimestep(t).entrySet()) {
+                ArrayList<Outcome> sampledOutcomes = sampled.getStateOfRecord(t, entry.getKey());
+                assertNotNull(sampledOutcomes);
+                for (Outcome expected : entry.getValue()) {
+                    if (expected.probability < 1E-3) {
+                        continue;
+                    }
+                    Outcome actual = sampledOutcomes.stream()
+                            .filter(o -> o.binary_string == expected.binary_string)
+                            .findAny()
+                            .orElse(null);
+                    assertNotNull(actual);
+                    assertEquals(expected.probability, actual.probability, 0.02);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testResamplesWhenEffectiveSampleSizeCollapses() {
+        GraphNetwork net = getRecurrentModel();
+        Double[][] inputs = getInputs(40);
+
+        ParticleFilter filter = new ParticleFilter(net, 200, 2);
+        filter.setProposalMixing(0.5);
+        filter.sample(inputs);
+        assertTrue(filter.getNumberOfResamples() > 0);
+
+        // without mixing every weight stays equal
+        filter.setProposalMixing(0);
+        filter.sample(inputs);
+        assertEquals(0, filter.getNumberOfResamples());
+        assertEquals(200, filter.getEffectiveSampleSize(), 1E-9);
+    }
+
+    @Test
+    public void testStepKeepsBoundedState() {
+        GraphNetwork net = getRecurrentModel();
+        Double[][] inputs = getInputs(500);
+        int numParticles = 50;
+
+        ParticleFilter filter = new ParticleFilter(net, numParticles, 8);
+        filter.setProposalMixing(0.3);
+        filter.reset();
+        for (Double[] input : inputs) {
+            HashMap<INode, ArrayList<Outcome>> state = filter.step(input);
+            for (ArrayList<Outcome> outcomes : state.values()) {
+                assertTrue(outcomes.size() <= numParticles);
+
+                double total = 0;
+                for (Outcome outcome : outcomes) {
+                    total += outcome.probability;
+                    assertEquals(Math.log(outcome.probability), outcome.logProbability, 1E-9);
+
+                    // lineage only reaches back a single timestep
+                    if (outcome.sourceOutcomes != null) {
+                        for (Outcome source : outcome.sourceOutcomes) {
+                            assertNull(source.sourceOutcomes);
+                        }
+                    }
+                }
+                assertTrue(total <= 1 + 1E-9);
+            }
+        }
+    }
+
+    @Test
+    public void testPlugsIntoEvaluater() {
+        GraphNetwork net = getRecurrentModel();
+        Double[][] inputs = getInputs(20);
+
+        SampledNetworkInputEvaluater serial = new SampledNetworkInputEvaluater(net, new ParticleFilter(net, 300, 4));
+        ParticleFilter parallelFilter = new ParticleFilter(net, 300, 4);
+        parallelFilter.setParallelism(4);
+        SampledNetworkInputEvaluater parallel = new SampledNetworkInputEvaluater(net, parallelFilter);
+
+        serial.setInputData(inputs);
+        parallel.setInputData(inputs);
+        NetworkHistory expected = serial.computeNetworkInference();
+        NetworkHistory actual = parallel.computeNetworkInference();
+
+        assertEquals(expected.getNumberOfTimesteps(), actual.getNumberOfTimesteps());
+        for (int t = 0; t < expected.getNumberOfTimesteps(); t++) {
+            for (Entry<INode, ArrayList<Outcome>> entry : expected.getStateAtTimestep(t).entrySet()) {
+                ArrayList<Outcome> actualOutcomes = actual.getStateOfRecord(t, entry.getKey());
+                assertEquals(entry.getValue().size(), actualOutcomes.size());
+                for (int i = 0; i < actualOutcomes.size(); i++) {
+                    assertEquals(entry.getValue().get(i).netValue, actualOutcomes.get(i).netValue, 0);
+                    assertEquals(entry.getValue().get(i).probability, actualOutcomes.get(i).probability, 0);
+                }
+            }
+        }
+
+        assertTrue(((SampledNetworkInputEvaluater) serial.replicate()).getSampler() instanceof ParticleFilter);
+    }
+}
@@ -0,0 +1,76 @@
+package com.lucasbrown.GraphNetwork.Local.Filters;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class BatchedFilterTest {
+
+    private static IFilter[] getFilters() {
+        return new IFilter[] {
+                new NormalPeakFilter(0.3, 1.7),
+                new CappedNormalPeakFilter(-0.5, 0.8, 1E-3),
+                new GeneralizedExponentialDecayFilter(-1, 2, 0.2, 1.3, 2.5),
+                new FlatRateFilter(0.4),
+                new OpenFilter()
+        };
+    }
+
+    private static double[] getX(int count) {
+        Random rng = new Random(5);
+        double[] x = new double[count];
+        for (int i = 0; i < count; i++) {
+            x[i] = 3 * rng.nextGaussian();
+        }
+        return x;
+    }
+
+    @Test
+    public void testBatchedChanceToSend() {
+        double[] x = getX(37);
+        for (IFilter filter : getFilters()) {
+            double[] chances = new double[x.length + 3];
+            Arrays.fill(chances, -1);
+            filter.getChanceToSend(x, chances, x.length);
+            for (int i = 0; i < x.length; i++) {
+                assertEquals(filter.getChanceToSend(x[i]), chances[i], 0);
+            }
+            // nothing past count is written
+            assertEquals(-1, chances[x.length], 0);
+
+            // the chances may overwrite the values
+            double[] inPlace = x.clone();
+            filter.getChanceToSend(inPlace, inPlace, inPlace.length);
+            assertArrayEquals(Arrays.copyOf(chances, x.length), inPlace, 0);
+        }
+    }
+
+    @Test
+    public void testDerivativesAtOffset() {
+        double[] x = getX(10);
+        for (IFilter filter : getFilters()) {
+            int n = filter.getNumberOfAdjustableParameters();
+            int offset = 3;
+            double[] buffer = new double[offset + n + 2];
+            for (double xi : x) {
+                filter.getLogarithmicParameterDerivative(xi, buffer, offset);
+                assertArrayEquals(filter.getLogarithmicParameterDerivative(xi),
+                        Arrays.copyOfRange(buffer, offset, offset + n), 0);
+
+                filter.getNegatedLogarithmicParameterDerivative(xi, buffer, offset);
+                assertArrayEquals(filter.getNegatedLogarithmicParameterDerivative(xi),
+                        Arrays.copyOfRange(buffer, offset, offset + n), 0);
+            }
+            // the rest of the buffer is untouched
+            for (int i = 0; i < offset; i++) {
+                assertEquals(0, buffer[i], 0);
+            }
+            assertEquals(0, buffer[offset + n], 0);
+            assertEquals(0, buffer[offset + n + 1], 0);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.lucasbrown.GraphNetwork.Local.Filters;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TabulatedFilterTest {
+
+    /**
+     * Counts the number of times a table is sampled
+     */
+    private static class CountingFilter extends GeneralizedExponentialDecayFilter {
+
+        private int batches = 0;
+
+        private CountingFilter() {
+            super(-1, 2, 0.2, 1.3, 2.5);
+        }
+
+        @Override
+        public void getChanceToSend(double[] x, double[] chances, int count) {
+            batches++;
+            super.getChanceToSend(x, chances, count);
+        }
+    }
+
+    private static double getMaxError(TabulatedFilter tabulated, double lower, double upper) {
+        double maxError = 0;
+        for (int i = 0; i <= 10000; i++) {
+            double x = lower + (upper - lower) * i / 10000;
+            maxError = Math.max(maxError,
+                    Math.abs(tabulated.getChanceToSend(x) - tabulated.getFilter().getChanceToSend(x)));
+        }
+        return maxError;
+    }
+
+    @Test
+    public void testErrorBound() {
+        IFilter[] filters = {
+                new GeneralizedExponentialDecayFilter(-1, 2, 0.2, 1.3, 2.5),
+                new GeneralizedExponentialDecayFilter(-2, 1, -1, 0.5, 2),
+                new NormalPeakFilter(0.3, 1.7),
+                new CappedNormalPeakFilter(-0.5, 0.8, 1E-3)
+        };
+        for (IFilter filter : filters) {
+            TabulatedFilter tabulated = new TabulatedFilter(filter, -5, 5, 256);
+            double bound = tabulated.getErrorBound();
+            assertTrue(bound > 0 && bound < 1E-2);
+            assertTrue(getMaxError(tabulated, -5, 5) <= bound);
+        }
+    }
+
+    @Test
+    public void testOutsideOfRangeIsExact() {
+        TabulatedFilter tabulated = new TabulatedFilter(new CountingFilter(), -2, 2, 16);
+        for (double x : new double[] { -10, -2.0001, 2.0001, 7 }) {
+            assertEquals(tabulated.getFilter().getChanceToSend(x), tabulated.getChanceToSend(x), 0);
+        }
+
+        double[] x = { -3, -1, 0.5, 3 };
+        double[] chances = new double[x.length];
+        tabulated.getChanceToSend(x, chances, x.length);
+        for (int i = 0; i < x.length; i++) {
+            assertEquals(tabulated.getChanceToSend(x[i]), chances[i], 0);
+        }
+    }
+
+    @Test
+    public void testRebuiltOnlyWhenParametersChange() {
+        CountingFilter filter = new CountingFilter();
+        TabulatedFilter tabulated = new TabulatedFilter(filter, -5, 5, 64);
+
+        for (int i = 0; i < 100; i++) {
+            tabulated.getChanceToSend(i / 20d);
+        }
+        assertEquals(1, filter.batches);
+
+        tabulated.applyAdjustableParameterUpdate(new double[] { 0, 0, 0.5, 0, 0 });
+        assertEquals(filter.getChanceToSend(1), tabulated.getChanceToSend(1), tabulated.getErrorBound());
+        assertEquals(2, filter.batches);
+
+        // writes through a shared buffer are noticed too
+        double[] buffer = new double[7];
+        tabulated.bindAdjustableParameters(buffer, 2);
+        tabulated.getChanceToSend(0);
+        tabulated.constrainAdjustableParameters();
+        tabulated.getChanceToSend(0);
+        assertEquals(2, filter.batches);
+
+        buffer[2 + 2] -= 0.5;
+        assertEquals(filter.getChanceToSend(1), tabulated.getChanceToSend(1), tabulated.getErrorBound());
+        assertEquals(3, filter.batches);
+    }
+
+    @Test
+    public void testDerivativesAreExact() {
+        GeneralizedExponentialDecayFilter filter = new GeneralizedExponentialDecayFilter(-1, 2, 0.2, 1.3, 2.5);
+        TabulatedFilter tabulated = new TabulatedFilter(filter, -5, 5, 32);
+        for (double x = -4; x < 4; x += 0.37) {
+            assertArrayEquals(filter.getLogarithmicParameterDerivative(x),
+                    tabulated.getLogarithmicParameterDerivative(x), 0);
+            assertArrayEquals(filter.getNegatedLogarithmicParameterDerivative(x),
+                    tabulated.getNegatedLogarithmicParameterDerivative(x), 0);
+        }
+    }
+}
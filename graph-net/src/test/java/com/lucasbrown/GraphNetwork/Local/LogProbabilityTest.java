@@ -0,0 +1,187 @@
+package com.lucasbrown.GraphNetwork.Local;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.lucasbrown.GraphNetwork.Global.GraphNetwork;
+import com.lucasbrown.GraphNetwork.Global.NodeBuilder;
+import com.lucasbrown.GraphNetwork.Local.Filters.FlatRateFilter;
+import com.lucasbrown.GraphNetwork.Local.Filters.NormalPeakFilter;
+import com.lucasbrown.GraphNetwork.Local.Nodes.INode;
+import com.lucasbrown.GraphNetwork.Local.Nodes.OutputNode;
+import com.lucasbrown.GraphNetwork.Local.Nodes.ProbabilityCombinators.ComplexProbabilityCombinator;
+import com.lucasbrown.GraphNetwork.Local.Nodes.ValueCombinators.ComplexCombinator;
+import com.lucasbrown.NetworkTraining.History.NetworkHistory;
+import com.lucasbrown.NetworkTraining.NetworkDerivatives.ForwardFilterGradient;
+import com.lucasbrown.NetworkTraining.NetworkDerivatives.ReverseNetworkGradient;
+import com.lucasbrown.NetworkTraining.OutputDerivatives.IGradient;
+import com.lucasbrown.NetworkTraining.Trainers.FilterLinearizer;
+import com.lucasbrown.NetworkTraining.Trainers.NetworkInputEvaluater;
+import com.lucasbrown.NetworkTraining.Trainers.WeightsLinearizer;
+
+import jsat.linear.Vec;
+
+public class LogProbabilityTest {
+
+    private static final int CHAIN_LENGTH = 40;
+    private static final double RATE = 1E-12;
+
+    /**
+     * A chain of nodes where each link only sends with a tiny probability
+     */
+    private GraphNetwork getChain() {
+        return getChain(false);
+    }
+
+    /**
+     * @param endsInOutput whether the last node of the chain is an output node
+     */
+    private GraphNetwork getChain(boolean endsInOutput) {
+        GraphNetwork net = new GraphNetwork();
+
+        NodeBuilder nodeBuilder = new NodeBuilder(net);
+        nodeBuilder.setActivationFunction(ActivationFunction.LINEAR);
+        nodeBuilder.setValueCombinator(ComplexCombinator::new);
+        nodeBuilder.setProbabilityCombinator(() -> new ComplexProbabilityCombinator(() -> new FlatRateFilter(RATE)));
+
+        nodeBuilder.setAsInputNode();
+        INode previous = nodeBuilder.build();
+
+        nodeBuilder.setAsHiddenNode();
+        for (int i = 0; i < CHAIN_LENGTH; i++) {
+            if (endsInOutput && i == CHAIN_LENGTH - 1) {
+                nodeBuilder.setAsOutputNode();
+            }
+            INode next = nodeBuilder.build();
+            net.addNewConnection(previous, next);
+            previous = next;
+        }
+        return net;
+    }
+
+    @Test
+    public void testLogProbabilityDoesNotUnderflow() {
+        GraphNetwork net = getChain();
+        Double[][] inputs = new Double[CHAIN_LENGTH + 1][1];
+        inputs[0][0] = 1d;
+        NetworkHistory history = new NetworkInputEvaluater(net, inputs).computeNetworkInference();
+
+        INode last = net.getNode(net.getNodes().size() - 1);
+        ArrayList<Outcome> outcomes = history.getStateOfRecord(CHAIN_LENGTH, last);
+        assertEquals(1, outcomes.size());
+
+        Outcome outcome = outcomes.get(0);
+        assertEquals(0, outcome.probability, 0);
+        assertEquals(CHAIN_LENGTH * Math.log(RATE), outcome.getLogProbability(), 1E-9);
+
+        // the outcome still carries its full weight relative to the node
+        double logVolume = IGradient.getLogProbabilityVolume(outcomes);
+        assertEquals(outcome.getLogProbability(), logVolume, 1E-12);
+        assertEquals(1, IGradient.getNormalizedProbability(outcome, logVolume), 1E-12);
+    }
+
+    @Test
+    public void testOutputValueDoesNotUnderflow() {
+        GraphNetwork net = getChain(true);
+        Double[][] inputs = new Double[CHAIN_LENGTH + 1][1];
+        inputs[0][0] = 1d;
+        NetworkHistory history = new NetworkInputEvaluater(net, inputs).computeNetworkInference();
+
+        OutputNode out = net.getOutputNodes().get(0);
+        Outcome outcome = history.getStateOfRecord(CHAIN_LENGTH, out).get(0);
+        assertEquals(0, outcome.probability, 0);
+        assertTrue(outcome.activatedValue != 0);
+        assertEquals(outcome.activatedValue, out.getValue(), 1E-12);
+    }
+
+    @Test
+    public void testLogProbabilityGradientDoesNotUnderflow() {
+        GraphNetwork net = getChain();
+        Double[][] inputs = new Double[CHAIN_LENGTH + 1][1];
+        inputs[0][0] = 1d;
+        NetworkHistory history = new NetworkInputEvaluater(net, inputs).computeNetworkInference();
+        FilterLinearizer filterLinearizer = new FilterLinearizer(net);
+
+        INode last = net.getNode(net.getNodes().size() - 1);
+        Outcome outcome = history.getStateOfRecord(CHAIN_LENGTH, last).get(0);
+        assertEquals(0, outcome.probability, 0);
+
+        HashMap<Outcome, Double> seeds = new HashMap<>();
+        seeds.put(outcome, 1d);
+        Vec reverse = new ReverseNetworkGradient(new WeightsLinearizer(net), filterLinearizer)
+                .backpropagate(history, null, seeds).v;
+
+        // the probability underflows and so does its gradient, but every filter
+        // along the chain is a part of the gradient of its log
+        for (boolean sparse : new boolean[] { false, true }) {
+            Vec gradient = new ForwardFilterGradient(filterLinearizer, sparse).getGradient(history)
+                    .get(CHAIN_LENGTH).get(outcome);
+            assertArrayEquals(reverse.arrayCopy(), gradient.arrayCopy(), 0);
+
+            Vec logGradient = (Vec) outcome.trainingData;
+            assertEquals(CHAIN_LENGTH, logGradient.nnz());
+            for (int i = 0; i < logGradient.length(); i++) {
+                assertTrue(Double.isFinite(logGradient.get(i)) && logGradient.get(i) > 0);
+            }
+        }
+    }
+
+    @Test
+    public void testLogSumExp() {
+        Outcome o1 = new Outcome();
+        o1.logProbability = -2000;
+        Outcome o2 = new Outcome();
+        o2.logProbability = -2000 + Math.log(3);
+        Outcome o3 = new Outcome();
+        o3.probability = 0;
+
+        List<Outcome> outcomes = List.of(o1, o2, o3);
+        assertEquals(-2000 + Math.log(4), IGradient.getLogProbabilityVolume(outcomes), 1E-12);
+        assertEquals(0.75, IGradient.getNormalizedProbability(o2, IGradient.getLogProbabilityVolume(outcomes)), 1E-12);
+        assertEquals(Double.NEGATIVE_INFINITY, IGradient.getLogProbabilityVolume(List.of(o3)), 0);
+
+        // outcomes which only know their probability still sum as before
+        Outcome p1 = new Outcome();
+        p1.probability = 0.25;
+        Outcome p2 = new Outcome();
+        p2.probability = 0.5;
+        assertEquals(0.75, IGradient.getProbabilityVolume(List.of(p1, p2)), 1E-15);
+    }
+
+    @Test
+    public void testFilterLogLikelihood() {
+        NormalPeakFilter filter = new NormalPeakFilter(0.5, 2);
+        for (double x = -5; x <= 5; x += 0.25) {
+            assertEquals(Math.log(filter.getChanceToSend(x)), filter.getLogChanceToSend(x), 1E-12);
+            assertEquals(Math.log1p(-filter.getChanceToSend(x)), filter.getLogChanceToBlock(x), 1E-9);
+        }
+
+        // far in the tails the chance underflows but its log does not
+        assertEquals(0, filter.getChanceToSend(200), 0);
+        assertTrue(Double.isFinite(filter.getLogChanceToSend(200)));
+        assertEquals(-Math.pow((200 - 0.5) / 2, 2) / 2, filter.getLogChanceToSend(200), 1E-9);
+    }
+
+    @Test
+    public void testBeamPrunesByLogThreshold() {
+        GraphNetwork net = getChain();
+        net.setBeamWidth(10);
+        net.setLogPruningThreshold(25 * Math.log(RATE));
+        Double[][] inputs = new Double[CHAIN_LENGTH + 1][1];
+        inputs[0][0] = 1d;
+        NetworkHistory history = new NetworkInputEvaluater(net, inputs).computeNetworkInference();
+
+        // the signal survives well past underflow until it crosses the threshold
+        for (int t = 1; t <= CHAIN_LENGTH; t++) {
+            boolean active = history.getStateAtTimestep(t).size() > 0;
+            assertEquals(t <= 25, active);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.lucasbrown.GraphNetwork.Local.Nodes;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.lucasbrown.GraphNetwork.Local.Nodes.BestFirstCombinationEnumerator.Combination;
+
+public class BestFirstCombinationEnumeratorTest {
+
+    private final Random rng = new Random(42);
+
+    @Test
+    public void testMatchesExhaustiveEnumeration() {
+        for (int trial = 0; trial < 200; trial++) {
+            double[][][] problem = randomProblem(1 + rng.nextInt(6), 1 + rng.nextInt(4), false);
+            int limit = 1 + rng.nextInt(20);
+            assertCombinationsEqual(exhaustive(problem[0], problem[1], limit),
+                    new BestFirstCombinationEnumerator(problem[0], problem[1], limit).enumerate());
+        }
+    }
+
+    @Test
+    public void testTiesMatchExhaustiveEnumeration() {
+        for (int trial = 0; trial < 200; trial++) {
+            double[][][] problem = randomProblem(1 + rng.nextInt(5), 1 + rng.nextInt(3), true);
+            int limit = 1 + rng.nextInt(20);
+            assertCombinationsEqual(exhaustive(problem[0], problem[1], limit),
+                    new BestFirstCombinationEnumerator(problem[0], problem[1], limit).enumerate());
+        }
+    }
+
+    /**
+     * @param quantized draw probabilities from a small set of values (including
+     *                  0 and 1) to force ties
+     * @return {sourceProbabilities, transferProbabilities}
+     */
+    private double[][][] randomProblem(int slots, int maxOutcomes, boolean quantized) {
+        double[][] source = new double[slots][];
+        double[][] transfer = new double[slots][];
+        for (int j = 0; j < slots; j++) {
+            int count = 1 + rng.nextInt(maxOutcomes);
+            source[j] = new double[count];
+            transfer[j] = new double[count];
+            for (int o = 0; o < count; o++) {
+                source[j][o] = quantized ? rng.nextInt(3) / 2d : rng.nextDouble();
+                transfer[j][o] = quantized ? rng.nextInt(5) / 4d : rng.nextDouble();
+            }
+        }
+        return new double[][][] { source, transfer };
+    }
+
+    /**
+     * Generate every combination in Cartesian power product order, then stable
+     * sort and limit
+     */
+    private ArrayList<Combination> exhaustive(double[][] source, double[][] transfer, int limit) {
+        final int m = source.length;
+        ArrayList<Combination> all = new ArrayList<>();
+        int[] choices = new int[m];
+        boolean hasNext = true;
+        while (hasNext) {
+            for (int mask = 1; mask < 1 << m; mask++) {
+                double probability = 1;
+                for (int j = 0; j < m; j++) {
+                    probability *= source[j][choices[j]];
+                    double t = transfer[j][choices[j]];
+                    probability *= ((mask >> j) & 0b1) == 1 ? t : 1 - t;
+                }
+                all.add(new Combination(choices.clone(), mask, probability));
+            }
+
+            hasNext = false;
+            for (int j = m - 1; j >= 0 && !hasNext; j--) {
+                if (++choices[j] < source[j].length) {
+                    hasNext = true;
+                } else {
+                    choices[j] = 0;
+                }
+            }
+        }
+
+        all.sort((c1, c2) -> Double.compare(c2.probability, c1.probability));
+        return new ArrayList<>(all.subList(0, Math.min(limit, all.size())));
+    }
+
+    private void assertCombinationsEqual(ArrayList<Combination> expected, ArrayList<Combination> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals(expected.get(i).choices, actual.get(i).choices);
+            assertEquals(expected.get(i).mask, actual.get(i).mask);
+            assertEquals(expected.get(i).probability, actual.get(i).probability, 0);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.lucasbrown.GraphNetwork.Local.Nodes;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map.Entry;
+
+import org.junit.Test;
+
+import com.lucasbrown.GraphNetwork.Global.GraphNetwork;
+import com.lucasbrown.GraphNetwork.Global.NodeBuilder;
+import com.lucasbrown.GraphNetwork.Local.ActivationFunction;
+import com.lucasbrown.GraphNetwork.Local.Outcome;
+import com.lucasbrown.GraphNetwork.Local.Filters.NormalPeakFilter;
+import com.lucasbrown.GraphNetwork.Local.Nodes.ProbabilityCombinators.ComplexProbabilityCombinator;
+import com.lucasbrown.GraphNetwork.Local.Nodes.ValueCombinators.ComplexCombinator;
+import com.lucasbrown.NetworkTraining.History.NetworkHistory;
+import com.lucasbrown.NetworkTraining.NetworkDerivatives.ForwardFilterGradient;
+import com.lucasbrown.NetworkTraining.NetworkDerivatives.ForwardNetworkGradient;
+import com.lucasbrown.NetworkTraining.NetworkDerivatives.ReverseNetworkGradient;
+import com.lucasbrown.NetworkTraining.Trainers.FilterLinearizer;
+import com.lucasbrown.NetworkTraining.Trainers.NetworkInputEvaluater;
+import com.lucasbrown.NetworkTraining.Trainers.WeightsLinearizer;
+
+import jsat.linear.Vec;
+
+public class OutcomeMergerTest {
+
+    private static Outcome getOutcome(int key, double value, double probability) {
+        Outcome outcome = new Outcome();
+        outcome.binary_string = key;
+        outcome.netValue = value;
+        outcome.activatedValue = value;
+        outcome.probability = probability;
+        outcome.sourceOutcomes = new Outcome[0];
+        return outcome;
+    }
+
+    @Test
+    public void testMergesWithinToleranceAndKey() {
+        Outcome a = getOutcome(0b1, 1.00, 0.4);
+        Outcome b = getOutcome(0b1, 1.05, 0.1);
+        Outcome c = getOutcome(0b11, 1.02, 0.2);
+        Outcome d = getOutcome(0b1, 2.00, 0.15);
+        Outcome e = getOutcome(0b1, 0.98, 0.15);
+
+        ArrayList<Outcome> merged = OutcomeMerger.merge(List.of(a, b, c, d, e), 0.1);
+        assertEquals(3, merged.size());
+
+        // a, b and e collapse into the position of a, the most probable of them
+        Outcome ab = merged.get(0);
+        assertArrayEquals(new Outcome[] { e, a, b }, ab.mergedOutcomes);
+        assertEquals(0.65, ab.probability, 1E-15);
+        assertEquals(Math.log(0.65), ab.getLogProbability(), 1E-15);
+        double expected = (0.4 * 1.00 + 0.1 * 1.05 + 0.15 * 0.98) / 0.65;
+        assertEquals(expected, ab.activatedValue, 1E-15);
+        assertEquals(expected, ab.netValue, 1E-15);
+        assertSame(a.sourceOutcomes, ab.sourceOutcomes);
+        assertEquals(0.4 / 0.65, ab.getShareOf(a), 1E-15);
+
+        // a different key or a distant value is left alone
+        assertSame(c, merged.get(1));
+        assertSame(d, merged.get(2));
+        assertNull(c.mergedOutcomes);
+
+        // a zero tolerance only merges identical values
+        assertEquals(5, OutcomeMerger.merge(List.of(a, b, c, d, e), 0).size());
+    }
+
+    private GraphNetwork getRecurrentModel() {
+        GraphNetwork net = new GraphNetwork();
+
+        NodeBuilder nodeBuilder = new NodeBuilder(net);
+        nodeBuilder.setActivationFunction(ActivationFunction.LINEAR);
+        nodeBuilder.setValueCombinator(ComplexCombinator::new);
+        nodeBuilder.setProbabilityCombinator(() -> new ComplexProbabilityCombinator(() -> new NormalPeakFilter(0.3, 2)));
+
+        nodeBuilder.setAsInputNode();
+        INode in1 = nodeBuilder.build();
+        INode in2 = nodeBuilder.build();
+
+        nodeBuilder.setAsHiddenNode();
+        INode hidden1 = nodeBuilder.build();
+        INode hidden2 = nodeBuilder.build();
+
+        nodeBuilder.setAsOutputNode();
+        INode out = nodeBuilder.build();
+
+        net.addNewConnection(in1, hidden1);
+        net.addNewConnection(in2, hidden2);
+        net.addNewConnection(hidden1, hidden1);
+        net.addNewConnection(hidden1, hidden2);
+        net.addNewConnection(hidden2, hidden1);
+        net.addNewConnection(hidden1, out);
+        net.addNewConnection(hidden2, out);
+        return net;
+    }
+
+    private final Double[][] inputs = new Double[][] {
+            { 0.5, null }, { -1d, 1d }, { null, 0.25 }, { null, null }, { 2d, null }, { null, null } };
+
+    private static int countOutcomes(NetworkHistory history) {
+        int count = 0;
+        for (int t = 0; t < history.getNumberOfTimesteps(); t++) {
+            for (ArrayList<Outcome> state : history.getStateAtTimestep(t).values()) {
+                count += state.size();
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void testMergingReducesOutcomes() {
+        NetworkHistory full = new NetworkInputEvaluater(getRecurrentModel(), inputs).computeNetworkInference();
+
+        GraphNetwork net = getRecurrentModel();
+        net.setMergeTolerance(0.5);
+        NetworkHistory merged = new NetworkInputEvaluater(net, inputs).computeNetworkInference();
+
+        assertTrue(countOutcomes(merged) < countOutcomes(full));
+        assertEquals(0.5, net.replicate().getMergeTolerance(), 0);
+    }
+
+    @Test
+    public void testMergedGradientsMatchReverse() {
+        GraphNetwork net = getRecurrentModel();
+        net.setMergeTolerance(0.5);
+        WeightsLinearizer weightsLinearizer = new WeightsLinearizer(net);
+        FilterLinearizer filterLinearizer = new FilterLinearizer(net);
+        NetworkHistory history = new NetworkInputEvaluater(net, inputs).computeNetworkInference();
+
+        boolean anyMerged = false;
+        for (int t = 0; t < history.getNumberOfTimesteps(); t++) {
+            for (ArrayList<Outcome> state : history.getStateAtTimestep(t).values()) {
+                anyMerged |= state.stream().anyMatch(outcome -> outcome.mergedOutcomes != null);
+            }
+        }
+        assertTrue(anyMerged);
+
+        ReverseNetworkGradient reverse = new ReverseNetworkGradient(weightsLinearizer, filterLinearizer);
+        assertGradientsEqual(new ForwardNetworkGradient(weightsLinearizer).getGradient(history),
+                reverse.getWeightsGradient().getGradient(history));
+        assertGradientsEqual(new ForwardNetworkGradient(weightsLinearizer, true).getGradient(history),
+                reverse.getWeightsGradient().getGradient(history));
+        assertGradientsEqual(new ForwardFilterGradient(filterLinearizer).getGradient(history),
+                reverse.getFilterGradient().getGradient(history));
+        assertGradientsEqual(new ForwardFilterGradient(filterLinearizer, true).getGradient(history),
+                reverse.getFilterGradient().getGradient(history));
+    }
+
+    private static void assertGradientsEqual(ArrayList<HashMap<Outcome, Vec>> forward,
+            ArrayList<HashMap<Outcome, Vec>> reverse) {
+        assertEquals(forward.size(), reverse.size());
+        for (int t = 0; t < forward.size(); t++) {
+            for (Entry<Outcome, Vec> entry : forward.get(t).entrySet()) {
+                assertArrayEquals(entry.getValue().arrayCopy(), reverse.get(t).get(entry.getKey()).arrayCopy(),
+                        1E-10);
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.lucasbrown.GraphNetwork.Local.Nodes;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.lucasbrown.GraphNetwork.Global.GraphNetwork;
+import com.lucasbrown.GraphNetwork.Global.NodeBuilder;
+import com.lucasbrown.GraphNetwork.Global.ParameterStore;
+import com.lucasbrown.GraphNetwork.Local.ActivationFunction;
+import com.lucasbrown.GraphNetwork.Local.Filters.NormalPeakFilter;
+import com.lucasbrown.GraphNetwork.Local.Nodes.ProbabilityCombinators.SparseComplexProbabilityCombinator;
+import com.lucasbrown.GraphNetwork.Local.Nodes.ValueCombinators.SparseComplexCombinator;
+import com.lucasbrown.HelperClasses.Structs.KeyIndexTable;
+import com.lucasbrown.NetworkTraining.Trainers.NetworkInputEvaluater;
+import com.lucasbrown.NetworkTraining.Trainers.Trainer;
+
+public class SparseCombinatorTest {
+
+    private static final int FAN_IN = 20;
+
+    private INode out;
+
+    private GraphNetwork getHighFanInModel() {
+        GraphNetwork net = new GraphNetwork();
+
+        NodeBuilder nodeBuilder = new NodeBuilder(net);
+        nodeBuilder.setActivationFunction(ActivationFunction.LINEAR);
+        nodeBuilder.setValueCombinator(SparseComplexCombinator::new);
+        nodeBuilder.setProbabilityCombinator(
+                () -> new SparseComplexProbabilityCombinator(() -> new NormalPeakFilter(0.3, 2)));
+
+        nodeBuilder.setAsInputNode();
+        INode[] inputs = new INode[FAN_IN];
+        for (int i = 0; i < FAN_IN; i++) {
+            inputs[i] = nodeBuilder.build();
+        }
+
+        nodeBuilder.setAsOutputNode();
+        out = nodeBuilder.build();
+
+        for (INode input : inputs) {
+            net.addNewConnection(input, out);
+        }
+        return net;
+    }
+
+    /**
+     * Sequences where at most two inputs are active at each timestep
+     */
+    private static Double[][] getInputs(int length, int activeInputs, long seed) {
+        Random rng = new Random(seed);
+        Double[][] inputs = new Double[length][FAN_IN];
+        for (int t = 0; t < length; t++) {
+            for (int k = 0; k < 2; k++) {
+                inputs[t][rng.nextInt(activeInputs)] = rng.nextGaussian();
+            }
+        }
+        return inputs;
+    }
+
+    private static Double[][] getTargets(int length) {
+        Double[][] targets = new Double[length][1];
+        for (int t = 0; t < length; t++) {
+            targets[t][0] = t % 3 == 0 ? 1d : null;
+        }
+        return targets;
+    }
+
+    @Test
+    public void testKeyIndexTable() {
+        KeyIndexTable table = new KeyIndexTable(2);
+        Random rng = new Random(1);
+        int[] keys = rng.ints(1000).distinct().toArray();
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(-1, table.indexOf(keys[i]));
+            assertEquals(i, table.add(keys[i]));
+            assertEquals(i, table.add(keys[i]));
+        }
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(i, table.indexOf(keys[i]));
+            assertEquals(keys[i], table.getKey(i));
+        }
+        assertEquals(keys.length, table.size());
+
+        // a copy grows independently of the original
+        KeyIndexTable copy = new KeyIndexTable(table);
+        int next = rng.ints().filter(key -> table.indexOf(key) < 0).findFirst().getAsInt();
+        assertEquals(keys.length, copy.add(next));
+        assertEquals(-1, table.indexOf(next));
+        assertEquals(keys.length, table.size());
+        assertEquals(keys[keys.length - 1], copy.getKey(keys.length - 1));
+    }
+
+    @Test
+    public void testOnlyEvaluatedCombinationsAreCreated() {
+        GraphNetwork net = getHighFanInModel();
+        Double[][] inputs = getInputs(50, FAN_IN, 2);
+        new NetworkInputEvaluater(net, inputs).computeNetworkInference();
+
+        // at most two signals arrive at once, so only keys of up to two bits exist
+        SparseComplexCombinator combinator = (SparseComplexCombinator) out.getValueCombinator();
+        SparseComplexProbabilityCombinator probabilityCombinator = (SparseComplexProbabilityCombinator) out
+                .getProbabilityCombinator();
+        assertTrue(combinator.getNumberOfCombinations() > 0);
+        assertTrue(combinator.getNumberOfCombinations() <= 1 + FAN_IN + FAN_IN * (FAN_IN - 1) / 2);
+        assertTrue(probabilityCombinator.getNumberOfFilters() <= 2 * probabilityCombinator.getNumberOfCombinations());
+
+        HashSet<Integer> seen = new HashSet<>();
+        for (int key = 0; key < 1 << FAN_IN; key++) {
+            if (combinator.hasCombination(key)) {
+                assertTrue(Integer.bitCount(key) <= 2);
+                seen.add(key);
+            }
+        }
+        assertEquals(combinator.getNumberOfCombinations(), seen.size());
+
+        ParameterStore store = net.getParameterStore();
+        int rowVariables = seen.stream().mapToInt(key -> Integer.bitCount(key) + 1).sum();
+        assertEquals(rowVariables, combinator.getNumberOfVariables());
+        assertFalse(store.isStale());
+    }
+
+    @Test
+    public void testTrainingFollowsGrowingParameters() {
+        GraphNetwork net = getHighFanInModel();
+        Trainer trainer = Trainer.getDefaultTrainer(net);
+
+        // only the first few inputs are used at first
+        trainer.setTrainingData(getInputs(30, 4, 3), getTargets(30));
+        trainer.trainingStep(false);
+        ParameterStore before = trainer.weightLinearizer.parameterStore;
+        double[] weightsBefore = trainer.weightLinearizer.getAllParameters();
+        double[] filtersBefore = trainer.filterLinearizer.getAllParameters();
+
+        // then every input, which creates new combinations
+        Double[][] inputs = getInputs(30, FAN_IN, 4);
+        trainer.setTrainingData(inputs, getTargets(30));
+        trainer.computeAllHistories();
+        assertNotSame(before, trainer.weightLinearizer.parameterStore);
+        assertTrue(trainer.weightLinearizer.totalNumOfVariables > weightsBefore.length);
+        assertTrue(trainer.filterLinearizer.totalNumOfVariables > filtersBefore.length);
+
+        // every existing parameter keeps its value at its new index
+        int[] weightMap = trainer.weightLinearizer.parameterStore.mapWeightIndices(before);
+        int[] filterMap = trainer.filterLinearizer.parameterStore.mapFilterParameterIndices(before);
+        double[] weightsAfter = trainer.weightLinearizer.getAllParameters();
+        double[] filtersAfter = trainer.filterLinearizer.getAllParameters();
+        for (int i = 0; i < weightsBefore.length; i++) {
+            assertEquals(weightsBefore[i], weightsAfter[weightMap[i]], 0);
+        }
+        for (int i = 0; i < filtersBefore.length; i++) {
+            assertEquals(filtersBefore[i], filtersAfter[filterMap[i]], 0);
+        }
+
+        // both modes agree on the indices of the new parameters
+        trainer.trainingStep(false);
+        var forwardHistories = trainer.computeAllHistories();
+        double[] forwardWeights = trainer.aggregateWeightGradients(forwardHistories).arrayCopy();
+        double[] forwardFilters = trainer.aggregateProbabilityGradients(forwardHistories).arrayCopy();
+
+        // the input callback belongs to the last evaluator created for the network
+        Trainer reverse = Trainer.getReverseModeTrainer(net);
+        reverse.setTrainingData(inputs, getTargets(30));
+        var reverseHistories = reverse.computeAllHistories();
+        assertArrayEquals(forwardWeights, reverse.aggregateWeightGradients(reverseHistories).arrayCopy(), 1E-9);
+        assertArrayEquals(forwardFilters, reverse.aggregateProbabilityGradients(reverseHistories).arrayCopy(), 1E-9);
+    }
+}
@@ -0,0 +1,53 @@
+package com.lucasbrown.GraphNetwork.Local.Nodes.ValueCombinators;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class CombinatorWeightTest {
+
+    private static void assertWeightsMatch(ITrainableValueCombinator combinator, int numKeys) {
+        double[] variables = combinator.getLinearizedVariables();
+        for (int key = 0; key < numKeys; key++) {
+            double[] weights = combinator.getWeights(key);
+            assertEquals(Integer.bitCount(key), weights.length);
+            for (int i = 0; i < weights.length; i++) {
+                assertEquals(weights[i], combinator.getWeight(key, i), 0);
+                assertEquals(weights[i], variables[combinator.getLinearIndexOfWeight(key, i)], 0);
+            }
+        }
+    }
+
+    @Test
+    public void testComplexCombinatorWeights() {
+        ComplexCombinator combinator = new ComplexCombinator(new Random(1));
+        for (int connections = 1; connections <= 5; connections++) {
+            combinator.notifyNewIncomingConnection();
+            assertWeightsMatch(combinator, 1 << connections);
+        }
+
+        // writes through the linear index are seen by the views
+        int index = combinator.getLinearIndexOfWeight(0b10110, 2);
+        combinator.setLinearizedVariable(index, -3);
+        assertEquals(-3, combinator.getWeight(0b10110, 2), 0);
+        assertWeightsMatch(combinator, 32);
+    }
+
+    @Test
+    public void testSimpleCombinatorWeights() {
+        SimpleCombinator combinator = new SimpleCombinator(new Random(2));
+        for (int connections = 1; connections <= 5; connections++) {
+            combinator.notifyNewIncomingConnection();
+        }
+        double[] variables = combinator.getLinearizedVariables();
+        for (int key = 0; key < 32; key++) {
+            double[] weights = combinator.getWeights(key);
+            for (int i = 0; i < weights.length; i++) {
+                assertEquals(weights[i], combinator.getWeight(key, i), 0);
+            }
+        }
+        assertEquals(variables[3], combinator.getWeight(0b11010, 1), 0);
+    }
+}
@@ -0,0 +1,143 @@
+package com.lucasbrown.HelperClasses.Kernels;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.lucasbrown.GraphNetwork.Local.ActivationFunction;
+import com.lucasbrown.GraphNetwork.Local.Nodes.ValueCombinators.ComplexCombinator;
+
+public class BatchKernelsTest {
+
+    // odd so that every vector width leaves a tail
+    private static final int COUNT = 1037;
+
+    private IBatchKernels scalar;
+    private IBatchKernels vector;
+    private double[] x;
+
+    @Before
+    public void setup() {
+        scalar = BatchKernels.getScalar();
+        vector = BatchKernels.isVectorAvailable() ? BatchKernels.getVector() : null;
+
+        Random rng = new Random(11);
+        x = new double[COUNT * 4];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = 4 * rng.nextGaussian();
+        }
+        x[0] = -0d;
+        x[1] = 0;
+    }
+
+    /**
+     * Assert that the two arrays are equal to within a few units in the last
+     * place
+     */
+    private static void assertUlpClose(double[] expected, double[] actual, int ulps) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            double tolerance = ulps * Math.max(Math.ulp(expected[i]), Double.MIN_NORMAL);
+            assertEquals("at " + i, expected[i], actual[i], tolerance);
+        }
+    }
+
+    @Test
+    public void testDefaultIsScalar() {
+        assumeTrue(!Boolean.getBoolean(BatchKernels.VECTOR_PROPERTY));
+        assertEquals(ScalarKernels.class, BatchKernels.get().getClass());
+    }
+
+    @Test
+    public void testScalarMatchesSingleEvaluations() {
+        double[] out = new double[COUNT];
+
+        // the batch of every activation is exactly each evaluated on its own
+        ActivationFunction[] activations = { ActivationFunction.LINEAR, ActivationFunction.ReLU,
+                new ActivationFunction.LeakyRectifiedLinearUnit(0.1) };
+        for (ActivationFunction activation : activations) {
+            activation.activator(x, out, COUNT);
+            for (int i = 0; i < COUNT; i++) {
+                assertEquals(Double.doubleToLongBits(activation.activator(x[i])), Double.doubleToLongBits(out[i]));
+            }
+        }
+
+        // and the combination of a batch is that of each outcome
+        ComplexCombinator combinator = new ComplexCombinator(new Random(3));
+        for (int i = 0; i < 3; i++) {
+            combinator.notifyNewIncomingConnection();
+        }
+        int key = 0b101;
+        combinator.computeMergedSignalStrengths(key, x, out, COUNT);
+        double[] weights = combinator.getWeights(key);
+        for (int o = 0; o < COUNT; o++) {
+            double expected = combinator.getBias(key) + x[2 * o] * weights[0] + x[2 * o + 1] * weights[1];
+            assertEquals(expected, out[o], 0);
+        }
+    }
+
+    @Test
+    public void testLinearCombination() {
+        assumeTrue(vector != null);
+        double[] weights = { 0.3, -1.2, 2.5, 0.7 };
+        for (int width = 0; width <= weights.length; width++) {
+            double[] expected = new double[COUNT];
+            double[] actual = new double[COUNT];
+            scalar.linearCombination(x, weights, 0.25, width, expected, COUNT);
+            vector.linearCombination(x, weights, 0.25, width, actual, COUNT);
+            // every lane sums in the same order
+            assertArrayEquals(expected, actual, 0);
+        }
+    }
+
+    @Test
+    public void testGaussianPeak() {
+        assumeTrue(vector != null);
+        double[] expected = new double[COUNT];
+        double[] actual = new double[COUNT];
+
+        scalar.gaussianPeak(x, 0.5, 1.5, 1, 0, expected, COUNT);
+        vector.gaussianPeak(x, 0.5, 1.5, 1, 0, actual, COUNT);
+        assertUlpClose(expected, actual, 2);
+
+        scalar.gaussianPeak(x, -1, 0.7, 1 - 1E-3, 1E-3, expected, COUNT);
+        vector.gaussianPeak(x, -1, 0.7, 1 - 1E-3, 1E-3, actual, COUNT);
+        assertUlpClose(expected, actual, 2);
+    }
+
+    @Test
+    public void testRectify() {
+        assumeTrue(vector != null);
+        for (double alpha : new double[] { 0, 0.01 }) {
+            double[] expected = new double[COUNT];
+            double[] actual = new double[COUNT];
+            scalar.rectify(x, alpha, expected, COUNT);
+            vector.rectify(x, alpha, actual, COUNT);
+            for (int i = 0; i < COUNT; i++) {
+                assertEquals(Double.doubleToLongBits(expected[i]), Double.doubleToLongBits(actual[i]));
+            }
+        }
+    }
+
+    @Test
+    public void testInPlace() {
+        assumeTrue(vector != null);
+        double[] expected = x.clone();
+        double[] actual = x.clone();
+        scalar.gaussianPeak(expected, 0, 1, 1, 0, expected, COUNT);
+        vector.gaussianPeak(actual, 0, 1, 1, 0, actual, COUNT);
+        assertUlpClose(expected, actual, 2);
+
+        expected = x.clone();
+        actual = x.clone();
+        double[] weights = { 1.5, -0.5 };
+        scalar.linearCombination(expected, weights, 1, 2, expected, COUNT);
+        vector.linearCombination(actual, weights, 1, 2, actual, COUNT);
+        assertArrayEquals(expected, actual, 0);
+    }
+}
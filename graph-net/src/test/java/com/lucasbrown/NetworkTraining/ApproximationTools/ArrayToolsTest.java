@@ -1,13 +1,18 @@
 package com.lucasbrown.NetworkTraining.ApproximationTools;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 
 import org.junit.Test;
 
 import com.lucasbrown.HelperClasses.IterableTools;
+import com.lucasbrown.HelperClasses.Structs.Pair;
 
 public class ArrayToolsTest {
 
@@ -35,7 +40,7 @@ public class ArrayToolsTest {
         expected.add(new HashSet<>(List.of(d1, d2)));
         expected.add(new HashSet<>(List.of(d1, d3)));
 
-        HashSet<HashSet<Double>> powProduct = IterableTools.flatCartesianPowerProduct(setSet);
+        HashSet<HashSet<Double>> powProduct = toSetOfSets(IterableTools.flatCartesianPowerProduct(setSet));
 
         assertEquals(expected, powProduct);
     }
@@ -55,7 +60,7 @@ public class ArrayToolsTest {
         expected.add(new HashSet<>(List.of(d1, d2, d4)));
         expected.add(new HashSet<>(List.of(d1, d2, d5)));
 
-        HashSet<HashSet<Double>> product = IterableTools.flatCartesianProduct(setSet);
+        HashSet<HashSet<Double>> product = toSetOfSets(IterableTools.flatCartesianProduct(setSet));
      
         assertEquals(expected, product);
     }
@@ -75,7 +80,7 @@ public class ArrayToolsTest {
         expected.add(new HashSet<>(List.of(d1, d2)));
         expected.add(new HashSet<>(List.of(d1, d3)));
 
-        HashSet<HashSet<Double>> product = IterableTools.flatCartesianProduct(set1, set2);
+        HashSet<HashSet<Double>> product = toSetOfSets(IterableTools.flatCartesianProduct(set1, set2));
      
         assertEquals(expected, product);
     }
@@ -94,8 +99,82 @@ public class ArrayToolsTest {
         truePowerSet.add(new HashSet<>(List.of(d1, d2)));
         truePowerSet.add(new HashSet<>(List.of(d0, d1, d2)));
 
-        HashSet<HashSet<Double>> powerSet = IterableTools.powerSet(set);
+        HashSet<HashSet<Double>> powerSet = toSetOfSets(IterableTools.powerSet(set));
 
         assertEquals(truePowerSet, powerSet);
     }
+
+    @Test
+    public void testIteratePowerSetOrder() {
+        List<Double> set = List.of(d0, d1, d2);
+
+        List<List<Double>> expected = List.of(List.of(), List.of(d0), List.of(d1), List.of(d0, d1), List.of(d2),
+                List.of(d0, d2), List.of(d1, d2), List.of(d0, d1, d2));
+
+        ArrayList<List<Double>> actual = new ArrayList<>();
+        for (List<Double> subset : IterableTools.iteratePowerSet(set)) {
+            actual.add(new ArrayList<>(subset));
+        }
+
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testIterateCartesianProductOrder() {
+        List<List<Double>> lists = List.of(List.of(d0, d1), List.of(d2), List.of(d3, d4, d5));
+
+        ArrayList<List<Double>> actual = new ArrayList<>();
+        for (List<Double> product : IterableTools.iterateCartesianProduct(lists)) {
+            actual.add(new ArrayList<>(product));
+        }
+
+        assertEquals(IterableTools.flatCartesianProduct(lists), actual);
+        assertEquals(List.of(d0, d2, d3), actual.get(0));
+        assertEquals(List.of(d0, d2, d4), actual.get(1));
+        assertEquals(List.of(d1, d2, d5), actual.get(5));
+    }
+
+    @Test
+    public void testIterateCartesianPowerProductReusesViews() {
+        List<List<Double>> lists = List.of(List.of(d0, d1), List.of(d2, d3));
+
+        ArrayList<List<Double>> subsets = new ArrayList<>();
+        ArrayList<List<Double>> products = new ArrayList<>();
+        Pair<List<Double>, List<Double>> first = null;
+        for (Pair<List<Double>, List<Double>> pair : IterableTools.iterateCartesianPowerProduct(lists)) {
+            if (first == null) {
+                first = pair;
+            }
+            assertSame(first, pair);
+            subsets.add(new ArrayList<>(pair.u));
+            products.add(new ArrayList<>(pair.v));
+        }
+
+        // 4 products with 4 subsets each
+        assertEquals(16, subsets.size());
+        assertEquals(List.of(), subsets.get(0));
+        assertEquals(List.of(d0, d3), subsets.get(7));
+        assertEquals(List.of(d1, d2), products.get(8));
+
+        ArrayList<List<Double>> expectedSubsets = new ArrayList<>();
+        for (Pair<ArrayList<Double>, ArrayList<Double>> pair : IterableTools.flatCartesianPowerProductPair(lists)) {
+            expectedSubsets.add(pair.u);
+        }
+        assertEquals(expectedSubsets, subsets);
+    }
+
+    @Test
+    public void testIterateEmptyProduct() {
+        List<List<Double>> lists = List.of(List.of(d0, d1), List.of());
+        assertFalse(IterableTools.iterateCartesianProduct(lists).iterator().hasNext());
+        assertFalse(IterableTools.iterateCartesianPowerProduct(List.<List<Double>>of()).iterator().hasNext());
+    }
+
+    private static HashSet<HashSet<Double>> toSetOfSets(Collection<? extends Collection<Double>> collection) {
+        HashSet<HashSet<Double>> setOfSets = new HashSet<>();
+        for (Collection<Double> c : collection) {
+            setOfSets.add(new HashSet<>(c));
+        }
+        return setOfSets;
+    }
 }
@@ -0,0 +1,138 @@
+package com.lucasbrown.NetworkTraining.History;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map.Entry;
+
+import org.junit.Test;
+
+import com.lucasbrown.GraphNetwork.Global.GraphNetwork;
+import com.lucasbrown.GraphNetwork.Global.NodeBuilder;
+import com.lucasbrown.GraphNetwork.Local.ActivationFunction;
+import com.lucasbrown.GraphNetwork.Local.Outcome;
+import com.lucasbrown.GraphNetwork.Local.Filters.NormalPeakFilter;
+import com.lucasbrown.GraphNetwork.Local.Nodes.INode;
+import com.lucasbrown.GraphNetwork.Local.Nodes.ProbabilityCombinators.ComplexProbabilityCombinator;
+import com.lucasbrown.GraphNetwork.Local.Nodes.ValueCombinators.ComplexCombinator;
+import com.lucasbrown.NetworkTraining.NetworkDerivatives.ForwardNetworkGradient;
+import com.lucasbrown.NetworkTraining.Trainers.NetworkInputEvaluater;
+import com.lucasbrown.NetworkTraining.Trainers.WeightsLinearizer;
+
+import jsat.linear.Vec;
+
+public class ColumnarNetworkHistoryTest {
+
+    private GraphNetwork getRecurrentModel() {
+        GraphNetwork net = new GraphNetwork();
+
+        NodeBuilder nodeBuilder = new NodeBuilder(net);
+        nodeBuilder.setActivationFunction(ActivationFunction.LINEAR);
+        nodeBuilder.setValueCombinator(ComplexCombinator::new);
+        nodeBuilder.setProbabilityCombinator(() -> new ComplexProbabilityCombinator(() -> new NormalPeakFilter(0.3, 2)));
+
+        nodeBuilder.setAsInputNode();
+        INode in1 = nodeBuilder.build();
+        INode in2 = nodeBuilder.build();
+
+        nodeBuilder.setAsHiddenNode();
+        INode hidden1 = nodeBuilder.build();
+        INode hidden2 = nodeBuilder.build();
+        INode hidden3 = nodeBuilder.build();
+
+        nodeBuilder.setAsOutputNode();
+        INode out = nodeBuilder.build();
+
+        net.addNewConnection(in1, hidden1);
+        net.addNewConnection(in2, hidden2);
+        net.addNewConnection(hidden1, hidden1);
+        net.addNewConnection(hidden1, hidden2);
+        net.addNewConnection(hidden2, hidden1);
+        net.addNewConnection(in1, hidden3);
+        net.addNewConnection(hidden1, out);
+        net.addNewConnection(hidden2, out);
+        return net;
+    }
+
+    private final Double[][] inputs = new Double[][] {
+            { 0.5, null }, { -1d, 1d }, { null, 0.25 }, { null, null }, { 2d, null }, { null, null } };
+
+    @Test
+    public void testLayoutMatchesHistory() {
+        GraphNetwork net = getRecurrentModel();
+        NetworkHistory history = new NetworkInputEvaluater(net, inputs).computeNetworkInference();
+        ColumnarNetworkHistory columnar = new ColumnarNetworkHistory(net, history);
+
+        assertEquals(history.getNumberOfTimesteps(), columnar.getNumberOfTimesteps());
+        for (int t = 0; t < history.getNumberOfTimesteps(); t++) {
+            for (int n = 0; n < columnar.getNumberOfNodes(); n++) {
+                INode node = columnar.getNode(n);
+                assertEquals(n, columnar.indexOf(node));
+
+                ArrayList<Outcome> outcomes = history.getStateOfRecord(t, node);
+                int start = columnar.getStart(t, n);
+                assertEquals(outcomes == null ? 0 : outcomes.size(), columnar.getEnd(t, n) - start);
+                if (outcomes == null) {
+                    continue;
+                }
+
+                for (int o = 0; o < outcomes.size(); o++) {
+                    Outcome outcome = outcomes.get(o);
+                    int i = start + o;
+                    assertSame(outcome, columnar.getOutcome(i));
+                    assertEquals(i, columnar.indexOf(outcome));
+                    assertEquals(n, columnar.getNodeIndex(i));
+                    assertEquals(outcome.binary_string, columnar.getKey(i));
+                    assertEquals(outcome.activatedValue, columnar.getActivatedValue(i), 0);
+                    assertEquals(outcome.probability, columnar.getProbability(i), 0);
+
+                    int parents = outcome.sourceOutcomes == null ? 0 : outcome.sourceOutcomes.length;
+                    assertEquals(parents, columnar.getNumberOfParents(i));
+                    for (int k = 0; k < parents; k++) {
+                        assertSame(outcome.sourceOutcomes[k], columnar.getOutcome(columnar.getParent(i, k)));
+                    }
+                    int roots = outcome.allRootOutcomes == null ? 0 : outcome.allRootOutcomes.length;
+                    assertEquals(roots, columnar.getNumberOfRoots(i));
+                    for (int k = 0; k < roots; k++) {
+                        assertSame(outcome.allRootOutcomes[k], columnar.getOutcome(columnar.getRoot(i, k)));
+                    }
+                }
+            }
+            assertEquals(columnar.getTimestepEnd(t), columnar.getComponentsEnd(t));
+        }
+    }
+
+    @Test
+    public void testGradientMatchesHistory() {
+        for (double tolerance : new double[] { -1, 0.5 }) {
+            for (boolean sparse : new boolean[] { false, true }) {
+                GraphNetwork net = getRecurrentModel();
+                net.setMergeTolerance(tolerance);
+                WeightsLinearizer linearizer = new WeightsLinearizer(net);
+                NetworkHistory history = new NetworkInputEvaluater(net, inputs).computeNetworkInference();
+                ColumnarNetworkHistory columnar = new ColumnarNetworkHistory(net, history);
+
+                int components = 0;
+                for (int t = 0; t < columnar.getNumberOfTimesteps(); t++) {
+                    components += columnar.getComponentsEnd(t) - columnar.getTimestepEnd(t);
+                }
+                assertEquals(tolerance > 0, components > 0);
+
+                ForwardNetworkGradient gradient = new ForwardNetworkGradient(linearizer, sparse);
+                Vec[] columnarGradients = gradient.getGradient(columnar);
+                ArrayList<HashMap<Outcome, Vec>> gradients = gradient.getGradient(history);
+
+                for (HashMap<Outcome, Vec> gradientsAtTime : gradients) {
+                    for (Entry<Outcome, Vec> entry : gradientsAtTime.entrySet()) {
+                        Vec expected = entry.getValue();
+                        Vec actual = columnarGradients[columnar.indexOf(entry.getKey())];
+                        assertArrayEquals(expected.arrayCopy(), actual.arrayCopy(), 1E-12);
+                    }
+                }
+            }
+        }
+    }
+}
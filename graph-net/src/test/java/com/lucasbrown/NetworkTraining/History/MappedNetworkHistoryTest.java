@@ -0,0 +1,152 @@
+package com.lucasbrown.NetworkTraining.History;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map.Entry;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.lucasbrown.GraphNetwork.Global.GraphNetwork;
+import com.lucasbrown.GraphNetwork.Global.NodeBuilder;
+import com.lucasbrown.GraphNetwork.Local.ActivationFunction;
+import com.lucasbrown.GraphNetwork.Local.Outcome;
+import com.lucasbrown.GraphNetwork.Local.Filters.NormalPeakFilter;
+import com.lucasbrown.GraphNetwork.Local.Nodes.INode;
+import com.lucasbrown.GraphNetwork.Local.Nodes.ProbabilityCombinators.ComplexProbabilityCombinator;
+import com.lucasbrown.GraphNetwork.Local.Nodes.ValueCombinators.ComplexCombinator;
+import com.lucasbrown.NetworkTraining.Trainers.NetworkInputEvaluater;
+import com.lucasbrown.NetworkTraining.Trainers.Trainer;
+
+public class MappedNetworkHistoryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private GraphNetwork getRecurrentModel() {
+        GraphNetwork net = new GraphNetwork();
+
+        NodeBuilder nodeBuilder = new NodeBuilder(net);
+        nodeBuilder.setActivationFunction(ActivationFunction.LINEAR);
+        nodeBuilder.setValueCombinator(ComplexCombinator::new);
+        nodeBuilder.setProbabilityCombinator(() -> new ComplexProbabilityCombinator(() -> new NormalPeakFilter(0.3, 2)));
+
+        nodeBuilder.setAsInputNode();
+        INode in1 = nodeBuilder.build();
+        INode in2 = nodeBuilder.build();
+
+        nodeBuilder.setAsHiddenNode();
+        INode hidden1 = nodeBuilder.build();
+        INode hidden2 = nodeBuilder.build();
+        INode hidden3 = nodeBuilder.build();
+
+        nodeBuilder.setAsOutputNode();
+        INode out = nodeBuilder.build();
+
+        net.addNewConnection(in1, hidden1);
+        net.addNewConnection(in2, hidden2);
+        net.addNewConnection(hidden1, hidden1);
+        net.addNewConnection(hidden1, hidden2);
+        net.addNewConnection(hidden2, hidden1);
+        net.addNewConnection(in1, hidden3);
+        net.addNewConnection(hidden1, out);
+        net.addNewConnection(hidden2, out);
+        return net;
+    }
+
+    private final Double[][] inputs = new Double[][] {
+            { 0.5, null }, { -1d, 1d }, { null, 0.25 }, { null, null }, { 2d, null }, { null, null } };
+
+    private final Double[][] targets = new Double[][] {
+            { null }, { null }, { 1d }, { null }, { -0.5 }, { 2d } };
+
+    private static void assertSameOutcome(Outcome expected, Outcome actual) {
+        assertEquals(expected.node, actual.node);
+        assertEquals(expected.binary_string, actual.binary_string);
+        assertEquals(expected.root_bin_str, actual.root_bin_str);
+        assertEquals(expected.netValue, actual.netValue, 0);
+        assertEquals(expected.activatedValue, actual.activatedValue, 0);
+        assertEquals(expected.probability, actual.probability, 0);
+        assertArrayEquals(expected.sourceKeys, actual.sourceKeys);
+        assertArrayEquals(expected.sourceTransferProbabilities, actual.sourceTransferProbabilities, 0);
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        GraphNetwork net = getRecurrentModel();
+        net.setMergeTolerance(0.5);
+        NetworkHistory history = new NetworkInputEvaluater(net, inputs).computeNetworkInference();
+
+        // a tiny segment size spreads the timesteps over several mappings
+        Path path = folder.newFile().toPath();
+        MappedNetworkHistory mapped = new MappedNetworkHistory(net, net.getNodes(), path, 256);
+        for (int t = 0; t < history.getNumberOfTimesteps(); t++) {
+            mapped.captureState(history.getStateAtTimestep(t));
+        }
+        assertEquals(history.getNumberOfTimesteps(), mapped.getNumberOfTimesteps());
+        assertTrue(mapped.isPaged());
+
+        for (int t = 0; t < history.getNumberOfTimesteps(); t++) {
+            HashMap<INode, ArrayList<Outcome>> expected = history.getStateAtTimestep(t);
+            HashMap<INode, ArrayList<Outcome>> actual = mapped.getStateAtTimestep(t);
+            assertEquals(expected.keySet(), actual.keySet());
+            for (Entry<INode, ArrayList<Outcome>> entry : expected.entrySet()) {
+                ArrayList<Outcome> actualOutcomes = actual.get(entry.getKey());
+                assertEquals(entry.getValue().size(), actualOutcomes.size());
+                for (int o = 0; o < actualOutcomes.size(); o++) {
+                    Outcome expectedOutcome = entry.getValue().get(o);
+                    Outcome actualOutcome = actualOutcomes.get(o);
+                    assertSameOutcome(expectedOutcome, actualOutcome);
+
+                    // sources are the outcomes of the timestep read before
+                    if (expectedOutcome.sourceOutcomes != null) {
+                        for (int k = 0; k < expectedOutcome.sourceOutcomes.length; k++) {
+                            Outcome source = actualOutcome.sourceOutcomes[k];
+                            assertSameOutcome(expectedOutcome.sourceOutcomes[k], source);
+                            assertTrue(mapped.getStateOfRecord(t - 1, source.node).contains(source));
+                        }
+                    }
+                    if (expectedOutcome.mergedOutcomes != null) {
+                        for (int k = 0; k < expectedOutcome.mergedOutcomes.length; k++) {
+                            assertSameOutcome(expectedOutcome.mergedOutcomes[k], actualOutcome.mergedOutcomes[k]);
+                        }
+                    }
+                }
+            }
+        }
+
+        mapped.close();
+        assertFalse(Files.exists(path));
+    }
+
+    @Test
+    public void testSpilledTrainingMatchesHeap() throws IOException {
+        GraphNetwork net = getRecurrentModel();
+
+        Trainer heapTrainer = Trainer.getDefaultTrainer(net);
+        heapTrainer.setTrainingData(inputs, targets);
+        NetworkHistory[] heapHistories = heapTrainer.computeAllHistories();
+
+        Trainer spillTrainer = Trainer.getDefaultTrainer(net);
+        spillTrainer.networkEvaluater.setSpillDirectory(folder.newFolder().toPath());
+        spillTrainer.setTrainingData(inputs, targets);
+        NetworkHistory[] spilledHistories = spillTrainer.computeAllHistories();
+        assertTrue(spilledHistories[0] instanceof MappedNetworkHistory);
+
+        assertArrayEquals(heapTrainer.aggregateWeightGradients(heapHistories).arrayCopy(),
+                spillTrainer.aggregateWeightGradients(spilledHistories).arrayCopy(), 1E-12);
+        assertArrayEquals(heapTrainer.aggregateProbabilityGradients(heapHistories).arrayCopy(),
+                spillTrainer.aggregateProbabilityGradients(spilledHistories).arrayCopy(), 1E-12);
+        assertEquals(heapTrainer.getTotalError(heapHistories, heapTrainer.weightsGradient),
+                spillTrainer.getTotalError(spilledHistories, spillTrainer.weightsGradient), 1E-12);
+    }
+}
@@ -0,0 +1,168 @@
+package com.lucasbrown.NetworkTraining.History;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.lucasbrown.GraphNetwork.Global.GraphNetwork;
+import com.lucasbrown.GraphNetwork.Global.NodeBuilder;
+import com.lucasbrown.GraphNetwork.Local.ActivationFunction;
+import com.lucasbrown.GraphNetwork.Local.Outcome;
+import com.lucasbrown.GraphNetwork.Local.Filters.NormalPeakFilter;
+import com.lucasbrown.GraphNetwork.Local.Nodes.INode;
+import com.lucasbrown.GraphNetwork.Local.Nodes.ProbabilityCombinators.ComplexProbabilityCombinator;
+import com.lucasbrown.GraphNetwork.Local.Nodes.ValueCombinators.ComplexCombinator;
+import com.lucasbrown.NetworkTraining.Trainers.NetworkInputEvaluater;
+import com.lucasbrown.NetworkTraining.Trainers.SampledNetworkInputEvaluater;
+
+public class SlidingWindowHistoryTest {
+
+    private GraphNetwork getRecurrentModel() {
+        GraphNetwork net = new GraphNetwork();
+
+        NodeBuilder nodeBuilder = new NodeBuilder(net);
+        nodeBuilder.setActivationFunction(ActivationFunction.LINEAR);
+        nodeBuilder.setValueCombinator(ComplexCombinator::new);
+        nodeBuilder.setProbabilityCombinator(() -> new ComplexProbabilityCombinator(() -> new NormalPeakFilter(0.3, 2)));
+        nodeBuilder.setOutcomeLimit(20);
+
+        nodeBuilder.setAsInputNode();
+        INode in1 = nodeBuilder.build();
+        INode in2 = nodeBuilder.build();
+
+        nodeBuilder.setAsHiddenNode();
+        INode hidden1 = nodeBuilder.build();
+        INode hidden2 = nodeBuilder.build();
+
+        nodeBuilder.setAsOutputNode();
+        INode out = nodeBuilder.build();
+
+        net.addNewConnection(in1, hidden1);
+        net.addNewConnection(in2, hidden2);
+        net.addNewConnection(hidden1, hidden1);
+        net.addNewConnection(hidden1, hidden2);
+        net.addNewConnection(hidden2, hidden1);
+        net.addNewConnection(hidden1, out);
+        net.addNewConnection(hidden2, out);
+        return net;
+    }
+
+    private static Double[][] getInputs(int length, long seed) {
+        Random rng = new Random(seed);
+        Double[][] inputs = new Double[length][2];
+        for (int t = 0; t < length; t++) {
+            for (int i = 0; i < 2; i++) {
+                inputs[t][i] = rng.nextDouble() < 0.3 ? rng.nextGaussian() : null;
+            }
+        }
+        return inputs;
+    }
+
+    @Test
+    public void testStreamMatchesBatch() {
+        Double[][] inputs = getInputs(40, 1);
+        GraphNetwork net = getRecurrentModel();
+        NetworkInputEvaluater evaluater = new NetworkInputEvaluater(net, inputs);
+        NetworkHistory batch = evaluater.computeNetworkInference();
+
+        NetworkHistory window = evaluater.beginStream(5);
+        for (Double[] input : inputs) {
+            evaluater.step(input);
+        }
+
+        assertEquals(5, window.getNumberOfTimesteps());
+        assertEquals(inputs.length, window.getTotalNumberOfTimesteps());
+        assertEquals(inputs.length - 5, window.getFirstTimestep());
+        for (int t = 0; t < window.getNumberOfTimesteps(); t++) {
+            HashMap<INode, ArrayList<Outcome>> expected = batch.getStateAtTimestep(inputs.length - 5 + t);
+            HashMap<INode, ArrayList<Outcome>> actual = window.getStateAtTimestep(t);
+            assertEquals(expected.keySet(), actual.keySet());
+            for (Entry<INode, ArrayList<Outcome>> entry : expected.entrySet()) {
+                ArrayList<Outcome> actualOutcomes = actual.get(entry.getKey());
+                assertEquals(entry.getValue().size(), actualOutcomes.size());
+                for (int o = 0; o < actualOutcomes.size(); o++) {
+                    assertEquals(entry.getValue().get(o).activatedValue, actualOutcomes.get(o).activatedValue, 0);
+                    assertEquals(entry.getValue().get(o).probability, actualOutcomes.get(o).probability, 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testLineageIsTrimmedToWindow() {
+        Double[][] inputs = getInputs(20000, 2);
+        NetworkInputEvaluater evaluater = new NetworkInputEvaluater(getRecurrentModel());
+        NetworkHistory window = evaluater.beginStream(3);
+        for (Double[] input : inputs) {
+            evaluater.step(input);
+        }
+        assertEquals(3, window.getNumberOfTimesteps());
+        assertEquals(19997, window.getFirstTimestep());
+
+        // the oldest outcomes kept no longer point any further back
+        Set<Outcome> kept = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int t = 0; t < window.getNumberOfTimesteps(); t++) {
+            for (ArrayList<Outcome> outcomes : window.getStateAtTimestep(t).values()) {
+                for (Outcome outcome : outcomes) {
+                    kept.add(outcome);
+                    if (t == 0) {
+                        assertNull(outcome.sourceOutcomes);
+                        assertNull(outcome.allRootOutcomes);
+                    }
+                }
+            }
+        }
+        for (int t = 1; t < window.getNumberOfTimesteps(); t++) {
+            for (ArrayList<Outcome> outcomes : window.getStateAtTimestep(t).values()) {
+                for (Outcome outcome : outcomes) {
+                    if (outcome.sourceOutcomes == null) {
+                        continue;
+                    }
+                    for (Outcome source : outcome.sourceOutcomes) {
+                        assertTrue(kept.contains(source));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRingBufferOrder() {
+        NetworkHistory history = new NetworkHistory(null, 3);
+        ArrayList<HashMap<INode, ArrayList<Outcome>>> states = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            HashMap<INode, ArrayList<Outcome>> state = new HashMap<>();
+            states.add(state);
+            history.captureState(state);
+            int kept = Math.min(t + 1, 3);
+            assertEquals(kept, history.getNumberOfTimesteps());
+            for (int k = 0; k < kept; k++) {
+                assertSame(states.get(t + 1 - kept + k), history.getStateAtTimestep(k));
+            }
+        }
+        assertEquals(5, history.getFirstTimestep());
+    }
+
+    @Test
+    public void testSampledStream() {
+        Double[][] inputs = getInputs(200, 3);
+        SampledNetworkInputEvaluater evaluater = new SampledNetworkInputEvaluater(getRecurrentModel(), 50, 7);
+        NetworkHistory window = evaluater.beginStream(2);
+        for (Double[] input : inputs) {
+            evaluater.step(input);
+        }
+        assertEquals(2, window.getNumberOfTimesteps());
+        assertEquals(200, window.getTotalNumberOfTimesteps());
+    }
+}
@@ -0,0 +1,173 @@
+package com.lucasbrown.NetworkTraining.NetworkDerivatives;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map.Entry;
+
+import org.junit.Test;
+
+import com.lucasbrown.GraphNetwork.Global.GraphNetwork;
+import com.lucasbrown.GraphNetwork.Global.NodeBuilder;
+import com.lucasbrown.GraphNetwork.Local.ActivationFunction;
+import com.lucasbrown.GraphNetwork.Local.Outcome;
+import com.lucasbrown.GraphNetwork.Local.Filters.NormalPeakFilter;
+import com.lucasbrown.GraphNetwork.Local.Nodes.INode;
+import com.lucasbrown.GraphNetwork.Local.Nodes.ProbabilityCombinators.ComplexProbabilityCombinator;
+import com.lucasbrown.GraphNetwork.Local.Nodes.ValueCombinators.ComplexCombinator;
+import com.lucasbrown.NetworkTraining.History.NetworkHistory;
+import com.lucasbrown.NetworkTraining.Trainers.FilterLinearizer;
+import com.lucasbrown.NetworkTraining.Trainers.NetworkInputEvaluater;
+import com.lucasbrown.NetworkTraining.Trainers.Trainer;
+import com.lucasbrown.NetworkTraining.Trainers.WeightsLinearizer;
+
+import jsat.linear.Vec;
+
+public class ForwardNetworkGradientTest {
+
+    private GraphNetwork getRecurrentModel() {
+        GraphNetwork net = new GraphNetwork();
+
+        NodeBuilder nodeBuilder = new NodeBuilder(net);
+        nodeBuilder.setActivationFunction(ActivationFunction.LINEAR);
+        nodeBuilder.setValueCombinator(ComplexCombinator::new);
+        nodeBuilder.setProbabilityCombinator(() -> new ComplexProbabilityCombinator(() -> new NormalPeakFilter(0.3, 2)));
+
+        nodeBuilder.setAsInputNode();
+        INode in1 = nodeBuilder.build();
+        INode in2 = nodeBuilder.build();
+
+        nodeBuilder.setAsHiddenNode();
+        INode hidden1 = nodeBuilder.build();
+        INode hidden2 = nodeBuilder.build();
+        INode hidden3 = nodeBuilder.build();
+
+        nodeBuilder.setAsOutputNode();
+        INode out = nodeBuilder.build();
+
+        net.addNewConnection(in1, hidden1);
+        net.addNewConnection(in2, hidden2);
+        net.addNewConnection(hidden1, hidden1);
+        net.addNewConnection(hidden1, hidden2);
+        net.addNewConnection(hidden2, hidden1);
+        net.addNewConnection(in1, hidden3);
+        net.addNewConnection(hidden1, out);
+        net.addNewConnection(hidden2, out);
+        return net;
+    }
+
+    private final Double[][] inputs = new Double[][] {
+            { 0.5, null }, { -1d, 1d }, { null, 0.25 }, { null, null }, { 2d, null }, { null, null } };
+
+    private final Double[][] targets = new Double[][] {
+            { null }, { null }, { 1d }, { null }, { -0.5 }, { 2d } };
+
+    @Test
+    public void testSparseWeightGradientMatchesDense() {
+        GraphNetwork net = getRecurrentModel();
+        WeightsLinearizer linearizer = new WeightsLinearizer(net);
+        NetworkHistory history = new NetworkInputEvaluater(net, inputs).computeNetworkInference();
+
+        ArrayList<HashMap<Outcome, double[]>> dense = toArrays(new ForwardNetworkGradient(linearizer).getGradient(history));
+        ArrayList<HashMap<Outcome, Vec>> sparse = new ForwardNetworkGradient(linearizer, true).getGradient(history);
+
+        assertGradientsEqual(dense, sparse);
+    }
+
+    @Test
+    public void testSparseFilterGradientMatchesDense() {
+        GraphNetwork net = getRecurrentModel();
+        FilterLinearizer linearizer = new FilterLinearizer(net);
+        NetworkHistory history = new NetworkInputEvaluater(net, inputs).computeNetworkInference();
+
+        ArrayList<HashMap<Outcome, double[]>> dense = toArrays(new ForwardFilterGradient(linearizer).getGradient(history));
+        ArrayList<HashMap<Outcome, Vec>> sparse = new ForwardFilterGradient(linearizer, true).getGradient(history);
+
+        assertGradientsEqual(dense, sparse);
+    }
+
+    @Test
+    public void testSparseTrainerMatchesDense() {
+        GraphNetwork net = getRecurrentModel();
+
+        Trainer denseTrainer = Trainer.getDefaultTrainer(net);
+        denseTrainer.setTrainingData(inputs, targets);
+        NetworkHistory[] denseHistories = denseTrainer.computeAllHistories();
+        double[] denseWeights = denseTrainer.aggregateWeightGradients(denseHistories).arrayCopy();
+        double[] denseFilters = denseTrainer.aggregateProbabilityGradients(denseHistories).arrayCopy();
+
+        Trainer sparseTrainer = Trainer.getDefaultTrainer(net, true);
+        sparseTrainer.setTrainingData(inputs, targets);
+        NetworkHistory[] sparseHistories = sparseTrainer.computeAllHistories();
+
+        assertArrayEquals(denseWeights, sparseTrainer.aggregateWeightGradients(sparseHistories).arrayCopy(), 1E-12);
+        assertArrayEquals(denseFilters, sparseTrainer.aggregateProbabilityGradients(sparseHistories).arrayCopy(),
+                1E-12);
+    }
+
+    @Test
+    public void testParallelTrainerMatchesSerial() {
+        GraphNetwork net = getRecurrentModel();
+        Double[][][] allInputs = new Double[8][][];
+        Double[][][] allTargets = new Double[8][][];
+        for (int i = 0; i < allInputs.length; i++) {
+            allInputs[i] = new Double[inputs.length][];
+            for (int t = 0; t < inputs.length; t++) {
+                allInputs[i][t] = inputs[(t + i) % inputs.length];
+            }
+            allTargets[i] = targets;
+        }
+
+        Trainer trainer = Trainer.getDefaultTrainer(net);
+        trainer.setTrainingData(allInputs, allTargets);
+        NetworkHistory[] serialHistories = trainer.computeAllHistories();
+        double[] serialWeights = trainer.aggregateWeightGradients(serialHistories).arrayCopy();
+        double[] serialFilters = trainer.aggregateProbabilityGradients(serialHistories).arrayCopy();
+
+        trainer.setParallelism(4);
+        NetworkHistory[] parallelHistories = trainer.computeAllHistories();
+        for (int i = 0; i < serialHistories.length; i++) {
+            assertEquals(serialHistories[i].getNumberOfTimesteps(), parallelHistories[i].getNumberOfTimesteps());
+            for (int t = 0; t < serialHistories[i].getNumberOfTimesteps(); t++) {
+                for (Entry<INode, ArrayList<Outcome>> entry : serialHistories[i].getStateAtTimestep(t).entrySet()) {
+                    ArrayList<Outcome> parallelOutcomes = parallelHistories[i].getStateOfRecord(t, entry.getKey());
+                    assertEquals(entry.getValue().size(), parallelOutcomes.size());
+                    for (int o = 0; o < parallelOutcomes.size(); o++) {
+                        assertEquals(entry.getValue().get(o).netValue, parallelOutcomes.get(o).netValue, 0);
+                        assertEquals(entry.getValue().get(o).probability, parallelOutcomes.get(o).probability, 0);
+                    }
+                }
+            }
+        }
+        assertArrayEquals(serialWeights, trainer.aggregateWeightGradients(parallelHistories).arrayCopy(), 1E-12);
+        assertArrayEquals(serialFilters, trainer.aggregateProbabilityGradients(parallelHistories).arrayCopy(),
+                1E-12);
+        trainer.setParallelism(1);
+    }
+
+    private static ArrayList<HashMap<Outcome, double[]>> toArrays(ArrayList<HashMap<Outcome, Vec>> gradient) {
+        ArrayList<HashMap<Outcome, double[]>> arrays = new ArrayList<>(gradient.size());
+        for (HashMap<Outcome, Vec> map : gradient) {
+            HashMap<Outcome, double[]> arrayMap = new HashMap<>();
+            map.forEach((outcome, vec) -> arrayMap.put(outcome, vec.arrayCopy()));
+            arrays.add(arrayMap);
+        }
+        return arrays;
+    }
+
+    private static void assertGradientsEqual(ArrayList<HashMap<Outcome, double[]>> dense,
+            ArrayList<HashMap<Outcome, Vec>> sparse) {
+        assertEquals(dense.size(), sparse.size());
+        for (int t = 0; t < dense.size(); t++) {
+            assertEquals(dense.get(t).size(), sparse.get(t).size());
+            for (Entry<Outcome, double[]> entry : dense.get(t).entrySet()) {
+                Vec sparseGradient = sparse.get(t).get(entry.getKey());
+                assertTrue(sparseGradient.isSparse());
+                assertArrayEquals(entry.getValue(), sparseGradient.arrayCopy(), 1E-12);
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.lucasbrown.NetworkTraining.NetworkDerivatives;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map.Entry;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.lucasbrown.GraphNetwork.Global.GraphNetwork;
+import com.lucasbrown.GraphNetwork.Global.NodeBuilder;
+import com.lucasbrown.GraphNetwork.Local.ActivationFunction;
+import com.lucasbrown.GraphNetwork.Local.Outcome;
+import com.lucasbrown.GraphNetwork.Local.Filters.NormalPeakFilter;
+import com.lucasbrown.GraphNetwork.Local.Nodes.INode;
+import com.lucasbrown.GraphNetwork.Local.Nodes.ProbabilityCombinators.ComplexProbabilityCombinator;
+import com.lucasbrown.GraphNetwork.Local.Nodes.ValueCombinators.ComplexCombinator;
+import com.lucasbrown.NetworkTraining.History.NetworkHistory;
+import com.lucasbrown.NetworkTraining.Trainers.FilterLinearizer;
+import com.lucasbrown.NetworkTraining.Trainers.NetworkInputEvaluater;
+import com.lucasbrown.NetworkTraining.Trainers.Trainer;
+import com.lucasbrown.NetworkTraining.Trainers.WeightsLinearizer;
+
+import jsat.linear.DenseVector;
+import jsat.linear.Vec;
+
+public class ReverseNetworkGradientTest {
+
+    private GraphNetwork getRecurrentModel() {
+        GraphNetwork net = new GraphNetwork();
+
+        NodeBuilder nodeBuilder = new NodeBuilder(net);
+        nodeBuilder.setActivationFunction(ActivationFunction.LINEAR);
+        nodeBuilder.setValueCombinator(ComplexCombinator::new);
+        nodeBuilder.setProbabilityCombinator(() -> new ComplexProbabilityCombinator(() -> new NormalPeakFilter(0.3, 2)));
+
+        nodeBuilder.setAsInputNode();
+        INode in1 = nodeBuilder.build();
+        INode in2 = nodeBuilder.build();
+
+        nodeBuilder.setAsHiddenNode();
+        INode hidden1 = nodeBuilder.build();
+        INode hidden2 = nodeBuilder.build();
+        INode hidden3 = nodeBuilder.build();
+
+        nodeBuilder.setAsOutputNode();
+        INode out = nodeBuilder.build();
+
+        net.addNewConnection(in1, hidden1);
+        net.addNewConnection(in2, hidden2);
+        net.addNewConnection(hidden1, hidden1);
+        net.addNewConnection(hidden1, hidden2);
+        net.addNewConnection(hidden2, hidden1);
+        net.addNewConnection(in1, hidden3);
+        net.addNewConnection(hidden1, out);
+        net.addNewConnection(hidden2, out);
+        return net;
+    }
+
+    private final Double[][] inputs = new Double[][] {
+            { 0.5, null }, { -1d, 1d }, { null, 0.25 }, { null, null }, { 2d, null }, { null, null } };
+
+    private final Double[][] targets = new Double[][] {
+            { null }, { null }, { 1d }, { null }, { -0.5 }, { 2d } };
+
+    @Test
+    public void testWeightGradientMatchesForward() {
+        GraphNetwork net = getRecurrentModel();
+        WeightsLinearizer weightsLinearizer = new WeightsLinearizer(net);
+        FilterLinearizer filterLinearizer = new FilterLinearizer(net);
+        NetworkHistory history = new NetworkInputEvaluater(net, inputs).computeNetworkInference();
+
+        ArrayList<HashMap<Outcome, Vec>> forward = new ForwardNetworkGradient(weightsLinearizer).getGradient(history);
+        IAdjointNetworkGradient reverse = new ReverseNetworkGradient(weightsLinearizer, filterLinearizer)
+                .getWeightsGradient();
+
+        assertGradientsEqual(forward, reverse.getGradient(history));
+        assertSeededGradientEquals(forward, reverse, history, weightsLinearizer.totalNumOfVariables);
+    }
+
+    @Test
+    public void testFilterGradientMatchesForward() {
+        GraphNetwork net = getRecurrentModel();
+        WeightsLinearizer weightsLinearizer = new WeightsLinearizer(net);
+        FilterLinearizer filterLinearizer = new FilterLinearizer(net);
+        NetworkHistory history = new NetworkInputEvaluater(net, inputs).computeNetworkInference();
+
+        ArrayList<HashMap<Outcome, Vec>> forward = new ForwardFilterGradient(filterLinearizer).getGradient(history);
+        IAdjointNetworkGradient reverse = new ReverseNetworkGradient(weightsLinearizer, filterLinearizer)
+                .getFilterGradient();
+
+        assertGradientsEqual(forward, reverse.getGradient(history));
+        assertSeededGradientEquals(forward, reverse, history, filterLinearizer.totalNumOfVariables);
+    }
+
+    @Test
+    public void testReverseTrainerMatchesForward() {
+        GraphNetwork net = getRecurrentModel();
+
+        Trainer forwardTrainer = Trainer.getDefaultTrainer(net);
+        forwardTrainer.setTrainingData(inputs, targets);
+        NetworkHistory[] forwardHistories = forwardTrainer.computeAllHistories();
+        double[] forwardWeights = forwardTrainer.aggregateWeightGradients(forwardHistories).arrayCopy();
+        double[] forwardFilters = forwardTrainer.aggregateProbabilityGradients(forwardHistories).arrayCopy();
+
+        Trainer reverseTrainer = Trainer.getReverseModeTrainer(net);
+        reverseTrainer.setTrainingData(inputs, targets);
+        NetworkHistory[] reverseHistories = reverseTrainer.computeAllHistories();
+
+        assertArrayEquals(forwardWeights, reverseTrainer.aggregateWeightGradients(reverseHistories).arrayCopy(),
+                1E-10);
+        assertArrayEquals(forwardFilters, reverseTrainer.aggregateProbabilityGradients(reverseHistories).arrayCopy(),
+                1E-10);
+    }
+
+    private static void assertGradientsEqual(ArrayList<HashMap<Outcome, Vec>> forward,
+            ArrayList<HashMap<Outcome, Vec>> reverse) {
+        assertEquals(forward.size(), reverse.size());
+        for (int t = 0; t < forward.size(); t++) {
+            assertEquals(forward.get(t).size(), reverse.get(t).size());
+            for (Entry<Outcome, Vec> entry : forward.get(t).entrySet()) {
+                assertArrayEquals(entry.getValue().arrayCopy(), reverse.get(t).get(entry.getKey()).arrayCopy(),
+                        1E-10);
+            }
+        }
+    }
+
+    private static void assertSeededGradientEquals(ArrayList<HashMap<Outcome, Vec>> forward,
+            IAdjointNetworkGradient reverse, NetworkHistory history, int length) {
+        Random random = new Random(42);
+        HashMap<Outcome, Double> seeds = new HashMap<>();
+        Vec expected = new DenseVector(length);
+        for (HashMap<Outcome, Vec> gradientAtTime : forward) {
+            for (Entry<Outcome, Vec> entry : gradientAtTime.entrySet()) {
+                double seed = random.nextGaussian();
+                seeds.put(entry.getKey(), seed);
+                expected.mutableAdd(seed, entry.getValue());
+            }
+        }
+        assertArrayEquals(expected.arrayCopy(), reverse.getGradientOfSeeds(history, seeds).arrayCopy(), 1E-10);
+    }
+}
@@ -1,5 +1,8 @@
 package com.lucasbrown.NetworkTraining.OutputDerivatives;
 
+import java.util.List;
+import java.util.function.Function;
+
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -7,6 +10,7 @@ import com.lucasbrown.GraphNetwork.Global.GraphNetwork;
 import com.lucasbrown.GraphNetwork.Global.NodeBuilder;
 import com.lucasbrown.GraphNetwork.Local.ActivationFunction;
 import com.lucasbrown.GraphNetwork.Local.Filters.NormalPeakFilter;
+import com.lucasbrown.GraphNetwork.Local.Nodes.INode;
 import com.lucasbrown.GraphNetwork.Local.Nodes.InputNode;
 import com.lucasbrown.GraphNetwork.Local.Nodes.OutputNode;
 import com.lucasbrown.GraphNetwork.Local.Nodes.ProbabilityCombinators.ComplexProbabilityCombinator;
@@ -93,4 +97,65 @@ public class WeightedOutcomeChanceFilterGradientTest {
         Assert.assertArrayEquals(targetErrors, probabilityGradient.arrayCopy(), 1E-6);
 
     }
+
+    private GraphNetwork getTwoLayerModel(){
+        GraphNetwork net = new GraphNetwork();
+        
+        NodeBuilder nodeBuilder = new NodeBuilder(net);
+
+        nodeBuilder.setActivationFunction(ActivationFunction.LINEAR);
+        nodeBuilder.setValueCombinator(ComplexCombinator::new);
+        nodeBuilder.setProbabilityCombinator(() -> new ComplexProbabilityCombinator(NormalPeakFilter::getStandardNormalBetaFilter));
+        
+        nodeBuilder.setAsInputNode();
+        INode in = nodeBuilder.build();
+
+        nodeBuilder.setAsHiddenNode();
+        INode hidden1 = nodeBuilder.build();
+        INode hidden2 = nodeBuilder.build();
+
+        nodeBuilder.setAsOutputNode();
+        INode out = nodeBuilder.build();
+
+        net.addNewConnection(in, hidden1);
+        net.addNewConnection(in, hidden2);
+        net.addNewConnection(hidden1, out);
+        net.addNewConnection(hidden2, out);
+
+        hidden1.getValueCombinator().setWeights(0b1, new double[]{1.5});
+        hidden2.getValueCombinator().setWeights(0b1, new double[]{-0.5});
+
+        return net;
+    }
+
+    /**
+     * The probabilities of the output depend on those of the hidden nodes, so
+     * the gradient of every filter passes through the gradient of a root outcome
+     */
+    @Test
+    public void testGradientMatchesNumericalDerivative() {
+        final Double[][] inputData = {{0.5d}, {null}, {null}};
+        final Double[][] outputData = {{null}, {null}, {null}};
+
+        GraphNetwork net = getTwoLayerModel();
+
+        NumericalDerivativeTrainer numericalTrainer = NumericalDerivativeTrainer.getDefaultTrainer(net);
+        numericalTrainer.setTrainingData(inputData, outputData);
+        double[] numerical = numericalTrainer.computeNumericalDerivativeOfFilters().arrayCopy();
+
+        // each trainer takes over the inputs of the network so they are made one at a time
+        List<Function<GraphNetwork, Trainer>> trainers = List.of(Trainer::getDefaultTrainer,
+                network -> Trainer.getDefaultTrainer(network, true), Trainer::getReverseModeTrainer);
+        for (Function<GraphNetwork, Trainer> trainer : trainers) {
+            Trainer analyticTrainer = trainer.apply(net);
+            analyticTrainer.setTrainingData(inputData, outputData);
+            double[] analytic = analyticTrainer.aggregateProbabilityGradients(analyticTrainer.computeAllHistories())
+                    .arrayCopy();
+
+            Assert.assertEquals(numerical.length, analytic.length);
+            for (int i = 0; i < numerical.length; i++) {
+                Assert.assertEquals(numerical[i], analytic[i], 1E-3 * Math.max(1, Math.abs(numerical[i])));
+            }
+        }
+    }
 }
@@ -0,0 +1,124 @@
+package com.lucasbrown.NetworkTraining.Solvers;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import jsat.linear.DenseVector;
+import jsat.linear.SparseVector;
+import jsat.linear.Vec;
+
+public class SolverTest {
+
+    private final int n = 17;
+
+    /**
+     * The original vector based ADAM step
+     */
+    private static class ReferenceADAM {
+        double alpha = 0.001, epsilon = 1E-8, beta_1 = 0.99, beta_2 = 0.999;
+        int t = 0;
+        Vec m, v;
+
+        ReferenceADAM(int n) {
+            m = new DenseVector(n);
+            v = new DenseVector(n);
+        }
+
+        Vec step(Vec g) {
+            t++;
+            m = m.multiply(beta_1).add(g.multiply(1 - beta_1));
+            v = v.multiply(beta_2).add(g.pairwiseMultiply(g).multiply(1 - beta_2));
+            Vec m_hat = m.divide(1 - Math.pow(beta_1, t));
+            Vec v_hat = v.divide(1 - Math.pow(beta_2, t));
+
+            Vec deltas = new DenseVector(g.length());
+            for (int i = 0; i < g.length(); i++) {
+                deltas.set(i, alpha * m_hat.get(i) / (Math.sqrt(v_hat.get(i)) + epsilon));
+            }
+            return deltas;
+        }
+    }
+
+    @Test
+    public void testADAMMatchesReference() {
+        Random rng = new Random(5);
+        ADAMSolver solver = new ADAMSolver(null, n);
+        ReferenceADAM reference = new ReferenceADAM(n);
+
+        Vec previous = null;
+        for (int step = 0; step < 20; step++) {
+            Vec gradient = DenseVector.random(n, rng);
+            Vec deltas = solver.solve(gradient);
+            assertArrayEquals(reference.step(gradient).arrayCopy(), deltas.arrayCopy(), 0);
+
+            // the same vector is reused every step
+            if (previous != null) {
+                assertSame(previous, deltas);
+            }
+            previous = deltas;
+        }
+    }
+
+    @Test
+    public void testSparseGradient() {
+        ADAMSolver dense = new ADAMSolver(null, n);
+        ADAMSolver sparse = new ADAMSolver(null, n);
+
+        for (int step = 0; step < 5; step++) {
+            SparseVector sparseGradient = new SparseVector(n);
+            sparseGradient.set(step, 1.5);
+            sparseGradient.set(n - 1, -0.5);
+            Vec denseGradient = new DenseVector(sparseGradient);
+            assertArrayEquals(dense.solve(denseGradient).arrayCopy(), sparse.solve(sparseGradient).arrayCopy(), 0);
+        }
+    }
+
+    @Test
+    public void testAdamWDecay() {
+        Random rng = new Random(9);
+        ADAMSolver adam = new ADAMSolver(null, n);
+        AdamWSolver adamW = new AdamWSolver(null, n);
+        double[] parameters = DenseVector.random(n, rng).arrayCopy();
+
+        for (int step = 0; step < 5; step++) {
+            Vec gradient = DenseVector.random(n, rng);
+            double[] expected = adam.solve(gradient).arrayCopy();
+            double[] actual = adamW.solve(gradient, parameters).arrayCopy();
+            for (int i = 0; i < n; i++) {
+                assertEquals(expected[i] + adamW.alpha * adamW.weight_decay * parameters[i], actual[i], 1E-15);
+            }
+        }
+    }
+
+    @Test
+    public void testSolversMinimizeQuadratic() {
+        SolverBase[] solvers = new SolverBase[] { new ADAMSolver(null, n), new AdamWSolver(null, n),
+                new RMSPropSolver(null, n), new MomentumSolver(null, n) };
+        ((ADAMSolver) solvers[0]).alpha = 0.01;
+        ((AdamWSolver) solvers[1]).alpha = 0.01;
+        ((RMSPropSolver) solvers[2]).alpha = 0.01;
+
+        for (SolverBase solver : solvers) {
+            // minimize sum((x - 1)^2)
+            double[] x = new double[n];
+            Vec gradient = new DenseVector(n);
+            for (int step = 0; step < 2000; step++) {
+                for (int i = 0; i < n; i++) {
+                    gradient.set(i, 2 * (x[i] - 1));
+                }
+                Vec deltas = solver.solve(gradient, x);
+                for (int i = 0; i < n; i++) {
+                    x[i] -= deltas.get(i);
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                assertEquals(solver.getClass().getSimpleName(), 1, x[i], 0.05);
+            }
+        }
+    }
+}
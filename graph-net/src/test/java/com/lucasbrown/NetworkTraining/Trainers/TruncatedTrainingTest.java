@@ -0,0 +1,196 @@
+package com.lucasbrown.NetworkTraining.Trainers;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+import com.lucasbrown.GraphNetwork.Global.GraphNetwork;
+import com.lucasbrown.GraphNetwork.Global.NodeBuilder;
+import com.lucasbrown.GraphNetwork.Local.ActivationFunction;
+import com.lucasbrown.GraphNetwork.Local.Filters.NormalPeakFilter;
+import com.lucasbrown.GraphNetwork.Local.Nodes.INode;
+import com.lucasbrown.GraphNetwork.Local.Nodes.ProbabilityCombinators.ComplexProbabilityCombinator;
+import com.lucasbrown.GraphNetwork.Local.Nodes.ValueCombinators.ComplexCombinator;
+
+public class TruncatedTrainingTest {
+
+    private GraphNetwork getRecurrentModel() {
+        GraphNetwork net = new GraphNetwork();
+
+        NodeBuilder nodeBuilder = new NodeBuilder(net);
+        nodeBuilder.setActivationFunction(ActivationFunction.LINEAR);
+        nodeBuilder.setValueCombinator(ComplexCombinator::new);
+        nodeBuilder.setProbabilityCombinator(() -> new ComplexProbabilityCombinator(() -> new NormalPeakFilter(0.3, 2)));
+
+        nodeBuilder.setAsInputNode();
+        INode in1 = nodeBuilder.build();
+        INode in2 = nodeBuilder.build();
+
+        nodeBuilder.setAsHiddenNode();
+        INode hidden1 = nodeBuilder.build();
+        INode hidden2 = nodeBuilder.build();
+
+        nodeBuilder.setAsOutputNode();
+        INode out = nodeBuilder.build();
+
+        net.addNewConnection(in1, hidden1);
+        net.addNewConnection(in2, hidden2);
+        net.addNewConnection(hidden1, hidden1);
+        net.addNewConnection(hidden1, hidden2);
+        net.addNewConnection(hidden2, hidden1);
+        net.addNewConnection(hidden1, out);
+        net.addNewConnection(hidden2, out);
+        return net;
+    }
+
+    private static Double[][][] getSequences(int count, int length, int width, double density, long seed) {
+        Random rng = new Random(seed);
+        Double[][][] sequences = new Double[count][length][width];
+        for (int s = 0; s < count; s++) {
+            for (int t = 0; t < length; t++) {
+                for (int i = 0; i < width; i++) {
+                    sequences[s][t][i] = rng.nextDouble() < density ? rng.nextGaussian() : null;
+                }
+            }
+        }
+        return sequences;
+    }
+
+    /**
+     * Take one training step from the current parameters, then restore them
+     *
+     * @return the weights and filter parameters after the step
+     */
+    private static double[][] stepAndRestore(Trainer trainer) {
+        return stepAndRestore(trainer, false);
+    }
+
+    private static double[][] stepAndRestore(Trainer trainer, boolean print_forward) {
+        double[] weights = trainer.weightLinearizer.getAllParameters();
+        double[] filters = trainer.filterLinearizer.getAllParameters();
+
+        trainer.trainingStep(print_forward);
+        double[][] stepped = new double[][] { trainer.weightLinearizer.getAllParameters(),
+                trainer.filterLinearizer.getAllParameters() };
+
+        for (int i = 0; i < weights.length; i++) {
+            trainer.weightLinearizer.setParameter(i, weights[i]);
+        }
+        for (int i = 0; i < filters.length; i++) {
+            trainer.filterLinearizer.setParameter(i, filters[i]);
+        }
+        return stepped;
+    }
+
+    private void assertWindowedStepsMatch(Function<GraphNetwork, Trainer> trainerFactory, int windowA,
+            int windowB) {
+        GraphNetwork net = getRecurrentModel();
+        Double[][][] inputs = getSequences(3, 12, 2, 0.6, 1);
+        Double[][][] targets = getSequences(3, 12, 1, 0.5, 2);
+
+        Trainer trainerA = trainerFactory.apply(net);
+        trainerA.setTruncationWindow(windowA);
+        trainerA.setTrainingData(inputs, targets);
+        double[][] steppedA = stepAndRestore(trainerA);
+
+        Trainer trainerB = trainerFactory.apply(net);
+        trainerB.setTruncationWindow(windowB);
+        trainerB.setTrainingData(inputs, targets);
+        double[][] steppedB = stepAndRestore(trainerB);
+
+        assertArrayEquals(steppedA[0], steppedB[0], 1E-9);
+        assertArrayEquals(steppedA[1], steppedB[1], 1E-9);
+    }
+
+    @Test
+    public void testSingleWindowMatchesFullSequence() {
+        assertWindowedStepsMatch(Trainer::getDefaultTrainer, 0, 12);
+        assertWindowedStepsMatch(Trainer::getReverseModeTrainer, 0, 12);
+    }
+
+    @Test
+    public void testTruncatedForwardMatchesReverse() {
+        for (int window : new int[] { 1, 3, 5 }) {
+            GraphNetwork net = getRecurrentModel();
+            Double[][][] inputs = getSequences(3, 12, 2, 0.6, 3);
+            Double[][][] targets = getSequences(3, 12, 1, 0.5, 4);
+
+            Trainer forward = Trainer.getDefaultTrainer(net);
+            forward.setTruncationWindow(window);
+            forward.setTrainingData(inputs, targets);
+            double[][] steppedForward = stepAndRestore(forward);
+
+            Trainer reverse = Trainer.getReverseModeTrainer(net);
+            reverse.setTruncationWindow(window);
+            reverse.setTrainingData(inputs, targets);
+            double[][] steppedReverse = stepAndRestore(reverse);
+
+            assertArrayEquals(steppedForward[0], steppedReverse[0], 1E-9);
+            assertArrayEquals(steppedForward[1], steppedReverse[1], 1E-9);
+        }
+    }
+
+    @Test
+    public void testParallelTruncatedTraining() {
+        GraphNetwork net = getRecurrentModel();
+        Double[][][] inputs = getSequences(4, 30, 2, 0.6, 5);
+        Double[][][] targets = getSequences(4, 30, 1, 0.5, 6);
+
+        Trainer serial = Trainer.getDefaultTrainer(net);
+        serial.setTruncationWindow(4);
+        serial.setTrainingData(inputs, targets);
+        double[][] steppedSerial = stepAndRestore(serial);
+
+        Trainer parallel = Trainer.getDefaultTrainer(net);
+        parallel.setTruncationWindow(4);
+        parallel.setParallelism(3);
+        parallel.setTrainingData(inputs, targets);
+        double[][] steppedParallel = stepAndRestore(parallel);
+
+        assertArrayEquals(steppedSerial[0], steppedParallel[0], 1E-9);
+        assertArrayEquals(steppedSerial[1], steppedParallel[1], 1E-9);
+        for (double weight : steppedParallel[0]) {
+            assertTrue(Double.isFinite(weight));
+        }
+    }
+
+    @Test
+    public void testPrintingTruncatedStep() {
+        GraphNetwork net = getRecurrentModel();
+        Double[][][] inputs = getSequences(3, 12, 2, 0.6, 7);
+        Double[][][] targets = getSequences(3, 12, 1, 0.5, 8);
+
+        Trainer trainer = Trainer.getDefaultTrainer(net);
+        trainer.setTruncationWindow(5);
+        trainer.setTrainingData(inputs, targets);
+        double[][] stepped = stepAndRestore(trainer);
+
+        Trainer printingTrainer = Trainer.getDefaultTrainer(net);
+        printingTrainer.setTruncationWindow(5);
+        printingTrainer.setTrainingData(inputs, targets);
+
+        PrintStream out = System.out;
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        double[][] steppedAndPrinted;
+        try {
+            System.setOut(new PrintStream(printed));
+            steppedAndPrinted = stepAndRestore(printingTrainer, true);
+        } finally {
+            System.setOut(out);
+        }
+
+        assertArrayEquals(stepped[0], steppedAndPrinted[0], 0);
+        assertArrayEquals(stepped[1], steppedAndPrinted[1], 0);
+
+        // only the last window is printed
+        String text = printed.toString();
+        assertTrue(text.contains("Time Step 10") && text.contains("Time Step 11"));
+        assertTrue(!text.contains("Time Step 9"));
+    }
+}